@@ -20,14 +20,20 @@ package org.renjin.base;
 
 import org.renjin.RenjinVersion;
 import org.renjin.eval.Context;
+import org.renjin.eval.EvalException;
 import org.renjin.eval.Session;
 import org.renjin.packaging.LazyLoadFrame;
 import org.renjin.primitives.Primitives;
 import org.renjin.repackaged.guava.collect.Sets;
 import org.renjin.sexp.*;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteOrder;
 import java.util.IdentityHashMap;
 import java.util.Set;
 
@@ -44,6 +50,12 @@ import java.util.Set;
 public class BaseFrame implements Frame {
 
   private final IdentityHashMap<Symbol, SEXP> loaded = new IdentityHashMap<Symbol, SEXP>(1100);
+
+  /**
+   * True once this frame is shared by the sessions created from a {@link org.renjin.eval.SessionTemplate},
+   * after which its bindings can no longer be changed.
+   */
+  private volatile boolean frozen = false;
   
   @Override
   public Set<Symbol> getSymbols() {
@@ -84,9 +96,22 @@ public class BaseFrame implements Frame {
 
   @Override
   public void setVariable(Symbol name, SEXP value) {
+    if(frozen) {
+      throw new EvalException("cannot change value of locked binding for '%s'", name.getPrintName());
+    }
     loaded.put(name, value);
   }
 
+  /**
+   * Prevents any further changes to this frame, so that it can be safely shared by sessions running
+   * concurrently. Sessions which share a frozen base frame must keep their own bindings, such as
+   * {@code last.warning}, in a private frame layered on top of it. The base namespace has no such layer,
+   * so assignments to it fail once the frame is frozen.
+   */
+  public void freeze() {
+    frozen = true;
+  }
+
   public BaseFrame(Session session) {
     installPlatform(session);
     installMachine();
@@ -109,7 +134,7 @@ public class BaseFrame implements Frame {
         .add("OS.type", resolveOsName())
         .add("file.sep", "/")
         .add("GUI", "unknown")
-        .add("endian", "big")
+        .add("endian", ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? "little" : "big")
         .add("pkgType", "source")
         .add("r_arch", "")
         .add("dynlib.ext", dynlibExt())
@@ -131,6 +156,9 @@ public class BaseFrame implements Frame {
 
   @Override
   public void remove(Symbol name) {
+    if(frozen) {
+      throw new EvalException("cannot remove bindings from a locked environment");
+    }
     loaded.remove(name);
   }
 
@@ -192,11 +220,19 @@ public class BaseFrame implements Frame {
       @Override
       public InputStream apply(String name) {
         String resourcePath = "/org/renjin/base/" + name;
-        InputStream in = getClass().getResourceAsStream(resourcePath);
-        if(in == null) {
+        URL url = getClass().getResource(resourcePath);
+        if(url == null) {
           throw new RuntimeException("Could not open resource " + resourcePath);
         }
-        return in;
+        try {
+          if("file".equals(url.getProtocol())) {
+            // Read the file directly, so that the lazy-load frame can be memory-mapped
+            return new FileInputStream(new File(url.toURI()));
+          }
+          return url.openStream();
+        } catch (IOException | URISyntaxException e) {
+          throw new RuntimeException("Could not open resource " + resourcePath, e);
+        }
       }
     });
     for(NamedValue name : frame) {
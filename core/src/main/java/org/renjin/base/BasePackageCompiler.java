@@ -74,10 +74,19 @@ public class BasePackageCompiler {
         ".Last.value", ".AutoloadEnv", ".BaseNamespaceEnv", 
         ".Device", ".Devices", ".Machine", ".Options", ".Platform");
 
+    // Functions used when loading any package, and by most scripts, are deserialized
+    // when the base package is loaded rather than on their first call
+    final Set<String> warmUp = Sets.newHashSet(
+        "loadNamespace", "requireNamespace", "asNamespace", "getNamespace", "attachNamespace",
+        "namespaceImport", "namespaceImportFrom", "registerS3methods",
+        "lapply", "sapply", "vapply", "mapply", "do.call", "tryCatch", "stop", "warning", "match.arg",
+        "paste", "paste0", "format", "print", "cat", "structure", "inherits", "ifelse", "unlist");
+
     new LazyLoadFrameBuilder(context)
         .outputTo(new File(outputDir))
         .excludeSymbols(omit)
         .filter(x -> !(x instanceof PrimitiveFunction))
+        .warmUp(warmUp)
         .build(baseNamespaceEnv);
   }
 
@@ -19,7 +19,6 @@
 package org.renjin.base;
 
 
-import com.github.fommil.netlib.BLAS;
 import com.github.fommil.netlib.LAPACK;
 import org.apache.commons.math.complex.Complex;
 import org.netlib.util.doubleW;
@@ -33,6 +32,7 @@ import org.renjin.invoke.annotations.Current;
 import org.renjin.invoke.annotations.Internal;
 import org.renjin.primitives.ComplexGroup;
 import org.renjin.primitives.Types;
+import org.renjin.primitives.matrix.Blas;
 import org.renjin.repackaged.guava.base.Strings;
 import org.renjin.sexp.*;
 
@@ -276,13 +276,12 @@ public class Lapack {
       throw new EvalException("invalid 'pivot' value");
     }
     if (pivot == 0) {
-      intW info = new intW(0);
-      LAPACK.getInstance().dpotrf("Upper", m, matrix, m, info);
-      if (info.val != 0) {
-        if (info.val > 0) {
-          throw new EvalException("the leading minor of order %d is not positive definite", info.val);
+      int info = Blas.getInstance().dpotrf("Upper", m, matrix, m);
+      if (info != 0) {
+        if (info > 0) {
+          throw new EvalException("the leading minor of order %d is not positive definite", info);
         } else {
-          throw new EvalException("argument %d of Lapack routine %s had invalid value", info.val, "dpotrf");
+          throw new EvalException("argument %d of Lapack routine %s had invalid value", info, "dpotrf");
         }
       }
       return DoubleArrayVector.unsafe(matrix, a.getAttributes());
@@ -392,7 +391,7 @@ public class Lapack {
             /* Destination offset = */ j * k,
             /* Length = */ k);
       }
-      BLAS.getInstance().dtrsm(
+      Blas.getInstance().dtrsm(
           /* SIDE = */    "L",
           /* UPLO = */    upper ? "U" : "L",
           /* TRANSA = */  trans ? "T" : "N", "N",
@@ -0,0 +1,70 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.compiler;
+
+import org.renjin.compiler.ir.tac.RuntimeAssumption;
+import org.renjin.eval.Context;
+import org.renjin.sexp.ClosureLayout;
+import org.renjin.sexp.Environment;
+
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+
+/**
+ * Contains the body of a closure compiled by the {@link ClosureJit}, along with the
+ * assumptions about the closure's enclosing environment used to compile it.
+ */
+public class CachedClosureBody {
+  private final MethodHandle handle;
+  private final RuntimeAssumption[] assumptions;
+  private final ClosureLayout layout;
+
+  public CachedClosureBody(MethodHandle handle, List<RuntimeAssumption> assumptions, ClosureLayout layout) {
+    this.handle = handle;
+    this.assumptions = assumptions.toArray(new RuntimeAssumption[assumptions.size()]);
+    this.layout = layout;
+  }
+
+  /**
+   * @return a handle to the compiled body, with the signature {@code (Context, FunctionEnvironment)SEXP}
+   */
+  public MethodHandle getHandle() {
+    return handle;
+  }
+
+  /**
+   * @return the layout of the frame expected by the compiled body, whose frame variables may differ
+   * from those of the interpreted closure.
+   */
+  public ClosureLayout getLayout() {
+    return layout;
+  }
+
+  /**
+   * Returns true if the assumptions used to compile the closure body are still met.
+   */
+  public boolean assumptionsStillMet(Context context, Environment enclosingEnvironment) {
+    for (int i = 0; i < assumptions.length; i++) {
+      if(!assumptions[i].test(context, enclosingEnvironment)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
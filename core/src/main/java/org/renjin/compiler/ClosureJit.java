@@ -0,0 +1,205 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.compiler;
+
+import org.renjin.compiler.aot.AotBuffer;
+import org.renjin.compiler.aot.AotHandle;
+import org.renjin.compiler.aot.ClosureCompiler;
+import org.renjin.compiler.ir.exception.InvalidSyntaxException;
+import org.renjin.compiler.ir.tac.RuntimeState;
+import org.renjin.eval.Context;
+import org.renjin.sexp.Closure;
+import org.renjin.sexp.Function;
+import org.renjin.sexp.PairList;
+import org.renjin.sexp.PrimitiveFunction;
+import org.renjin.sexp.Symbol;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compiles frequently invoked closures to JVM bytecode.
+ *
+ * <p>The JIT is enabled per {@link org.renjin.eval.Session}. Each {@link Closure} counts its invocations, and
+ * once the count reaches the session's {@link org.renjin.eval.Session#getClosureJitThreshold() threshold},
+ * asks the JIT to compile its body. Reserved words such as {@code if}, {@code <-} or {@code (} always
+ * refer to their builtins. Other calls to primitives, such as {@code return}, {@code +} or {@code [}, are
+ * resolved in the closure's enclosing environment at compile time, and the bindings found are recorded as
+ * {@link org.renjin.compiler.ir.tac.RuntimeAssumption}s. Primitives which the compiler translates specially
+ * are compiled inline, and calls to other builtins are compiled without looking up the function. Calls to
+ * closures are compiled as dynamic calls, and look up their function when invoked.</p>
+ *
+ * <p>The assumptions are checked on each invocation of the compiled body. If they no longer hold,
+ * the closure is deoptimized: the compiled body is discarded and the closure is interpreted again
+ * until it becomes hot enough to be recompiled. Closures which are deoptimized too often, or which
+ * cannot be compiled, are always interpreted.</p>
+ */
+public class ClosureJit {
+
+  /**
+   * Whether new sessions compile hot closures.
+   */
+  public static final boolean DEFAULT_ENABLED = Boolean.getBoolean("renjin.compile.closures");
+
+  public static final boolean VERBOSE = Boolean.getBoolean("renjin.compile.closures.verbose");
+
+  /**
+   * The number of invocations after which a closure is compiled in new sessions.
+   */
+  public static final int DEFAULT_THRESHOLD = Integer.getInteger("renjin.compile.closures.threshold", 1000);
+
+  /**
+   * The number of times a closure may be deoptimized before we give up on compiling it.
+   */
+  public static final int MAX_DEOPTIMIZATIONS = 3;
+
+  private static final Symbol USE_METHOD = Symbol.get("UseMethod");
+
+  private static final AtomicLong COMPILATIONS = new AtomicLong();
+  private static final AtomicLong FAILURES = new AtomicLong();
+  private static final AtomicLong DEOPTIMIZATIONS = new AtomicLong();
+  private static final AtomicLong COMPILE_TIME_NANOS = new AtomicLong();
+
+  private ClosureJit() { }
+
+  /**
+   * Tries to compile the given closure.
+   *
+   * @return the compiled body, or {@code null} if the closure could not be compiled.
+   */
+  public static CachedClosureBody tryCompile(Context context, Closure closure, Symbol name) {
+    long startTime = System.nanoTime();
+    try {
+      RuntimeState runtimeState = new JitRuntimeState(context, closure);
+      ClosureCompiler compiler = new ClosureCompiler(new AotBuffer("org.renjin.jit"), runtimeState, name, closure);
+      AotHandle handle = compiler.getHandle();
+      CachedClosureBody compiled = new CachedClosureBody(handle.loadAndGetHandle(),
+          runtimeState.getAssumptions(),
+          closure.getLayout().withFrameNames(handle.getLocalVars().toArrayUnsafe()));
+
+      COMPILATIONS.incrementAndGet();
+      if(VERBOSE) {
+        System.err.println("Compiled closure " + name + " with " + runtimeState.getAssumptions().size() + " assumption(s)");
+      }
+      return compiled;
+
+    } catch (NotCompilableException | InvalidSyntaxException e) {
+      FAILURES.incrementAndGet();
+      if(VERBOSE) {
+        System.err.println("Could not compile closure " + name + ": " + e.getMessage());
+      }
+      return null;
+
+    } catch (Exception e) {
+      FAILURES.incrementAndGet();
+      if(VERBOSE) {
+        System.err.println("Exception compiling closure " + name + ": " + e);
+      }
+      return null;
+
+    } finally {
+      COMPILE_TIME_NANOS.addAndGet(System.nanoTime() - startTime);
+    }
+  }
+
+  /**
+   * Records the deoptimization of a closure whose assumptions were violated.
+   */
+  public static void deoptimized(Closure closure) {
+    DEOPTIMIZATIONS.incrementAndGet();
+    if(VERBOSE) {
+      System.err.println("Deoptimized closure " + closure);
+    }
+  }
+
+  /**
+   * @return the number of closures successfully compiled
+   */
+  public static long getCompilationCount() {
+    return COMPILATIONS.get();
+  }
+
+  /**
+   * @return the number of closures which could not be compiled
+   */
+  public static long getFailureCount() {
+    return FAILURES.get();
+  }
+
+  /**
+   * @return the number of times compiled closures have been discarded because their assumptions were
+   * violated.
+   */
+  public static long getDeoptimizationCount() {
+    return DEOPTIMIZATIONS.get();
+  }
+
+  /**
+   * @return the total time spent compiling closures, in milliseconds.
+   */
+  public static long getCompileTimeMillis() {
+    return COMPILE_TIME_NANOS.get() / 1_000_000L;
+  }
+
+  public static void resetStatistics() {
+    COMPILATIONS.set(0);
+    FAILURES.set(0);
+    DEOPTIMIZATIONS.set(0);
+    COMPILE_TIME_NANOS.set(0);
+  }
+
+  public static String getStatistics() {
+    return "compiled: " + getCompilationCount() +
+        ", failed: " + getFailureCount() +
+        ", deoptimized: " + getDeoptimizationCount() +
+        ", compile time: " + getCompileTimeMillis() + " ms";
+  }
+
+  /**
+   * Resolves calls to primitives, like the {@link RuntimeState} used to compile loop bodies, but leaves
+   * calls to closures and to {@code UseMethod} to be looked up at runtime.
+   */
+  private static class JitRuntimeState extends RuntimeState {
+
+    private final Closure closure;
+
+    JitRuntimeState(Context context, Closure closure) {
+      super(context, closure.getEnclosingEnvironment());
+      this.closure = closure;
+    }
+
+    @Override
+    public Function findFunction(Symbol functionName) {
+      // S3 methods are resolved without recording assumptions,
+      // so we must leave dispatch to the runtime
+      if(functionName == USE_METHOD) {
+        throw new NotCompilableException(functionName, "Not specialized");
+      }
+      // A formal argument with the same name may hold a function when the closure is called
+      for (PairList.Node formal : closure.getFormals().nodes()) {
+        if(formal.getTag() == functionName) {
+          throw new NotCompilableException(functionName, "Function name is also a formal argument");
+        }
+      }
+      if(!(findFunctionIfExists(functionName) instanceof PrimitiveFunction)) {
+        throw new NotCompilableException(functionName, "Not a primitive");
+      }
+      return super.findFunction(functionName);
+    }
+  }
+}
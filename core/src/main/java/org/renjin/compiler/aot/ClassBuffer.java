@@ -42,6 +42,8 @@ import static org.renjin.repackaged.asm.Opcodes.*;
 
 public class ClassBuffer {
 
+  private static final boolean DEBUG = false;
+
   private final String className;
   private final Set<String> methodNames = new HashSet<>();
   private final ClassWriter writer;
@@ -59,7 +61,11 @@ public class ClassBuffer {
     writer.visit(Opcodes.V1_7, ACC_PUBLIC, className, null, Type.getInternalName(Object.class), null);
     writer.visitSource(sourceFile, null);
 
-    visitor = new TraceClassVisitor(writer, new PrintWriter(System.out));
+    if(DEBUG) {
+      visitor = new TraceClassVisitor(writer, new PrintWriter(System.out));
+    } else {
+      visitor = writer;
+    }
 
     writeSexpPoolField();
     writeConstructor();
@@ -160,12 +166,14 @@ public class ClassBuffer {
   public Class flushAndLoad() {
     flush();
 
-    try {
-      File file = File.createTempFile("renjin",".class");
-      org.renjin.repackaged.guava.io.Files.write(writer.toByteArray(), file);
-      System.err.println("Wrote to " + file);
-    } catch (Exception e) {
-      e.printStackTrace();
+    if(DEBUG) {
+      try {
+        File file = File.createTempFile("renjin", ".class");
+        org.renjin.repackaged.guava.io.Files.write(writer.toByteArray(), file);
+        System.err.println("Wrote to " + file);
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
     }
     if(loadedClass == null) {
       loadedClass = JitClassLoader.defineClass(Object.class, className.replace('/', '.'), writer.toByteArray());
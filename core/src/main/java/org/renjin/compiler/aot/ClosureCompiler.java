@@ -18,19 +18,22 @@
  */
 package org.renjin.compiler.aot;
 
+import org.renjin.compiler.NotCompilableException;
 import org.renjin.compiler.ir.ValueBounds;
 import org.renjin.compiler.ir.tac.IRBody;
 import org.renjin.compiler.ir.tac.IRBodyBuilder;
 import org.renjin.compiler.ir.tac.IRLabel;
 import org.renjin.compiler.ir.tac.RuntimeState;
+import org.renjin.compiler.ir.tac.expressions.EnvironmentVariable;
+import org.renjin.compiler.ir.tac.expressions.LValue;
+import org.renjin.compiler.ir.tac.statements.Assignment;
 import org.renjin.compiler.ir.tac.statements.Statement;
 import org.renjin.eval.Context;
 import org.renjin.repackaged.asm.Label;
 import org.renjin.repackaged.asm.Type;
-import org.renjin.sexp.Closure;
-import org.renjin.sexp.FunctionEnvironment;
-import org.renjin.sexp.SEXP;
-import org.renjin.sexp.Symbol;
+import org.renjin.sexp.*;
+
+import java.util.Map;
 
 /**
  * Compiles a closure to a java method
@@ -44,11 +47,21 @@ public class ClosureCompiler {
   }
 
   public ClosureCompiler(AotBuffer buffer, Context context, Symbol name, Closure closure) {
-    RuntimeState runtimeState = new RuntimeState(context, closure.getEnclosingEnvironment(), rho -> false);
+    this(buffer, new RuntimeState(context, closure.getEnclosingEnvironment(), rho -> false), name, closure);
+  }
+
+  /**
+   * Compiles a closure, resolving functions through the given {@code runtimeState}. Any functions
+   * resolved are recorded in {@code runtimeState} as assumptions which must be checked before
+   * the compiled body is invoked.
+   */
+  public ClosureCompiler(AotBuffer buffer, RuntimeState runtimeState, Symbol name, Closure closure) {
     IRBodyBuilder builder = new IRBodyBuilder(runtimeState);
     IRBody body = builder.build(new ClosureTranslationContext(), closure.getBody(), false);
 //    System.out.println(body);
 
+    checkResolvedFunctionsNotShadowed(runtimeState, closure, body);
+
     for (Statement statement : body.getStatements()) {
       statement.getRHS().updateTypeBounds(e -> ValueBounds.UNBOUNDED);
     }
@@ -89,6 +102,33 @@ public class ClosureCompiler {
   }
 
 
+  /**
+   * Functions resolved at compile time are looked up in the closure's enclosing environment, so we
+   * can't compile calls to a function whose name may be bound in the function's own environment.
+   */
+  private static void checkResolvedFunctionsNotShadowed(RuntimeState runtimeState, Closure closure, IRBody body) {
+    Map<Symbol, Function> resolvedFunctions = runtimeState.getResolvedFunctions();
+    if(resolvedFunctions.isEmpty()) {
+      return;
+    }
+    for (PairList.Node formal : closure.getFormals().nodes()) {
+      if(resolvedFunctions.containsKey(formal.getTag())) {
+        throw new NotCompilableException(formal.getTag(), "Function name is also a formal argument");
+      }
+    }
+    for (Statement statement : body.getStatements()) {
+      if(statement instanceof Assignment) {
+        LValue lhs = ((Assignment) statement).getLHS();
+        if(lhs instanceof EnvironmentVariable) {
+          Symbol name = ((EnvironmentVariable) lhs).getName();
+          if(resolvedFunctions.containsKey(name)) {
+            throw new NotCompilableException(name, "Function name is assigned within the function body");
+          }
+        }
+      }
+    }
+  }
+
   public AotHandle getHandle() {
     return handle;
   }
@@ -0,0 +1,26 @@
+package org.renjin.compiler.codegen;
+
+import org.renjin.primitives.Primitives;
+import org.renjin.repackaged.asm.Type;
+import org.renjin.repackaged.asm.commons.InstructionAdapter;
+import org.renjin.sexp.PrimitiveFunction;
+
+/**
+ * Loads a builtin which was resolved at compile time, without searching the environment.
+ * Only valid if the resolution is guarded by a {@link org.renjin.compiler.ir.tac.RuntimeAssumption}.
+ */
+public class BuiltinFunctionLoader implements FunctionLoader {
+
+  private final String name;
+
+  public BuiltinFunctionLoader(String name) {
+    this.name = name;
+  }
+
+  @Override
+  public void loadFunction(EmitContext context, InstructionAdapter mv) {
+    mv.aconst(name);
+    mv.invokestatic(Type.getInternalName(Primitives.class), "getBuiltin",
+        Type.getMethodDescriptor(Type.getType(PrimitiveFunction.class), Type.getType(String.class)), false);
+  }
+}
@@ -98,8 +98,6 @@ public class IRBodyBuilder {
    
     removeRedundantJumps();
 
-    System.out.println(statements);
-
     if(ensureInitialized) {
       initializeEnvironmentVariables();
     }
@@ -192,7 +192,7 @@ public class RuntimeState {
       }
 
       // Climb up to the next level
-      environment = environment.getParent();
+      environment = environment.getParent(context);
 
     } while(environment != Environment.EMPTY);
 
@@ -319,7 +319,13 @@ public class RuntimeState {
     throw new NotCompilableException(functionName, "Could not find function " + functionName);
   }
 
-  private Function findFunctionIfExists(Symbol functionName) {
+  /**
+   * Finds a function with the given name in the enclosing environment, without
+   * recording an assumption.
+   *
+   * @return the function, or {@code null} if there is no such function.
+   */
+  protected Function findFunctionIfExists(Symbol functionName) {
     if(resolvedFunctions.containsKey(functionName)) {
       return resolvedFunctions.get(functionName);
     }
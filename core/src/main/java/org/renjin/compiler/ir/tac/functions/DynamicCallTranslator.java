@@ -19,6 +19,7 @@
 package org.renjin.compiler.ir.tac.functions;
 
 import org.renjin.compiler.NotCompilableException;
+import org.renjin.compiler.codegen.BuiltinFunctionLoader;
 import org.renjin.compiler.codegen.FunctionLoader;
 import org.renjin.compiler.codegen.NamedFunctionLoader;
 import org.renjin.compiler.ir.tac.IRBodyBuilder;
@@ -30,13 +31,21 @@ import org.renjin.compiler.ir.tac.statements.ExprStatement;
 import org.renjin.repackaged.asm.Type;
 import org.renjin.sexp.Function;
 import org.renjin.sexp.FunctionCall;
+import org.renjin.sexp.PrimitiveFunction;
 import org.renjin.sexp.Symbol;
 
 public class DynamicCallTranslator extends FunctionCallTranslator {
 
-  public static final DynamicCallTranslator INSTANCE = new DynamicCallTranslator();
+  public static final DynamicCallTranslator INSTANCE = new DynamicCallTranslator(null);
 
-  private DynamicCallTranslator() {
+  /**
+   * The builtin to which the function name was resolved at compile time, or {@code null}
+   * if the function is looked up when the call is evaluated.
+   */
+  private final PrimitiveFunction builtin;
+
+  DynamicCallTranslator(PrimitiveFunction builtin) {
+    this.builtin = builtin;
   }
 
   @Override
@@ -45,7 +54,7 @@ public class DynamicCallTranslator extends FunctionCallTranslator {
 
     if(call.getFunction() instanceof Symbol) {
       String functionName = ((Symbol) call.getFunction()).getPrintName();
-      return new DynamicCall(new NamedFunctionLoader(functionName), call, functionName(call));
+      return new DynamicCall(functionLoader(functionName), call, functionName(call));
     } else {
 
       SimpleExpression functionExpr = builder.translateSimpleExpression(context, call.getFunction());
@@ -69,12 +78,20 @@ public class DynamicCallTranslator extends FunctionCallTranslator {
     if(getterCall.getFunction() instanceof Symbol) {
       Symbol getter = (Symbol) getterCall.getFunction();
       String setter = getter.getPrintName() + "<-";
-      return new DynamicSetterCall(getterCall, new NamedFunctionLoader(setter), setter, builder.simplify(rhs));
+      return new DynamicSetterCall(getterCall, functionLoader(setter), setter, builder.simplify(rhs));
     } else {
       throw new NotCompilableException(getterCall, "Unsupported expression in complex assignment");
     }
   }
 
+  private FunctionLoader functionLoader(String functionName) {
+    if(builtin == null) {
+      return new NamedFunctionLoader(functionName);
+    } else {
+      return new BuiltinFunctionLoader(builtin.getName());
+    }
+  }
+
   private String functionName(FunctionCall call) {
     if(call.getFunction() instanceof Symbol) {
       return ((Symbol) call.getFunction()).getPrintName();
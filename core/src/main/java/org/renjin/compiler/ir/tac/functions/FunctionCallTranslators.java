@@ -19,6 +19,7 @@
 package org.renjin.compiler.ir.tac.functions;
 
 import org.renjin.compiler.NotCompilableException;
+import org.renjin.primitives.Primitives;
 import org.renjin.repackaged.guava.collect.Maps;
 import org.renjin.sexp.Closure;
 import org.renjin.sexp.Function;
@@ -59,6 +60,14 @@ public class FunctionCallTranslators {
     specials.put("missing", new MissingTranslator());
   }
 
+  /**
+   * @return true if calls to the primitive with the given name are translated to specialized IR,
+   * rather than compiled as a dynamic call.
+   */
+  public boolean isSpecial(String primitiveName) {
+    return specials.containsKey(primitiveName);
+  }
+
   public FunctionCallTranslator get(Optional<Function> resolvedFunction) {
     return resolvedFunction.map(this::get).orElse(DynamicCallTranslator.INSTANCE);
   }
@@ -68,6 +77,9 @@ public class FunctionCallTranslators {
       PrimitiveFunction primitiveFunction = (PrimitiveFunction)function;
       if(specials.containsKey(primitiveFunction.getName())) {
         return specials.get(primitiveFunction.getName());
+      } else if(Primitives.getBuiltin(primitiveFunction.getName()) == primitiveFunction) {
+        // The resolved builtin is guarded by an assumption, so we can skip the lookup at runtime
+        return new DynamicCallTranslator(primitiveFunction);
       } else {
         return DynamicCallTranslator.INSTANCE;
       }
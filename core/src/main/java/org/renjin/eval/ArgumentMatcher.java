@@ -37,6 +37,19 @@ public class ArgumentMatcher {
    */
   private int formalEllipses;
 
+  /**
+   * The maximum number of argument name shapes for which the result of matching is cached.
+   */
+  static final int MAX_CACHED_SHAPES = 4;
+
+  /**
+   * Recently matched argument name shapes. Most closures are called with only a handful of
+   * different combinations of argument names, so matching the names against the formals
+   * is done once per shape rather than on every call.
+   */
+  private final CachedMatch[] cachedMatches = new CachedMatch[MAX_CACHED_SHAPES];
+  private int nextCachedMatch;
+
 
   public ArgumentMatcher(Closure closure) {
     this(closure.getFormals());
@@ -203,7 +216,30 @@ public class ArgumentMatcher {
   }
 
   public MatchedArguments match(String[] actualNames, SEXP[] actualValues) {
-    return new MatchedArguments(match(actualNames), actualNames, actualValues);
+    return new MatchedArguments(matchCached(actualNames), actualNames, actualValues);
+  }
+
+  /**
+   * Matches the given argument names to this matcher's formals, reusing the result of a previous
+   * match with the same argument names if possible.
+   */
+  private MatchedArgumentPositions matchCached(String[] actualNames) {
+    CachedMatch[] cache = this.cachedMatches;
+    for (int i = 0; i < cache.length; i++) {
+      CachedMatch cached = cache[i];
+      if(cached != null && cached.matches(actualNames)) {
+        return cached.positions;
+      }
+    }
+    MatchedArgumentPositions positions = match(actualNames);
+
+    // Replace cache entries in round robin order. Races between threads may lose an entry, but
+    // entries are immutable, so a lookup never sees an inconsistent entry.
+    int slot = nextCachedMatch;
+    nextCachedMatch = (slot + 1) % cache.length;
+    cache[slot] = new CachedMatch(actualNames.clone(), positions);
+
+    return positions;
   }
 
 
@@ -284,6 +320,34 @@ public class ArgumentMatcher {
     return Arrays.asList(formalNames);
   }
 
+  /**
+   * The result of matching a given set of argument names against the formals.
+   */
+  private static final class CachedMatch {
+    private final String[] actualNames;
+    private final MatchedArgumentPositions positions;
+
+    private CachedMatch(String[] actualNames, MatchedArgumentPositions positions) {
+      this.actualNames = actualNames;
+      this.positions = positions;
+    }
+
+    private boolean matches(String[] names) {
+      if(names.length != actualNames.length) {
+        return false;
+      }
+      for (int i = 0; i < names.length; i++) {
+        // Argument names are almost always the print names of interned symbols,
+        // so check identity before comparing contents
+        String name = names[i];
+        if(name != actualNames[i] && (name == null || !name.equals(actualNames[i]))) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
   public SEXP[] getFormalNameArray() {
     SEXP[] symbols = new SEXP[formalNames.length];
     for (int i = 0; i < symbols.length; i++) {
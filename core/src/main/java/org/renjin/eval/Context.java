@@ -227,8 +227,16 @@ public class Context {
     return sexp;
   }
 
+  /**
+   * @return true if large vector operations may be deferred in this session.
+   * @see VectorPipeliner#isEnabled()
+   */
+  public boolean isDeferredEvaluationEnabled() {
+    return session.getVectorEngine().isEnabled();
+  }
+
   public ListVector materialize(ListVector listVector) {
-    if(!VectorPipeliner.ENABLED) {
+    if(!isDeferredEvaluationEnabled()) {
       return listVector;
     }
     if(!anyDeferred(listVector)) {
@@ -35,11 +35,11 @@ import java.util.Set;
 public class MatchedArgumentPositions {
 
   private final boolean[] matchedActuals;
-  private String[] formalNames;
+  private final String[] formalNames;
   private final int formalEllipses;
   private final int[] formalMatches;
 
-  private int extraArgumentCount;
+  private final int extraArgumentCount;
 
   MatchedArgumentPositions(String[] formalNames, int[] formalMatches, boolean[] matchedActuals, int formalEllipses) {
     this.formalNames = formalNames;
@@ -47,12 +47,13 @@ public class MatchedArgumentPositions {
 
     this.matchedActuals = matchedActuals;
     this.formalEllipses = formalEllipses;
-    extraArgumentCount = 0;
+    int extraArgumentCount = 0;
     for (int i = 0; i < matchedActuals.length; i++) {
       if(!matchedActuals[i]) {
         extraArgumentCount++;
       }
     }
+    this.extraArgumentCount = extraArgumentCount;
   }
 
   public static MatchedArgumentPositions matchArgumentBounds(Closure closure, List<ArgumentBounds> arguments) {
@@ -112,6 +113,13 @@ public class MatchedArgumentPositions {
     return formalNames[i];
   }
 
+  /**
+   * @return {@code true} if the formal at index {@code formalIndex} is the ellipses (...)
+   */
+  public boolean isFormalEllipses(int formalIndex) {
+    return formalIndex == formalEllipses;
+  }
+
   public int getFormalCount() {
     return formalNames.length;
   }
@@ -61,7 +61,7 @@ public class MatchedArguments {
    * @return {@code true} if the formal at index {@code formalIndex} is the ellipses (...)
    */
   public boolean isFormalEllipses(int formalIndex) {
-    return matchedPositions.getFormalSymbol(formalIndex) == Symbols.ELLIPSES;
+    return matchedPositions.isFormalEllipses(formalIndex);
   }
 
   public Symbol getFormalSymbol(int formalIndex) {
@@ -50,6 +50,15 @@ public class Options {
     map.put("useFancyQuotes", LogicalVector.TRUE);
   }
 
+  /**
+   * @return a new {@code Options} instance with the same values as this one.
+   */
+  public Options copy() {
+    Options copy = new Options();
+    copy.map = Maps.newHashMap(map);
+    return copy;
+  }
+
   public SEXP get(String name) {
     SEXP value = map.get(name);
     return value == null ? Null.INSTANCE : value;
@@ -22,13 +22,18 @@ import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
 import org.apache.commons.vfs2.FileSystemManager;
 import org.renjin.base.BaseFrame;
+import org.renjin.compiler.ClosureJit;
+import org.renjin.methods.MethodDispatch;
+import org.renjin.methods.PrimitiveMethodTable;
 import org.renjin.pipeliner.VectorPipeliner;
+import org.renjin.primitives.S3DispatchCache;
 import org.renjin.primitives.Warning;
 import org.renjin.primitives.io.connections.ConnectionTable;
 import org.renjin.primitives.packaging.DllInfo;
 import org.renjin.primitives.packaging.NamespaceRegistry;
 import org.renjin.primitives.packaging.PackageLoader;
 import org.renjin.repackaged.guava.collect.ImmutableList;
+import org.renjin.repackaged.guava.collect.ImmutableSet;
 import org.renjin.repackaged.guava.collect.Lists;
 import org.renjin.repackaged.guava.collect.Maps;
 import org.renjin.s4.S4Cache;
@@ -40,9 +45,10 @@ import java.io.File;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.lang.invoke.MethodHandle;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 
 /**
@@ -54,6 +60,14 @@ import java.util.concurrent.ExecutorService;
  */
 public class Session {
 
+  /**
+   * Singletons which hold the state of loaded namespaces, and so must be shared by all sessions
+   * created from the same template. Other singletons are created afresh by each session.
+   */
+  private static final Set<Class> SHARED_SINGLETONS = ImmutableSet.of(
+      MethodDispatch.class,
+      PrimitiveMethodTable.class);
+
   public static final List<String> DEFAULT_PACKAGES = ImmutableList.of(
       "stats",  "graphics", "grDevices", "utils",  "datasets", "methods");
   
@@ -61,6 +75,8 @@ public class Session {
 
   private S4Cache s4Cache = new S4Cache();
 
+  private final S3DispatchCache s3DispatchCache = new S3DispatchCache();
+
   private FinalizerRegistry finalizers = null;
 
   /**
@@ -90,6 +106,11 @@ public class Session {
    * This session's global environment
    */
   private final Environment globalEnvironment;
+
+  /**
+   * The frame backing this session's global environment
+   */
+  private final Frame globalFrame;
   
   /**
    * This session's base namespace environment.
@@ -100,9 +121,9 @@ public class Session {
   
   private SecurityManager securityManager;
   
-  private Map<Class, Object> singletons = Maps.newHashMap();
+  private final Map<Class, Object> singletons;
   
-  private final ConnectionTable connectionTable = new ConnectionTable();
+  private final ConnectionTable connectionTable;
 
   private FileObject workingDirectory;
   
@@ -114,12 +135,16 @@ public class Session {
   
   private VectorPipeliner vectorPipeliner;
 
+  private volatile boolean closureJitEnabled = ClosureJit.DEFAULT_ENABLED;
+
+  private volatile int closureJitThreshold = ClosureJit.DEFAULT_THRESHOLD;
+
   private ClassLoader classLoader;
 
   /**
    * Dynamic libraries that have been loaded for this session.
    */
-  private List<DllInfo> loadedLibraries = new ArrayList<>();
+  private final List<DllInfo> loadedLibraries;
 
 
   /**
@@ -141,23 +166,30 @@ public class Session {
           ClassLoader classLoader,
           PackageLoader packageLoader,
           ExecutorService executorService,
+          boolean deferredEvaluation,
           Frame globalFrame) {
     this.fileSystemManager = fileSystemManager;
     this.classLoader = classLoader;
     this.homeDirectory = FileSystemUtils.homeDirectoryInCoreJar(fileSystemManager);
     this.workingDirectory = FileSystemUtils.workingDirectory(fileSystemManager);
     this.systemEnvironment = Maps.newHashMap(System.getenv()); //load system environment variables
+    this.singletons = Maps.newHashMap();
+    this.loadedLibraries = new CopyOnWriteArrayList<>();
+    this.connectionTable = new ConnectionTable();
     this.baseFrame = new BaseFrame(this);
     this.baseEnvironment = new DynamicEnvironment(Environment.BASE_ENVIRONMENT, Environment.EMPTY, baseFrame);
+    this.globalFrame = globalFrame;
     this.globalEnvironment = new DynamicEnvironment(Environment.GLOBAL_ENVIRONMENT_NAME, baseEnvironment, globalFrame);
-    this.baseNamespaceEnv = new DynamicEnvironment(Environment.BASE_NAMESPACE_ENVIRONMENT, globalEnvironment, baseFrame);
+    BaseNamespaceEnvironment baseNamespace = new BaseNamespaceEnvironment(globalEnvironment, baseFrame);
+    baseNamespace.shareFrameWith((DynamicEnvironment) baseEnvironment);
+    this.baseNamespaceEnv = baseNamespace;
     this.topLevelContext = new Context(this);
     this.baseNamespaceEnv.setVariableUnsafe(Symbol.get(".BaseNamespaceEnv"), baseNamespaceEnv);
 
     namespaceRegistry = new NamespaceRegistry(packageLoader, baseNamespaceEnv);
     securityManager = new SecurityManager();
 
-    this.vectorPipeliner = new VectorPipeliner(executorService);
+    this.vectorPipeliner = new VectorPipeliner(executorService, deferredEvaluation);
 
 
     // TODO(alex)
@@ -166,6 +198,106 @@ public class Session {
     globalEnvironment.setVariable(topLevelContext, ".Random.seed", IntVector.valueOf(1));
   }
 
+  private Session(Session parent,
+                  Map<String, String> systemEnvironment,
+                  Map<Class, Object> singletons,
+                  ConnectionTable connectionTable,
+                  boolean privateSearchPath) {
+    this.fileSystemManager = parent.fileSystemManager;
+    this.classLoader = parent.classLoader;
+    this.homeDirectory = parent.homeDirectory;
+    this.workingDirectory = parent.workingDirectory;
+    this.systemEnvironment = systemEnvironment;
+    this.singletons = singletons;
+    this.connectionTable = connectionTable;
+    this.baseFrame = parent.baseFrame;
+    // The base namespace is shared, but code evaluated in this session sees
+    // this session's global environment as its parent
+    this.baseNamespaceEnv = parent.baseNamespaceEnv;
+    this.globalFrame = new CopyOnWriteFrame(parent.globalFrame);
+    // Keep the packages attached to the parent's search path
+    Environment searchPath;
+    if(privateSearchPath) {
+      // Layer private frames over the parent's base environment and attached packages, so that
+      // bindings such as last.warning are kept to this session
+      this.loadedLibraries = new CopyOnWriteArrayList<>(parent.loadedLibraries);
+      this.baseEnvironment = ((DynamicEnvironment) parent.baseEnvironment).copyOnWrite(Environment.EMPTY);
+      searchPath = copySearchPath(parent.globalEnvironment.getParent(), parent.baseEnvironment, baseEnvironment);
+    } else {
+      this.loadedLibraries = parent.loadedLibraries;
+      this.baseEnvironment = parent.baseEnvironment;
+      searchPath = parent.globalEnvironment.getParent();
+    }
+    this.globalEnvironment = new DynamicEnvironment(Environment.GLOBAL_ENVIRONMENT_NAME, searchPath, globalFrame);
+    this.topLevelContext = new Context(this);
+    this.namespaceRegistry = parent.namespaceRegistry;
+    this.securityManager = parent.securityManager;
+    this.commandLineArguments = parent.commandLineArguments;
+    this.s4Cache = parent.s4Cache;
+    this.vectorPipeliner = parent.vectorPipeliner;
+    this.closureJitEnabled = parent.closureJitEnabled;
+    this.closureJitThreshold = parent.closureJitThreshold;
+  }
+
+  /**
+   * Copies the chain of environments from {@code env} up to {@code base}, giving each copy a frame
+   * which keeps changes to itself, and ending the chain at {@code newBase}.
+   */
+  private static Environment copySearchPath(Environment env, Environment base, Environment newBase) {
+    if(env == base) {
+      return newBase;
+    }
+    if(!(env instanceof DynamicEnvironment)) {
+      throw new IllegalStateException("Cannot copy environment " + env.getName() + " on the search path");
+    }
+    return ((DynamicEnvironment) env).copyOnWrite(copySearchPath(env.getParent(), base, newBase));
+  }
+
+  /**
+   * Creates a lightweight child session which can evaluate R code on another thread
+   * concurrently with this session, for example to run the workers of {@code mclapply()}.
+   *
+   * <p>The child shares this session's loaded namespaces, base environment, connections and
+   * singletons, but has its own global environment, top-level context and random number
+   * generator. The child's global environment starts out with the bindings of this session's
+   * global environment, but assignments made by the child are not visible to the parent, much
+   * like a process forked by GNU R's {@code parallel} package.</p>
+   *
+   * <p>Namespaces, including the base namespace, are still shared. Lookups which continue past the
+   * base namespace continue in the child's global environment, shared promises are evaluated only once
+   * even if forced by several children at the same time, and namespaces are loaded while holding the
+   * registry's lock. Code which assigns into a namespace while children are running is not isolated.</p>
+   */
+  public Session fork() {
+    Session child = new Session(this, systemEnvironment, singletons, connectionTable, false);
+    child.sessionController = sessionController;
+    child.rng = rng.copy(child);
+    return child;
+  }
+
+  /**
+   * Creates a new, independent session from this one, to be used as a template by
+   * {@link SessionTemplate#newSession()}.
+   *
+   * <p>Unlike {@link #fork()}, the new session has its own connection table, options, system environment
+   * variables, session controller, loaded libraries and a freshly seeded random number generator, as well as
+   * its own base environment and attached package environments, which are layered over this session's
+   * frozen frames.</p>
+   */
+  Session newSessionFromTemplate() {
+    Map<Class, Object> privateSingletons = Maps.newHashMap();
+    synchronized (singletons) {
+      for (Map.Entry<Class, Object> singleton : singletons.entrySet()) {
+        if(singleton.getKey() == Options.class) {
+          privateSingletons.put(Options.class, ((Options) singleton.getValue()).copy());
+        } else if(SHARED_SINGLETONS.contains(singleton.getKey())) {
+          privateSingletons.put(singleton.getKey(), singleton.getValue());
+        }
+      }
+    }
+    return new Session(this, Maps.newHashMap(systemEnvironment), privateSingletons, new ConnectionTable(), true);
+  }
+
 
   public void setStdOut(PrintWriter writer) {
     this.connectionTable.getStdout().setStream(writer);
@@ -191,17 +323,20 @@ public class Session {
     if(clazz == NamespaceRegistry.class) {
       return (X)namespaceRegistry;
     }
-    X instance = (X) singletons.get(clazz);
-    if(instance == null) {
-      try {
-        instance = clazz.newInstance();
-      } catch (Exception e) {
-        throw new RuntimeException("Can instantiate singleton " + clazz.getName() + 
-            ": the class must have a public default constructor", e);
+    // Singletons may be shared with forked sessions running on other threads
+    synchronized (singletons) {
+      X instance = (X) singletons.get(clazz);
+      if(instance == null) {
+        try {
+          instance = clazz.newInstance();
+        } catch (Exception e) {
+          throw new RuntimeException("Can instantiate singleton " + clazz.getName() +
+              ": the class must have a public default constructor", e);
+        }
+        singletons.put(clazz, instance);
       }
-      singletons.put(clazz, instance);
+      return instance;
     }
-    return instance;
   }
 
 
@@ -358,6 +493,44 @@ public class Session {
     return s4Cache;
   }
 
+  public S3DispatchCache getS3DispatchCache() {
+    return s3DispatchCache;
+  }
+
+  /**
+   * @return true if closures called from this session are compiled by the {@link ClosureJit} once they
+   * become hot.
+   */
+  public boolean isClosureJitEnabled() {
+    return closureJitEnabled;
+  }
+
+  /**
+   * Enables or disables compilation of hot closures called from this session. The default is taken from the
+   * {@code renjin.compile.closures} system property.
+   */
+  public void setClosureJitEnabled(boolean enabled) {
+    this.closureJitEnabled = enabled;
+  }
+
+  /**
+   * @return the number of invocations after which a closure called from this session is compiled.
+   */
+  public int getClosureJitThreshold() {
+    return closureJitThreshold;
+  }
+
+  /**
+   * Sets the number of invocations after which a closure called from this session is compiled. The default is
+   * taken from the {@code renjin.compile.closures.threshold} system property.
+   */
+  public void setClosureJitThreshold(int invocations) {
+    if(invocations < 1) {
+      throw new IllegalArgumentException("invocations: " + invocations);
+    }
+    this.closureJitThreshold = invocations;
+  }
+
   public void registerFinalizer(SEXP sexp, FinalizationHandler handler, boolean onExit) {
     if(finalizers == null) {
       finalizers = new FinalizerRegistry();
@@ -416,4 +589,4 @@ public class Session {
   }
 
 
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -19,6 +19,7 @@
 package org.renjin.eval;
 
 import org.apache.commons.vfs2.FileSystemManager;
+import org.renjin.pipeliner.VectorPipeliner;
 import org.renjin.primitives.packaging.ClasspathPackageLoader;
 import org.renjin.primitives.packaging.PackageLoader;
 import org.renjin.repackaged.guava.collect.Lists;
@@ -41,6 +42,7 @@ public class SessionBuilder {
   private PackageLoader packageLoader;
   private ClassLoader classLoader;
   private ExecutorService executorService = null;
+  private boolean deferredEvaluation = VectorPipeliner.DEFAULT_ENABLED;
 
   private Frame globalFrame = new HashFrame();
 
@@ -111,6 +113,21 @@ public class SessionBuilder {
   }
 
 
+  /**
+   * Enables or disables deferred evaluation of vector operations for this {@code Session}.
+   *
+   * <p>When enabled, operations on large vectors, such as {@code x*y+z} or {@code mean(x)}, return
+   * deferred results which are fused into a single loop and computed on the {@code Session}'s
+   * {@link ExecutorService} when their values are needed. When disabled, which is the default unless the
+   * {@code renjin.vp.enabled} system property is set to {@code true}, operations are evaluated eagerly.</p>
+   *
+   * @see #setExecutorService(ExecutorService)
+   */
+  public SessionBuilder setDeferredEvaluation(boolean enabled) {
+    this.deferredEvaluation = enabled;
+    return this;
+  }
+
   /**
    * Sets the {@link ClassLoader} to use to resolve JVM classes by the {@code import()} builtin.
    */
@@ -165,7 +182,8 @@ public class SessionBuilder {
         executorService = MoreExecutors.newDirectExecutorService();
       }
 
-      Session session = new Session(fileSystemManager, classLoader, packageLoader, executorService, globalFrame);
+      Session session = new Session(fileSystemManager, classLoader, packageLoader, executorService,
+          deferredEvaluation, globalFrame);
 
       if(loadBasePackage) {
         session.baseFrame.load(session.getTopLevelContext());
@@ -181,6 +199,14 @@ public class SessionBuilder {
       throw new RuntimeException(e);
     }
   }
+
+  /**
+   * Builds a new {@code Session}, loading the base package and any requested packages, and freezes it
+   * as a {@link SessionTemplate} from which fully initialized sessions can be created cheaply.
+   */
+  public SessionTemplate buildTemplate() {
+    return new SessionTemplate(build());
+  }
   
   public static Session buildDefault() {
     return new SessionBuilder().build();
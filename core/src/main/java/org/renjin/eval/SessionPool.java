@@ -0,0 +1,96 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.eval;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Hands out fresh {@link Session}s created from a {@link SessionTemplate}.
+ *
+ * <p>A session is never reused once it has been released: the pool closes it and keeps a new session from
+ * the template in its place, so that each call to {@link #acquire()} starts from the template's state.</p>
+ */
+public class SessionPool {
+
+  private final SessionTemplate template;
+  private final BlockingQueue<Session> idle;
+
+  /**
+   * @param template the template from which to create sessions
+   * @param maxIdle the maximum number of ready sessions to keep in the pool
+   */
+  public SessionPool(SessionTemplate template, int maxIdle) {
+    if(maxIdle < 1) {
+      throw new IllegalArgumentException("maxIdle must be positive");
+    }
+    this.template = template;
+    this.idle = new ArrayBlockingQueue<>(maxIdle);
+  }
+
+  /**
+   * Fills the pool with ready sessions.
+   */
+  public void prestart() {
+    while(idle.remainingCapacity() > 0) {
+      if(!idle.offer(template.newSession())) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * @return a fresh session, either taken from the pool or newly created from the template.
+   */
+  public Session acquire() {
+    Session session = idle.poll();
+    if(session == null) {
+      session = template.newSession();
+    }
+    return session;
+  }
+
+  /**
+   * Closes a session obtained from {@link #acquire()}, including any connections it left open, and
+   * replaces it in the pool with a new session from the template.
+   */
+  public void release(Session session) {
+    try {
+      session.close();
+    } finally {
+      try {
+        session.getConnectionTable().closeAll();
+      } catch (IOException e) {
+        // The session is discarded either way
+      } finally {
+        if(idle.remainingCapacity() > 0) {
+          idle.offer(template.newSession());
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the number of ready sessions currently in the pool
+   */
+  public int getIdleCount() {
+    return idle.size();
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.eval;
+
+/**
+ * A fully initialized {@link Session}, frozen so that new sessions can be created from it
+ * in a fraction of the time needed to build a {@code Session} from scratch.
+ *
+ * <p>Sessions created by {@link #newSession()} share the template's loaded namespaces, which are not
+ * copied. The template's base frame is frozen, and each new session has its own base environment,
+ * attached package environments and global environment, which start out with the template's bindings
+ * but keep any changes to themselves. Each session also has its own options, connections, loaded
+ * libraries, system environment variables and random number generator.</p>
+ *
+ * <p>The base namespace is shared, and has no private layer: assigning or removing a binding in
+ * the base namespace, for example with {@code assign(..., envir = .BaseNamespaceEnv)} or
+ * {@code assignInNamespace(..., ns = "base")}, fails with a locked binding error in sessions created
+ * from a template. Assignments to {@code baseenv()} are kept in the session's own base environment.</p>
+ *
+ * <p>Lookups which continue past the shared base namespace continue in the global environment of the
+ * session evaluating the code (see {@link org.renjin.sexp.BaseNamespaceEnvironment}). The lazily-loaded
+ * bindings of shared namespaces are promises, which are evaluated only once even when several sessions
+ * force them at the same time, and namespaces are loaded while holding the lock of the shared
+ * {@link org.renjin.primitives.packaging.NamespaceRegistry}.</p>
+ *
+ * <p>All the packages needed by the new sessions should be loaded into the template before it is
+ * created: namespaces loaded later by one session are visible to all sessions created from the
+ * same template, but their native libraries are only registered with the session which loaded them.</p>
+ *
+ * @see SessionBuilder#buildTemplate()
+ * @see SessionPool
+ */
+public class SessionTemplate {
+
+  private final Session template;
+
+  /**
+   * Creates a new template from the given {@code session}. The session must not be used to evaluate
+   * any further code once the template has been created.
+   */
+  public SessionTemplate(Session session) {
+    this.template = session;
+    session.baseFrame.freeze();
+  }
+
+  /**
+   * Creates a new, independent {@code Session} from this template. This method is safe to
+   * call concurrently from multiple threads.
+   */
+  public Session newSession() {
+    return template.newSessionFromTemplate();
+  }
+}
@@ -25,6 +25,9 @@ import org.renjin.invoke.reflection.converters.Converters;
 import org.renjin.sexp.SEXP;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Array;
 import java.util.Collections;
 import java.util.Comparator;
@@ -113,6 +116,26 @@ public abstract class AbstractOverload {
     return converted;
   }
   
+  /**
+   * Adapts a direct method handle to the type {@code (Object, Object[])Object}, so that it can be invoked
+   * with the array of converted arguments without going through {@code java.lang.reflect}.
+   *
+   * @param handle the direct method handle. For constructors and static methods, the first argument
+   *               of the adapted handle is ignored.
+   * @param hasReceiver true if the first parameter of {@code handle} is the receiver of an instance method.
+   */
+  protected static MethodHandle spreadInvoker(MethodHandle handle, boolean hasReceiver) {
+    MethodHandle fixed = handle.asFixedArity();
+    if(!hasReceiver) {
+      fixed = MethodHandles.dropArguments(fixed, 0, Object.class);
+    }
+    int argCount = fixed.type().parameterCount() - 1;
+    return fixed
+        .asType(fixed.type().generic())
+        .asSpreader(Object[].class, argCount)
+        .asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+  }
+
   public final int getArgCount() {
     return nargs;
   }
@@ -23,6 +23,8 @@ import org.renjin.eval.EvalException;
 import org.renjin.repackaged.guava.collect.Lists;
 import org.renjin.sexp.SEXP;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
@@ -63,17 +65,35 @@ public class ConstructorBinding implements MemberBinding {
   public static class Overload extends AbstractOverload {
     private Constructor constructor;
 
-    
+    /**
+     * Handle of type {@code (Object, Object[])Object} which invokes the constructor, or {@code null}
+     * if the constructor must be invoked reflectively.
+     */
+    private MethodHandle invoker;
+
     public Overload(Constructor constructor) {
       super(constructor.getParameterTypes(), 
           constructor.getParameterAnnotations(), constructor.isVarArgs());
       this.constructor = constructor;
+      try {
+        this.invoker = spreadInvoker(MethodHandles.lookup().unreflectConstructor(constructor), false);
+      } catch (IllegalAccessException ignored) {
+        // Fall back to Constructor.newInstance()
+      }
     }
     
    
     public Object newInstance(Context context, List<SEXP> args) {
+      Object[] converted = convertArguments(context, args);
+      if(invoker != null) {
+        try {
+          return invoker.invokeExact((Object) null, converted);
+        } catch (Throwable e) {
+          throw new EvalException(e.getMessage(), e);
+        }
+      }
       try {
-        return constructor.newInstance(convertArguments(context, args));
+        return constructor.newInstance(converted);
       } catch (IllegalArgumentException e) {
         throw new RuntimeException(e);
       } catch (InstantiationException e) {
@@ -81,7 +101,7 @@ public class ConstructorBinding implements MemberBinding {
       } catch (IllegalAccessException e) {
         throw new RuntimeException(e);
       } catch (InvocationTargetException e) {
-        throw new RuntimeException(e);
+        throw new EvalException(e.getCause().getMessage(), e.getCause());
       }  
     }
     
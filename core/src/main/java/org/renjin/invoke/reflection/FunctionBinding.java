@@ -26,10 +26,14 @@ import org.renjin.invoke.reflection.converters.Converters;
 import org.renjin.repackaged.guava.collect.Iterables;
 import org.renjin.repackaged.guava.collect.Lists;
 import org.renjin.sexp.Environment;
+import org.renjin.sexp.ExternalPtr;
+import org.renjin.sexp.FunctionCall;
 import org.renjin.sexp.ListVector;
 import org.renjin.sexp.PairList;
 import org.renjin.sexp.SEXP;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
@@ -81,6 +85,16 @@ public class FunctionBinding {
   public static class Overload extends AbstractOverload {
     private Method method;
     private Converter returnValueConverter;
+
+    /**
+     * Handle of type {@code (Object, Object[])Object} which invokes the method, or {@code null}
+     * if the method is not accessible through a method handle and must be invoked reflectively.
+     *
+     * <p>The handle is held in a field rather than a constant, so the JIT does not inline the method into
+     * the call, but invoking it is still cheaper than {@link Method#invoke(Object, Object...)}.
+     * See {@code OverloadInvokeBenchmark}.</p>
+     */
+    private MethodHandle invoker;
     
     public Overload(Method method) {
       super(method.getParameterTypes(),
@@ -101,6 +115,12 @@ public class FunctionBinding {
           // but we should still continue constructing the metadata for this class.
         }
       }
+      try {
+        this.invoker = spreadInvoker(MethodHandles.lookup().unreflect(this.method),
+            !Modifier.isStatic(method.getModifiers()));
+      } catch (IllegalAccessException ignored) {
+        // Fall back to Method.invoke()
+      }
     }
     
     public Class getDeclaringClass() {
@@ -113,6 +133,15 @@ public class FunctionBinding {
     
     public SEXP invoke(Context context, Object instance, List<SEXP> args) {
       Object[] converted = convertArguments(context, args);
+      if(invoker != null) {
+        Object result;
+        try {
+          result = invoker.invokeExact(instance, converted);
+        } catch (Throwable e) {
+          throw new EvalException(e.getMessage(), e);
+        }
+        return returnValueConverter.convertToR(result);
+      }
       try {
         Object result = method.invoke(instance, converted);
         return returnValueConverter.convertToR(result);
@@ -154,6 +183,38 @@ public class FunctionBinding {
     return invoke(instance, context, args);
   }
 
+  /**
+   * Evaluates the arguments of {@code call} and invokes the matching overload. The overload
+   * selected is cached in the {@code call}, and reused by later calls from the same site whose arguments
+   * have the same {@link CachedOverload signature}.
+   *
+   * @param instance the JVM object instance
+   * @param context the calling context
+   * @param rho the calling environment
+   * @param call the call to this method
+   */
+  public SEXP evaluateArgsAndInvoke(Object instance, Context context, Environment rho, FunctionCall call) {
+
+    List<SEXP> args = Lists.newArrayListWithCapacity(maxArgCount);
+    ArgumentIterator it = new ArgumentIterator(context, rho, call.getArguments());
+    while(it.hasNext()) {
+      args.add(context.evaluate( it.next(), rho));
+    }
+
+    Object cache = call.cache;
+    if(cache instanceof CachedOverload) {
+      CachedOverload cached = (CachedOverload) cache;
+      if(cached.binding == this && cached.matches(args)) {
+        return cached.overload.invoke(context, instance, args);
+      }
+    }
+    Overload overload = findOverload(args);
+    if(cache == null || cache instanceof CachedOverload) {
+      call.cache = new CachedOverload(this, overload, args);
+    }
+    return overload.invoke(context, instance, args);
+  }
+
   /**
    *
    * @param instance the JVM object instance
@@ -166,10 +227,13 @@ public class FunctionBinding {
   }
 
   private SEXP invoke(Object instance, Context context, List<SEXP> args) {
-    // find overload
+    return findOverload(args).invoke(context, instance, args);
+  }
+
+  private Overload findOverload(List<SEXP> args) {
     for(Overload overload : overloads) {
       if(overload.accept(args)) {
-        return overload.invoke(context, instance, args);
+        return overload;
       }
     }
     throw new EvalException("Cannot match arguments (%s) to any JVM method overload:\n%s",
@@ -180,4 +244,61 @@ public class FunctionBinding {
   public String toString() {
     return getName();
   }
+
+  /**
+   * The overload selected at a call site, along with the signature of the arguments it was selected for.
+   *
+   * <p>Whether a converter accepts an argument depends only on the argument's class, on whether it has
+   * no elements, one element or more, and for an {@link ExternalPtr}, on the class of the wrapped object.
+   * These make up the signature, so that the same overload is selected for any arguments with the
+   * same signature.</p>
+   */
+  private static class CachedOverload {
+    private final FunctionBinding binding;
+    private final Overload overload;
+    private final Class[] argumentClasses;
+    private final int[] lengths;
+    private final Class[] instanceClasses;
+
+    private CachedOverload(FunctionBinding binding, Overload overload, List<SEXP> args) {
+      this.binding = binding;
+      this.overload = overload;
+      this.argumentClasses = new Class[args.size()];
+      this.lengths = new int[args.size()];
+      this.instanceClasses = new Class[args.size()];
+      for (int i = 0; i < args.size(); i++) {
+        SEXP arg = args.get(i);
+        argumentClasses[i] = arg.getClass();
+        lengths[i] = lengthClass(arg);
+        instanceClasses[i] = instanceClass(arg);
+      }
+    }
+
+    private boolean matches(List<SEXP> args) {
+      if(args.size() != argumentClasses.length) {
+        return false;
+      }
+      for (int i = 0; i < argumentClasses.length; i++) {
+        SEXP arg = args.get(i);
+        if(arg.getClass() != argumentClasses[i] ||
+            lengthClass(arg) != lengths[i] ||
+            instanceClass(arg) != instanceClasses[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private static int lengthClass(SEXP arg) {
+      return Math.min(arg.length(), 2);
+    }
+
+    private static Class instanceClass(SEXP arg) {
+      if(arg instanceof ExternalPtr) {
+        Object instance = ((ExternalPtr) arg).getInstance();
+        return instance == null ? null : instance.getClass();
+      }
+      return null;
+    }
+  }
 }
@@ -55,7 +55,7 @@ public class MethodFunction extends AbstractSEXP implements Function {
 
   @Override
   public SEXP apply(Context context, Environment rho, FunctionCall call) {
-    return functionBinding.evaluateArgsAndInvoke(instance, context, rho, call.getArguments());
+    return functionBinding.evaluateArgsAndInvoke(instance, context, rho, call);
   }
 
   @Override
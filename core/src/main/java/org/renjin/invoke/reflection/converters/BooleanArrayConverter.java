@@ -28,20 +28,40 @@ import org.renjin.sexp.SEXP;
 /**
  * Converts between {@code boolean[]} and R {@code logical} vectors
  */
-public class BooleanArrayConverter implements Converter<Boolean[]> {
+public class BooleanArrayConverter implements Converter<Object> {
 
-  public static final BooleanArrayConverter INSTANCE = new BooleanArrayConverter();
+  public static final BooleanArrayConverter INSTANCE = new BooleanArrayConverter(false);
+
+  private static final BooleanArrayConverter PRIMITIVE_ARRAY = new BooleanArrayConverter(true);
+
+  /**
+   * True if this converter converts to {@code boolean[]} rather than {@code Boolean[]}
+   */
+  private final boolean primitive;
+
+  private BooleanArrayConverter(boolean primitive) {
+    this.primitive = primitive;
+  }
+
+  /**
+   * @return the converter for arrays of the given class, which must be accepted by {@link #accept(Class)}
+   */
+  public static BooleanArrayConverter get(Class clazz) {
+    return clazz.getComponentType() == Boolean.TYPE ? PRIMITIVE_ARRAY : INSTANCE;
+  }
 
   public static boolean accept(Class clazz) {
     return clazz.isArray() &&( clazz.getComponentType() == Boolean.class||clazz.getComponentType()== Boolean.TYPE);
   }
   
   @Override
-  public LogicalVector convertToR(Boolean[] value) {
+  public LogicalVector convertToR(Object value) {
     if(value == null) {
       return new LogicalArrayVector(LogicalVector.NA);
+    } else if(value instanceof boolean[]) {
+      return new LogicalArrayVector((boolean[]) value);
     } else {
-      return new LogicalArrayVector(value);
+      return new LogicalArrayVector((Boolean[]) value);
     }
   }
   
@@ -49,7 +69,17 @@ public class BooleanArrayConverter implements Converter<Boolean[]> {
   public Object convertToJava(SEXP value) {  
     if(!(value instanceof AtomicVector)) {
       throw new EvalException("It's not an AtomicVector", value.getTypeName());
-    } else if(value.length() < 1) {
+    }
+    if(primitive) {
+      // As for scalar booleans, NA is converted to true
+      AtomicVector vector = (AtomicVector) value;
+      boolean[] values = new boolean[vector.length()];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = vector.getElementAsRawLogical(i) != 0;
+      }
+      return values;
+    }
+    if(value.length() < 1) {
       //to keep its type info
       return new Boolean[0];
     }
@@ -61,10 +61,10 @@ public class Converters  {
       return StringArrayConverter.INSTANCE;
       
     }else if(BooleanArrayConverter.accept(clazz)) {
-      return BooleanArrayConverter.INSTANCE;
+      return BooleanArrayConverter.get(clazz);
       
     } else if(IntegerArrayConverter.accept(clazz)) {
-      return IntegerArrayConverter.INSTANCE;
+      return IntegerArrayConverter.get(clazz);
 
     } else if(LongArrayConverter.LONG_ARRAY.accept(clazz)) {
       return LongArrayConverter.LONG_ARRAY;
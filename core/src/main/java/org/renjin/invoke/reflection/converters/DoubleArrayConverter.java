@@ -21,7 +21,7 @@ package org.renjin.invoke.reflection.converters;
 import org.renjin.eval.EvalException;
 import org.renjin.sexp.*;
 
-import java.lang.reflect.Array;
+import java.util.Arrays;
 
 
 /**
@@ -46,12 +46,38 @@ public class DoubleArrayConverter implements Converter<Object> {
     if (value == null) {
       return new DoubleArrayVector(DoubleVector.NA);
     } else {
-      double dArray[] = new double[Array.getLength(value)];
-      for (int i = 0; i < Array.getLength(value); i++) {
-        dArray[i] = ((Number)Array.get(value, i)).doubleValue();
+      return DoubleArrayVector.unsafe(toDoubleArray(value));
+    }
+  }
+
+  private static double[] toDoubleArray(Object value) {
+    if(value instanceof double[]) {
+      double[] array = (double[]) value;
+      return Arrays.copyOf(array, array.length);
+    }
+    if(value instanceof float[]) {
+      float[] array = (float[]) value;
+      double[] dArray = new double[array.length];
+      for (int i = 0; i < array.length; i++) {
+        dArray[i] = array[i];
       }
-      return new DoubleArrayVector(dArray);
+      return dArray;
+    }
+    if(value instanceof long[]) {
+      long[] array = (long[]) value;
+      double[] dArray = new double[array.length];
+      for (int i = 0; i < array.length; i++) {
+        dArray[i] = array[i];
+      }
+      return dArray;
+    }
+    // Boxed arrays, in which null elements are NA
+    Object[] array = (Object[]) value;
+    double[] dArray = new double[array.length];
+    for (int i = 0; i < array.length; i++) {
+      dArray[i] = array[i] == null ? DoubleVector.NA : ((Number) array[i]).doubleValue();
     }
+    return dArray;
   }
 
   @Override
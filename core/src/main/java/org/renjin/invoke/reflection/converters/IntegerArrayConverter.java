@@ -24,7 +24,7 @@ import org.renjin.sexp.IntArrayVector;
 import org.renjin.sexp.IntVector;
 import org.renjin.sexp.SEXP;
 
-import java.lang.reflect.Array;
+import java.util.Arrays;
 
 
 /**
@@ -32,9 +32,32 @@ import java.lang.reflect.Array;
  */
 public class IntegerArrayConverter implements Converter<Object> {
 
-  public static final IntegerArrayConverter INSTANCE = new IntegerArrayConverter();
+  public static final IntegerArrayConverter INSTANCE = new IntegerArrayConverter(Integer.class);
 
-  private IntegerArrayConverter() {
+  private static final IntegerArrayConverter INT_ARRAY = new IntegerArrayConverter(int.class);
+  private static final IntegerArrayConverter SHORT_ARRAY = new IntegerArrayConverter(short.class);
+  private static final IntegerArrayConverter BOXED_SHORT_ARRAY = new IntegerArrayConverter(Short.class);
+
+  private final Class componentClass;
+
+  private IntegerArrayConverter(Class componentClass) {
+    this.componentClass = componentClass;
+  }
+
+  /**
+   * @return the converter for arrays of the given class, which must be accepted by {@link #accept(Class)}
+   */
+  public static IntegerArrayConverter get(Class clazz) {
+    Class componentClass = clazz.getComponentType();
+    if(componentClass == Integer.TYPE) {
+      return INT_ARRAY;
+    } else if(componentClass == Short.TYPE) {
+      return SHORT_ARRAY;
+    } else if(componentClass == Short.class) {
+      return BOXED_SHORT_ARRAY;
+    } else {
+      return INSTANCE;
+    }
   }
 
   @Override
@@ -42,12 +65,30 @@ public class IntegerArrayConverter implements Converter<Object> {
     if (value == null) {
       return new IntArrayVector(IntArrayVector.NA);
     } else {
-      int iArray[] = new int[Array.getLength(value)];
-      for (int i = 0; i < Array.getLength(value); i++) {
-        iArray[i] = ((Number)Array.get(value, i)).intValue();
+      return IntArrayVector.unsafe(toIntArray(value));
+    }
+  }
+
+  private static int[] toIntArray(Object value) {
+    if(value instanceof int[]) {
+      int[] array = (int[]) value;
+      return Arrays.copyOf(array, array.length);
+    }
+    if(value instanceof short[]) {
+      short[] array = (short[]) value;
+      int[] iArray = new int[array.length];
+      for (int i = 0; i < array.length; i++) {
+        iArray[i] = array[i];
       }
-      return new IntArrayVector(iArray);
+      return iArray;
+    }
+    // Boxed arrays, in which null elements are NA
+    Object[] array = (Object[]) value;
+    int[] iArray = new int[array.length];
+    for (int i = 0; i < array.length; i++) {
+      iArray[i] = array[i] == null ? IntVector.NA : ((Number) array[i]).intValue();
     }
+    return iArray;
   }
 
   public static boolean accept(Class clazz) {
@@ -72,7 +113,26 @@ public class IntegerArrayConverter implements Converter<Object> {
   public Object convertToJava(SEXP value) {  
     if(!(value instanceof AtomicVector)) {
       throw new EvalException("It's not an AtomicVector", value.getTypeName());
-    } else if(value.length() < 1) {
+    }
+    if(componentClass == int.class) {
+      return ((AtomicVector) value).toIntArray();
+    }
+    if(componentClass == short.class || componentClass == Short.class) {
+      AtomicVector vector = (AtomicVector) value;
+      short[] values = new short[vector.length()];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = (short) vector.getElementAsInt(i);
+      }
+      if(componentClass == short.class) {
+        return values;
+      }
+      Short[] boxed = new Short[values.length];
+      for (int i = 0; i < values.length; i++) {
+        boxed[i] = vector.isElementNA(i) ? null : values[i];
+      }
+      return boxed;
+    }
+    if(value.length() < 1) {
       //to keep its type info
       return new Integer[0];
     }
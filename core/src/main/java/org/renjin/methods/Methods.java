@@ -246,7 +246,7 @@ public class Methods {
           vl = Symbol.UNBOUND_VALUE;
         }
       }
-      rho = rho.getParent();
+      rho = rho.getParent(context);
     }
     /* look in base if either generic is missing */
     if(generic == Symbol.UNBOUND_VALUE) {
@@ -747,8 +747,8 @@ public class Methods {
     /* find a non-generic function */
     
     Symbol symbol = Symbol.get(name);
-    for(Environment rho = env.getParent(); rho != Environment.EMPTY;
-        rho = rho.getParent()) {
+    for(Environment rho = env.getParent(context); rho != Environment.EMPTY;
+        rho = rho.getParent(context)) {
       fun = rho.getVariable(context, symbol);
       if(fun instanceof Closure) {
         if(!isGenericFunction(context, fun)) {
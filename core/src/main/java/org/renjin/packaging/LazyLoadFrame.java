@@ -21,13 +21,14 @@ package org.renjin.packaging;
 import org.renjin.eval.Context;
 import org.renjin.eval.EvalException;
 import org.renjin.repackaged.guava.base.Function;
+import org.renjin.repackaged.guava.io.ByteStreams;
 import org.renjin.serialization.RDataReader;
 import org.renjin.sexp.*;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
 import java.util.function.Supplier;
 
 public class LazyLoadFrame {
@@ -37,7 +38,8 @@ public class LazyLoadFrame {
   public static Iterable<NamedValue> load(Context context,
                                           Function<String, InputStream> resourceProvider) throws IOException {
 
-    DataInputStream din = new DataInputStream(resourceProvider.apply("environment"));
+    InputStream in = resourceProvider.apply("environment");
+    DataInputStream din = new DataInputStream(in);
     int version = din.readInt();
     if(version == 1) {
       return readVersion1(din);
@@ -45,6 +47,13 @@ public class LazyLoadFrame {
     if(version == 2) {
       return readVersion2(context, resourceProvider, din);
     }
+    if(version == LazyLoadFrameBuilder.VERSION_4) {
+      try {
+        return readVersion4(context, readPack(in));
+      } finally {
+        in.close();
+      }
+    }
 
     if(version != VERSION) {
       throw new IOException("Unsupported version: " + version);
@@ -112,6 +121,83 @@ public class LazyLoadFrame {
     return vector.build().namedValues();
   }
 
+  /**
+   * Reads the rest of the "environment" resource, memory-mapping it if it is a file.
+   */
+  private static ByteBuffer readPack(InputStream in) throws IOException {
+    if(in instanceof FileInputStream) {
+      FileChannel channel = ((FileInputStream) in).getChannel();
+      return channel.map(FileChannel.MapMode.READ_ONLY, channel.position(), channel.size() - channel.position());
+    }
+    return ByteBuffer.wrap(ByteStreams.toByteArray(in));
+  }
+
+  /**
+   * Reads the index of a pack written by {@link LazyLoadFrameBuilder}. Values are only deserialized
+   * when they are first used, except for those which the builder marked to be warmed up.
+   */
+  static Iterable<NamedValue> readVersion4(Context context, ByteBuffer pack) throws IOException {
+    DataInputStream index = new DataInputStream(new ByteBufferInputStream(pack));
+
+    String[] sharedNames = new String[index.readInt()];
+    for (int i = 0; i < sharedNames.length; i++) {
+      sharedNames[i] = index.readUTF();
+    }
+    SharedSymbols sharedReferences = new SharedSymbols(sharedNames);
+
+    int count = index.readInt();
+    String[] names = new String[count];
+    int[] offsets = new int[count];
+    int[] lengths = new int[count];
+    byte[] flags = new byte[count];
+    for (int i = 0; i < count; i++) {
+      names[i] = index.readUTF();
+      offsets[i] = index.readInt();
+      lengths[i] = index.readInt();
+      flags[i] = index.readByte();
+    }
+
+    ByteBuffer data = pack.slice();
+
+    ListVector.NamedBuilder vector = new ListVector.NamedBuilder(0, count);
+    for (int i = 0; i < count; i++) {
+      if((flags[i] & LazyLoadFrameBuilder.WARM_UP) != 0) {
+        vector.add(names[i], SerializedPromise4.read(context, data, offsets[i], lengths[i], sharedReferences));
+      } else {
+        vector.add(names[i], new SerializedPromise4(data, offsets[i], lengths[i], sharedReferences));
+      }
+    }
+    return vector.build().namedValues();
+  }
+
+  /**
+   * The shared reference table of a pack, which looks up each symbol when it is first referenced.
+   */
+  private static class SharedSymbols extends AbstractList<SEXP> {
+    private final String[] names;
+    private final Symbol[] symbols;
+
+    private SharedSymbols(String[] names) {
+      this.names = names;
+      this.symbols = new Symbol[names.length];
+    }
+
+    @Override
+    public SEXP get(int index) {
+      Symbol symbol = symbols[index];
+      if(symbol == null) {
+        symbol = Symbol.get(names[index]);
+        symbols[index] = symbol;
+      }
+      return symbol;
+    }
+
+    @Override
+    public int size() {
+      return names.length;
+    }
+  }
+
   private static SEXP readCompiledClosure(Context context, DataInputStream din, Function<String, InputStream> resourceProvider) throws IOException {
     Environment enclosingEnvironment = (Environment) readInline(context, din);
     PairList formals = (PairList)readInline(context, din);
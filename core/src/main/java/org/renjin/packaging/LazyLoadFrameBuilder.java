@@ -19,23 +19,40 @@
 package org.renjin.packaging;
 
 import org.renjin.eval.Context;
-import org.renjin.repackaged.guava.io.Files;
 import org.renjin.serialization.RDataWriter;
 import org.renjin.sexp.Environment;
 import org.renjin.sexp.SEXP;
 import org.renjin.sexp.Symbol;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 import java.util.function.Predicate;
 
+/**
+ * Writes the values of an environment to a single "environment" resource that can be lazily loaded
+ * by {@link LazyLoadFrame}.
+ *
+ * <p>The resource is a pack: after the version and a table of symbols which are shared by more than one value,
+ * an index gives the name of each value and the offset and length of its serialized form, which follow
+ * in a single block. Loading a namespace reads the index and deserializes the small values, and the first
+ * use of a larger value deserializes it from the pack, which is memory-mapped when it is a file.</p>
+ */
 public class LazyLoadFrameBuilder {
 
   private static final int VERSION_1 = 1;
   private static final int VERSION_2 = 2;
+  static final int VERSION_4 = 4;
+
+  /**
+   * Index flag for values which are deserialized when the pack is loaded rather than on first use.
+   */
+  static final int WARM_UP = 1;
+
+  /**
+   * Values whose serialized form is no longer than this are deserialized when the pack is loaded,
+   * as a promise for them would cost more than the value itself.
+   */
+  private static final int EAGER_LENGTH = 1024;
 
   private File outputDir;
 
@@ -43,6 +60,7 @@ public class LazyLoadFrameBuilder {
 
   private Predicate<SEXP> filter = (x -> true);
   private Set<String> excludedSymbols = Collections.emptySet();
+  private Set<String> warmUpSymbols = Collections.emptySet();
 
 
   public LazyLoadFrameBuilder(Context context) {
@@ -64,54 +82,99 @@ public class LazyLoadFrameBuilder {
     return this;
   }
   
+  /**
+   * Marks the given symbols, typically the most frequently used functions, to be deserialized
+   * as soon as the frame is loaded, so that their first use is not delayed.
+   */
+  public LazyLoadFrameBuilder warmUp(Set<String> warmUpSymbols) {
+    this.warmUpSymbols = warmUpSymbols;
+    return this;
+  }
+
   public void build(Environment env) throws IOException {
 
     outputDir.mkdirs();
 
-    // Now write an index of symbols
-    File indexFile = new File(outputDir, "environment");
-    try(DataOutputStream indexOut = new DataOutputStream(new FileOutputStream(indexFile))) {
-
-      // mark this format as version 2
-      indexOut.writeInt(VERSION_2);
-
-      // Filter the symbols to include
-      List<Symbol> symbols = new ArrayList<>();
-      for (Symbol symbol : env.getSymbolNames()) {
-        if(!excludedSymbols.contains(symbol.getPrintName())) {
-          if(!env.isActiveBinding(symbol)) {
-            SEXP value = env.getVariableOrThrowIfActivelyBound(symbol);
-            if (filter.test(value)) {
-              symbols.add(symbol);
-            }
+    // Filter the symbols to include
+    List<Symbol> symbols = new ArrayList<>();
+    for (Symbol symbol : env.getSymbolNames()) {
+      if(!excludedSymbols.contains(symbol.getPrintName())) {
+        if(!env.isActiveBinding(symbol)) {
+          SEXP value = env.getVariableOrThrowIfActivelyBound(symbol);
+          if (filter.test(value)) {
+            symbols.add(symbol);
           }
         }
       }
+    }
 
-      // write out each (large) symbols to a separate resource file.
-      // Small values will be serialized directly in the index file
-      indexOut.writeInt(symbols.size());
+    List<Symbol> shared = findSharedSymbols(env, symbols);
 
-      for (Symbol symbol : symbols) {
-        SEXP variable = env.getVariableOrThrowIfActivelyBound(symbol);
+    // Serialize each value, referring to the shared symbols by their index in the shared table
+    List<byte[]> serialized = new ArrayList<>();
+    for (Symbol symbol : symbols) {
+      serialized.add(serializeSymbol(env.getVariableOrThrowIfActivelyBound(symbol), shared));
+    }
+
+    File indexFile = new File(outputDir, "environment");
+    try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)))) {
 
-        indexOut.writeUTF(symbol.getPrintName());
-        byte[] bytes = serializeSymbol(variable);
+      out.writeInt(VERSION_4);
 
-        if (bytes.length > 1024) {
-          indexOut.writeInt(-1);
-          Files.write(bytes, new File(outputDir, SerializedPromise.resourceName(symbol.getPrintName())));
-        } else {
-          indexOut.writeInt(bytes.length);
-          indexOut.write(bytes);
+      out.writeInt(shared.size());
+      for (Symbol symbol : shared) {
+        out.writeUTF(symbol.getPrintName());
+      }
+
+      out.writeInt(symbols.size());
+      int offset = 0;
+      for (int i = 0; i < symbols.size(); i++) {
+        String name = symbols.get(i).getPrintName();
+        int length = serialized.get(i).length;
+        out.writeUTF(name);
+        out.writeInt(offset);
+        out.writeInt(length);
+        out.writeByte(length <= EAGER_LENGTH || warmUpSymbols.contains(name) ? WARM_UP : 0);
+        offset += length;
+      }
+
+      for (byte[] bytes : serialized) {
+        out.write(bytes);
+      }
+    }
+  }
+
+  /**
+   * @return the symbols referenced by more than one of the values, most frequently referenced first, so that
+   * they have the shortest encoding.
+   */
+  private List<Symbol> findSharedSymbols(Environment env, List<Symbol> symbols) throws IOException {
+    Map<Symbol, Integer> valueCounts = new HashMap<>();
+    for (Symbol symbol : symbols) {
+      RDataWriter writer = new RDataWriter(context, new ByteArrayOutputStream());
+      writer.serialize(env.getVariableOrThrowIfActivelyBound(symbol));
+      for (SEXP reference : writer.getReferences()) {
+        if(reference instanceof Symbol) {
+          valueCounts.merge((Symbol) reference, 1, Integer::sum);
         }
       }
     }
+
+    List<Symbol> shared = new ArrayList<>();
+    for (Map.Entry<Symbol, Integer> entry : valueCounts.entrySet()) {
+      if(entry.getValue() > 1) {
+        shared.add(entry.getKey());
+      }
+    }
+    shared.sort(Comparator.<Symbol>comparingInt(valueCounts::get).reversed()
+        .thenComparing(Symbol::getPrintName));
+    return shared;
   }
 
-  private byte[] serializeSymbol(SEXP value) throws IOException {
+  private byte[] serializeSymbol(SEXP value, List<Symbol> shared) throws IOException {
     ByteArrayOutputStream baos = new ByteArrayOutputStream();
     RDataWriter writer = new RDataWriter(context, baos);
+    writer.setSharedReferences(shared);
     writer.serialize(value);
     baos.close();
     return baos.toByteArray();
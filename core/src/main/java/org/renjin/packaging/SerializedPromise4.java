@@ -0,0 +1,71 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.packaging;
+
+
+import org.renjin.eval.Context;
+import org.renjin.eval.EvalException;
+import org.renjin.serialization.RDataReader;
+import org.renjin.sexp.Environment;
+import org.renjin.sexp.Null;
+import org.renjin.sexp.Promise;
+import org.renjin.sexp.SEXP;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * A value in a version 4 lazy-load pack, deserialized from its range of the pack when first forced.
+ */
+public class SerializedPromise4 extends Promise {
+
+  private final ByteBuffer pack;
+  private final int offset;
+  private final int length;
+  private final List<? extends SEXP> sharedReferences;
+
+  public SerializedPromise4(ByteBuffer pack, int offset, int length, List<? extends SEXP> sharedReferences) {
+    super(Environment.EMPTY, Null.INSTANCE);
+    this.pack = pack;
+    this.offset = offset;
+    this.length = length;
+    this.sharedReferences = sharedReferences;
+  }
+
+  @Override
+  protected SEXP doEval(Context context) {
+    try {
+      return read(context, pack, offset, length, sharedReferences);
+    } catch (IOException e) {
+      throw new EvalException(e);
+    }
+  }
+
+  static SEXP read(Context context, ByteBuffer pack, int offset, int length,
+                   List<? extends SEXP> sharedReferences) throws IOException {
+    ByteBuffer value = pack.duplicate();
+    value.limit(offset + length);
+    value.position(offset);
+    try(RDataReader reader = new RDataReader(context, new ByteBufferInputStream(value))) {
+      reader.setSharedReferences(sharedReferences);
+      return reader.readFile();
+    }
+  }
+}
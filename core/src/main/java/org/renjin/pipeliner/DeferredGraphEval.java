@@ -79,7 +79,8 @@ public class DeferredGraphEval {
 
   private void submitDependents(DeferredNode completed) {
     for (DeferredNode dependentNode : completed.getUses()) {
-      if(!submitted.containsKey(dependentNode) && 
+      if(!submitted.containsKey(dependentNode) &&
+          scheduled.contains(dependentNode) &&
           inputsComplete(dependentNode)) {
         
         if(dependentNode instanceof Runnable) {
@@ -93,24 +94,26 @@ public class DeferredGraphEval {
 
   private void scheduleRoots() {
     for (DeferredNode node : graph.getRoots()) {
-      if(node instanceof Runnable) {
-        schedule(node);
-      }
+      schedule(node);
     }
   }
 
   private void schedule(DeferredNode node) {
-    
-    boolean ready = true;
-    
+
+    // Nodes shared by several consumers must only be computed once
+    if(!scheduled.add(node)) {
+      return;
+    }
+
     for (DeferredNode input : node.getOperands()) {
       if(needsComputing(input)) {
         schedule(input);
-        ready = false;
       }
     }
-    
-    if(ready) {
+
+    // Inputs may already be complete if they have no work to do, or
+    // if the executor runs tasks on the calling thread.
+    if(node instanceof Runnable && !submitted.containsKey(node) && inputsComplete(node)) {
       submit(node);
     }
   }
@@ -121,16 +124,28 @@ public class DeferredGraphEval {
 
   private boolean inputsComplete(DeferredNode node) {
     for (DeferredNode input : node.getOperands()) {
-      if(input instanceof Runnable) {
-        Future<DeferredNode> future = submitted.get(input);
-        if(future == null || !future.isDone()) {
-          return false;
-        }
+      if(!isComplete(input)) {
+        return false;
       }
     }
     return true;
   }
 
+  /**
+   * @return true if the result of {@code node} is available. Nodes which are neither data nor
+   * tasks are complete once all of their own inputs are complete.
+   */
+  private boolean isComplete(DeferredNode node) {
+    if(!needsComputing(node)) {
+      return true;
+    }
+    if(node instanceof Runnable) {
+      Future<DeferredNode> future = submitted.get(node);
+      return future != null && future.isDone();
+    }
+    return inputsComplete(node);
+  }
+
   private void submit(DeferredNode node) {
     Future<DeferredNode> future = service.submit((Runnable) node, node);
     submitted.put(node, future);
@@ -30,7 +30,12 @@ import java.util.concurrent.ExecutorService;
 
 public class VectorPipeliner {
 
-  public static final boolean ENABLED = false;
+  /**
+   * Whether new sessions defer evaluation of large vector operations by default. Can be overridden
+   * with the {@code renjin.vp.enabled} system property or per session with
+   * {@link org.renjin.eval.SessionBuilder#setDeferredEvaluation(boolean)}.
+   */
+  public static final boolean DEFAULT_ENABLED = Boolean.parseBoolean(System.getProperty("renjin.vp.enabled", "false"));
 
   public static boolean DEBUG = "true".equals(System.getProperty("renjin.vp.debug"));
   public static int MAX_DEPTH = 25;
@@ -39,9 +44,25 @@ public class VectorPipeliner {
 
   private final LoopKernelCache loopKernelCache;
 
+  private final boolean enabled;
+
   public VectorPipeliner(ExecutorService executorService) {
+    this(executorService, DEFAULT_ENABLED);
+  }
+
+  public VectorPipeliner(ExecutorService executorService, boolean enabled) {
     this.executorService = MoreExecutors.listeningDecorator(executorService);
     this.loopKernelCache = new LoopKernelCache(executorService);
+    this.enabled = enabled;
+  }
+
+  /**
+   * @return true if large vector operations should be deferred so that they can be fused
+   * into loop kernels and evaluated on this pipeliner's {@code ExecutorService}. If false, operations
+   * are evaluated eagerly.
+   */
+  public boolean isEnabled() {
+    return enabled;
   }
 
   public void materialize(DeferredNativeCall call) {
@@ -103,7 +103,7 @@ public final class Environments {
       if(name.equals("package:base") && result == context.getBaseEnvironment()) {
         return result;
       }
-      result = result.getParent();
+      result = result.getParent(context);
 
     }
     throw new EvalException("no environment called '%s' on the search list", name);
@@ -129,8 +129,8 @@ public final class Environments {
   }
 
   @Internal("parent.env")
-  public static Environment getParentEnv(Environment environment) {
-    return environment.getParent();
+  public static Environment getParentEnv(@Current Context context, Environment environment) {
+    return environment.getParent(context);
   }
 
   @Internal("parent.env<-")
@@ -281,19 +281,19 @@ public final class Environments {
     // We need to handle the "any" mode specially to avoid forcing promises
     // that may not yet be evaluated
     if("any".equals(mode)) {
-      return existsAnySymbol(Symbol.get(x), environment, inherits);
+      return existsAnySymbol(context, Symbol.get(x), environment, inherits);
     }
     
     return environment.findVariable(context, Symbol.get(x), Vectors.modePredicate(mode),
         inherits) != Symbol.UNBOUND_VALUE;
   }
 
-  private static boolean existsAnySymbol(Symbol symbol, Environment environment, boolean inherits) {
+  private static boolean existsAnySymbol(Context context, Symbol symbol, Environment environment, boolean inherits) {
     if(environment.exists(symbol)) {
       return true;
     }
-    if(inherits && environment.getParent() != Environment.EMPTY) {
-      return existsAnySymbol(symbol, environment.getParent(), inherits);
+    if(inherits && environment.getParent(context) != Environment.EMPTY) {
+      return existsAnySymbol(context, symbol, environment.getParent(context), inherits);
     } else {
       return false;
     }
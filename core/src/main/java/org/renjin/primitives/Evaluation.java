@@ -62,7 +62,7 @@ public class Evaluation {
       environ.setVariable(context, symbol, value);
     } else {
       while(environ != Environment.EMPTY && !environ.hasVariable(symbol)) {
-        environ = environ.getParent();
+        environ = environ.getParent(context);
       }
       if(environ == Environment.EMPTY) {
         context.getGlobalEnvironment().setVariable(context, symbol, value);
@@ -428,7 +428,7 @@ public class Evaluation {
       if(!inherits) {
         break;
       }
-      e = e.getParent();
+      e = e.getParent(context);
     }
     context.warn("object '" + name.getPrintName() + "' not found");
   }
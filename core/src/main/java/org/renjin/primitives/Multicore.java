@@ -0,0 +1,252 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.primitives;
+
+import org.renjin.eval.Context;
+import org.renjin.eval.EvalException;
+import org.renjin.eval.Session;
+import org.renjin.invoke.annotations.Current;
+import org.renjin.invoke.annotations.Internal;
+import org.renjin.repackaged.guava.util.concurrent.ThreadFactoryBuilder;
+import org.renjin.sexp.*;
+import org.renjin.stats.internals.distributions.LecuyerCMRG;
+import org.renjin.stats.internals.distributions.RNG;
+import org.renjin.stats.internals.distributions.RNGtype;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Multicore evaluation for the {@code parallel} package.
+ *
+ * <p>GNU R forks worker processes which inherit a copy of the parent's workspace. Here each
+ * worker is instead a thread evaluating in a {@link Session#fork() forked Session}, which
+ * shares the loaded namespaces of the parent session but has its own global environment,
+ * context stack and random number generator.</p>
+ *
+ * <p>Workers evaluate the same closures and namespaces concurrently. Promises, including the lazily loaded
+ * bindings of namespaces, are forced by only one thread, and the inline caches at call sites and
+ * the session's S3 dispatch cache tolerate concurrent updates.</p>
+ */
+public class Multicore {
+
+  private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder()
+          .setDaemon(true)
+          .setNameFormat("renjin-mc-worker-%d")
+          .build());
+
+  private Multicore() { }
+
+  /**
+   * Applies {@code FUN} to each element of {@code X} using up to {@code cores} threads.
+   *
+   * <p>If {@code preschedule} is true, the elements are divided round-robin into {@code cores}
+   * jobs up front and an error in one element fails all the elements of its job, as in GNU R.
+   * Otherwise each element is a separate job, and idle workers pick up the next element.</p>
+   *
+   * <p>If {@code setSeed} is true and the session is using the {@code "L'Ecuyer-CMRG"} generator,
+   * job <i>j</i> uses the <i>j</i>th stream after the current seed, so results are reproducible. Other
+   * generators are seeded randomly. If {@code setSeed} is false, each job continues from the
+   * parent's generator state.</p>
+   */
+  @Internal
+  public static ListVector mclapply(@Current Context context, @Current Environment rho, ListVector x,
+                                    Function fun, boolean preschedule, boolean setSeed, int cores) {
+
+    if(cores < 1) {
+      throw new EvalException("'mc.cores' must be >= 1");
+    }
+
+    int n = x.length();
+    SEXP[] results = new SEXP[n];
+
+    if(n > 0) {
+      PairList extraArgs = forceExtraArguments(context, rho);
+      int jobCount = preschedule ? Math.min(cores, n) : n;
+      int[][] seeds = streamSeeds(context.getSession(), setSeed, jobCount);
+
+      if(preschedule) {
+        runPrescheduled(context.getSession(), x, fun, extraArgs, jobCount, setSeed, seeds, results);
+      } else {
+        runDynamic(context.getSession(), x, fun, extraArgs, Math.min(cores, n), setSeed, seeds, results);
+      }
+    }
+
+    ListVector.Builder result = new ListVector.Builder();
+    for (SEXP value : results) {
+      result.add(value);
+    }
+    result.setAttribute(Symbols.NAMES, x.getNames());
+    return result.build();
+  }
+
+  private static void runPrescheduled(Session session, ListVector x, Function fun, PairList extraArgs,
+                                      int jobCount, boolean setSeed, int[][] seeds, SEXP[] results) {
+    List<Future<?>> futures = new ArrayList<>();
+    for (int job = 0; job < jobCount; job++) {
+      final int firstIndex = job;
+      final Session worker = forkWorker(session, setSeed, seeds, job);
+      futures.add(EXECUTOR.submit(() -> {
+        try {
+          for (int i = firstIndex; i < results.length; i += jobCount) {
+            results[i] = apply(session, worker, x, i, fun, extraArgs);
+          }
+        } catch (RuntimeException e) {
+          // As in GNU R, an error fails all the elements scheduled on this core
+          SEXP error = tryError(e);
+          for (int i = firstIndex; i < results.length; i += jobCount) {
+            results[i] = error;
+          }
+        }
+      }));
+    }
+    await(futures);
+  }
+
+  private static void runDynamic(Session session, ListVector x, Function fun, PairList extraArgs,
+                                 int threadCount, boolean setSeed, int[][] seeds, SEXP[] results) {
+    AtomicInteger nextIndex = new AtomicInteger(0);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int thread = 0; thread < threadCount; thread++) {
+      futures.add(EXECUTOR.submit(() -> {
+        int i;
+        while((i = nextIndex.getAndIncrement()) < results.length) {
+          Session worker = forkWorker(session, setSeed, seeds, i);
+          try {
+            results[i] = apply(session, worker, x, i, fun, extraArgs);
+          } catch (RuntimeException e) {
+            results[i] = tryError(e);
+          }
+        }
+      }));
+    }
+    await(futures);
+  }
+
+  private static void await(List<Future<?>> futures) {
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      for (Future<?> future : futures) {
+        future.cancel(true);
+      }
+      Thread.currentThread().interrupt();
+      throw new EvalException("Interrupted while waiting for parallel jobs");
+    } catch (ExecutionException e) {
+      throw new EvalException(e.getCause());
+    }
+  }
+
+  /**
+   * Forces the values of the {@code ...} arguments on the calling thread so that the
+   * parent's promises are not evaluated concurrently by the workers.
+   */
+  private static PairList forceExtraArguments(Context context, Environment rho) {
+    SEXP ellipses = rho.getVariable(context, Symbols.ELLIPSES);
+    if(!(ellipses instanceof PairList.Node)) {
+      return Null.INSTANCE;
+    }
+    PairList.Builder args = new PairList.Builder();
+    for (PairList.Node node : ((PairList.Node) ellipses).nodes()) {
+      SEXP value = node.getValue();
+      args.add(node.getRawTag(), value.repromise(value.force(context)));
+    }
+    return args.build();
+  }
+
+  private static int[][] streamSeeds(Session session, boolean setSeed, int jobCount) {
+    if(!setSeed) {
+      return null;
+    }
+    RNG rng = session.getRNG();
+    if(rng.RNG_kind != RNGtype.LECUYER_CMRG) {
+      return null;
+    }
+    int[][] seeds = new int[jobCount][];
+    int[] seed = rng.getLecuyerSeed();
+    for (int job = 0; job < jobCount; job++) {
+      seeds[job] = seed;
+      seed = LecuyerCMRG.nextStream(seed);
+    }
+    return seeds;
+  }
+
+  /**
+   * Forks a session for a job. The forked session's generator continues from the parent's state
+   * unless {@code setSeed} is true, in which case it starts the job's stream, or a random seed if the
+   * parent is not using the {@code "L'Ecuyer-CMRG"} generator.
+   */
+  private static Session forkWorker(Session session, boolean setSeed, int[][] seeds, int job) {
+    Session worker = session.fork();
+    if(setSeed) {
+      RNG rng = worker.getRNG();
+      if(seeds != null) {
+        rng.setLecuyerSeed(seeds[job]);
+      } else if(rng.RNG_kind == RNGtype.MERSENNE_TWISTER || rng.RNG_kind == RNGtype.LECUYER_CMRG) {
+        rng.setSeed(ThreadLocalRandom.current().nextInt());
+      }
+    }
+    return worker;
+  }
+
+  private static SEXP apply(Session session, Session worker, ListVector x, int index, Function fun, PairList extraArgs) {
+    Environment global = worker.getGlobalEnvironment();
+
+    // Closures defined at the top level should see the worker's global environment,
+    // so that assignments with <<- are not visible to the parent session
+    if(fun instanceof Closure) {
+      Closure closure = (Closure) fun;
+      if(closure.getEnclosingEnvironment() == session.getGlobalEnvironment()) {
+        fun = new Closure(global, closure.getFormals(), closure.getBody(), closure.getAttributes());
+      }
+    }
+
+    FunctionCall elementCall = FunctionCall.newCall(Symbol.get("[["), Symbol.get("X"), IntVector.valueOf(index + 1));
+    PairList.Builder args = new PairList.Builder();
+    args.add(new Promise(elementCall, x.getElementAsSEXP(index)));
+    args.addAll(extraArgs);
+
+    return worker.getTopLevelContext().evaluate(new FunctionCall(fun, args.build()), global);
+  }
+
+  /**
+   * Creates a {@code "try-error"} value in the same form as {@code try(..., silent = TRUE)}
+   */
+  private static SEXP tryError(RuntimeException e) {
+    EvalException evalException = e instanceof EvalException ? (EvalException) e : new EvalException(e);
+    SEXP condition = evalException.getCondition();
+
+    StringArrayVector.Builder error = new StringArrayVector.Builder();
+    error.add("Error in FUN(X[[i]], ...) : " + evalException.getMessage() + "\n");
+    error.setAttribute(Symbols.CLASS, StringVector.valueOf("try-error"));
+    if(condition != null) {
+      error.setAttribute("condition", condition);
+    }
+    return error.build();
+  }
+}
@@ -368,6 +368,7 @@ public class Native {
     MethodHandle transformedHandle = methodHandle.asSpreader(SEXP[].class, methodHandle.type().parameterCount());
     SEXP[] arguments = toSexpArray(callArguments, methodHandle.type().parameterCount());
     Context previousContext = CURRENT_CONTEXT.get();
+    NativeArrays previousArrays = NativeArrays.enter();
     try {
       CURRENT_CONTEXT.set(context);
       if (transformedHandle.type().returnType().equals(void.class)) {
@@ -375,7 +376,7 @@ public class Native {
         return Null.INSTANCE;
       } else {
         SEXP result = (SEXP) transformedHandle.invokeExact(arguments);
-        return result;
+        return NativeArrays.current().writeBack(result);
       }
     } catch (Error e) {
       throw e;
@@ -383,6 +384,7 @@ public class Native {
       throw new EvalException("Exception calling " +  method.getName() + " : " + e.getMessage(), e);
     } finally {
       CURRENT_CONTEXT.set(previousContext);
+      NativeArrays.exit(previousArrays);
     }
   }
 
@@ -408,13 +410,15 @@ public class Native {
     SEXP argumentList = new PairList.Node(StringVector.valueOf(symbol.getName()), PairList.Node.fromVector(callArguments));
 
     Context previousContext = CURRENT_CONTEXT.get();
+    NativeArrays previousArrays = NativeArrays.enter();
     try {
       CURRENT_CONTEXT.set(context);
       if (methodHandle.type().returnType().equals(void.class)) {
         methodHandle.invokeExact(argumentList);
         return Null.INSTANCE;
       } else {
-        return (SEXP) methodHandle.invokeExact(argumentList);
+        SEXP result = (SEXP) methodHandle.invokeExact(argumentList);
+        return NativeArrays.current().writeBack(result);
       }
     } catch (Error e) {
       throw e;
@@ -422,6 +426,7 @@ public class Native {
       throw new EvalException("Exception calling " + methodExp + " : " + e.getMessage(), e);
     } finally {
       CURRENT_CONTEXT.set(previousContext);
+      NativeArrays.exit(previousArrays);
     }
   }
 
@@ -448,13 +453,15 @@ public class Native {
     SEXP rho = context.getEnvironment();
 
     Context previousContext = CURRENT_CONTEXT.get();
+    NativeArrays previousArrays = NativeArrays.enter();
     try {
       CURRENT_CONTEXT.set(context);
       if (methodHandle.type().returnType().equals(void.class)) {
         methodHandle.invokeExact(call, op, args, rho);
         return Null.INSTANCE;
       } else {
-        return (SEXP) methodHandle.invokeExact(call, op, args, rho);
+        SEXP result = (SEXP) methodHandle.invokeExact(call, op, args, rho);
+        return NativeArrays.current().writeBack(result);
       }
     } catch (Error e) {
       throw e;
@@ -462,6 +469,7 @@ public class Native {
       throw new EvalException("Exception calling " + methodExp + " : " + e.getMessage(), e);
     } finally {
       CURRENT_CONTEXT.set(previousContext);
+      NativeArrays.exit(previousArrays);
     }
   }
 
@@ -0,0 +1,216 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.primitives;
+
+import org.renjin.sexp.*;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Provides the arrays handed to native code by the {@code REAL()}, {@code INTEGER()} and {@code LOGICAL()}
+ * functions of the GNU R API.
+ *
+ * <p>Array-backed vectors share their backing array. Other vectors, such as sequences and deferred
+ * vectors, must be copied to an array. During a {@code .Call} or {@code .External} call, the copy is cached
+ * against the identity of the vector, so native code calling {@code REAL(x)} in a loop copies {@code x} only
+ * once, and sees its own writes to the array on later calls. The cache is discarded when the call returns, so
+ * writes to a vector that is not returned are never seen by later calls.</p>
+ *
+ * <p>The cache belongs to the thread that entered the native call. Threads started by native code, such as
+ * OpenMP workers and pthreads, get an uncached copy on each call, as do callers outside of a native call.</p>
+ *
+ * <p>Native code may legitimately write to a vector that it has just coerced or allocated, and then return it.
+ * {@link #writeBack(SEXP)} replaces such a result with a vector backed by the array that was written.</p>
+ */
+public final class NativeArrays {
+
+  private static final ThreadLocal<NativeArrays> CURRENT = new ThreadLocal<>();
+
+  private static final NativeArrays UNCACHED = new NativeArrays(null, null);
+
+  private final Map<SEXP, double[]> doubleArrays;
+
+  private final Map<SEXP, int[]> intArrays;
+
+  private static final LongAdder SHARED = new LongAdder();
+  private static final LongAdder COPIES = new LongAdder();
+  private static final LongAdder COPIED_BYTES = new LongAdder();
+  private static final LongAdder CACHE_HITS = new LongAdder();
+
+  public NativeArrays() {
+    this(new IdentityHashMap<>(), new IdentityHashMap<>());
+  }
+
+  private NativeArrays(Map<SEXP, double[]> doubleArrays, Map<SEXP, int[]> intArrays) {
+    this.doubleArrays = doubleArrays;
+    this.intArrays = intArrays;
+  }
+
+  /**
+   * @return the arrays of the native call running on this thread, or an instance that does not cache
+   * copies if this thread did not enter a native call.
+   */
+  public static NativeArrays current() {
+    NativeArrays arrays = CURRENT.get();
+    if(arrays == null) {
+      return UNCACHED;
+    }
+    return arrays;
+  }
+
+  /**
+   * Starts caching copies for a native call made on this thread.
+   *
+   * @return the arrays of the enclosing native call, to be passed to {@link #exit(NativeArrays)} when
+   * this call returns.
+   */
+  public static NativeArrays enter() {
+    NativeArrays previous = CURRENT.get();
+    CURRENT.set(new NativeArrays());
+    return previous;
+  }
+
+  /**
+   * Discards the copies cached for the native call returning on this thread.
+   */
+  public static void exit(NativeArrays previous) {
+    CURRENT.set(previous);
+  }
+
+  /**
+   * @return an array holding the elements of {@code vector}, which native code may read and write.
+   */
+  public double[] doubleArray(DoubleVector vector) {
+    if(vector instanceof DoubleArrayVector) {
+      SHARED.increment();
+      return ((DoubleArrayVector) vector).toDoubleArrayUnsafe();
+    }
+    double[] array = doubleArrays == null ? null : doubleArrays.get(vector);
+    if(array == null) {
+      array = vector.toDoubleArray();
+      if(doubleArrays != null) {
+        doubleArrays.put(vector, array);
+      }
+      COPIES.increment();
+      COPIED_BYTES.add((long) array.length * Double.BYTES);
+    } else {
+      CACHE_HITS.increment();
+    }
+    return array;
+  }
+
+  /**
+   * @return an array holding the elements of {@code vector} as integers, which native code may read and write.
+   */
+  public int[] intArray(AtomicVector vector) {
+    if(vector instanceof IntArrayVector) {
+      SHARED.increment();
+      return ((IntArrayVector) vector).toIntArrayUnsafe();
+    }
+    if(vector instanceof LogicalArrayVector) {
+      SHARED.increment();
+      return ((LogicalArrayVector) vector).toIntArrayUnsafe();
+    }
+    int[] array = intArrays == null ? null : intArrays.get(vector);
+    if(array == null) {
+      array = vector.toIntArray();
+      if(intArrays != null) {
+        intArrays.put(vector, array);
+      }
+      COPIES.increment();
+      COPIED_BYTES.add((long) array.length * Integer.BYTES);
+    } else {
+      CACHE_HITS.increment();
+    }
+    return array;
+  }
+
+  /**
+   * Replaces a vector returned by native code, and the elements of a returned list, with a vector
+   * backed by the array native code obtained for it, so that any writes to the array are kept.
+   */
+  public SEXP writeBack(SEXP result) {
+    if(doubleArrays == null) {
+      return result;
+    }
+    if(result instanceof DoubleVector && !(result instanceof DoubleArrayVector)) {
+      double[] array = doubleArrays.remove(result);
+      if(array != null) {
+        return DoubleArrayVector.unsafe(array, result.getAttributes());
+      }
+    } else if(result instanceof IntVector && !(result instanceof IntArrayVector)) {
+      int[] array = intArrays.remove(result);
+      if(array != null) {
+        return IntArrayVector.unsafe(array, result.getAttributes());
+      }
+    } else if(result instanceof LogicalVector && !(result instanceof LogicalArrayVector)) {
+      int[] array = intArrays.remove(result);
+      if(array != null) {
+        return LogicalArrayVector.unsafe(array, result.getAttributes());
+      }
+    } else if(result instanceof ListVector) {
+      return writeBackElements((ListVector) result);
+    }
+    return result;
+  }
+
+  private SEXP writeBackElements(ListVector list) {
+    SEXP[] elements = null;
+    for (int i = 0; i < list.length(); i++) {
+      SEXP element = list.getElementAsSEXP(i);
+      SEXP written = writeBack(element);
+      if(written != element) {
+        if(elements == null) {
+          elements = list.toArrayUnsafe().clone();
+        }
+        elements[i] = written;
+      }
+    }
+    if(elements == null) {
+      return list;
+    }
+    return new ListVector(elements, list.getAttributes());
+  }
+
+  /**
+   * @return the number of vectors that have been copied to an array for native code.
+   */
+  public static long getCopyCount() {
+    return COPIES.sum();
+  }
+
+  /**
+   * @return a summary of how the arrays requested by native code have been provided.
+   */
+  public static String getStatistics() {
+    return "shared: " + SHARED.sum() +
+        ", copied: " + COPIES.sum() +
+        " (" + COPIED_BYTES.sum() + " bytes)" +
+        ", cached copies reused: " + CACHE_HITS.sum();
+  }
+
+  public static void resetStatistics() {
+    SHARED.reset();
+    COPIES.reset();
+    COPIED_BYTES.reset();
+    CACHE_HITS.reset();
+  }
+}
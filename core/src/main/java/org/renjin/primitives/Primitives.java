@@ -773,6 +773,7 @@ public class Primitives {
     f("vapply", Evaluation.class, 10);
     f("mapply", Evaluation.class, 10);
     f("rapply", Evaluation.class, 11);
+    f("mclapply", Multicore.class, 11);
 
     f("islistfactor",  Types.class, 11);
     f("colSums", Matrices.class, 11);
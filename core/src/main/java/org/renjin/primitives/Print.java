@@ -21,7 +21,6 @@ package org.renjin.primitives;
 import org.renjin.eval.Context;
 import org.renjin.invoke.annotations.*;
 import org.renjin.parser.StringLiterals;
-import org.renjin.pipeliner.VectorPipeliner;
 import org.renjin.primitives.print.*;
 import org.renjin.primitives.vector.RowNamesVector;
 import org.renjin.repackaged.guava.base.Function;
@@ -49,7 +48,7 @@ public class Print {
 
       // Side affect alert!
       // Trigger any deferred computation
-      if(VectorPipeliner.ENABLED) {
+      if(context.isDeferredEvaluationEnabled()) {
         expression = context.materialize(expression);
       }
 
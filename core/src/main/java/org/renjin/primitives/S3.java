@@ -567,6 +567,12 @@ public class S3 {
     }
   }
 
+  /**
+   * Finds the method for the given generic and classes, updating {@code dispatchTable} with the
+   * selected method. Results are cached in the session's {@link S3DispatchCache}.
+   *
+   * @return the selected method, or {@code null} if there is no applicable method.
+   */
   public static Function findMethod(Context context,
                                     Environment definitionEnvironment,
                                     Environment callingEnvironment,
@@ -578,17 +584,36 @@ public class S3 {
 
     assert !"".equals(group);
 
+    return context.getSession().getS3DispatchCache().findMethod(context, definitionEnvironment, callingEnvironment,
+        genericMethodName, group, classes, searchForDefault, dispatchTable);
+  }
+
+  /**
+   * Searches for the method for the given generic and classes, recording the names of the
+   * methods tried in {@code probes}.
+   */
+  static Function lookupMethod(Context context,
+                               Environment definitionEnvironment,
+                               Environment callingEnvironment,
+                               String genericMethodName,
+                               String group,
+                               Iterable<String> classes,
+                               boolean searchForDefault,
+                               S3DispatchMetadata dispatchTable,
+                               S3DispatchCache.Probes probes) {
+
     Environment methodTable = findMethodTable(context, definitionEnvironment);
+    probes.addEnvironment(methodTable);
     Function method;
 
     for(String className : classes) {
 
-      method = findMethod(context, methodTable, callingEnvironment, genericMethodName, className, dispatchTable);
+      method = findMethod(context, methodTable, callingEnvironment, genericMethodName, className, dispatchTable, probes);
       if(method != null) {
         return method;
       }
       if(group != null) {
-        method = findMethod(context, methodTable, callingEnvironment, group, className, dispatchTable);
+        method = findMethod(context, methodTable, callingEnvironment, group, className, dispatchTable, probes);
         if(method != null) {
           dispatchTable.group = group;
           return method;
@@ -603,14 +628,14 @@ public class S3 {
     //---this is from nextOrDefault() //
 
     // Look up the .default method first in the definition environment
-    Function function = findMethod(context, methodTable, definitionEnvironment, genericMethodName, "default", dispatchTable);
+    Function function = findMethod(context, methodTable, definitionEnvironment, genericMethodName, "default", dispatchTable, probes);
     if(function != null) {
       dispatchTable.classVector = null;
       return function;
     }
 
     // Otherwise see if *another* package has defined a default method
-    function = findMethod(context, methodTable, callingEnvironment, genericMethodName, "default", dispatchTable);
+    function = findMethod(context, methodTable, callingEnvironment, genericMethodName, "default", dispatchTable, probes);
     if(function != null) {
       dispatchTable.classVector = null;
       return function;
@@ -632,10 +657,12 @@ public class S3 {
                                      Environment callingEnvironment,
                                      String name,
                                      String className,
-                                     S3DispatchMetadata dispatchTable) {
+                                     S3DispatchMetadata dispatchTable,
+                                     S3DispatchCache.Probes probes) {
 
     String method = name + "." + className;
     Symbol methodSymbol = Symbol.get(method);
+    probes.add(methodSymbol);
     Function function = callingEnvironment.findFunction(context, methodSymbol);
     if(function != null) {
       dispatchTable.method = methodSymbol.getPrintName();
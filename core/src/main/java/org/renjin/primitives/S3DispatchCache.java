@@ -0,0 +1,331 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.primitives;
+
+import org.renjin.eval.Context;
+import org.renjin.eval.S3DispatchMetadata;
+import org.renjin.sexp.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the methods selected by S3 dispatch, so that calls to generics like {@code print} or {@code [} on
+ * classed objects don't need to search the environment tree for each candidate method.
+ *
+ * <p>Methods are cached by generic, group, class vector, the environment in which the generic was defined
+ * and the environment from which methods are looked up. Function frames between the calling environment
+ * and the first enclosing environment which is not a function frame are skipped when building the key, but
+ * are checked on each hit, so that dispatch from within functions can still use the cache.</p>
+ *
+ * <p>Entries are validated using the {@link Environment#getBindingVersion() binding versions} of every
+ * environment searched from the lookup and definition environments, and of the S3 methods table. These
+ * change whenever a method is defined or removed in that environment, or its parent changes. The cache is
+ * invalidated entirely whenever a method is registered with {@code registerS3method}.</p>
+ */
+public final class S3DispatchCache {
+
+  /**
+   * The maximum number of cached dispatches. The cache is cleared when this is exceeded.
+   */
+  static final int MAX_ENTRIES = 4096;
+
+  /**
+   * Sentinel used to detect whether lookup selected a default method.
+   */
+  private static final StringVector NO_DEFAULT = new StringArrayVector("<no default>");
+
+  private final ConcurrentHashMap<Key, Resolution> resolutions = new ConcurrentHashMap<>();
+  private final AtomicInteger generation = new AtomicInteger();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder invalidations = new LongAdder();
+
+  private static final class Key {
+    private final String generic;
+    private final String group;
+    private final String[] classes;
+    private final boolean searchForDefault;
+    private final Environment definitionEnvironment;
+    private final Environment lookupEnvironment;
+    private final int hashCode;
+
+    private Key(String generic, String group, String[] classes, boolean searchForDefault,
+                Environment definitionEnvironment, Environment lookupEnvironment) {
+      this.generic = generic;
+      this.group = group;
+      this.classes = classes;
+      this.searchForDefault = searchForDefault;
+      this.definitionEnvironment = definitionEnvironment;
+      this.lookupEnvironment = lookupEnvironment;
+
+      int hash = generic.hashCode();
+      hash = 31 * hash + Objects.hashCode(group);
+      hash = 31 * hash + Arrays.hashCode(classes);
+      hash = 31 * hash + java.lang.System.identityHashCode(definitionEnvironment);
+      hash = 31 * hash + java.lang.System.identityHashCode(lookupEnvironment);
+      this.hashCode = hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if(!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return definitionEnvironment == other.definitionEnvironment &&
+          lookupEnvironment == other.lookupEnvironment &&
+          searchForDefault == other.searchForDefault &&
+          generic.equals(other.generic) &&
+          Objects.equals(group, other.group) &&
+          Arrays.equals(classes, other.classes);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /**
+   * The result of a method lookup, along with the method names tried and the binding versions of
+   * the environments searched.
+   */
+  private static final class Resolution {
+    private final Function function;
+    private final String method;
+    private final String group;
+    private final boolean defaultMethod;
+    private final Symbol[] probed;
+    private final Environment[] searched;
+    private final int[] versions;
+    private final int generation;
+
+    private Resolution(Function function, S3DispatchMetadata lookup, Probes probes, int generation) {
+      this.function = function;
+      this.method = lookup.method;
+      this.group = lookup.group;
+      this.defaultMethod = lookup.classVector == null;
+      this.probed = probes.symbols.toArray(new Symbol[probes.symbols.size()]);
+      this.searched = probes.environments.toArray(new Environment[probes.environments.size()]);
+      this.versions = new int[searched.length];
+      for (int i = 0; i < versions.length; i++) {
+        versions[i] = probes.versions.get(i);
+      }
+      this.generation = generation;
+    }
+
+    private boolean isValid(int currentGeneration) {
+      if(generation != currentGeneration) {
+        return false;
+      }
+      for (int i = 0; i < searched.length; i++) {
+        if(searched[i].getBindingVersion() != versions[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Updates the dispatch table as the lookup that produced this resolution did.
+     */
+    private Function apply(S3DispatchMetadata dispatchTable) {
+      if(function != null) {
+        dispatchTable.method = method;
+        if(group != null) {
+          dispatchTable.group = group;
+        }
+        if(defaultMethod) {
+          dispatchTable.classVector = null;
+        }
+      }
+      return function;
+    }
+  }
+
+  /**
+   * Records the method names tried during a lookup, and the binding versions of the environments
+   * searched before they were searched.
+   */
+  static final class Probes {
+    private final List<Symbol> symbols = new ArrayList<>();
+    private final List<Environment> environments = new ArrayList<>();
+    private final List<Integer> versions = new ArrayList<>();
+
+    void add(Symbol symbol) {
+      symbols.add(symbol);
+    }
+
+    void addEnvironment(Environment environment) {
+      for (Environment recorded : environments) {
+        if(recorded == environment) {
+          return;
+        }
+      }
+      environments.add(environment);
+      versions.add(environment.getBindingVersion());
+    }
+
+    /**
+     * Records {@code environment} and all of its enclosing environments, as seen from {@code context}.
+     */
+    void addEnvironmentChain(Context context, Environment environment) {
+      while(environment != Environment.EMPTY) {
+        addEnvironment(environment);
+        environment = environment.getParent(context);
+      }
+    }
+  }
+
+  /**
+   * Finds the S3 method for the given generic and classes, from the cache if possible.
+   *
+   * @see S3#findMethod(Context, Environment, Environment, String, String, Iterable, boolean, S3DispatchMetadata)
+   */
+  Function findMethod(Context context,
+                      Environment definitionEnvironment,
+                      Environment callingEnvironment,
+                      String genericMethodName,
+                      String group,
+                      Iterable<String> classes,
+                      boolean searchForDefault,
+                      S3DispatchMetadata dispatchTable) {
+
+    Environment lookupEnvironment = skipFunctionFrames(callingEnvironment);
+    Key key = new Key(genericMethodName, group, toArray(classes), searchForDefault,
+        definitionEnvironment, lookupEnvironment);
+
+    int currentGeneration = generation.get();
+    Resolution resolution = resolutions.get(key);
+    if(resolution != null) {
+      if(resolution.isValid(currentGeneration)) {
+        if(!isShadowed(callingEnvironment, lookupEnvironment, resolution.probed)) {
+          hits.increment();
+          return resolution.apply(dispatchTable);
+        }
+      } else {
+        invalidations.increment();
+      }
+    } else {
+      misses.increment();
+    }
+
+    Probes probes = new Probes();
+    probes.addEnvironmentChain(context, lookupEnvironment);
+    probes.addEnvironmentChain(context, definitionEnvironment);
+    S3DispatchMetadata lookup = new S3DispatchMetadata(definitionEnvironment, genericMethodName, NO_DEFAULT);
+    Function function = S3.lookupMethod(context, definitionEnvironment, callingEnvironment, genericMethodName,
+        group, classes, searchForDefault, lookup, probes);
+
+    resolution = new Resolution(function, lookup, probes, currentGeneration);
+
+    // Methods bound in the skipped function frames are specific to this call
+    if(!isShadowed(callingEnvironment, lookupEnvironment, resolution.probed)) {
+      if(resolutions.size() >= MAX_ENTRIES) {
+        resolutions.clear();
+      }
+      resolutions.put(key, resolution);
+    }
+
+    return resolution.apply(dispatchTable);
+  }
+
+  /**
+   * Invalidates all cached dispatches, after a method has been registered.
+   */
+  public void invalidate() {
+    generation.incrementAndGet();
+    resolutions.clear();
+  }
+
+  private static Environment skipFunctionFrames(Environment environment) {
+    while(environment instanceof FunctionEnvironment) {
+      environment = environment.getParent();
+    }
+    return environment;
+  }
+
+  /**
+   * @return true if any of the given method names are bound in the function frames between
+   * {@code callingEnvironment} and {@code lookupEnvironment}.
+   */
+  private static boolean isShadowed(Environment callingEnvironment, Environment lookupEnvironment, Symbol[] probed) {
+    for(Environment frame = callingEnvironment; frame != lookupEnvironment; frame = frame.getParent()) {
+      for (int i = 0; i < probed.length; i++) {
+        if(frame.hasVariable(probed[i])) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static String[] toArray(Iterable<String> classes) {
+    if(classes instanceof StringVector) {
+      return ((StringVector) classes).toArray();
+    }
+    List<String> list = new ArrayList<>();
+    for (String className : classes) {
+      list.add(className);
+    }
+    return list.toArray(new String[list.size()]);
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /**
+   * @return the number of lookups which found a cached method that was no longer valid.
+   */
+  public long getInvalidationCount() {
+    return invalidations.sum();
+  }
+
+  public int size() {
+    return resolutions.size();
+  }
+
+  public String getStatistics() {
+    long hits = getHitCount();
+    long total = hits + getMissCount() + getInvalidationCount();
+    return "hits: " + hits +
+        ", misses: " + getMissCount() +
+        ", invalidations: " + getInvalidationCount() +
+        ", entries: " + size() +
+        ", hit rate: " + (total == 0 ? "NA" : String.format("%.1f%%", 100d * hits / total));
+  }
+
+  public void resetStatistics() {
+    hits.reset();
+    misses.reset();
+    invalidations.reset();
+  }
+}
@@ -24,14 +24,9 @@ import org.renjin.eval.EvalException;
 import org.renjin.gcc.runtime.DoublePtr;
 import org.renjin.gcc.runtime.IntPtr;
 import org.renjin.invoke.annotations.*;
-import org.renjin.repackaged.guava.collect.Lists;
+import org.renjin.primitives.sort.VectorOrdering;
 import org.renjin.sexp.*;
 
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
-import java.util.stream.IntStream;
 
 public class Sort {
 
@@ -47,12 +42,10 @@ public class Sort {
       throw new EvalException("sorting of vectors with names not yet implemented!");
     }
 
-    String sorted[] = x.toArray();
-
-    if(decreasing) {
-      Arrays.sort(sorted, Collections.reverseOrder());
-    }else{
-      Arrays.sort(sorted);
+    int[] order = VectorOrdering.order(x, true, decreasing);
+    String sorted[] = new String[order.length];
+    for (int i = 0; i < order.length; i++) {
+      sorted[i] = x.getElementAsString(order[i]);
     }
 
     return new StringArrayVector(sorted);
@@ -65,30 +58,7 @@ public class Sort {
       throw new EvalException("sorting of vectors with names not yet implemented!");
     }
 
-    double sorted[] = x.toDoubleArray();
-
-    Arrays.sort(sorted);
-
-    if(decreasing) {
-      reverse(sorted);
-    }
-
-    return DoubleArrayVector.unsafe(sorted);
-  }
-  
-  private static void reverse(double[] b) {
-    int left  = 0;          
-    int right = b.length-1; 
-
-    while (left < right) {
-      double temp = b[left]; 
-      b[left]  = b[right]; 
-      b[right] = temp;
-
-      // move the bounds toward the center
-      left++;
-      right--;
-    }
+    return DoubleArrayVector.unsafe(sortedValues(x, decreasing));
   }
 
   @Internal
@@ -98,15 +68,7 @@ public class Sort {
       throw new EvalException("sorting of vectors with names not yet implemented!");
     }
 
-    int sorted[] = x.toIntArray();
-
-    Arrays.sort(sorted);
-
-    if(decreasing) {
-      reverse(sorted);
-    }
-
-    return new IntArrayVector(sorted);
+    return IntArrayVector.unsafe(sortedInts(x, decreasing));
   }
 
   @Internal
@@ -116,15 +78,7 @@ public class Sort {
       throw new EvalException("sorting of vectors with names not yet implemented!");
     }
 
-    int sorted[] = x.toIntArray();
-
-    Arrays.sort(sorted);
-
-    if(decreasing) {
-      reverse(sorted);
-    }
-
-    return new LogicalArrayVector(sorted);
+    return new LogicalArrayVector(sortedInts(x, decreasing));
   }
 
   @Internal("is.unsorted")
@@ -196,22 +150,16 @@ public class Sort {
   @Internal
   public static Vector qsort(DoubleVector x, LogicalVector returnIndexes) {
 
-    
-    double[] values = x.toDoubleArray();
-    Arrays.sort(values);
-    
+    int[] order = VectorOrdering.order(x, true, false);
+    double[] values = new double[order.length];
+    for (int i = 0; i < order.length; i++) {
+      values[i] = x.getElementAsDouble(order[i]);
+    }
+
     DoubleVector sorted = new DoubleArrayVector(values, x.getAttributes());
 
     if(returnIndexes.isElementTrue(0)) {
-      final double[] doubleArray = x.toDoubleArray();
-      int[] sortedIndices = IntStream.range(0, doubleArray.length)
-          .boxed().sorted((i, j) ->  Double.compare(doubleArray[i], doubleArray[j]) )
-          .mapToInt(ele -> ele).toArray();
-
-      ListVector.NamedBuilder builder = new ListVector.NamedBuilder();
-      builder.add("x", sorted);
-      builder.add("ix", new IntArrayVector(sortedIndices));
-      return builder.build();
+      return sortedWithIndexes(sorted, order);
     }
 
     // drop the names attributes if present because it will not be sorted
@@ -228,22 +176,11 @@ public class Sort {
   @Internal
   public static Vector qsort(IntVector x, LogicalVector returnIndexes) {
 
-    
-    int[] values = x.toIntArray();
-    Arrays.sort(values);
-    
-    IntVector sorted = new IntArrayVector(values, x.getAttributes());
+    int[] order = VectorOrdering.order(x, true, false);
+    IntVector sorted = new IntArrayVector(gather(x, order), x.getAttributes());
 
     if(returnIndexes.isElementTrue(0)) {
-      final int[] intArr = x.toIntArray();
-      int[] sortedIndices = IntStream.range(0, intArr.length)
-          .boxed().sorted((i, j) ->  Integer.compare(intArr[i], intArr[j]) )
-          .mapToInt(ele -> ele).toArray();
-
-      ListVector.NamedBuilder builder = new ListVector.NamedBuilder();
-      builder.add("x", sorted);
-      builder.add("ix", new IntArrayVector(sortedIndices));
-      return builder.build();
+      return sortedWithIndexes(sorted, order);
     }
     // drop the names attributes if present because it will not be sorted
     return (IntVector)sorted
@@ -259,24 +196,11 @@ public class Sort {
   @Internal
   public static Vector qsort(LogicalVector x, boolean returnIndexes) {
 
-    int[] array = x.toIntArray();
-    
-    Arrays.sort(array);
-
-    LogicalVector sorted = new LogicalArrayVector(array, x.getAttributes());
-
+    int[] order = VectorOrdering.order(x, true, false);
+    LogicalVector sorted = new LogicalArrayVector(gather(x, order), x.getAttributes());
 
     if(returnIndexes) {
-      final int[] intArr = x.toIntArray();
-      int[] sortedIndices = IntStream.range(0, intArr.length)
-          .boxed().sorted((i, j) ->  Integer.compare(intArr[i], intArr[j]) )
-          .mapToInt(ele -> ele).toArray();
-
-      ListVector.NamedBuilder builder = new ListVector.NamedBuilder();
-      builder.add("x", sorted);
-      builder.add("ix", new IntArrayVector(sortedIndices));
-      return builder.build();
-//      throw new EvalException("qsort(indexes=TRUE) not yet implemented");
+      return sortedWithIndexes(sorted, order);
     }
 
     // drop the names attributes if present because it will not be sorted
@@ -289,19 +213,39 @@ public class Sort {
     return qsort(x, false);
   }
 
-  private static void reverse(int[] b) {
-    int left  = 0;          
-    int right = b.length-1; 
+  private static double[] sortedValues(DoubleVector x, boolean decreasing) {
+    int[] order = VectorOrdering.order(x, true, decreasing);
+    double[] sorted = new double[order.length];
+    for (int i = 0; i < order.length; i++) {
+      sorted[i] = x.getElementAsDouble(order[i]);
+    }
+    return sorted;
+  }
 
-    while (left < right) {
-      int temp = b[left]; 
-      b[left]  = b[right]; 
-      b[right] = temp;
+  private static int[] sortedInts(AtomicVector x, boolean decreasing) {
+    return gather(x, VectorOrdering.order(x, true, decreasing));
+  }
 
-      // move the bounds toward the center
-      left++;
-      right--;
+  private static int[] gather(AtomicVector x, int[] order) {
+    int[] values = new int[order.length];
+    for (int i = 0; i < order.length; i++) {
+      values[i] = x.getElementAsInt(order[i]);
     }
+    return values;
+  }
+
+  /**
+   * Builds the {@code list(x, ix)} result of {@code qsort(x, index.return = TRUE)}
+   */
+  private static ListVector sortedWithIndexes(Vector sorted, int[] order) {
+    int[] indexes = new int[order.length];
+    for (int i = 0; i < order.length; i++) {
+      indexes[i] = order[i] + 1;
+    }
+    ListVector.NamedBuilder builder = new ListVector.NamedBuilder();
+    builder.add("x", sorted.setAttribute(Symbols.NAMES, Null.INSTANCE));
+    builder.add("ix", IntArrayVector.unsafe(indexes));
+    return builder.build();
   }
   
   /**
@@ -329,56 +273,18 @@ public class Sort {
       }
     }
 
-    List<Integer> ordering = Lists.newArrayListWithCapacity(numRows);
-    for (int i = 0; i != numRows; ++i) {
-      ordering.add(i);
+    AtomicVector[] keys = new AtomicVector[columns.length()];
+    for (int i = 0; i != columns.length(); ++i) {
+      keys[i] = (AtomicVector) columns.getElementAsSEXP(i);
     }
 
-    Collections.sort(ordering, new Comparator<Integer>() {
-
-      @Override
-      public int compare(Integer row1, Integer row2) {
-        int col = 0;
-        int rel;
-        while ((rel = compare(row1, row2, col)) == 0) {
-          col++;
-          if (col == columns.length()) {
-            return 0;
-          }
-        }
-        return rel;
-      }
-
-      private int compare(Integer row1, Integer row2, int col) {
-        AtomicVector column = (AtomicVector) columns.get(col);
-        boolean na1 = column.isElementNA(row1);
-        boolean na2 = column.isElementNA(row2);
-        if(na1 && na2) {
-          // Both values are NA, consider equal
-          return 0;
-        } else if(na1) {
-          // NA <-> 42
-          return naLast ? +1 : -1;
-        } else if(na2) {
-          // 42 <-> NA
-          return naLast ? -1 : +1;
-        } else {
-          // 42 <-> 41
-          return decreasing ?
-              -column.compare(row1, row2) :
-              +column.compare(row1, row2);
-        }
-      }
-
-    });
-
-    IntArrayVector.Builder result = new IntArrayVector.Builder();
-    for (Integer index : ordering) {
-      result.add(index + 1);
+    int[] ordering = VectorOrdering.order(keys, naLast, decreasing);
+    for (int i = 0; i != ordering.length; ++i) {
+      ordering[i]++;
     }
 
-    return result.build();
-  }   
+    return IntArrayVector.unsafe(ordering);
+  }
 
   @Internal("which.min")
   public static IntVector whichMin(Vector input) {
@@ -439,86 +345,65 @@ public class Sort {
   @Internal
   public static Vector rank(final AtomicVector input, int length, String tiesMethod) {
 
-    if(length == 1L) {
-      if(tiesMethod.toUpperCase().equals("AVERAGE")) {
-        return new DoubleArrayVector(1);
-      }
-      return new IntArrayVector(1);
-    }
-
-    boolean decreasing = false;
-
-    AtomicVector sortedInput;
-
-    String typeVector = input.getTypeName();
-    switch (typeVector){
-      case "character":
-        StringVector inputStringVector = ((StringVector) input.setAttributes(AttributeMap.EMPTY));
-        sortedInput = ((AtomicVector) sort(inputStringVector, decreasing));
-        break;
-      case "double":
-        DoubleVector inputDoubleVector = ((DoubleVector) input.setAttributes(AttributeMap.EMPTY));
-        sortedInput = ((AtomicVector) sort(inputDoubleVector, decreasing));
-        break;
-      default:
-        IntVector inputIntVector = ((IntVector) input.setAttributes(AttributeMap.EMPTY));
-        sortedInput = ((AtomicVector) sort(inputIntVector, decreasing));
-        break;
-    }
+    int[] order = VectorOrdering.order(input, true, false);
 
     switch(tiesMethod.toUpperCase()){
       case "MIN":
-        return rankMin(input, sortedInput);
-
-      case "MAX":
-        return rankMax(input, sortedInput);
+      case "MAX": {
+        boolean min = tiesMethod.equalsIgnoreCase("MIN");
+        int[] ranks = new int[order.length];
+        int start = 0;
+        while (start < order.length) {
+          int end = endOfTies(input, order, start);
+          for (int i = start; i < end; i++) {
+            ranks[order[i]] = min ? (start + 1) : end;
+          }
+          start = end;
+        }
+        return IntArrayVector.unsafe(ranks);
+      }
 
-      case "AVERAGE":
-        return rankAverage(input, sortedInput);
+      case "AVERAGE": {
+        double[] ranks = new double[order.length];
+        int start = 0;
+        while (start < order.length) {
+          int end = endOfTies(input, order, start);
+          double average = (start + 1 + end) / 2d;
+          for (int i = start; i < end; i++) {
+            ranks[order[i]] = average;
+          }
+          start = end;
+        }
+        return DoubleArrayVector.unsafe(ranks);
+      }
 
       default:
         throw new EvalException("Invalid ties.method.");
     }
-
   }
 
-  private static Vector rankAverage(AtomicVector input, AtomicVector sortedInput) {
-    DoubleArrayVector.Builder ranks = new DoubleArrayVector.Builder();
-    for ( int i=0; i < sortedInput.length(); i++ ) {
-      int minRank = sortedInput.indexOf(input, i, 0);
-      int maxRank = minRank;
-      while ( maxRank+1 < sortedInput.length() &&
-              sortedInput.compare(minRank, maxRank+1) == 0) {
-        maxRank++;
-      }
-
-      double average = (((double) minRank) + ((double) maxRank)) / 2d;
-      ranks.add(average + 1);
+  /**
+   * @return the (exclusive) end of the run of elements in {@code order} which are tied with
+   * the element at {@code start}
+   */
+  private static int endOfTies(AtomicVector input, int[] order, int start) {
+    int end = start + 1;
+    while (end < order.length && tied(input, order[start], order[end])) {
+      end++;
     }
-    return ranks.build();
+    return end;
   }
 
-  private static Vector rankMax(AtomicVector input, AtomicVector sortedInput) {
-    IntArrayVector.Builder ranks = new IntArrayVector.Builder();
-    for ( int i=0; i < sortedInput.length(); i++ ) {
-      int minRank = sortedInput.indexOf(input, i, 0);
-      int maxRank = minRank;
-      while ( maxRank+1 < sortedInput.length() &&
-              sortedInput.compare(minRank, maxRank+1) == 0) {
-        maxRank++;
-      }
-      ranks.add(maxRank + 1);
+  private static boolean tied(AtomicVector input, int i, int j) {
+    boolean na1 = input.isElementNA(i);
+    boolean na2 = input.isElementNA(j);
+    if(na1 || na2) {
+      return na1 && na2;
     }
-    return ranks.build();
-  }
-
-  private static Vector rankMin(AtomicVector input, AtomicVector sortedInput) {
-    IntArrayVector.Builder ranks = new IntArrayVector.Builder();
-
-    for (int i=0; i < sortedInput.length(); i++) {
-      ranks.add( sortedInput.indexOf( input, i, 0 ) + 1 );
+    if(input instanceof DoubleVector) {
+      return input.getElementAsDouble(i) == input.getElementAsDouble(j);
     }
-    return ranks.build();
+    return input.compare(i, j) == 0;
   }
 
   @Builtin
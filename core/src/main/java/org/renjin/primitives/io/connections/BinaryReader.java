@@ -20,175 +20,482 @@ package org.renjin.primitives.io.connections;
 
 import org.renjin.eval.EvalException;
 import org.renjin.repackaged.guava.base.Charsets;
-import org.renjin.repackaged.guava.io.ByteStreams;
 import org.renjin.sexp.*;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads vectors of binary data, as {@code readBin()} does.
+ *
+ * <p>Input is read from a channel into a heap buffer, a chunk at a time, and each chunk is decoded in
+ * bulk into the vector's storage. Large reads from a {@link FileChannel} map the file instead of copying it
+ * through the buffer. Storage is only allocated for the elements actually read, so asking for more elements
+ * than the input holds does not allocate for all of them, and {@link #chunks} reads input of any size
+ * one vector of bounded length at a time.</p>
+ *
+ * <p>Values are read in the platform's native byte order, or in the opposite order if {@code swap} is true,
+ * consistent with {@code .Platform$endian}.</p>
+ */
 public class BinaryReader {
 
-  private InputStream in;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * Reads of at least this many bytes from a {@link FileChannel} are memory-mapped.
+   */
+  private static final long MIN_MAPPED_BYTES = 1024 * 1024;
+
+  /**
+   * The largest region of a file that is mapped at once.
+   */
+  private static final long MAX_MAPPED_BYTES = 64 * 1024 * 1024;
+
+  /**
+   * The initial capacity of vectors read from a stream of unknown length.
+   */
+  private static final int INITIAL_CAPACITY = 8192;
+
+  private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+  /**
+   * The input, if it is already in memory.
+   */
+  private final ByteBuffer source;
+
+  /**
+   * The input, if it is not in memory.
+   */
+  private final ReadableByteChannel channel;
+
+  private ByteBuffer buffer;
 
   public BinaryReader(RawVector rawVector) {
-    this(new ByteArrayInputStream(rawVector.toByteArrayUnsafe()));
+    this.source = ByteBuffer.wrap(rawVector.toByteArrayUnsafe());
+    this.channel = null;
   }
 
   public BinaryReader(InputStream inputStream) {
-    this.in = inputStream;
+    this(inputStream instanceof FileInputStream ?
+        ((FileInputStream) inputStream).getChannel() :
+        Channels.newChannel(inputStream));
   }
 
-  public Vector readIntVector(int n, int size, boolean signed, boolean swap) throws IOException {
-    if(IntVector.isNA(size)) {
-      size = 4;
-    }
+  /**
+   * Creates a reader which reads from the channel's current position. The channel is not read beyond the
+   * end of the values requested, except for the rest of an incomplete value at the end of the input.
+   */
+  public BinaryReader(ReadableByteChannel channel) {
+    this.source = null;
+    this.channel = channel;
+  }
 
-    if(size != 4) {
-      throw new EvalException("TODO: size = " + size);
+  /**
+   * Reads up to {@code n} values, fewer if the input ends first.
+   *
+   * @param what the type of the values: "integer", "int", "logical", "double", "numeric", "complex",
+   *             "character" or "raw"
+   * @param size the size of each value in bytes, or {@code NA} for the natural size of the type
+   * @param signed false if 1 and 2 byte integers are unsigned
+   * @param swap true if values are not in the platform's byte order
+   */
+  public Vector readVector(String what, int n, int size, boolean signed, boolean swap) throws IOException {
+    switch (what) {
+      case "integer":
+      case "int":
+        return readIntVector(n, size, signed, swap);
+      case "logical":
+        return readLogicalVector(n, size, swap);
+      case "double":
+      case "numeric":
+        return readDoubleVector(n, size, swap);
+      case "complex":
+        return readComplexVector(n, size, swap);
+      case "character":
+        return readCharacterVector(n, size, swap);
+      case "raw":
+        return readRaw(n, size);
+      default:
+        throw new EvalException("Unsupported/unimplemented type: " + what);
     }
+  }
 
-    if(!signed) {
-      throw new EvalException("TODO: signed = false");
+  /**
+   * Returns an iterator over the rest of the input as consecutive vectors of at most {@code chunkLength}
+   * values, so that input of any size can be processed while only holding one chunk in memory.
+   *
+   * @see #readVector(String, int, int, boolean, boolean)
+   */
+  public Iterator<Vector> chunks(String what, int chunkLength, int size, boolean signed, boolean swap) {
+    if(chunkLength <= 0) {
+      throw new IllegalArgumentException("chunkLength: " + chunkLength);
     }
+    return new Iterator<Vector>() {
+
+      private Vector next;
+
+      @Override
+      public boolean hasNext() {
+        if(next == null) {
+          try {
+            if(what.equals("character")) {
+              next = readStrings(chunkLength, false);
+            } else {
+              next = readVector(what, chunkLength, size, signed, swap);
+            }
+          } catch (IOException e) {
+            throw new EvalException(e);
+          }
+        }
+        return next.length() > 0;
+      }
 
-    if(swap) {
-      throw new EvalException("TODO: swap = TRUE");
-    }
+      @Override
+      public Vector next() {
+        if(!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        Vector chunk = next;
+        next = null;
+        return chunk;
+      }
+    };
+  }
 
-    int vector[] = new int[n];
-    byte buffer[] = new byte[size];
+  public Vector readIntVector(int n, int size, boolean signed, boolean swap) throws IOException {
+    IntDecoder decoder = new IntDecoder(integerSize(size), signed, expectedCount(n, integerSize(size)));
+    int count = readValues(n, decoder.size, swap, decoder);
+    return IntArrayVector.unsafe(decoder.toArray(count));
+  }
 
-    for (int i = 0; i < n; i++) {
-      ByteStreams.readFully(in, buffer);
-      vector[i] = buffer[3] << 24 | (buffer[2] & 0xFF) << 16 | (buffer[1] & 0xFF) << 8 | (buffer[0] & 0xFF);
+  public Vector readLogicalVector(int n, int size, boolean swap) throws IOException {
+    IntDecoder decoder = new IntDecoder(integerSize(size), true, expectedCount(n, integerSize(size)));
+    int count = readValues(n, decoder.size, swap, decoder);
+    int[] values = decoder.toArray(count);
+    for (int i = 0; i < count; i++) {
+      if(values[i] != IntVector.NA) {
+        values[i] = values[i] != 0 ? 1 : 0;
+      }
     }
+    return LogicalArrayVector.unsafe(values);
+  }
 
-    return IntArrayVector.unsafe(vector);
+  private static int integerSize(int size) {
+    if(IntVector.isNA(size)) {
+      return 4;
+    }
+    if(size != 1 && size != 2 && size != 4 && size != 8) {
+      throw new EvalException("size %d is unknown on this machine", size);
+    }
+    return size;
   }
 
   public Vector readDoubleVector(int n, int size, boolean swap) throws IOException {
     if(IntVector.isNA(size)) {
       size = 8;
     }
-    double[] values;
-    switch (size) {
-      case 4:
-        values = readBinFloatArray(n, swap);
-        break;
-      case 8:
-        values = readBinDoubleArray(n, swap);
-        break;
-      default:
-        throw new EvalException("Unsupported size = " + size + " for numeric vector");
+    if(size != 4 && size != 8) {
+      throw new EvalException("Unsupported size = " + size + " for numeric vector");
     }
-
-    return DoubleArrayVector.unsafe(values);
+    DoubleDecoder decoder = new DoubleDecoder(size, expectedCount(n, size));
+    int count = readValues(n, size, swap, decoder);
+    return DoubleArrayVector.unsafe(decoder.toArray(count));
   }
 
-
   public Vector readComplexVector(int n, int size, boolean swap) throws IOException {
     if(IntVector.isNA(size)) {
       size = 16;
     }
-    double[] values;
-    switch (size) {
-      case 8:
-        values = readBinFloatArray(n * 2, swap);
-        break;
-      case 16:
-        values = readBinDoubleArray(n * 2, swap);
-        break;
-      default:
-        throw new EvalException("Unsupported size = " + size + " for complex vector");
+    if(size != 8 && size != 16) {
+      throw new EvalException("Unsupported size = " + size + " for complex vector");
     }
+    // Read the real and imaginary parts as pairs of doubles
+    int partSize = size / 2;
+    DoubleDecoder decoder = new DoubleDecoder(partSize, (int) Math.min(MAX_ARRAY_LENGTH, expectedCount(n, size) * 2L));
+    int count = readValues(n, size, swap, (chunk, offset, values) -> {
+      decoder.decode(chunk, offset * 2, values * 2);
+    });
+    return ComplexArrayVector.unsafe(decoder.toArray(count * 2));
+  }
 
-    return ComplexArrayVector.unsafe(values);
+  /**
+   * Reads {@code n} strings, each terminated by a NUL byte or the end of the input. Strings missing at the
+   * end of the input are empty.
+   */
+  public Vector readCharacterVector(int n, int size, boolean swap) throws IOException {
+    return readStrings(n, true);
   }
 
+  private StringVector readStrings(int n, boolean padAtEnd) throws IOException {
+    StringVector.Builder vector = new StringVector.Builder(0, Math.min(n, INITIAL_CAPACITY));
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    for (int i = 0; i < n; i++) {
+      bytes.reset();
+      if(!readString(bytes) && bytes.size() == 0) {
+        if(!padAtEnd) {
+          break;
+        }
+      }
+      vector.add(bytes.toString(Charsets.UTF_8.name()));
+    }
+    return vector.build();
+  }
 
-  private double[] readBinDoubleArray(int n, boolean swap) throws IOException {
-    double vector[] = new double[n];
-    byte buffer[] = new byte[8];
+  /**
+   * Reads the bytes of a string up to the next NUL byte, without reading beyond it.
+   *
+   * @return true if the string was terminated, false if the input ended first.
+   */
+  private boolean readString(ByteArrayOutputStream bytes) throws IOException {
+    if(source != null) {
+      return copyString(source, bytes);
+    }
+    if(channel instanceof FileChannel) {
+      // Read ahead a chunk, and then return to the end of the string
+      FileChannel file = (FileChannel) channel;
+      while(true) {
+        long start = file.position();
+        ByteBuffer chunk = nextChunk(BUFFER_SIZE, 1);
+        if(!chunk.hasRemaining()) {
+          return false;
+        }
+        if(copyString(chunk, bytes)) {
+          file.position(start + chunk.position());
+          return true;
+        }
+      }
+    }
+    // Otherwise the channel can't be repositioned, so read a byte at a time
+    ByteBuffer oneByte = ByteBuffer.allocate(1);
+    while(true) {
+      oneByte.clear();
+      if(channel.read(oneByte) < 0) {
+        return false;
+      }
+      if(oneByte.position() > 0) {
+        byte b = oneByte.get(0);
+        if(b == 0) {
+          return true;
+        }
+        bytes.write(b);
+      }
+    }
+  }
 
-    for (int i = 0; i < n; i++) {
-      ByteStreams.readFully(in, buffer);
-      long longValue;
-      if(swap) {
-        longValue = (((long) buffer[0] << 56) +
-            ((long) (buffer[1] & 255) << 48) +
-            ((long) (buffer[2] & 255) << 40) +
-            ((long) (buffer[3] & 255) << 32) +
-            ((long) (buffer[4] & 255) << 24) +
-            ((buffer[5] & 255) << 16) +
-            ((buffer[6] & 255) << 8) +
-            ((buffer[7] & 255) << 0));
+  /**
+   * Copies bytes from {@code buffer} up to the next NUL byte, which is consumed.
+   *
+   * @return true if a NUL byte was found.
+   */
+  private static boolean copyString(ByteBuffer buffer, ByteArrayOutputStream bytes) {
+    while(buffer.hasRemaining()) {
+      byte b = buffer.get();
+      if(b == 0) {
+        return true;
+      }
+      bytes.write(b);
+    }
+    return false;
+  }
 
-      } else {
+  public Vector readRaw(int n, int size) throws IOException {
+    byte[][] values = { new byte[expectedCount(n, 1)] };
+    int count = readValues(n, 1, false, (chunk, offset, length) -> {
+      values[0] = ensureCapacity(values[0], offset + length);
+      chunk.get(values[0], offset, length);
+    });
+    return RawVector.unsafe(count == values[0].length ? values[0] : Arrays.copyOf(values[0], count));
+  }
 
-        longValue = (((long) buffer[7] << 56) +
-            ((long) (buffer[6] & 255) << 48) +
-            ((long) (buffer[5] & 255) << 40) +
-            ((long) (buffer[4] & 255) << 32) +
-            ((long) (buffer[3] & 255) << 24) +
-            ((buffer[2] & 255) << 16) +
-            ((buffer[1] & 255) << 8) +
-            ((buffer[0] & 255) << 0));
+  /**
+   * Reads up to {@code n} values of {@code size} bytes, passing them to the decoder a chunk at a time.
+   *
+   * @return the number of values read.
+   */
+  private int readValues(int n, int size, boolean swap, Decoder decoder) throws IOException {
+    ByteOrder order = order(swap);
+    int count = 0;
+    while(count < n) {
+      ByteBuffer chunk = nextChunk((long) (n - count) * size, size);
+      int values = chunk.remaining() / size;
+      if(values == 0) {
+        break;
       }
-      vector[i] = Double.longBitsToDouble(longValue);
+      decoder.decode(chunk.order(order), count, values);
+      count += values;
     }
-    return vector;
+    return count;
   }
 
+  /**
+   * Returns the next chunk of input, of at most {@code maxBytes} bytes, and a multiple of {@code size} bytes
+   * unless the input ends first. The chunk is empty at the end of the input.
+   */
+  private ByteBuffer nextChunk(long maxBytes, int size) throws IOException {
+    if(source != null) {
+      int length = (int) Math.min(maxBytes, source.remaining() - source.remaining() % size);
+      ByteBuffer chunk = source.slice();
+      chunk.limit(length);
+      source.position(source.position() + length);
+      return chunk;
+    }
 
-  private double[] readBinFloatArray(int n, boolean swap) throws IOException {
-    double vector[] = new double[n];
-    byte buffer[] = new byte[4];
+    if(channel instanceof FileChannel) {
+      FileChannel file = (FileChannel) channel;
+      long position = file.position();
+      long length = Math.min(Math.min(maxBytes, file.size() - position), MAX_MAPPED_BYTES);
+      length -= length % size;
+      if(length >= MIN_MAPPED_BYTES) {
+        ByteBuffer chunk = file.map(FileChannel.MapMode.READ_ONLY, position, length);
+        file.position(position + length);
+        return chunk;
+      }
+    }
 
-    for (int i = 0; i < n; i++) {
-      ByteStreams.readFully(in, buffer);
-      int intValue;
-      if(swap) {
-        intValue = buffer[0] << 24 | (buffer[1] & 0xFF) << 16 | (buffer[2] & 0xFF) << 8 | (buffer[3] & 0xFF);
-      } else {
-        intValue = buffer[3] << 24 | (buffer[2] & 0xFF) << 16 | (buffer[1] & 0xFF) << 8 | (buffer[0] & 0xFF);
+    // Size the buffer to the request, so that reading a few values doesn't allocate a full buffer
+    int length = (int) Math.min(maxBytes, BUFFER_SIZE - BUFFER_SIZE % size);
+    if(buffer == null || buffer.capacity() < length) {
+      buffer = ByteBuffer.allocate(length);
+    }
+    buffer.clear();
+    buffer.limit(length);
+    while(buffer.hasRemaining()) {
+      if(channel.read(buffer) < 0) {
+        break;
       }
-      vector[i] = Float.intBitsToFloat(intValue);
     }
-    return vector;
+    buffer.flip();
+    return buffer;
   }
 
+  /**
+   * @return the number of values to allocate storage for, which is exact if the length of the input is known.
+   */
+  private int expectedCount(int n, int size) throws IOException {
+    long available;
+    if(source != null) {
+      available = source.remaining();
+    } else if(channel instanceof FileChannel) {
+      FileChannel file = (FileChannel) channel;
+      available = file.size() - file.position();
+    } else {
+      return Math.min(n, INITIAL_CAPACITY);
+    }
+    return (int) Math.min(n, available / size);
+  }
 
-  public Vector readCharacterVector(int n, int size, boolean swap) throws IOException {
+  static ByteOrder order(boolean swap) {
+    ByteOrder nativeOrder = ByteOrder.nativeOrder();
+    if(!swap) {
+      return nativeOrder;
+    }
+    return nativeOrder == ByteOrder.BIG_ENDIAN ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+  }
+
+  private static int newCapacity(int currentLength, int required) {
+    return (int) Math.min(MAX_ARRAY_LENGTH, Math.max(required, currentLength * 2L));
+  }
 
-    StringArrayVector.Builder vector = new StringVector.Builder(0, n);
-    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+  private static byte[] ensureCapacity(byte[] array, int required) {
+    return required <= array.length ? array : Arrays.copyOf(array, newCapacity(array.length, required));
+  }
 
-    for (int i = 0; i < n; i++) {
-      buffer.reset();
-      while (true) {
-        int b = in.read();
-        if (b <= 0) {
-          break;
+  @FunctionalInterface
+  private interface Decoder {
+
+    /**
+     * Decodes {@code count} values from the start of {@code chunk} into the vector's storage,
+     * starting at position {@code offset}.
+     */
+    void decode(ByteBuffer chunk, int offset, int count);
+  }
+
+  private static class DoubleDecoder implements Decoder {
+    private final int size;
+    private double[] values;
+
+    DoubleDecoder(int size, int capacity) {
+      this.size = size;
+      this.values = new double[capacity];
+    }
+
+    @Override
+    public void decode(ByteBuffer chunk, int offset, int count) {
+      if(offset + count > values.length) {
+        values = Arrays.copyOf(values, newCapacity(values.length, offset + count));
+      }
+      if(size == 8) {
+        chunk.asDoubleBuffer().get(values, offset, count);
+      } else {
+        FloatBuffer floats = chunk.asFloatBuffer();
+        for (int i = 0; i < count; i++) {
+          values[offset + i] = floats.get(i);
         }
-        buffer.write(b);
       }
-      vector.add(buffer.toString(Charsets.UTF_8.name()));
     }
-    return vector.build();
+
+    double[] toArray(int count) {
+      return count == values.length ? values : Arrays.copyOf(values, count);
+    }
   }
 
-  public Vector readRaw(int n, int size) throws IOException {
-    int byteCount = n;
-    byte[] buffer = new byte[byteCount];
+  private static class IntDecoder implements Decoder {
+    private final int size;
+    private final boolean signed;
+    private int[] values;
+
+    IntDecoder(int size, boolean signed, int capacity) {
+      this.size = size;
+      this.signed = signed;
+      this.values = new int[capacity];
+    }
+
+    @Override
+    public void decode(ByteBuffer chunk, int offset, int count) {
+      if(offset + count > values.length) {
+        values = Arrays.copyOf(values, newCapacity(values.length, offset + count));
+      }
+      switch (size) {
+        case 1:
+          for (int i = 0; i < count; i++) {
+            byte b = chunk.get(i);
+            values[offset + i] = signed ? b : (b & 0xFF);
+          }
+          break;
+        case 2:
+          ShortBuffer shorts = chunk.asShortBuffer();
+          for (int i = 0; i < count; i++) {
+            short s = shorts.get(i);
+            values[offset + i] = signed ? s : (s & 0xFFFF);
+          }
+          break;
+        case 4:
+          chunk.asIntBuffer().get(values, offset, count);
+          break;
+        default:
+          LongBuffer longs = chunk.asLongBuffer();
+          for (int i = 0; i < count; i++) {
+            values[offset + i] = (int) longs.get(i);
+          }
+          break;
+      }
+    }
 
-    int offset = 0;
-    while(byteCount > 0) {
-      int bytesRead = in.read(buffer, offset, byteCount);
-      byteCount -= bytesRead;
-      offset += bytesRead;
+    int[] toArray(int count) {
+      return count == values.length ? values : Arrays.copyOf(values, count);
     }
-    return RawVector.unsafe(buffer);
   }
 }
@@ -0,0 +1,204 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.primitives.io.connections;
+
+import org.renjin.eval.EvalException;
+import org.renjin.repackaged.guava.base.Charsets;
+import org.renjin.sexp.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes vectors as binary data, as {@code writeBin()} does.
+ *
+ * <p>Values are encoded into a buffer and written to the channel a buffer at a time, in the
+ * platform's native byte order, or in the opposite order if {@code swap} is true. The output can
+ * be read back with {@link BinaryReader}.</p>
+ */
+public class BinaryWriter {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final WritableByteChannel channel;
+  private ByteBuffer buffer;
+  private ByteOrder order;
+
+  public BinaryWriter(OutputStream outputStream) {
+    this(outputStream instanceof FileOutputStream ?
+        ((FileOutputStream) outputStream).getChannel() :
+        Channels.newChannel(outputStream));
+  }
+
+  public BinaryWriter(WritableByteChannel channel) {
+    this.channel = channel;
+  }
+
+  /**
+   * Encodes {@code vector} as it would be written by {@link #writeVector(Vector, int, boolean)}.
+   */
+  public static RawVector toRawVector(Vector vector, int size, boolean swap) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    new BinaryWriter(bytes).writeVector(vector, size, swap);
+    return RawVector.unsafe(bytes.toByteArray());
+  }
+
+  /**
+   * Writes the elements of an atomic vector.
+   *
+   * @param size the size of each value in bytes, or {@code NA} for the natural size of the type
+   * @param swap true if values should not be written in the platform's byte order
+   */
+  public void writeVector(Vector vector, int size, boolean swap) throws IOException {
+    if(vector instanceof RawVector) {
+      writeRaw((RawVector) vector);
+      return;
+    }
+
+    order = BinaryReader.order(swap);
+
+    if(vector instanceof LogicalVector || vector instanceof IntVector) {
+      writeIntegers(vector, IntVector.isNA(size) ? 4 : size);
+    } else if(vector instanceof DoubleVector) {
+      writeDoubles((DoubleVector) vector, IntVector.isNA(size) ? 8 : size);
+    } else if(vector instanceof ComplexVector) {
+      writeComplex((ComplexVector) vector, IntVector.isNA(size) ? 16 : size);
+    } else if(vector instanceof StringVector) {
+      writeStrings((StringVector) vector);
+    } else {
+      throw new EvalException("can only write vector objects");
+    }
+    flush();
+  }
+
+  private void writeRaw(RawVector vector) throws IOException {
+    ByteBuffer bytes = ByteBuffer.wrap(vector.toByteArrayUnsafe(), 0, vector.length());
+    while(bytes.hasRemaining()) {
+      channel.write(bytes);
+    }
+  }
+
+  private void writeIntegers(Vector vector, int size) throws IOException {
+    if(size != 1 && size != 2 && size != 4 && size != 8) {
+      throw new EvalException("size %d is unknown on this machine", size);
+    }
+    allocateBuffer(vector.length(), size);
+    for (int i = 0; i < vector.length(); i++) {
+      int value = vector instanceof LogicalVector ? vector.getElementAsRawLogical(i) : vector.getElementAsInt(i);
+      ensureRemaining(size);
+      switch (size) {
+        case 1:
+          buffer.put((byte) value);
+          break;
+        case 2:
+          buffer.putShort((short) value);
+          break;
+        case 4:
+          buffer.putInt(value);
+          break;
+        default:
+          buffer.putLong(value);
+          break;
+      }
+    }
+  }
+
+  private void writeDoubles(DoubleVector vector, int size) throws IOException {
+    if(size != 4 && size != 8) {
+      throw new EvalException("Unsupported size = " + size + " for numeric vector");
+    }
+    allocateBuffer(vector.length(), size);
+    for (int i = 0; i < vector.length(); i++) {
+      ensureRemaining(size);
+      putDouble(vector.getElementAsDouble(i), size);
+    }
+  }
+
+  private void writeComplex(ComplexVector vector, int size) throws IOException {
+    if(size != 8 && size != 16) {
+      throw new EvalException("Unsupported size = " + size + " for complex vector");
+    }
+    allocateBuffer(vector.length(), size);
+    for (int i = 0; i < vector.length(); i++) {
+      ensureRemaining(size);
+      putDouble(vector.getElementAsDouble(i), size / 2);
+      putDouble(vector.getElementAsComplexIm(i), size / 2);
+    }
+  }
+
+  private void putDouble(double value, int size) {
+    if(size == 8) {
+      buffer.putDouble(value);
+    } else {
+      buffer.putFloat((float) value);
+    }
+  }
+
+  private void writeStrings(StringVector vector) throws IOException {
+    // Longer strings are written through the buffer in pieces
+    allocateBuffer(vector.length(), 16);
+    for (int i = 0; i < vector.length(); i++) {
+      String element = vector.getElementAsString(i);
+      byte[] bytes = (element == null ? "NA" : element).getBytes(Charsets.UTF_8);
+      int offset = 0;
+      while(offset < bytes.length) {
+        ensureRemaining(1);
+        int length = Math.min(buffer.remaining(), bytes.length - offset);
+        buffer.put(bytes, offset, length);
+        offset += length;
+      }
+      ensureRemaining(1);
+      buffer.put((byte) 0);
+    }
+  }
+
+  /**
+   * Prepares a heap buffer for {@code count} values of {@code size} bytes, up to {@link #BUFFER_SIZE}, so that
+   * writing a few values doesn't allocate a full buffer.
+   */
+  private void allocateBuffer(int count, int size) {
+    int capacity = (int) Math.min(BUFFER_SIZE, (long) Math.max(count, 1) * size);
+    if(buffer == null || buffer.capacity() < capacity) {
+      buffer = ByteBuffer.allocate(capacity);
+    }
+    buffer.clear();
+    buffer.order(order);
+  }
+
+  private void ensureRemaining(int bytes) throws IOException {
+    if(buffer.remaining() < bytes) {
+      flush();
+    }
+  }
+
+  private void flush() throws IOException {
+    buffer.flip();
+    while(buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.primitives.io.connections;
+
+import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
+import org.renjin.repackaged.guava.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses its input in fixed-size blocks on several threads, in the manner of {@code pigz}.
+ *
+ * <p>Each block is compressed independently into a complete gzip member or xz stream, and the
+ * results are written to the underlying stream in order. Both formats allow members to be
+ * concatenated, so the output can be read by GNU R, by {@link java.util.zip.GZIPInputStream} and
+ * {@link org.tukaani.xz.XZInputStream}, and by the command-line tools, at the cost of a slightly
+ * worse compression ratio than a single stream.</p>
+ */
+public class BlockCompressingOutputStream extends OutputStream {
+
+  /**
+   * The number of threads used for compression when the {@code renjin.compress.threads}
+   * option is not set. Parallel compression is opt-in, so that by default a file is written as a
+   * single stream, and its contents do not depend on the number of processors.
+   */
+  public static final int DEFAULT_THREADS = 1;
+
+  private static final int GZIP_BLOCK_SIZE = 1024 * 1024;
+
+  private static final int XZ_BLOCK_SIZE = 8 * 1024 * 1024;
+
+  private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder()
+          .setDaemon(true)
+          .setNameFormat("renjin-compress-%d")
+          .build());
+
+  private interface BlockCompressor {
+    byte[] compress(byte[] block, int length) throws IOException;
+  }
+
+  private final OutputStream out;
+  private final BlockCompressor compressor;
+  private final int blockSize;
+  private final int threads;
+
+  /**
+   * Blocks submitted for compression, in the order in which they must be written.
+   */
+  private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+
+  private byte[] buffer;
+  private int count;
+  private boolean empty = true;
+  private boolean closed = false;
+
+  private BlockCompressingOutputStream(OutputStream out, BlockCompressor compressor, int blockSize, int threads) {
+    this.out = out;
+    this.compressor = compressor;
+    this.blockSize = blockSize;
+    this.threads = threads;
+    this.buffer = new byte[blockSize];
+  }
+
+  /**
+   * Creates a stream which writes gzip members of 1 MB of input each.
+   *
+   * @param level the deflate compression level, from 0 to 9.
+   * @param threads the maximum number of blocks to compress at the same time.
+   */
+  public static BlockCompressingOutputStream gzip(OutputStream out, int level, int threads) {
+    return new BlockCompressingOutputStream(out, (block, length) -> {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(length / 2 + 64);
+      try(GZIPOutputStream gzip = new LeveledGZIPOutputStream(bytes, level)) {
+        gzip.write(block, 0, length);
+      }
+      return bytes.toByteArray();
+    }, GZIP_BLOCK_SIZE, threads);
+  }
+
+  /**
+   * Creates a stream which writes xz streams of 8 MB of input each.
+   *
+   * @param preset the xz compression preset, from 0 to 9.
+   * @param threads the maximum number of blocks to compress at the same time.
+   */
+  public static BlockCompressingOutputStream xz(OutputStream out, int preset, int threads) {
+    return new BlockCompressingOutputStream(out, (block, length) -> {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(length / 4 + 64);
+      try(XZCompressorOutputStream xz = new XZCompressorOutputStream(bytes, preset)) {
+        xz.write(block, 0, length);
+      }
+      return bytes.toByteArray();
+    }, XZ_BLOCK_SIZE, threads);
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    buffer[count++] = (byte) b;
+    if(count == blockSize) {
+      submitBlock();
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    while(len > 0) {
+      int chunk = Math.min(len, blockSize - count);
+      System.arraycopy(b, off, buffer, count, chunk);
+      count += chunk;
+      off += chunk;
+      len -= chunk;
+      if(count == blockSize) {
+        submitBlock();
+      }
+    }
+  }
+
+  private void submitBlock() throws IOException {
+    final byte[] block = buffer;
+    final int length = count;
+    pending.add(EXECUTOR.submit(() -> compressor.compress(block, length)));
+    empty = false;
+    buffer = new byte[blockSize];
+    count = 0;
+
+    // Limit the number of blocks in flight, and so the memory and threads used by this stream
+    while(pending.size() > threads) {
+      writeNextBlock();
+    }
+  }
+
+  private void writeNextBlock() throws IOException {
+    Future<byte[]> block = pending.removeFirst();
+    try {
+      out.write(block.get());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (ExecutionException e) {
+      if(e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Writes the blocks which have finished compressing and flushes the underlying stream. Like
+   * {@link GZIPOutputStream#flush()}, this does not end the current block: input in an incomplete
+   * block is kept until the block is full or the stream is closed, so that a connection flushed
+   * after every line is not written as a series of tiny members.
+   */
+  @Override
+  public void flush() throws IOException {
+    while(!pending.isEmpty() && pending.peekFirst().isDone()) {
+      writeNextBlock();
+    }
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if(closed) {
+      return;
+    }
+    closed = true;
+    try {
+      // An empty stream still needs a single, empty member to be valid
+      if(count > 0 || empty) {
+        submitBlock();
+      }
+      while(!pending.isEmpty()) {
+        writeNextBlock();
+      }
+    } finally {
+      for (Future<byte[]> block : pending) {
+        block.cancel(true);
+      }
+      out.close();
+    }
+  }
+
+  /**
+   * A {@code GZIPOutputStream} which uses the given compression level rather than the default.
+   */
+  static class LeveledGZIPOutputStream extends GZIPOutputStream {
+    LeveledGZIPOutputStream(OutputStream out, int level) throws IOException {
+      super(out);
+      def.setLevel(level);
+    }
+  }
+}
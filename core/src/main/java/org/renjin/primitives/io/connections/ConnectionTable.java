@@ -79,6 +79,31 @@ public class ConnectionTable {
 
   }
   
+  /**
+   * Closes all open connections other than stdin, stdout and stderr.
+   *
+   * @throws IOException the first exception thrown while closing a connection. The remaining
+   * connections are still closed.
+   */
+  public void closeAll() throws IOException {
+    IOException firstException = null;
+    for (int i = STDERR_HANDLE + 1; i < table.length; i++) {
+      if(table[i] != null) {
+        try {
+          table[i].close();
+        } catch (IOException e) {
+          if(firstException == null) {
+            firstException = e;
+          }
+        }
+        table[i] = null;
+      }
+    }
+    if(firstException != null) {
+      throw firstException;
+    }
+  }
+
   private int installConnection(Connection conn) {
     for(int i=0;i!=table.length;++i) {
       if(table[i] == null) {
@@ -34,6 +34,7 @@ import org.renjin.sexp.*;
 
 import java.io.*;
 import java.net.URL;
+import java.nio.channels.FileChannel;
 
 /**
  * 
@@ -74,7 +75,8 @@ public class Connections {
       final String path, String open, String encoding, double compressionLevel)
       throws IOException {
 
-    return newConnection(context, open, new GzFileConnection(context.resolveFile(path), RCharsets.getByName(encoding)));
+    return newConnection(context, open, new GzFileConnection(context.resolveFile(path), RCharsets.getByName(encoding),
+        compressionLevel(compressionLevel), compressionThreads(context)));
   }
 
   @Internal
@@ -82,10 +84,27 @@ public class Connections {
                                  final String path, String open, String encoding, double compressionLevel)
       throws IOException {
 
-    return newConnection(context, open, new XzFileConnection(context.resolveFile(path), RCharsets.getByName(encoding)));
+    return newConnection(context, open, new XzFileConnection(context.resolveFile(path), RCharsets.getByName(encoding),
+        compressionLevel(compressionLevel), compressionThreads(context)));
   }
 
 
+  private static int compressionLevel(double compressionLevel) {
+    // xzfile() uses negative levels for the "extreme" presets, which are not distinguished here
+    int level = Math.abs((int) compressionLevel);
+    return Math.min(level, 9);
+  }
+
+  /**
+   * @return the number of threads to use for writing compressed files, set by
+   * the {@code renjin.compress.threads} option.
+   */
+  private static int compressionThreads(Context context) {
+    int threads = context.getSession().getOptions().getInt("renjin.compress.threads",
+        BlockCompressingOutputStream.DEFAULT_THREADS);
+    return Math.max(threads, 1);
+  }
+
   @Internal
   public static IntVector bzfile(@Current final Context context,
                                  final String path, String open, String encoding, double compressionLevel)
@@ -275,39 +294,35 @@ public class Connections {
       reader = new BinaryReader((RawVector)connIndex);
     } else {
       Connection connection = getConnection(context, connIndex);
-      InputStream inputStream = connection.getInputStream();
-      reader = new BinaryReader(inputStream);
-    }
-
-    String typeName = what.asString();
-    switch (typeName) {
-      case "integer":
-        return reader.readIntVector(n, size, signed, swap);
-      case "double":
-        return reader.readDoubleVector(n, size, swap);
-      case "complex":
-        return reader.readComplexVector(n, size, swap);
-      case "character":
-        return reader.readCharacterVector(n, size, swap);
-      case "raw":
-        return reader.readRaw(n, size);
-      default:
-        throw new EvalException("Unsupported/unimplemented type: " + typeName);
+      FileChannel channel = null;
+      if(connection instanceof FileConnection) {
+        // Read local files through a channel, which can map large reads
+        channel = ((FileConnection) connection).getInputChannel();
+      }
+      if(channel != null) {
+        reader = new BinaryReader(channel);
+      } else {
+        reader = new BinaryReader(connection.getInputStream());
+      }
     }
+    return reader.readVector(what.asString(), n, size, signed, swap);
   }
 
   @Internal
-  public static void writeBin(@Current Context context, SEXP object, SEXP con, int size, boolean swap, boolean useBytes) throws IOException {
+  public static SEXP writeBin(@Current Context context, SEXP object, SEXP con, int size, boolean swap, boolean useBytes) throws IOException {
+    if(!(object instanceof AtomicVector)) {
+      throw new EvalException("can only write vector objects");
+    }
+    if(con instanceof RawVector) {
+      return BinaryWriter.toRawVector((Vector) object, size, swap);
+    }
     if(con instanceof IntVector) {
       Connection connection = getConnection(context, con);
-      if(object instanceof RawVector) {
-        connection.getOutputStream().write(((RawVector) object).toByteArrayUnsafe());
-      } else {
-        throw new UnsupportedOperationException("TODO: typeof(object) = %s" + object.getTypeName());
-      }
-    } else {
-      throw new EvalException("TODO: typeof(con) = %s" + con.getTypeName());
+      new BinaryWriter(connection.getOutputStream()).writeVector((Vector) object, size, swap);
+      context.setInvisibleFlag();
+      return Null.INSTANCE;
     }
+    throw new EvalException("invalid connection");
   }
 
 
@@ -22,14 +22,18 @@ import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
 import org.apache.commons.vfs2.FileNotFoundException;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.provider.local.LocalFile;
 import org.renjin.eval.EvalException;
 import org.tukaani.xz.XZInputStream;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PushbackInputStream;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.zip.GZIPInputStream;
 
@@ -40,9 +44,25 @@ public class FileConnection extends AbstractConnection {
 
   private InputStream in;  
   private OutputStream out;
+
+  /**
+   * A channel reading the input directly from the local file, if one has been handed out
+   * by {@link #getInputChannel()}.
+   */
+  private FileChannel inputChannel;
   
   private FileObject file;
   private OpenSpec openSpec = null;
+
+  /**
+   * True if the input stream has been handed out, after which its position is unknown.
+   */
+  private boolean inputAccessed = false;
+
+  /**
+   * True if the file was opened for input and found not to be compressed.
+   */
+  private boolean uncompressed = false;
   
   public FileConnection(FileObject file, Charset charset) throws IOException {
     super(charset);
@@ -100,7 +120,7 @@ public class FileConnection extends AbstractConnection {
       }
     }
     if(header[0] == GzFileConnection.GZIP_MAGIC_BYTE1 && header[1] == GzFileConnection.GZIP_MAGIC_BYTE2) {
-      return new GZIPInputStream(in);
+      return new GZIPInputStream(new MemberBoundaryInputStream(in));
     } 
     if(header[0] == 'B' && header[1] == 'Z') {
       return new BZip2CompressorInputStream(in);
@@ -109,7 +129,8 @@ public class FileConnection extends AbstractConnection {
     if(Arrays.equals(header, XzFileConnection.XZ_MAGIC_BYTES)) {
       return new XZInputStream(in);
     }
-    
+
+    uncompressed = true;
     return in;
   }
   
@@ -130,9 +151,76 @@ public class FileConnection extends AbstractConnection {
   
   @Override
   public final InputStream getInputStream() throws IOException {
+    if(inputChannel != null) {
+      // Continue from where reading through the channel stopped
+      long position = inputChannel.position();
+      inputChannel.close();
+      inputChannel = null;
+      skipInput(position);
+    }
+    inputAccessed = true;
     return assureOpenForInput();
   }
 
+  /**
+   * Returns a channel reading this connection's input directly from the local file, which can be
+   * positioned and memory-mapped, or {@code null} if the input must be read through
+   * {@link #getInputStream()}. The same channel is returned until the input stream is next
+   * accessed, which then continues from the channel's position.
+   */
+  public FileChannel getInputChannel() throws IOException {
+    if(inputChannel == null) {
+      File localFile = getMappableFile();
+      if(localFile == null) {
+        return null;
+      }
+      inputChannel = FileChannel.open(localFile.toPath(), StandardOpenOption.READ);
+    }
+    return inputChannel;
+  }
+
+  /**
+   * Returns the local file underlying this connection if it can be read directly, for example by
+   * memory-mapping it, instead of through {@link #getInputStream()}. This is only the case if the
+   * file is on the local file system, is not compressed, and nothing has yet been read from
+   * this connection.
+   *
+   * @return the local file, or {@code null} if the file must be read through the input stream.
+   */
+  public File getMappableFile() throws IOException {
+    if(inputAccessed || inputChannel != null || out != null || !(file instanceof LocalFile)) {
+      return null;
+    }
+    assureOpenForInput();
+    if(!uncompressed) {
+      return null;
+    }
+    File localFile = new File(file.getURL().getFile());
+    if(!localFile.isFile()) {
+      return null;
+    }
+    return localFile;
+  }
+
+  /**
+   * Advances this connection's input past the first {@code count} bytes of the file, after they
+   * have been read directly from the file returned by {@link #getMappableFile()}.
+   */
+  public void skipInput(long count) throws IOException {
+    InputStream in = getInputStream();
+    long remaining = count;
+    while(remaining > 0) {
+      long skipped = in.skip(remaining);
+      if(skipped <= 0) {
+        if(in.read() == -1) {
+          break;
+        }
+        skipped = 1;
+      }
+      remaining -= skipped;
+    }
+  }
+
   @Override
   public final OutputStream getOutputStream() throws IOException {
     return assureOpenForOutput();
@@ -140,6 +228,10 @@ public class FileConnection extends AbstractConnection {
 
   @Override
   protected void closeInputIfOpen() throws IOException {
+    if(inputChannel != null) {
+      inputChannel.close();
+      inputChannel = null;
+    }
     if(in != null) {
       in.close();
     }
@@ -202,4 +294,30 @@ public class FileConnection extends AbstractConnection {
     return !isOpen() || openSpec == null || openSpec.forWriting();
   }
   
+
+  /**
+   * {@code GZIPInputStream} only looks for a further gzip member after a member's trailer if
+   * {@code available()} is non-zero, which not every stream guarantees at a member boundary. This
+   * stream reports a byte as available whenever one remains, so that files written as
+   * concatenated members, for example by {@link BlockCompressingOutputStream}, are read in full.
+   */
+  private static class MemberBoundaryInputStream extends PushbackInputStream {
+
+    MemberBoundaryInputStream(InputStream in) {
+      super(in, 1);
+    }
+
+    @Override
+    public int available() throws IOException {
+      int available = super.available();
+      if(available == 0) {
+        int b = read();
+        if(b != -1) {
+          unread(b);
+          return 1;
+        }
+      }
+      return available;
+    }
+  }
 }
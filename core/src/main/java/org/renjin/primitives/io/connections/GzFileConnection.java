@@ -24,7 +24,7 @@ import org.renjin.repackaged.guava.base.Charsets;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.Deflater;
 
 /**
  * Connection to a gzipped file.
@@ -40,8 +40,22 @@ public class GzFileConnection extends FileConnection {
   public static final int GZIP_MAGIC_BYTE1 = 31;
   public static final int GZIP_MAGIC_BYTE2 = 139;
 
+  private final int level;
+  private final int threads;
+
   public GzFileConnection(FileObject file, Charset charset) throws IOException {
+    this(file, charset, Deflater.DEFAULT_COMPRESSION, 1);
+  }
+
+  /**
+   * @param level the deflate compression level to use when writing, from 0 to 9
+   * @param threads the number of threads to use when writing. If greater than one, the file
+   *                is written as concatenated gzip members by a {@link BlockCompressingOutputStream}.
+   */
+  public GzFileConnection(FileObject file, Charset charset, int level, int threads) throws IOException {
     super(file, charset);
+    this.level = level;
+    this.threads = threads;
   }
 
   public GzFileConnection(FileObject file) throws IOException {
@@ -50,6 +64,9 @@ public class GzFileConnection extends FileConnection {
 
   @Override
   protected OutputStream doOpenForOutput() throws IOException {
-    return new GZIPOutputStream(super.doOpenForOutput());
+    if(threads > 1) {
+      return BlockCompressingOutputStream.gzip(super.doOpenForOutput(), level, threads);
+    }
+    return new BlockCompressingOutputStream.LeveledGZIPOutputStream(super.doOpenForOutput(), level);
   }
 }
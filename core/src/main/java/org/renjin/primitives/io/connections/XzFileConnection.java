@@ -20,6 +20,7 @@ package org.renjin.primitives.io.connections;
 
 import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
 import org.apache.commons.vfs2.FileObject;
+import org.tukaani.xz.LZMA2Options;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -28,12 +29,29 @@ import java.nio.charset.Charset;
 public class XzFileConnection extends FileConnection {
   public static final int[] XZ_MAGIC_BYTES = { 0xFD, '7', 'z', 'X', 'Z', 0x00 };
 
+  private final int preset;
+  private final int threads;
+
   public XzFileConnection(FileObject file, Charset charset) throws IOException {
+    this(file, charset, LZMA2Options.PRESET_DEFAULT, 1);
+  }
+
+  /**
+   * @param preset the xz compression preset to use when writing, from 0 to 9
+   * @param threads the number of threads to use when writing. If greater than one, the file
+   *                is written as concatenated xz streams by a {@link BlockCompressingOutputStream}.
+   */
+  public XzFileConnection(FileObject file, Charset charset, int preset, int threads) throws IOException {
     super(file, charset);
+    this.preset = preset;
+    this.threads = threads;
   }
 
   @Override
   protected OutputStream doOpenForOutput() throws IOException {
-    return new XZCompressorOutputStream(super.doOpenForOutput());
+    if(threads > 1) {
+      return BlockCompressingOutputStream.xz(super.doOpenForOutput(), preset, threads);
+    }
+    return new XZCompressorOutputStream(super.doOpenForOutput(), preset);
   }
 }
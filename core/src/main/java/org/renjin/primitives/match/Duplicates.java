@@ -21,11 +21,8 @@ package org.renjin.primitives.match;
 import org.renjin.invoke.annotations.Internal;
 import org.renjin.primitives.Vectors;
 import org.renjin.primitives.match.DuplicateSearchAlgorithm.Action;
-import org.renjin.repackaged.guava.collect.Maps;
 import org.renjin.sexp.*;
 
-import java.util.HashMap;
-
 
 public class Duplicates {
  
@@ -84,20 +81,13 @@ public class Duplicates {
       DuplicateSearchAlgorithm<ResultType> algorithm) {
 
     algorithm.init(x);
-    
-    /* Maps elements -> first encountered index */
-    HashMap<SEXP, Integer> seen;
-    if(IntVector.isNA(nmax) || nmax < 16) {
-      seen = Maps.newHashMap();
-    } else {
-      seen = Maps.newHashMapWithExpectedSize(nmax);
-    }
 
     /* incomparables = FALSE is a special case: */
     boolean skipIncomparables = (incomparables instanceof AtomicVector
             && incomparables.length() == 1
             && incomparables.asLogical() == Logical.FALSE);
 
+    ElementHashSet ignore = null;
     if (!skipIncomparables) {
       if (incomparables.getVectorType() != x.getVectorType()) {
         /* incomparables needs to be coerced to the same type as x, but not if x is a list */
@@ -105,32 +95,28 @@ public class Duplicates {
           incomparables = (Vector) Vectors.asVector(incomparables, x.getTypeName());
         }
       }
-    }
-
-    HashMap<SEXP, Integer> ignore = Maps.newHashMapWithExpectedSize(incomparables.length());
+      ignore = ElementHashSet.ofIncomparables(incomparables, x);
 
-    for (int i = 0; i < incomparables.length(); i++) {
-      SEXP incomparable = incomparables.getElementAsSEXP(i);
-      ignore.put(incomparable, i);
+    } else if(isSorted(x)) {
+      return searchSorted(x, fromLast, algorithm);
     }
 
-    for(Integer index : new IndexSequence(x, fromLast)) {
-      
-      SEXP element = x.getElementAsSEXP(index);
+    /* Maps elements -> first encountered index */
+    ElementHashSet seen = ElementHashSet.create(x, IntVector.isNA(nmax) || nmax < 16 ? 0 : nmax);
 
-      if (!skipIncomparables) {
-        Integer incompIndex = ignore.get(element);
-        if (incompIndex != null) {
-          algorithm.onIncomparable(index);
-          continue;
-        }
+    int length = x.length();
+    for (int i = 0; i < length; i++) {
+      int index = fromLast ? length - 1 - i : i;
+
+      if (ignore != null && ignore.contains(x, index)) {
+        algorithm.onIncomparable(index);
+        continue;
       }
 
-      Integer originalIndex = seen.get(element);
+      int originalIndex = seen.add(index);
 
-      if(originalIndex == null) {
+      if(originalIndex == -1) {
         algorithm.onUnique(index);
-        seen.put(element, index);
       } else {
         if(algorithm.onDuplicate(index, originalIndex) == Action.STOP) {
           return algorithm.getResult();
@@ -139,4 +125,78 @@ public class Duplicates {
     }
     return algorithm.getResult();
   }
+
+  /**
+   * @return true if {@code x} is an int, logical, double or character vector whose elements are in
+   * non-decreasing order, so that equal elements are adjacent. Double vectors containing NaN and
+   * character vectors containing NA are never considered sorted.
+   */
+  private static boolean isSorted(Vector x) {
+    int length = x.length();
+    if(x instanceof IntVector || x instanceof LogicalVector) {
+      for (int i = 1; i < length; i++) {
+        if(x.getElementAsInt(i - 1) > x.getElementAsInt(i)) {
+          return false;
+        }
+      }
+      return true;
+
+    } else if(x instanceof DoubleVector) {
+      double previous = Double.NEGATIVE_INFINITY;
+      for (int i = 0; i < length; i++) {
+        double value = x.getElementAsDouble(i);
+        // Comparisons with NaN are always false
+        if(!(previous <= value)) {
+          return false;
+        }
+        previous = value;
+      }
+      return true;
+
+    } else if(x instanceof StringVector) {
+      String previous = "";
+      for (int i = 0; i < length; i++) {
+        String value = x.getElementAsString(i);
+        if(value == null || previous.compareTo(value) > 0) {
+          return false;
+        }
+        previous = value;
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Searches a sorted vector for duplicates, which are always adjacent to the first
+   * element of their run.
+   */
+  private static <ResultType> ResultType searchSorted(Vector x, boolean fromLast,
+                                                      DuplicateSearchAlgorithm<ResultType> algorithm) {
+    int length = x.length();
+    int runStart = -1;
+    for (int i = 0; i < length; i++) {
+      int index = fromLast ? length - 1 - i : i;
+      if(runStart != -1 && sameElement(x, runStart, index)) {
+        if(algorithm.onDuplicate(index, runStart) == Action.STOP) {
+          return algorithm.getResult();
+        }
+      } else {
+        algorithm.onUnique(index);
+        runStart = index;
+      }
+    }
+    return algorithm.getResult();
+  }
+
+  private static boolean sameElement(Vector x, int i, int j) {
+    if(x instanceof DoubleVector) {
+      // Sorted double vectors contain no NaNs, and 0 == -0 as required
+      return x.getElementAsDouble(i) == x.getElementAsDouble(j);
+    } else if(x instanceof StringVector) {
+      return x.getElementAsString(i).equals(x.getElementAsString(j));
+    } else {
+      return x.getElementAsInt(i) == x.getElementAsInt(j);
+    }
+  }
 }
@@ -0,0 +1,451 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.primitives.match;
+
+import org.renjin.sexp.*;
+
+import java.util.HashMap;
+
+/**
+ * Set of the distinct elements of a vector, used by {@code duplicated()}, {@code unique()} and
+ * {@code anyDuplicated()}. Elements are added by their index in the source vector, and the
+ * type-specific implementations compare elements without boxing them into {@link SEXP}s.
+ */
+abstract class ElementHashSet {
+
+  protected final Vector source;
+
+  /**
+   * Table size used when the expected number of distinct elements is not known.
+   */
+  private static final int INITIAL_ELEMENT_COUNT = 64;
+
+  protected ElementHashSet(Vector source) {
+    this.source = source;
+  }
+
+  /**
+   * Creates a set for the elements of {@code source}.
+   *
+   * @param expectedSize the expected number of distinct elements, or zero if not known
+   */
+  static ElementHashSet create(Vector source, int expectedSize) {
+    int initialSize = expectedSize > 0 ? expectedSize : Math.min(source.length(), INITIAL_ELEMENT_COUNT);
+    if(source instanceof DoubleVector) {
+      return new DoubleSet(source, initialSize);
+    } else if(source instanceof IntVector || source instanceof LogicalVector) {
+      return new IntSet(source, initialSize);
+    } else if(source instanceof StringVector) {
+      return new StringSet(source, initialSize);
+    } else if(source instanceof ComplexVector) {
+      return new ComplexSet(source, initialSize);
+    } else if(source instanceof RawVector) {
+      return new RawSet(source);
+    } else {
+      return new BoxedSet(source, initialSize);
+    }
+  }
+
+  /**
+   * Adds the element at {@code index} of the source vector to the set.
+   *
+   * @return -1 if the element was not already in the set, or the index of the
+   * equal element which was added first.
+   */
+  abstract int add(int index);
+
+  /**
+   * @return true if the element at {@code index} of {@code vector}, which must have the same type
+   * as the source vector, is in the set.
+   */
+  abstract boolean contains(Vector vector, int index);
+
+  /**
+   * Creates a set containing the {@code incomparables} of a search over {@code source}.
+   */
+  static ElementHashSet ofIncomparables(Vector incomparables, Vector source) {
+    ElementHashSet set;
+    if(source instanceof AtomicVector) {
+      set = create(incomparables, incomparables.length());
+    } else {
+      set = new BoxedSet(incomparables, incomparables.length());
+    }
+    for (int i = 0; i < incomparables.length(); i++) {
+      set.add(i);
+    }
+    return set;
+  }
+
+  /**
+   * Open addressing set of int and logical elements. NA_integer_ is an ordinary value here.
+   */
+  private static class IntSet extends ElementHashSet {
+    private int mask;
+    private int[] keys;
+
+    /**
+     * One-based positions of the keys in the source vector, or zero for empty slots.
+     */
+    private int[] positions;
+    private int count;
+
+    private IntSet(Vector source, int expectedSize) {
+      super(source);
+      allocate(Hashing.tableSize(expectedSize));
+    }
+
+    private void allocate(int size) {
+      mask = size - 1;
+      keys = new int[size];
+      positions = new int[size];
+    }
+
+    @Override
+    int add(int index) {
+      int key = source.getElementAsInt(index);
+      int slot = Hashing.mix(key) & mask;
+      while(positions[slot] != 0) {
+        if(keys[slot] == key) {
+          return positions[slot] - 1;
+        }
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = key;
+      positions[slot] = index + 1;
+      if(++count * 2 > keys.length) {
+        grow();
+      }
+      return -1;
+    }
+
+    private void grow() {
+      int[] oldKeys = keys;
+      int[] oldPositions = positions;
+      allocate(keys.length * 2);
+      for (int i = 0; i < oldKeys.length; i++) {
+        if(oldPositions[i] != 0) {
+          int slot = Hashing.mix(oldKeys[i]) & mask;
+          while(positions[slot] != 0) {
+            slot = (slot + 1) & mask;
+          }
+          keys[slot] = oldKeys[i];
+          positions[slot] = oldPositions[i];
+        }
+      }
+    }
+
+    @Override
+    boolean contains(Vector vector, int index) {
+      int key = vector.getElementAsInt(index);
+      int slot = Hashing.mix(key) & mask;
+      while(positions[slot] != 0) {
+        if(keys[slot] == key) {
+          return true;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return false;
+    }
+
+  }
+
+  /**
+   * Open addressing set of double elements, which preserves the distinction between NA and NaN.
+   */
+  private static class DoubleSet extends ElementHashSet {
+    private int mask;
+    private long[] keys;
+    private int[] positions;
+    private int count;
+
+    private DoubleSet(Vector source, int expectedSize) {
+      super(source);
+      allocate(Hashing.tableSize(expectedSize));
+    }
+
+    private void allocate(int size) {
+      mask = size - 1;
+      keys = new long[size];
+      positions = new int[size];
+    }
+
+    @Override
+    int add(int index) {
+      long key = Hashing.doubleKey(source.getElementAsDouble(index));
+      int slot = Hashing.mix(key) & mask;
+      while(positions[slot] != 0) {
+        if(keys[slot] == key) {
+          return positions[slot] - 1;
+        }
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = key;
+      positions[slot] = index + 1;
+      if(++count * 2 > keys.length) {
+        grow();
+      }
+      return -1;
+    }
+
+    private void grow() {
+      long[] oldKeys = keys;
+      int[] oldPositions = positions;
+      allocate(keys.length * 2);
+      for (int i = 0; i < oldKeys.length; i++) {
+        if(oldPositions[i] != 0) {
+          int slot = Hashing.mix(oldKeys[i]) & mask;
+          while(positions[slot] != 0) {
+            slot = (slot + 1) & mask;
+          }
+          keys[slot] = oldKeys[i];
+          positions[slot] = oldPositions[i];
+        }
+      }
+    }
+
+    @Override
+    boolean contains(Vector vector, int index) {
+      long key = Hashing.doubleKey(vector.getElementAsDouble(index));
+      int slot = Hashing.mix(key) & mask;
+      while(positions[slot] != 0) {
+        if(keys[slot] == key) {
+          return true;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return false;
+    }
+
+  }
+
+  /**
+   * Open addressing set of complex elements, keyed on both the real and imaginary parts.
+   */
+  private static class ComplexSet extends ElementHashSet {
+    private int mask;
+    private long[] realKeys;
+    private long[] imaginaryKeys;
+    private int[] positions;
+    private int count;
+
+    private ComplexSet(Vector source, int expectedSize) {
+      super(source);
+      allocate(Hashing.tableSize(expectedSize));
+    }
+
+    private void allocate(int size) {
+      mask = size - 1;
+      realKeys = new long[size];
+      imaginaryKeys = new long[size];
+      positions = new int[size];
+    }
+
+    private static int hash(long real, long imaginary) {
+      return Hashing.mix(real * 31 + imaginary);
+    }
+
+    @Override
+    int add(int index) {
+      long real = Hashing.doubleKey(source.getElementAsDouble(index));
+      long imaginary = Hashing.doubleKey(source.getElementAsComplexIm(index));
+      int slot = hash(real, imaginary) & mask;
+      while(positions[slot] != 0) {
+        if(realKeys[slot] == real && imaginaryKeys[slot] == imaginary) {
+          return positions[slot] - 1;
+        }
+        slot = (slot + 1) & mask;
+      }
+      realKeys[slot] = real;
+      imaginaryKeys[slot] = imaginary;
+      positions[slot] = index + 1;
+      if(++count * 2 > positions.length) {
+        grow();
+      }
+      return -1;
+    }
+
+    private void grow() {
+      long[] oldReal = realKeys;
+      long[] oldImaginary = imaginaryKeys;
+      int[] oldPositions = positions;
+      allocate(positions.length * 2);
+      for (int i = 0; i < oldPositions.length; i++) {
+        if(oldPositions[i] != 0) {
+          int slot = hash(oldReal[i], oldImaginary[i]) & mask;
+          while(positions[slot] != 0) {
+            slot = (slot + 1) & mask;
+          }
+          realKeys[slot] = oldReal[i];
+          imaginaryKeys[slot] = oldImaginary[i];
+          positions[slot] = oldPositions[i];
+        }
+      }
+    }
+
+    @Override
+    boolean contains(Vector vector, int index) {
+      long real = Hashing.doubleKey(vector.getElementAsDouble(index));
+      long imaginary = Hashing.doubleKey(vector.getElementAsComplexIm(index));
+      int slot = hash(real, imaginary) & mask;
+      while(positions[slot] != 0) {
+        if(realKeys[slot] == real && imaginaryKeys[slot] == imaginary) {
+          return true;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return false;
+    }
+
+  }
+
+  /**
+   * Open addressing set of character elements. NA_character_ is tracked outside of the hash table.
+   */
+  private static class StringSet extends ElementHashSet {
+    private int mask;
+    private String[] keys;
+    private int[] positions;
+    private int count;
+    private int naPosition = -1;
+
+    private StringSet(Vector source, int expectedSize) {
+      super(source);
+      allocate(Hashing.tableSize(expectedSize));
+    }
+
+    private void allocate(int size) {
+      mask = size - 1;
+      keys = new String[size];
+      positions = new int[size];
+    }
+
+    @Override
+    int add(int index) {
+      String key = source.getElementAsString(index);
+      if(key == null) {
+        if(naPosition == -1) {
+          naPosition = index;
+          return -1;
+        }
+        return naPosition;
+      }
+      int slot = Hashing.mix(key.hashCode()) & mask;
+      while(positions[slot] != 0) {
+        if(keys[slot].equals(key)) {
+          return positions[slot] - 1;
+        }
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = key;
+      positions[slot] = index + 1;
+      if(++count * 2 > keys.length) {
+        grow();
+      }
+      return -1;
+    }
+
+    private void grow() {
+      String[] oldKeys = keys;
+      int[] oldPositions = positions;
+      allocate(keys.length * 2);
+      for (int i = 0; i < oldKeys.length; i++) {
+        if(oldPositions[i] != 0) {
+          int slot = Hashing.mix(oldKeys[i].hashCode()) & mask;
+          while(positions[slot] != 0) {
+            slot = (slot + 1) & mask;
+          }
+          keys[slot] = oldKeys[i];
+          positions[slot] = oldPositions[i];
+        }
+      }
+    }
+
+    @Override
+    boolean contains(Vector vector, int index) {
+      String key = vector.getElementAsString(index);
+      if(key == null) {
+        return naPosition != -1;
+      }
+      int slot = Hashing.mix(key.hashCode()) & mask;
+      while(positions[slot] != 0) {
+        if(keys[slot].equals(key)) {
+          return true;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return false;
+    }
+
+  }
+
+  /**
+   * Set of raw elements, which is simply a direct lookup table of the 256 possible values.
+   */
+  private static class RawSet extends ElementHashSet {
+
+    /**
+     * One-based positions of each value in the source vector, or zero if not yet added.
+     */
+    private final int[] positions = new int[256];
+
+    private RawSet(Vector source) {
+      super(source);
+    }
+
+    @Override
+    int add(int index) {
+      int key = source.getElementAsByte(index) & 0xFF;
+      if(positions[key] == 0) {
+        positions[key] = index + 1;
+        return -1;
+      }
+      return positions[key] - 1;
+    }
+
+    @Override
+    boolean contains(Vector vector, int index) {
+      return positions[vector.getElementAsByte(index) & 0xFF] != 0;
+    }
+
+  }
+
+  /**
+   * Fallback for lists, which compares boxed elements.
+   */
+  private static class BoxedSet extends ElementHashSet {
+    private final HashMap<SEXP, Integer> seen;
+
+    private BoxedSet(Vector source, int expectedSize) {
+      super(source);
+      this.seen = new HashMap<>(expectedSize * 2);
+    }
+
+    @Override
+    int add(int index) {
+      Integer original = seen.putIfAbsent(source.getElementAsSEXP(index), index);
+      return original == null ? -1 : original;
+    }
+
+    @Override
+    boolean contains(Vector vector, int index) {
+      return seen.containsKey(vector.getElementAsSEXP(index));
+    }
+
+  }
+}
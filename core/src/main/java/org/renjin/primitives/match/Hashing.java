@@ -0,0 +1,80 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.primitives.match;
+
+import org.renjin.sexp.DoubleVector;
+
+/**
+ * Helpers shared by the open-addressing hash tables used for {@code match()},
+ * {@code unique()} and friends.
+ */
+final class Hashing {
+
+  /**
+   * The largest power-of-two table size we will allocate.
+   */
+  private static final int MAX_TABLE_SIZE = 1 << 30;
+
+  /**
+   * The key used for {@code NA_real_}, which must not match {@code NaN}
+   */
+  static final long NA_DOUBLE_KEY = Double.doubleToRawLongBits(DoubleVector.NA);
+
+  /**
+   * The key used for all other {@code NaN} values
+   */
+  static final long NAN_DOUBLE_KEY = Double.doubleToRawLongBits(Double.NaN);
+
+  private Hashing() { }
+
+  /**
+   * @return a power-of-two table size that leaves a load factor of at most 0.5 for
+   * {@code elementCount} elements.
+   */
+  static int tableSize(int elementCount) {
+    if(elementCount >= MAX_TABLE_SIZE / 2) {
+      return MAX_TABLE_SIZE;
+    }
+    return Integer.highestOneBit(Math.max(4, elementCount * 2) - 1) << 1;
+  }
+
+  static int mix(int x) {
+    int h = x * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  static int mix(long x) {
+    return mix((int)(x ^ (x >>> 32)));
+  }
+
+  /**
+   * Maps a double value to a {@code long} key such that two values have the same key iff they
+   * "match" in the sense of {@link DoubleVector#match(double, double)}: NA matches only NA,
+   * NaN matches NaN but not NA, and 0 matches -0.
+   */
+  static long doubleKey(double x) {
+    if(Double.isNaN(x)) {
+      return DoubleVector.isNA(x) ? NA_DOUBLE_KEY : NAN_DOUBLE_KEY;
+    }
+    if(x == 0) {
+      return 0L;
+    }
+    return Double.doubleToRawLongBits(x);
+  }
+}
@@ -28,7 +28,6 @@ import org.renjin.primitives.sequence.IntSequence;
 import org.renjin.primitives.vector.ConvertingStringVector;
 import org.renjin.sexp.*;
 
-import java.util.HashMap;
 
 
 /**
@@ -82,17 +81,15 @@ public class Match {
     search = commonType.to(search);
     table = commonType.to(table);
 
+    MatchIndex index = MatchIndex.forTable(table);
+    boolean checkIncomparables = incomparables.length() > 0;
+
     int[] matches = new int[search.length()];
     for(int i=0;i!=search.length();++i) {
-      if( incomparables.contains(search, i)) {
+      if(checkIncomparables && incomparables.contains(search, i)) {
         matches[i] = noMatch;
       } else {
-        int pos;
-        if(search.isElementNA(i)) {
-          pos = indexOfNA(table);
-        } else {
-          pos = table.indexOf(search, i, 0);
-        }
+        int pos = index.indexOf(search, i);
         matches[i] = pos >= 0 ? pos+1 : noMatch;
       }
     }
@@ -154,46 +151,6 @@ public class Match {
     return null;
   }
 
-  private static IntVector matchUsingStringHash(Vector search, Vector table, int noMatch, AtomicVector incomparables) {
-
-    // Build HashMap... 
-    // If items are repeated in the table, only the first is used.
-    HashMap<String, Integer> lookup = new HashMap<>();
-    for (int i = 0; i < table.length(); i++) {
-      String tableElement = table.getElementAsString(i);
-      if(!lookup.containsKey(tableElement)) {
-        lookup.put(tableElement, i);
-      }
-    }
-
-    for (int i = 0; i < incomparables.length(); i++) {
-      lookup.put(incomparables.getElementAsString(i), noMatch);
-    }
-    
-    int match[] = new int[search.length()];
-    for (int i = 0; i < search.length(); i++) {
-      String toMatch = search.getElementAsString(i);
-      Integer index = lookup.get(toMatch);
-      if(index == null) {
-        match[i] = noMatch;
-      } else {
-        match[i] = index;
-      }
-    }
-    
-    return new IntArrayVector(match);
-  }
-
-  private static int indexOfNA(Vector table) {
-    for(int i=0;i!=table.length();++i) {
-      if(table.isElementNA(i)) {
-        return i;
-      }
-    }
-    return -1;
-  }
-  
-
   /**
    * pmatch seeks matches for the elements of its first argument among those of its second.
    *
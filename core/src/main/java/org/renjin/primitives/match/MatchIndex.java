@@ -0,0 +1,297 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.primitives.match;
+
+import org.renjin.repackaged.guava.cache.Cache;
+import org.renjin.repackaged.guava.cache.CacheBuilder;
+import org.renjin.sexp.*;
+
+import java.util.Arrays;
+
+/**
+ * An index over the elements of a {@code table} vector which answers the question
+ * "what is the position of the first element equal to x?" used by {@code match()} and
+ * {@code %in%}.
+ *
+ * <p>Atomic tables are indexed by open-addressing hash tables specialized for each storage type, so that
+ * matching {@code n} elements against a table of length {@code m} takes {@code O(n + m)} time
+ * rather than {@code O(n * m)}. Since vectors are immutable, hashed indexes of larger tables are cached
+ * against the identity of the table and reused by subsequent calls. Lists and complex vectors are
+ * always scanned.</p>
+ */
+abstract class MatchIndex {
+
+  /**
+   * Tables shorter than this are simply scanned.
+   */
+  private static final int MIN_HASHED_LENGTH = 16;
+
+  /**
+   * Indexes of tables at least this long are cached for reuse.
+   */
+  private static final int MIN_CACHED_LENGTH = 256;
+
+  /**
+   * Cache of hashed indexes, keyed weakly on the identity of the table. Only indexes which copy the
+   * table's elements may be cached: an index holding a reference to its table would keep the
+   * weak key reachable, and the table could never be collected.
+   */
+  private static final Cache<Vector, MatchIndex> CACHE = CacheBuilder.newBuilder()
+      .weakKeys()
+      .maximumSize(64)
+      .build();
+
+  /**
+   * @return the zero-based position of the first element in the table which matches {@code search[i]},
+   * or -1 if there is no such element. {@code search} must have the same vector type as the table.
+   */
+  abstract int indexOf(Vector search, int i);
+
+  /**
+   * Returns an index for the given table, building it if necessary.
+   */
+  static MatchIndex forTable(Vector table) {
+    if(table.length() < MIN_HASHED_LENGTH || !isHashable(table)) {
+      return new LinearIndex(table);
+    }
+    if(table.length() < MIN_CACHED_LENGTH) {
+      return buildHashed(table);
+    }
+    MatchIndex index = CACHE.getIfPresent(table);
+    if(index == null) {
+      index = buildHashed(table);
+      CACHE.put(table, index);
+    }
+    return index;
+  }
+
+  private static boolean isHashable(Vector table) {
+    return table instanceof DoubleVector ||
+        table instanceof IntVector ||
+        table instanceof LogicalVector ||
+        table instanceof StringVector ||
+        table instanceof RawVector;
+  }
+
+  private static MatchIndex buildHashed(Vector table) {
+    if(table instanceof DoubleVector) {
+      return new DoubleIndex(table);
+    } else if(table instanceof IntVector || table instanceof LogicalVector) {
+      return new IntIndex(table);
+    } else if(table instanceof StringVector) {
+      return new StringIndex(table);
+    } else {
+      return new RawIndex(table);
+    }
+  }
+
+  /**
+   * Fallback for lists, complex vectors and very short tables.
+   */
+  private static class LinearIndex extends MatchIndex {
+    private final Vector table;
+
+    private LinearIndex(Vector table) {
+      this.table = table;
+    }
+
+    @Override
+    int indexOf(Vector search, int i) {
+      if(search.isElementNA(i)) {
+        return indexOfNA(table);
+      } else {
+        return table.indexOf(search, i, 0);
+      }
+    }
+
+    private static int indexOfNA(Vector table) {
+      for(int i=0;i!=table.length();++i) {
+        if(table.isElementNA(i)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+
+  /**
+   * Index of integer and logical tables. NA_integer_ is an ordinary value here.
+   */
+  private static class IntIndex extends MatchIndex {
+    private final int mask;
+    private final int[] keys;
+
+    /**
+     * One-based positions of the keys in the table, or zero for empty slots.
+     */
+    private final int[] positions;
+
+    private IntIndex(Vector table) {
+      int size = Hashing.tableSize(table.length());
+      mask = size - 1;
+      keys = new int[size];
+      positions = new int[size];
+
+      int length = table.length();
+      for (int i = 0; i < length; i++) {
+        int key = table.getElementAsInt(i);
+        int slot = Hashing.mix(key) & mask;
+        while(positions[slot] != 0 && keys[slot] != key) {
+          slot = (slot + 1) & mask;
+        }
+        if(positions[slot] == 0) {
+          keys[slot] = key;
+          positions[slot] = i + 1;
+        }
+      }
+    }
+
+    @Override
+    int indexOf(Vector search, int i) {
+      int key = search.getElementAsInt(i);
+      int slot = Hashing.mix(key) & mask;
+      while(positions[slot] != 0) {
+        if(keys[slot] == key) {
+          return positions[slot] - 1;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return -1;
+    }
+  }
+
+  /**
+   * Index of double tables, which preserves the distinction between NA and NaN.
+   */
+  private static class DoubleIndex extends MatchIndex {
+    private final int mask;
+    private final long[] keys;
+    private final int[] positions;
+
+    private DoubleIndex(Vector table) {
+      int size = Hashing.tableSize(table.length());
+      mask = size - 1;
+      keys = new long[size];
+      positions = new int[size];
+
+      int length = table.length();
+      for (int i = 0; i < length; i++) {
+        long key = Hashing.doubleKey(table.getElementAsDouble(i));
+        int slot = Hashing.mix(key) & mask;
+        while(positions[slot] != 0 && keys[slot] != key) {
+          slot = (slot + 1) & mask;
+        }
+        if(positions[slot] == 0) {
+          keys[slot] = key;
+          positions[slot] = i + 1;
+        }
+      }
+    }
+
+    @Override
+    int indexOf(Vector search, int i) {
+      long key = Hashing.doubleKey(search.getElementAsDouble(i));
+      int slot = Hashing.mix(key) & mask;
+      while(positions[slot] != 0) {
+        if(keys[slot] == key) {
+          return positions[slot] - 1;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return -1;
+    }
+  }
+
+  /**
+   * Index of character tables. NA_character_ is stored outside of the hash table.
+   */
+  private static class StringIndex extends MatchIndex {
+    private final int mask;
+    private final String[] keys;
+    private final int[] positions;
+    private final int naPosition;
+
+    private StringIndex(Vector table) {
+      int size = Hashing.tableSize(table.length());
+      mask = size - 1;
+      keys = new String[size];
+      positions = new int[size];
+
+      int na = -1;
+      int length = table.length();
+      for (int i = 0; i < length; i++) {
+        String key = table.getElementAsString(i);
+        if(key == null) {
+          if(na == -1) {
+            na = i;
+          }
+        } else {
+          int slot = Hashing.mix(key.hashCode()) & mask;
+          while (positions[slot] != 0 && !keys[slot].equals(key)) {
+            slot = (slot + 1) & mask;
+          }
+          if (positions[slot] == 0) {
+            keys[slot] = key;
+            positions[slot] = i + 1;
+          }
+        }
+      }
+      naPosition = na;
+    }
+
+    @Override
+    int indexOf(Vector search, int i) {
+      String key = search.getElementAsString(i);
+      if(key == null) {
+        return naPosition;
+      }
+      int slot = Hashing.mix(key.hashCode()) & mask;
+      while(positions[slot] != 0) {
+        if(keys[slot].equals(key)) {
+          return positions[slot] - 1;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return -1;
+    }
+  }
+
+  /**
+   * Index of raw tables, which is simply a direct lookup table of the 256 possible values.
+   */
+  private static class RawIndex extends MatchIndex {
+    private final int[] positions = new int[256];
+
+    private RawIndex(Vector table) {
+      Arrays.fill(positions, -1);
+      int length = table.length();
+      for (int i = 0; i < length; i++) {
+        int key = table.getElementAsByte(i) & 0xFF;
+        if(positions[key] == -1) {
+          positions[key] = i;
+        }
+      }
+    }
+
+    @Override
+    int indexOf(Vector search, int i) {
+      return positions[search.getElementAsByte(i) & 0xFF];
+    }
+  }
+}
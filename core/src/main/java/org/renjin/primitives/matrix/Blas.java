@@ -0,0 +1,86 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.primitives.matrix;
+
+/**
+ * The level-3 BLAS routines used by the matrix primitives ({@code %*%}, {@code crossprod},
+ * {@code tcrossprod}) and by {@code chol} and {@code backsolve}.
+ *
+ * <p>Matrices are stored in column-major order, and the arguments follow the reference
+ * Fortran BLAS, with one-character strings selecting transposition, triangle and side.</p>
+ *
+ * <p>The implementation is chosen once, when first requested:</p>
+ * <ul>
+ *   <li>If the {@code renjin.blas} system property is set, it names either {@code jvm} for
+ *   {@link JvmBlas}, {@code netlib} for {@link NetlibBlas}, or the class name of an implementation
+ *   with a public no-argument constructor.</li>
+ *   <li>Otherwise, the first implementation registered in
+ *   {@code META-INF/services/org.renjin.primitives.matrix.Blas} is used.</li>
+ *   <li>Otherwise, netlib-java is used if it has loaded a native BLAS, and {@link JvmBlas} if it
+ *   would fall back to its single-threaded F2J translation.</li>
+ * </ul>
+ */
+public interface Blas {
+
+  /**
+   * @return the BLAS implementation used by Renjin.
+   */
+  static Blas getInstance() {
+    return BlasLoader.INSTANCE;
+  }
+
+  /**
+   * Computes {@code C := alpha * op(A) * op(B) + beta * C}, where {@code op(A)} is {@code m x k}
+   * and {@code op(B)} is {@code k x n}.
+   *
+   * @param transa "N" if {@code op(A) = A}, "T" or "C" if {@code op(A)} is the transpose of {@code A}.
+   * @param transb "N" if {@code op(B) = B}, "T" or "C" if {@code op(B)} is the transpose of {@code B}.
+   */
+  void dgemm(String transa, String transb, int m, int n, int k,
+             double alpha, double[] a, int lda, double[] b, int ldb,
+             double beta, double[] c, int ldc);
+
+  /**
+   * Computes {@code C := alpha * A * A' + beta * C} ({@code trans = "N"}, {@code A} is {@code n x k}) or
+   * {@code C := alpha * A' * A + beta * C} ({@code trans = "T"}, {@code A} is {@code k x n}), updating
+   * only the {@code uplo} triangle of the symmetric {@code n x n} matrix {@code C}.
+   */
+  void dsyrk(String uplo, String trans, int n, int k,
+             double alpha, double[] a, int lda, double beta, double[] c, int ldc);
+
+  /**
+   * Solves {@code op(A) * X = alpha * B} ({@code side = "L"}) or {@code X * op(A) = alpha * B}
+   * ({@code side = "R"}) for the {@code m x n} matrix {@code X}, which overwrites {@code B}.
+   * {@code A} is triangular, and is assumed to have a unit diagonal if {@code diag = "U"}.
+   */
+  void dtrsm(String side, String uplo, String transa, String diag, int m, int n,
+             double alpha, double[] a, int lda, double[] b, int ldb);
+
+  /**
+   * Computes the Cholesky factorization {@code A = U' * U} ({@code uplo = "U"}) or
+   * {@code A = L * L'} ({@code uplo = "L"}) of a symmetric positive definite matrix, overwriting
+   * the {@code uplo} triangle of {@code A}.
+   *
+   * <p>This is a LAPACK rather than a BLAS routine, but it is built from the level-3 routines above,
+   * so an implementation of them should provide it as well.</p>
+   *
+   * @return 0 on success, or {@code i > 0} if the leading minor of order {@code i} is not positive definite.
+   */
+  int dpotrf(String uplo, int n, double[] a, int lda);
+}
@@ -0,0 +1,54 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.primitives.matrix;
+
+import java.util.ServiceLoader;
+
+/**
+ * Selects the {@link Blas} implementation, as described in {@link Blas}.
+ */
+final class BlasLoader {
+
+  static final Blas INSTANCE = load();
+
+  private BlasLoader() { }
+
+  private static Blas load() {
+    String name = System.getProperty("renjin.blas");
+    if(name == null) {
+      for (Blas blas : ServiceLoader.load(Blas.class)) {
+        return blas;
+      }
+      return NetlibBlas.isNative() ? new NetlibBlas() : new JvmBlas();
+    }
+    switch (name) {
+      case "jvm":
+        return new JvmBlas();
+      case "netlib":
+        return new NetlibBlas();
+      default:
+        try {
+          return Class.forName(name).asSubclass(Blas.class).getConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+          throw new IllegalStateException("Could not create the BLAS implementation '" + name +
+              "' given by the renjin.blas property", e);
+        }
+    }
+  }
+}
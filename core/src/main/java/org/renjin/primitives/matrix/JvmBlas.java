@@ -0,0 +1,692 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.primitives.matrix;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Multithreaded, cache-blocked {@link Blas} implementation in pure Java.
+ *
+ * <p>{@code dgemm} follows the structure of GotoBLAS: the output is divided into tiles which are
+ * computed in parallel on a {@link ForkJoinPool}. For each tile, blocks of {@code op(A)} and
+ * {@code op(B)} are packed into contiguous panels of {@link #MR} rows and {@link #NR} columns,
+ * which are multiplied by a register-blocked {@code 4 x 4} micro-kernel. When the output has only
+ * a few tiles, as in {@code crossprod} of a tall, skinny matrix, the inner dimension is split
+ * instead and the partial products are summed. The split depends only on the shape of the
+ * product, never on the number of threads, so results are identical on every machine.</p>
+ *
+ * <p>{@code dsyrk} is {@code dgemm} restricted to one triangle of the output, {@code dtrsm} is a
+ * blocked substitution whose off-diagonal updates use the {@code dgemm} kernel, and
+ * {@code dpotrf} is LAPACK's blocked algorithm on top of these.</p>
+ */
+public final class JvmBlas implements Blas {
+
+  static final int MR = 4;
+  static final int NR = 4;
+
+  /**
+   * Rows of {@code op(A)} packed at a time, sized so that the packed block stays in the L2 cache.
+   */
+  static final int MC = 96;
+
+  /**
+   * Depth of the packed panels.
+   */
+  static final int KC = 256;
+
+  /**
+   * Columns of {@code op(B)} packed at a time.
+   */
+  static final int NC = 256;
+
+  /**
+   * Block size of the triangular solve and Cholesky factorization.
+   */
+  private static final int NB = 96;
+
+  /**
+   * Products with fewer multiply-adds than this are computed on the calling thread.
+   */
+  private static final long PARALLEL_THRESHOLD = 64L * 64L * 64L;
+
+  /**
+   * Products whose output has at most this many tiles are computed by splitting the inner dimension.
+   */
+  private static final int MAX_SPLIT_TILES = 4;
+
+  /**
+   * Maximum number of ranges into which the inner dimension is split.
+   */
+  private static final int MAX_INNER_CHUNKS = 8;
+
+  private static final int FULL = 0;
+  private static final int UPPER = 1;
+  private static final int LOWER = 2;
+
+  private static final ThreadLocal<double[][]> WORKSPACE =
+      ThreadLocal.withInitial(() -> new double[][] { new double[MC * KC], new double[KC * NC] });
+
+  private final ForkJoinPool pool;
+
+  public JvmBlas() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  public JvmBlas(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  @Override
+  public void dgemm(String transa, String transb, int m, int n, int k,
+                    double alpha, double[] a, int lda, double[] b, int ldb,
+                    double beta, double[] c, int ldc) {
+    gemm(isTransposed(transa), isTransposed(transb), m, n, k, alpha, a, 0, lda, b, 0, ldb, beta, c, 0, ldc, FULL);
+  }
+
+  @Override
+  public void dsyrk(String uplo, String trans, int n, int k,
+                    double alpha, double[] a, int lda, double beta, double[] c, int ldc) {
+    boolean transposed = isTransposed(trans);
+    gemm(transposed, !transposed, n, n, k, alpha, a, 0, lda, a, 0, lda, beta, c, 0, ldc, triangle(uplo));
+  }
+
+  @Override
+  public void dtrsm(String side, String uplo, String transa, String diag, int m, int n,
+                    double alpha, double[] a, int lda, double[] b, int ldb) {
+    boolean upper = triangle(uplo) == UPPER;
+    boolean unit = flag(diag, 'U', 'N', "diag");
+    if(flag(side, 'L', 'R', "side")) {
+      trsmLeft(upper, isTransposed(transa), unit, m, n, alpha, a, 0, lda, b, 0, ldb);
+    } else {
+      trsmRight(upper, isTransposed(transa), unit, m, n, alpha, a, 0, lda, b, 0, ldb);
+    }
+  }
+
+  @Override
+  public int dpotrf(String uplo, int n, double[] a, int lda) {
+    if(triangle(uplo) == UPPER) {
+      return potrfUpper(n, a, 0, lda);
+    } else {
+      return potrfLower(n, a, 0, lda);
+    }
+  }
+
+  /**
+   * Computes {@code C := alpha * op(A) * op(B) + beta * C}, updating only the given triangle of {@code C}.
+   */
+  void gemm(boolean transA, boolean transB, int m, int n, int k,
+            double alpha, double[] a, int aOffset, int lda, double[] b, int bOffset, int ldb,
+            double beta, double[] c, int cOffset, int ldc, int triangle) {
+
+    if(m == 0 || n == 0) {
+      return;
+    }
+    boolean multiply = alpha != 0 && k > 0;
+    long work = multiply ? (long) m * n * k : (long) m * n;
+
+    List<Runnable> tasks = new ArrayList<>();
+    for (int jt = 0; jt < n; jt += NC) {
+      for (int it = 0; it < m; it += MC) {
+        int i0 = it;
+        int j0 = jt;
+        int i1 = Math.min(m, i0 + MC);
+        int j1 = Math.min(n, j0 + NC);
+        if(!intersects(triangle, i0, i1, j0, j1)) {
+          continue;
+        }
+        tasks.add(() -> {
+          scale(beta, c, cOffset, ldc, i0, i1, j0, j1, triangle);
+          if(multiply) {
+            multiply(transA, transB, i0, i1, j0, j1, 0, k, alpha, a, aOffset, lda, b, bOffset, ldb,
+                c, cOffset, ldc, triangle);
+          }
+        });
+      }
+    }
+
+    if(multiply && tasks.size() <= MAX_SPLIT_TILES && k >= 2 * KC && work >= PARALLEL_THRESHOLD) {
+      splitInnerDimension(transA, transB, m, n, k, alpha, a, aOffset, lda, b, bOffset, ldb,
+          beta, c, cOffset, ldc, triangle, Math.min(MAX_INNER_CHUNKS, k / KC));
+    } else {
+      execute(tasks, work);
+    }
+  }
+
+  /**
+   * Computes the product as the sum of {@code chunks} partial products over ranges of the inner
+   * dimension, which are computed in parallel and summed in order of their range.
+   */
+  private void splitInnerDimension(boolean transA, boolean transB, int m, int n, int k,
+                                   double alpha, double[] a, int aOffset, int lda,
+                                   double[] b, int bOffset, int ldb,
+                                   double beta, double[] c, int cOffset, int ldc, int triangle, int chunks) {
+    double[][] partials = new double[chunks][];
+    List<Runnable> tasks = new ArrayList<>();
+    for (int chunk = 0; chunk < chunks; chunk++) {
+      int index = chunk;
+      int p0 = (int) ((long) k * chunk / chunks);
+      int p1 = (int) ((long) k * (chunk + 1) / chunks);
+      tasks.add(() -> {
+        double[] partial = new double[m * n];
+        multiply(transA, transB, 0, m, 0, n, p0, p1, 1.0, a, aOffset, lda, b, bOffset, ldb, partial, 0, m, triangle);
+        partials[index] = partial;
+      });
+    }
+    execute(tasks, (long) m * n * k);
+
+    scale(beta, c, cOffset, ldc, 0, m, 0, n, triangle);
+    for (int j = 0; j < n; j++) {
+      for (int i = firstRow(triangle, 0, j); i < endRow(triangle, m, j); i++) {
+        double sum = 0;
+        for (double[] partial : partials) {
+          sum += partial[i + j * m];
+        }
+        c[cOffset + i + j * ldc] += alpha * sum;
+      }
+    }
+  }
+
+  private void execute(List<Runnable> tasks, long work) {
+    if(tasks.size() <= 1 || work < PARALLEL_THRESHOLD || pool.getParallelism() <= 1) {
+      for (Runnable task : tasks) {
+        task.run();
+      }
+    } else {
+      List<ForkJoinTask<?>> forkJoinTasks = new ArrayList<>(tasks.size());
+      for (Runnable task : tasks) {
+        forkJoinTasks.add(ForkJoinTask.adapt(task));
+      }
+      pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(forkJoinTasks)));
+    }
+  }
+
+  /**
+   * Adds {@code alpha * op(A)[i0:i1, p0:p1] * op(B)[p0:p1, j0:j1]} to {@code C[i0:i1, j0:j1]} on the
+   * calling thread.
+   */
+  private static void multiply(boolean transA, boolean transB, int i0, int i1, int j0, int j1, int p0, int p1,
+                               double alpha, double[] a, int aOffset, int lda, double[] b, int bOffset, int ldb,
+                               double[] c, int cOffset, int ldc, int triangle) {
+    double[][] workspace = WORKSPACE.get();
+    double[] packedA = workspace[0];
+    double[] packedB = workspace[1];
+
+    for (int jc = j0; jc < j1; jc += NC) {
+      int nc = Math.min(NC, j1 - jc);
+      for (int pc = p0; pc < p1; pc += KC) {
+        int kc = Math.min(KC, p1 - pc);
+        if(transB) {
+          packTransposed(b, bOffset, ldb, jc, nc, pc, kc, NR, packedB);
+        } else {
+          pack(b, bOffset, ldb, jc, nc, pc, kc, NR, packedB);
+        }
+        for (int ic = i0; ic < i1; ic += MC) {
+          int mc = Math.min(MC, i1 - ic);
+          if(!intersects(triangle, ic, ic + mc, jc, jc + nc)) {
+            continue;
+          }
+          if(transA) {
+            pack(a, aOffset, lda, ic, mc, pc, kc, MR, packedA);
+          } else {
+            packTransposed(a, aOffset, lda, ic, mc, pc, kc, MR, packedA);
+          }
+          for (int jr = 0; jr < nc; jr += NR) {
+            int nr = Math.min(NR, nc - jr);
+            for (int ir = 0; ir < mc; ir += MR) {
+              int mr = Math.min(MR, mc - ir);
+              int row = ic + ir;
+              int col = jc + jr;
+              if(intersects(triangle, row, row + mr, col, col + nr)) {
+                kernel(kc, packedA, ir * kc, packedB, jr * kc, alpha,
+                    c, cOffset + row + col * ldc, ldc, mr, nr, triangle, row, col);
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Packs the {@code kc x count} block starting at row {@code p0} and column {@code start} of the
+   * column-major matrix {@code x} into panels of {@code width} columns, each stored row by row,
+   * padding the last panel with zeros.
+   */
+  private static void pack(double[] x, int offset, int ld, int start, int count, int p0, int kc,
+                           int width, double[] packed) {
+    int d = 0;
+    for (int panel = 0; panel < count; panel += width) {
+      int w = Math.min(width, count - panel);
+      for (int p = 0; p < kc; p++) {
+        int s = offset + p0 + p + (start + panel) * ld;
+        for (int q = 0; q < w; q++) {
+          packed[d + q] = x[s + q * ld];
+        }
+        for (int q = w; q < width; q++) {
+          packed[d + q] = 0;
+        }
+        d += width;
+      }
+    }
+  }
+
+  /**
+   * Packs the {@code count x kc} block starting at row {@code start} and column {@code p0} of
+   * the column-major matrix {@code x}, in the same layout as {@link #pack}.
+   */
+  private static void packTransposed(double[] x, int offset, int ld, int start, int count, int p0, int kc,
+                                     int width, double[] packed) {
+    int d = 0;
+    for (int panel = 0; panel < count; panel += width) {
+      int w = Math.min(width, count - panel);
+      for (int p = 0; p < kc; p++) {
+        int s = offset + start + panel + (p0 + p) * ld;
+        for (int q = 0; q < w; q++) {
+          packed[d + q] = x[s + q];
+        }
+        for (int q = w; q < width; q++) {
+          packed[d + q] = 0;
+        }
+        d += width;
+      }
+    }
+  }
+
+  /**
+   * Multiplies an {@code MR x kc} panel of {@code A} by a {@code kc x NR} panel of {@code B}, keeping
+   * the {@code 4 x 4} result in local variables, and adds {@code alpha} times the first {@code mr x nr}
+   * elements to {@code C}.
+   */
+  private static void kernel(int kc, double[] a, int ai, double[] b, int bi, double alpha,
+                             double[] c, int ci, int ldc, int mr, int nr, int triangle, int row, int col) {
+    double c00 = 0, c10 = 0, c20 = 0, c30 = 0;
+    double c01 = 0, c11 = 0, c21 = 0, c31 = 0;
+    double c02 = 0, c12 = 0, c22 = 0, c32 = 0;
+    double c03 = 0, c13 = 0, c23 = 0, c33 = 0;
+
+    for (int p = 0; p < kc; p++) {
+      double a0 = a[ai];
+      double a1 = a[ai + 1];
+      double a2 = a[ai + 2];
+      double a3 = a[ai + 3];
+
+      double b0 = b[bi];
+      c00 += a0 * b0;
+      c10 += a1 * b0;
+      c20 += a2 * b0;
+      c30 += a3 * b0;
+
+      double b1 = b[bi + 1];
+      c01 += a0 * b1;
+      c11 += a1 * b1;
+      c21 += a2 * b1;
+      c31 += a3 * b1;
+
+      double b2 = b[bi + 2];
+      c02 += a0 * b2;
+      c12 += a1 * b2;
+      c22 += a2 * b2;
+      c32 += a3 * b2;
+
+      double b3 = b[bi + 3];
+      c03 += a0 * b3;
+      c13 += a1 * b3;
+      c23 += a2 * b3;
+      c33 += a3 * b3;
+
+      ai += MR;
+      bi += NR;
+    }
+
+    if(mr == MR && nr == NR && triangle == FULL) {
+      c[ci] += alpha * c00;
+      c[ci + 1] += alpha * c10;
+      c[ci + 2] += alpha * c20;
+      c[ci + 3] += alpha * c30;
+      ci += ldc;
+      c[ci] += alpha * c01;
+      c[ci + 1] += alpha * c11;
+      c[ci + 2] += alpha * c21;
+      c[ci + 3] += alpha * c31;
+      ci += ldc;
+      c[ci] += alpha * c02;
+      c[ci + 1] += alpha * c12;
+      c[ci + 2] += alpha * c22;
+      c[ci + 3] += alpha * c32;
+      ci += ldc;
+      c[ci] += alpha * c03;
+      c[ci + 1] += alpha * c13;
+      c[ci + 2] += alpha * c23;
+      c[ci + 3] += alpha * c33;
+
+    } else {
+      double[] result = {
+          c00, c10, c20, c30,
+          c01, c11, c21, c31,
+          c02, c12, c22, c32,
+          c03, c13, c23, c33 };
+      for (int j = 0; j < nr; j++) {
+        for (int i = 0; i < mr; i++) {
+          if(inTriangle(triangle, row + i, col + j)) {
+            c[ci + i + j * ldc] += alpha * result[i + j * MR];
+          }
+        }
+      }
+    }
+  }
+
+  private static void scale(double beta, double[] c, int cOffset, int ldc, int i0, int i1, int j0, int j1,
+                            int triangle) {
+    if(beta == 1) {
+      return;
+    }
+    for (int j = j0; j < j1; j++) {
+      int start = cOffset + j * ldc;
+      for (int i = Math.max(i0, firstRow(triangle, i0, j)); i < Math.min(i1, endRow(triangle, i1, j)); i++) {
+        c[start + i] = beta == 0 ? 0 : beta * c[start + i];
+      }
+    }
+  }
+
+  /**
+   * Solves {@code op(A) * X = alpha * B}, overwriting {@code B}. Columns of {@code B} are solved in
+   * parallel, each by blocked forward or back substitution.
+   */
+  void trsmLeft(boolean upper, boolean trans, boolean unit, int m, int n, double alpha,
+                double[] a, int aOffset, int lda, double[] b, int bOffset, int ldb) {
+    if(m == 0 || n == 0) {
+      return;
+    }
+    int columnsPerTask = Math.max(NR, (n + pool.getParallelism() - 1) / pool.getParallelism());
+    List<Runnable> tasks = new ArrayList<>();
+    for (int j0 = 0; j0 < n; j0 += columnsPerTask) {
+      int columns = Math.min(columnsPerTask, n - j0);
+      int offset = bOffset + j0 * ldb;
+      tasks.add(() -> {
+        scale(alpha, b, offset, ldb, 0, m, 0, columns, FULL);
+        if(alpha != 0) {
+          if(upper == trans) {
+            forwardSubstitution(trans, unit, m, columns, a, aOffset, lda, b, offset, ldb);
+          } else {
+            backSubstitution(trans, unit, m, columns, a, aOffset, lda, b, offset, ldb);
+          }
+        }
+      });
+    }
+    execute(tasks, (long) m * m * n);
+  }
+
+  /**
+   * Solves {@code X * op(A) = alpha * B} by solving {@code op(A)' * X' = alpha * B'}.
+   */
+  void trsmRight(boolean upper, boolean trans, boolean unit, int m, int n, double alpha,
+                 double[] a, int aOffset, int lda, double[] b, int bOffset, int ldb) {
+    double[] transposed = new double[n * m];
+    for (int j = 0; j < n; j++) {
+      for (int i = 0; i < m; i++) {
+        transposed[j + i * n] = b[bOffset + i + j * ldb];
+      }
+    }
+    trsmLeft(upper, !trans, unit, n, m, alpha, a, aOffset, lda, transposed, 0, n);
+    for (int j = 0; j < n; j++) {
+      for (int i = 0; i < m; i++) {
+        b[bOffset + i + j * ldb] = transposed[j + i * n];
+      }
+    }
+  }
+
+  /**
+   * Solves {@code op(A) * X = B} where {@code op(A)} is lower triangular.
+   */
+  private static void forwardSubstitution(boolean trans, boolean unit, int m, int n,
+                                          double[] a, int aOffset, int lda, double[] b, int bOffset, int ldb) {
+    for (int r = 0; r < m; r += NB) {
+      int rb = Math.min(NB, m - r);
+      for (int j = 0; j < n; j++) {
+        int x = bOffset + j * ldb;
+        for (int i = r; i < r + rb; i++) {
+          double sum = b[x + i];
+          if(trans) {
+            int col = aOffset + i * lda;
+            for (int p = r; p < i; p++) {
+              sum -= a[col + p] * b[x + p];
+            }
+          } else {
+            for (int p = r; p < i; p++) {
+              sum -= a[aOffset + i + p * lda] * b[x + p];
+            }
+          }
+          b[x + i] = unit ? sum : sum / a[aOffset + i + i * lda];
+        }
+      }
+      if(r + rb < m) {
+        // B[r+rb:m, ] -= op(A)[r+rb:m, r:r+rb] * X[r:r+rb, ]
+        multiply(trans, false, 0, m - r - rb, 0, n, 0, rb, -1.0,
+            a, offset(trans, aOffset, lda, r + rb, r), lda,
+            b, bOffset + r, ldb,
+            b, bOffset + r + rb, ldb, FULL);
+      }
+    }
+  }
+
+  /**
+   * Solves {@code op(A) * X = B} where {@code op(A)} is upper triangular.
+   */
+  private static void backSubstitution(boolean trans, boolean unit, int m, int n,
+                                       double[] a, int aOffset, int lda, double[] b, int bOffset, int ldb) {
+    for (int end = m; end > 0; end -= NB) {
+      int r = Math.max(0, end - NB);
+      for (int j = 0; j < n; j++) {
+        int x = bOffset + j * ldb;
+        for (int i = end - 1; i >= r; i--) {
+          double sum = b[x + i];
+          if(trans) {
+            int col = aOffset + i * lda;
+            for (int p = i + 1; p < end; p++) {
+              sum -= a[col + p] * b[x + p];
+            }
+          } else {
+            for (int p = i + 1; p < end; p++) {
+              sum -= a[aOffset + i + p * lda] * b[x + p];
+            }
+          }
+          b[x + i] = unit ? sum : sum / a[aOffset + i + i * lda];
+        }
+      }
+      if(r > 0) {
+        // B[0:r, ] -= op(A)[0:r, r:end] * X[r:end, ]
+        multiply(trans, false, 0, r, 0, n, 0, end - r, -1.0,
+            a, offset(trans, aOffset, lda, 0, r), lda,
+            b, bOffset + r, ldb,
+            b, bOffset, ldb, FULL);
+      }
+    }
+  }
+
+  /**
+   * Blocked Cholesky factorization {@code A = U' * U}, as in LAPACK's {@code dpotrf}.
+   */
+  private int potrfUpper(int n, double[] a, int aOffset, int lda) {
+    for (int j = 0; j < n; j += NB) {
+      int jb = Math.min(NB, n - j);
+      int diagonal = aOffset + j + j * lda;
+      // A[j:j+jb, j:j+jb] -= A[0:j, j:j+jb]' * A[0:j, j:j+jb]
+      gemm(true, false, jb, jb, j, -1.0, a, aOffset + j * lda, lda, a, aOffset + j * lda, lda,
+          1.0, a, diagonal, lda, UPPER);
+
+      int info = unblockedPotrfUpper(jb, a, diagonal, lda);
+      if(info != 0) {
+        return info + j;
+      }
+      if(j + jb < n) {
+        int right = aOffset + (j + jb) * lda;
+        // A[j:j+jb, j+jb:n] -= A[0:j, j:j+jb]' * A[0:j, j+jb:n]
+        gemm(true, false, jb, n - j - jb, j, -1.0, a, aOffset + j * lda, lda, a, right, lda,
+            1.0, a, right + j, lda, FULL);
+        trsmLeft(true, true, false, jb, n - j - jb, 1.0, a, diagonal, lda, a, right + j, lda);
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Blocked Cholesky factorization {@code A = L * L'}, as in LAPACK's {@code dpotrf}.
+   */
+  private int potrfLower(int n, double[] a, int aOffset, int lda) {
+    for (int j = 0; j < n; j += NB) {
+      int jb = Math.min(NB, n - j);
+      int diagonal = aOffset + j + j * lda;
+      // A[j:j+jb, j:j+jb] -= A[j:j+jb, 0:j] * A[j:j+jb, 0:j]'
+      gemm(false, true, jb, jb, j, -1.0, a, aOffset + j, lda, a, aOffset + j, lda,
+          1.0, a, diagonal, lda, LOWER);
+
+      int info = unblockedPotrfLower(jb, a, diagonal, lda);
+      if(info != 0) {
+        return info + j;
+      }
+      if(j + jb < n) {
+        int below = aOffset + j + jb;
+        // A[j+jb:n, j:j+jb] -= A[j+jb:n, 0:j] * A[j:j+jb, 0:j]'
+        gemm(false, true, n - j - jb, jb, j, -1.0, a, below, lda, a, aOffset + j, lda,
+            1.0, a, below + j * lda, lda, FULL);
+        trsmRight(false, true, false, n - j - jb, jb, 1.0, a, diagonal, lda, a, below + j * lda, lda);
+      }
+    }
+    return 0;
+  }
+
+  private static int unblockedPotrfUpper(int n, double[] a, int aOffset, int lda) {
+    for (int j = 0; j < n; j++) {
+      int colJ = aOffset + j * lda;
+      double ajj = a[colJ + j];
+      for (int p = 0; p < j; p++) {
+        ajj -= a[colJ + p] * a[colJ + p];
+      }
+      if(!(ajj > 0)) {
+        a[colJ + j] = ajj;
+        return j + 1;
+      }
+      ajj = Math.sqrt(ajj);
+      a[colJ + j] = ajj;
+      for (int i = j + 1; i < n; i++) {
+        int colI = aOffset + i * lda;
+        double sum = a[colI + j];
+        for (int p = 0; p < j; p++) {
+          sum -= a[colJ + p] * a[colI + p];
+        }
+        a[colI + j] = sum / ajj;
+      }
+    }
+    return 0;
+  }
+
+  private static int unblockedPotrfLower(int n, double[] a, int aOffset, int lda) {
+    for (int j = 0; j < n; j++) {
+      double ajj = a[aOffset + j + j * lda];
+      for (int p = 0; p < j; p++) {
+        double ajp = a[aOffset + j + p * lda];
+        ajj -= ajp * ajp;
+      }
+      if(!(ajj > 0)) {
+        a[aOffset + j + j * lda] = ajj;
+        return j + 1;
+      }
+      ajj = Math.sqrt(ajj);
+      a[aOffset + j + j * lda] = ajj;
+      for (int i = j + 1; i < n; i++) {
+        double sum = a[aOffset + i + j * lda];
+        for (int p = 0; p < j; p++) {
+          sum -= a[aOffset + i + p * lda] * a[aOffset + j + p * lda];
+        }
+        a[aOffset + i + j * lda] = sum / ajj;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * @return the offset of element {@code (i, p)} of {@code op(A)}.
+   */
+  private static int offset(boolean trans, int aOffset, int lda, int i, int p) {
+    return trans ? aOffset + p + i * lda : aOffset + i + p * lda;
+  }
+
+  private static boolean intersects(int triangle, int i0, int i1, int j0, int j1) {
+    switch (triangle) {
+      case UPPER:
+        return i0 < j1;
+      case LOWER:
+        return i1 > j0;
+      default:
+        return true;
+    }
+  }
+
+  private static boolean inTriangle(int triangle, int i, int j) {
+    switch (triangle) {
+      case UPPER:
+        return i <= j;
+      case LOWER:
+        return i >= j;
+      default:
+        return true;
+    }
+  }
+
+  /**
+   * @return the first row of column {@code j} in the triangle, if greater than {@code start}.
+   */
+  private static int firstRow(int triangle, int start, int j) {
+    return triangle == LOWER ? Math.max(start, j) : start;
+  }
+
+  /**
+   * @return the end of the rows of column {@code j} in the triangle, if less than {@code end}.
+   */
+  private static int endRow(int triangle, int end, int j) {
+    return triangle == UPPER ? Math.min(end, j + 1) : end;
+  }
+
+  private static boolean isTransposed(String trans) {
+    char c = Character.toUpperCase(trans.charAt(0));
+    if(c == 'N') {
+      return false;
+    } else if(c == 'T' || c == 'C') {
+      return true;
+    }
+    throw new IllegalArgumentException("trans: " + trans);
+  }
+
+  private static int triangle(String uplo) {
+    return flag(uplo, 'U', 'L', "uplo") ? UPPER : LOWER;
+  }
+
+  private static boolean flag(String value, char ifTrue, char ifFalse, String name) {
+    char c = Character.toUpperCase(value.charAt(0));
+    if(c == ifTrue) {
+      return true;
+    } else if(c == ifFalse) {
+      return false;
+    }
+    throw new IllegalArgumentException(name + ": " + value);
+  }
+}
@@ -24,7 +24,6 @@ import org.renjin.invoke.annotations.Builtin;
 import org.renjin.invoke.annotations.Current;
 import org.renjin.invoke.annotations.Generic;
 import org.renjin.invoke.annotations.Internal;
-import org.renjin.pipeliner.VectorPipeliner;
 import org.renjin.primitives.Indexes;
 import org.renjin.primitives.sequence.RepDoubleVector;
 import org.renjin.primitives.sequence.RepLogicalVector;
@@ -198,12 +197,13 @@ public class Matrices {
   }
 
   @Internal
-  public static DoubleVector rowMeans(AtomicVector x,
+  public static DoubleVector rowMeans(@Current Context context,
+                                      AtomicVector x,
                                       int numRows,
                                       int rowLength,
                                       boolean naRm) {
 
-    if(VectorPipeliner.ENABLED) {
+    if(context.isDeferredEvaluationEnabled()) {
       if (!naRm && x.isDeferred()) {
         return new DeferredRowMeans(x, numRows, AttributeMap.EMPTY);
       }
@@ -231,9 +231,9 @@ public class Matrices {
   }
 
   @Internal
-  public static DoubleVector colSums(AtomicVector x, int columnLength, int numColumns, boolean naRm) {
+  public static DoubleVector colSums(@Current Context context, AtomicVector x, int columnLength, int numColumns, boolean naRm) {
     DeferredColSums dcs =  new DeferredColSums(x, numColumns, naRm, AttributeMap.EMPTY);
-    if (!VectorPipeliner.ENABLED) {
+    if (!context.isDeferredEvaluationEnabled()) {
       return (DoubleVector) dcs.forceResult();
     }
     return dcs;
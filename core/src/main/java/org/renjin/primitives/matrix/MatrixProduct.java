@@ -18,7 +18,6 @@
  */
 package org.renjin.primitives.matrix;
 
-import com.github.fommil.netlib.BLAS;
 import org.renjin.eval.EvalException;
 import org.renjin.primitives.sequence.RepDoubleVector;
 import org.renjin.sexp.*;
@@ -377,7 +376,7 @@ class MatrixProduct {
           }
         }
       } else {
-        BLAS.getInstance().dgemm(transa, transb, nrx, ncy, ncx, one,
+        Blas.getInstance().dgemm(transa, transb, nrx, ncy, ncx, one,
             x, nrx, y, nry, zero, z, nrx);
       }
     }
@@ -394,7 +393,7 @@ class MatrixProduct {
     String transb = "N";
     double one = 1.0, zero = 0.0;
     if (nrx > 0 && ncx > 0 && nry > 0 && ncy > 0) {
-      BLAS.getInstance().dgemm(transa, transb, ncx, ncy, nrx, one,
+      Blas.getInstance().dgemm(transa, transb, ncx, ncy, nrx, one,
           x, nrx, y, nry, zero, z, ncx);
     }
 
@@ -410,7 +409,7 @@ class MatrixProduct {
     String transb = "T";
     double one = 1.0, zero = 0.0;
     if (nrx > 0 && ncx > 0 && nry > 0 && ncy > 0) {
-      BLAS.getInstance().dgemm(transa, transb, nrx, nry, ncx, one,
+      Blas.getInstance().dgemm(transa, transb, nrx, nry, ncx, one,
           x, nrx, y, nry, zero, z, nrx);
     }
     return z;
@@ -427,7 +426,7 @@ class MatrixProduct {
 
     int i, j;
     if (nrx > 0 && ncx > 0) {
-      BLAS.getInstance().dsyrk(uplo, trans, ncx, nrx, one, x, nrx, zero, z, ncx);
+      Blas.getInstance().dsyrk(uplo, trans, ncx, nrx, one, x, nrx, zero, z, ncx);
 
       for (i = 1; i < ncx; i++) {
         for (j = 0; j < i; j++) {
@@ -448,7 +447,7 @@ class MatrixProduct {
     double one = 1.0, zero = 0.0;
     int i, j;
     if (nrx > 0 && ncx > 0) {
-      BLAS.getInstance().dsyrk(uplo, trans, nrx, ncx, one, x, nrx, zero, z, nrx);
+      Blas.getInstance().dsyrk(uplo, trans, nrx, ncx, one, x, nrx, zero, z, nrx);
       for (i = 1; i < nrx; i++) {
         for (j = 0; j < i; j++) {
           z[i + nrx *j] = z[j + nrx * i];
@@ -26,6 +26,8 @@ public class BaseNamespace extends Namespace {
 
   public BaseNamespace(Environment baseNamespaceEnvironment) {
     super(new BasePackage(), baseNamespaceEnvironment);
+    // The base namespace is populated by the session before any code is evaluated
+    loaded = true;
     try {
       libraries.add(new DllInfo("appl", Class.forName("org.renjin.appl.Appl")));
       libraries.add(new DllInfo("base", Class.forName("org.renjin.base.Base")));
@@ -21,9 +21,11 @@ package org.renjin.primitives.packaging;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
 import org.apache.commons.vfs2.FileSystemManager;
+import org.renjin.repackaged.guava.io.Files;
 import org.renjin.repackaged.guava.io.Resources;
 import org.renjin.util.NamedByteSource;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 
@@ -55,6 +57,10 @@ public class ClasspathPackage extends FileBasedPackage {
       throw new IOException(String.format("Could not find %s (%s)", name, qualifiedName));
     }
     try {
+      if("file".equals(url.getProtocol())) {
+        // Read the file directly, so that lazy-load frames can be memory-mapped
+        return new NamedByteSource(name, Files.asByteSource(new File(url.toURI())));
+      }
       return new NamedByteSource(name, Resources.asByteSource(url));
     } catch(Exception e) {
       throw new IOException(String.format("Could not load %s (%s)", name, url.toString()), e);
@@ -50,7 +50,7 @@ public class Namespace {
   /**
    * True if this namespace has completed loading
    */
-  boolean loaded;
+  volatile boolean loaded;
 
   public Namespace(Package pkg, Environment namespaceEnvironment) {
     this.pkg = pkg;
@@ -30,10 +30,11 @@ import org.renjin.sexp.FunctionCall;
 import org.renjin.sexp.StringVector;
 import org.renjin.sexp.Symbol;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Session-level registry of namespaces
@@ -57,10 +58,10 @@ public class NamespaceRegistry {
   /**
    * Maps local names to namespaces
    */
-  private Map<Symbol, Namespace> localNameMap = new HashMap<>();
-  private Map<FqPackageName, Namespace> namespaceMap = Maps.newHashMap();
+  private Map<Symbol, Namespace> localNameMap = new ConcurrentHashMap<>();
+  private Map<FqPackageName, Namespace> namespaceMap = new ConcurrentHashMap<>();
 
-  private Map<Environment, Namespace> envirMap = Maps.newIdentityHashMap();
+  private Map<Environment, Namespace> envirMap = Collections.synchronizedMap(Maps.newIdentityHashMap());
 
   private final Namespace baseNamespace;
 
@@ -114,8 +115,27 @@ public class NamespaceRegistry {
     return getNamespace(context, Symbol.get(name));
   }
 
+  /**
+   * Finds the namespace named {@code symbol}, loading it if necessary.
+   *
+   * <p>The registry may be shared by sessions running on different threads, such as sessions forked for
+   * the workers of {@code mclapply()} or created from a template, so namespaces are loaded while holding
+   * the registry's lock. Other threads wait for a namespace to finish loading, while the loading thread
+   * itself can see the partially loaded namespace, as cyclic imports require.</p>
+   */
   public Namespace getNamespace(Context context, Symbol symbol) {
 
+    Namespace localMatch = localNameMap.get(symbol);
+    if(localMatch != null && localMatch.loaded) {
+      return localMatch;
+    }
+    synchronized (this) {
+      return findOrLoadNamespace(context, symbol);
+    }
+  }
+
+  private Namespace findOrLoadNamespace(Context context, Symbol symbol) {
+
     Namespace localMatch = localNameMap.get(symbol);
     if(localMatch != null) {
       return localMatch;
@@ -203,7 +223,7 @@ public class NamespaceRegistry {
   /**
    * Creates a new empty namespace
    */
-  public Namespace createNamespace(Package pkg) {
+  public synchronized Namespace createNamespace(Package pkg) {
     // each namespace has environment which is the leaf in a hierarchy that
     // looks like this:
     // BASE-NS -> IMPORTS -> ENVIRONMENT
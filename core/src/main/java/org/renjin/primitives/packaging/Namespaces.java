@@ -266,5 +266,6 @@ public class Namespaces {
     }
     Environment methodsTable = (Environment) definitionEnv.getVariableUnsafe(S3.METHODS_TABLE);
     methodsTable.setVariableUnsafe(genericName + "." + className, method);
+    context.getSession().getS3DispatchCache().invalidate();
   }
 }
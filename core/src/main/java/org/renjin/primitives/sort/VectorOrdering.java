@@ -0,0 +1,524 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.primitives.sort;
+
+import org.renjin.sexp.*;
+
+import java.util.Arrays;
+
+/**
+ * Computes stable orderings of atomic vectors without boxing, used to implement
+ * {@code order()}, {@code sort()}, {@code rank()} and friends.
+ *
+ * <p>Integer, logical and factor keys are sorted with an LSD radix sort over the range of the
+ * values present. Double keys are mapped to their IEEE bit patterns, flipped so that unsigned
+ * order matches numeric order, and sorted the same way. Character keys are fetched once
+ * and sorted with a merge sort over the cached strings. Any other key falls back to a merge sort
+ * using {@link AtomicVector#compare(int, int)}.</p>
+ *
+ * <p>Multi-column keys are sorted least significant column first. Since every pass is stable,
+ * each column refines the ordering established by the columns to its right.</p>
+ */
+public final class VectorOrdering {
+
+  private static final int DIGIT_BITS = 11;
+  private static final int DIGIT_MASK = (1 << DIGIT_BITS) - 1;
+
+  /**
+   * If the range of keys fits within this many bits, we sort with a single counting pass.
+   */
+  private static final int MAX_COUNTING_SORT_BITS = 16;
+
+  private static final int INSERTION_SORT_THRESHOLD = 32;
+
+  private VectorOrdering() { }
+
+  /**
+   * Computes the stable ordering of a single vector.
+   *
+   * @param x the vector to order
+   * @param naLast true if {@code NA} (and {@code NaN}) values should be placed last, false if they should be
+   *               placed first
+   * @param decreasing true if the values should be ordered in decreasing order.
+   * @return the zero-based permutation which rearranges {@code x} into order
+   */
+  public static int[] order(AtomicVector x, boolean naLast, boolean decreasing) {
+    return order(new AtomicVector[] { x }, naLast, decreasing);
+  }
+
+  /**
+   * Computes the stable ordering of one or more columns of equal length, breaking ties
+   * in the first column by the second, and so on.
+   *
+   * @return the zero-based permutation which rearranges the rows into order
+   */
+  public static int[] order(AtomicVector[] columns, boolean naLast, boolean decreasing) {
+    if(columns.length == 0) {
+      return new int[0];
+    }
+    Workspace workspace = new Workspace(columns[0].length());
+    for (int col = columns.length - 1; col >= 0; col--) {
+      sortBy(workspace, columns[col], naLast, decreasing);
+    }
+    return workspace.perm;
+  }
+
+  private static void sortBy(Workspace ws, AtomicVector column, boolean naLast, boolean decreasing) {
+    if(column instanceof DoubleVector) {
+      sortByDouble(ws, column, naLast, decreasing);
+    } else if(column instanceof IntVector || column instanceof LogicalVector) {
+      sortByInt(ws, column, naLast, decreasing);
+    } else if(column instanceof StringVector) {
+      sortByString(ws, column, naLast, decreasing);
+    } else {
+      sortByComparison(ws, column, naLast, decreasing);
+    }
+  }
+
+  /**
+   * Working storage shared by the passes over each column. The current
+   * ordering is always held in {@code perm}.
+   */
+  private static final class Workspace {
+    private final int length;
+    private final int[] perm;
+    private final int[] permBuffer;
+    private int[] intKeys;
+    private int[] intKeyBuffer;
+    private long[] longKeys;
+    private long[] longKeyBuffer;
+
+    private Workspace(int length) {
+      this.length = length;
+      this.perm = new int[length];
+      this.permBuffer = new int[length];
+      for (int i = 0; i < length; i++) {
+        perm[i] = i;
+      }
+    }
+
+    private void allocateIntKeys() {
+      if(intKeys == null) {
+        intKeys = new int[length];
+        intKeyBuffer = new int[length];
+      }
+    }
+
+    private void allocateLongKeys() {
+      if(longKeys == null) {
+        longKeys = new long[length];
+        longKeyBuffer = new long[length];
+      }
+    }
+  }
+
+  /*
+   * Integer keys
+   */
+
+  private static void sortByInt(Workspace ws, AtomicVector column, boolean naLast, boolean decreasing) {
+    ws.allocateIntKeys();
+    int n = ws.length;
+    int[] perm = ws.perm;
+    int[] keys = ws.intKeys;
+
+    int naCount = 0;
+    for (int k = 0; k < n; k++) {
+      int value = column.getElementAsInt(perm[k]);
+      keys[k] = value;
+      if(value == IntVector.NA) {
+        naCount++;
+      }
+    }
+
+    int from = naLast ? 0 : naCount;
+    int to = from + (n - naCount);
+
+    if(naCount > 0) {
+      // Stable partition of the NAs to one end
+      int[] permBuffer = ws.permBuffer;
+      int[] keyBuffer = ws.intKeyBuffer;
+      int nextValue = from;
+      int nextNA = naLast ? to : 0;
+      for (int k = 0; k < n; k++) {
+        if(keys[k] == IntVector.NA) {
+          permBuffer[nextNA++] = perm[k];
+        } else {
+          keyBuffer[nextValue] = keys[k];
+          permBuffer[nextValue++] = perm[k];
+        }
+      }
+      System.arraycopy(permBuffer, 0, perm, 0, n);
+      System.arraycopy(keyBuffer, from, keys, from, to - from);
+    }
+
+    if(to - from < 2) {
+      return;
+    }
+
+    int min = Integer.MAX_VALUE;
+    int max = Integer.MIN_VALUE;
+    for (int k = from; k < to; k++) {
+      int value = keys[k];
+      if(value < min) {
+        min = value;
+      }
+      if(value > max) {
+        max = value;
+      }
+    }
+
+    // Map keys to unsigned offsets within [0, max - min]
+    for (int k = from; k < to; k++) {
+      keys[k] = decreasing ? (max - keys[k]) : (keys[k] - min);
+    }
+
+    radixSort(ws, from, to, max - min);
+  }
+
+  /**
+   * Sorts {@code ws.perm[from, to)} by the unsigned keys in {@code ws.intKeys[from, to)}, all of which
+   * are less than or equal to {@code range}, treated as an unsigned integer.
+   */
+  private static void radixSort(Workspace ws, int from, int to, int range) {
+    int[] keys = ws.intKeys;
+    int[] perm = ws.perm;
+
+    if(to - from < INSERTION_SORT_THRESHOLD) {
+      insertionSort(keys, perm, from, to);
+      return;
+    }
+
+    int bits = 32 - Integer.numberOfLeadingZeros(range);
+    if(bits == 0) {
+      // All keys are equal
+      return;
+    }
+    int digitBits = bits <= MAX_COUNTING_SORT_BITS ? bits : DIGIT_BITS;
+    int digitMask = (1 << digitBits) - 1;
+    int[] counts = new int[1 << digitBits];
+
+    int[] source = keys;
+    int[] sourcePerm = perm;
+    int[] target = ws.intKeyBuffer;
+    int[] targetPerm = ws.permBuffer;
+
+    for (int shift = 0; shift < bits; shift += digitBits) {
+      Arrays.fill(counts, 0);
+      for (int k = from; k < to; k++) {
+        counts[(source[k] >>> shift) & digitMask]++;
+      }
+      if(counts[(source[from] >>> shift) & digitMask] == to - from) {
+        // Every key has the same digit, nothing to do for this pass
+        continue;
+      }
+      int offset = from;
+      for (int d = 0; d < counts.length; d++) {
+        int count = counts[d];
+        counts[d] = offset;
+        offset += count;
+      }
+      for (int k = from; k < to; k++) {
+        int pos = counts[(source[k] >>> shift) & digitMask]++;
+        target[pos] = source[k];
+        targetPerm[pos] = sourcePerm[k];
+      }
+      int[] tmp = source;
+      source = target;
+      target = tmp;
+      tmp = sourcePerm;
+      sourcePerm = targetPerm;
+      targetPerm = tmp;
+    }
+
+    if(sourcePerm != perm) {
+      System.arraycopy(sourcePerm, from, perm, from, to - from);
+    }
+  }
+
+  private static void insertionSort(int[] keys, int[] perm, int from, int to) {
+    for (int i = from + 1; i < to; i++) {
+      int key = keys[i];
+      int row = perm[i];
+      int j = i - 1;
+      while(j >= from && Integer.compareUnsigned(keys[j], key) > 0) {
+        keys[j + 1] = keys[j];
+        perm[j + 1] = perm[j];
+        j--;
+      }
+      keys[j + 1] = key;
+      perm[j + 1] = row;
+    }
+  }
+
+  /*
+   * Double keys
+   */
+
+  private static void sortByDouble(Workspace ws, AtomicVector column, boolean naLast, boolean decreasing) {
+    ws.allocateLongKeys();
+    int n = ws.length;
+    int[] perm = ws.perm;
+    long[] keys = ws.longKeys;
+
+    // NaN values are ordered together with NA, and are partitioned out
+    // of the way before we compute the keys.
+    int naCount = 0;
+    for (int k = 0; k < n; k++) {
+      double value = column.getElementAsDouble(perm[k]);
+      if(Double.isNaN(value)) {
+        naCount++;
+        keys[k] = 0;
+      } else {
+        keys[k] = sortableBits(value);
+      }
+    }
+
+    int from = naLast ? 0 : naCount;
+    int to = from + (n - naCount);
+
+    if(naCount > 0) {
+      int[] permBuffer = ws.permBuffer;
+      long[] keyBuffer = ws.longKeyBuffer;
+      int nextValue = from;
+      int nextNA = naLast ? to : 0;
+      for (int k = 0; k < n; k++) {
+        if(Double.isNaN(column.getElementAsDouble(perm[k]))) {
+          permBuffer[nextNA++] = perm[k];
+        } else {
+          keyBuffer[nextValue] = keys[k];
+          permBuffer[nextValue++] = perm[k];
+        }
+      }
+      System.arraycopy(permBuffer, 0, perm, 0, n);
+      System.arraycopy(keyBuffer, from, keys, from, to - from);
+    }
+
+    if(to - from < 2) {
+      return;
+    }
+
+    long min = -1L;
+    long max = 0L;
+    for (int k = from; k < to; k++) {
+      long key = keys[k];
+      if(Long.compareUnsigned(key, min) < 0) {
+        min = key;
+      }
+      if(Long.compareUnsigned(key, max) > 0) {
+        max = key;
+      }
+    }
+
+    for (int k = from; k < to; k++) {
+      keys[k] = decreasing ? (max - keys[k]) : (keys[k] - min);
+    }
+
+    radixSort(ws, from, to, max - min);
+  }
+
+  /**
+   * Maps a (non-NaN) double to a long whose unsigned ordering matches the numeric ordering of
+   * the doubles. Positive and negative zero are mapped to the same key.
+   */
+  static long sortableBits(double value) {
+    if(value == 0) {
+      value = 0d;
+    }
+    long bits = Double.doubleToRawLongBits(value);
+    return bits ^ ((bits >> 63) | Long.MIN_VALUE);
+  }
+
+  private static void radixSort(Workspace ws, int from, int to, long range) {
+    long[] keys = ws.longKeys;
+    int[] perm = ws.perm;
+
+    if(to - from < INSERTION_SORT_THRESHOLD) {
+      insertionSort(keys, perm, from, to);
+      return;
+    }
+
+    int bits = 64 - Long.numberOfLeadingZeros(range);
+    if(bits == 0) {
+      return;
+    }
+    int digitBits = bits <= MAX_COUNTING_SORT_BITS ? bits : DIGIT_BITS;
+    int digitMask = (1 << digitBits) - 1;
+    int[] counts = new int[1 << digitBits];
+
+    long[] source = keys;
+    int[] sourcePerm = perm;
+    long[] target = ws.longKeyBuffer;
+    int[] targetPerm = ws.permBuffer;
+
+    for (int shift = 0; shift < bits; shift += digitBits) {
+      Arrays.fill(counts, 0);
+      for (int k = from; k < to; k++) {
+        counts[(int)(source[k] >>> shift) & digitMask]++;
+      }
+      if(counts[(int)(source[from] >>> shift) & digitMask] == to - from) {
+        continue;
+      }
+      int offset = from;
+      for (int d = 0; d < counts.length; d++) {
+        int count = counts[d];
+        counts[d] = offset;
+        offset += count;
+      }
+      for (int k = from; k < to; k++) {
+        int pos = counts[(int)(source[k] >>> shift) & digitMask]++;
+        target[pos] = source[k];
+        targetPerm[pos] = sourcePerm[k];
+      }
+      long[] tmp = source;
+      source = target;
+      target = tmp;
+      int[] tmpPerm = sourcePerm;
+      sourcePerm = targetPerm;
+      targetPerm = tmpPerm;
+    }
+
+    if(sourcePerm != perm) {
+      System.arraycopy(sourcePerm, from, perm, from, to - from);
+    }
+  }
+
+  private static void insertionSort(long[] keys, int[] perm, int from, int to) {
+    for (int i = from + 1; i < to; i++) {
+      long key = keys[i];
+      int row = perm[i];
+      int j = i - 1;
+      while(j >= from && Long.compareUnsigned(keys[j], key) > 0) {
+        keys[j + 1] = keys[j];
+        perm[j + 1] = perm[j];
+        j--;
+      }
+      keys[j + 1] = key;
+      perm[j + 1] = row;
+    }
+  }
+
+  /*
+   * Character and other keys
+   */
+
+  private interface RowComparator {
+    int compare(int row1, int row2);
+  }
+
+  private static void sortByString(Workspace ws, AtomicVector column, boolean naLast, boolean decreasing) {
+    // Fetch each string only once, rather than on every comparison
+    String[] strings = new String[ws.length];
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = column.getElementAsString(i);
+    }
+    int naCount = partitionNA(ws, column, naLast);
+    int from = naLast ? 0 : naCount;
+    int to = from + (ws.length - naCount);
+
+    if(decreasing) {
+      mergeSort(ws.perm, ws.permBuffer, from, to, (row1, row2) -> strings[row2].compareTo(strings[row1]));
+    } else {
+      mergeSort(ws.perm, ws.permBuffer, from, to, (row1, row2) -> strings[row1].compareTo(strings[row2]));
+    }
+  }
+
+  private static void sortByComparison(Workspace ws, AtomicVector column, boolean naLast, boolean decreasing) {
+    int naCount = partitionNA(ws, column, naLast);
+    int from = naLast ? 0 : naCount;
+    int to = from + (ws.length - naCount);
+
+    if(decreasing) {
+      mergeSort(ws.perm, ws.permBuffer, from, to, (row1, row2) -> column.compare(row2, row1));
+    } else {
+      mergeSort(ws.perm, ws.permBuffer, from, to, column::compare);
+    }
+  }
+
+  /**
+   * Moves the rows with NA values to the start or end of the ordering, without disturbing
+   * the relative order of the remaining rows.
+   *
+   * @return the number of NA rows
+   */
+  private static int partitionNA(Workspace ws, AtomicVector column, boolean naLast) {
+    int n = ws.length;
+    int[] perm = ws.perm;
+    int naCount = 0;
+    for (int k = 0; k < n; k++) {
+      if(column.isElementNA(perm[k])) {
+        naCount++;
+      }
+    }
+    if(naCount == 0) {
+      return 0;
+    }
+    int[] permBuffer = ws.permBuffer;
+    int nextValue = naLast ? 0 : naCount;
+    int nextNA = naLast ? (n - naCount) : 0;
+    for (int k = 0; k < n; k++) {
+      if(column.isElementNA(perm[k])) {
+        permBuffer[nextNA++] = perm[k];
+      } else {
+        permBuffer[nextValue++] = perm[k];
+      }
+    }
+    System.arraycopy(permBuffer, 0, perm, 0, n);
+
+    return naCount;
+  }
+
+  private static void mergeSort(int[] perm, int[] buffer, int from, int to, RowComparator comparator) {
+    if(to - from < INSERTION_SORT_THRESHOLD) {
+      for (int i = from + 1; i < to; i++) {
+        int row = perm[i];
+        int j = i - 1;
+        while(j >= from && comparator.compare(perm[j], row) > 0) {
+          perm[j + 1] = perm[j];
+          j--;
+        }
+        perm[j + 1] = row;
+      }
+      return;
+    }
+    int mid = (from + to) >>> 1;
+    mergeSort(perm, buffer, from, mid, comparator);
+    mergeSort(perm, buffer, mid, to, comparator);
+
+    if(comparator.compare(perm[mid - 1], perm[mid]) <= 0) {
+      // Already in order
+      return;
+    }
+
+    System.arraycopy(perm, from, buffer, from, mid - from);
+    int i = from;
+    int j = mid;
+    int k = from;
+    while(i < mid && j < to) {
+      if(comparator.compare(perm[j], buffer[i]) < 0) {
+        perm[k++] = perm[j++];
+      } else {
+        perm[k++] = buffer[i++];
+      }
+    }
+    while(i < mid) {
+      perm[k++] = buffer[i++];
+    }
+  }
+}
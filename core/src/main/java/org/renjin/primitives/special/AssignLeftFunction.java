@@ -55,9 +55,22 @@ public class AssignLeftFunction extends SpecialFunction {
     // x$a[3] <- 4
     // class(x$a[3]) <- "foo"
 
+    ElementReplacement replacement = null;
+    if(lhs instanceof FunctionCall && isLocalAssignment()) {
+      replacement = ElementReplacement.match(context, rho, (FunctionCall) lhs, value);
+    }
+
     SEXP evaluatedValue = value.eval(context, rho);
     SEXP rhs = value.repromise(evaluatedValue);
 
+    if(replacement != null) {
+      lhs = replacement.apply(context, evaluatedValue);
+      if(lhs == null) {
+        context.setInvisibleFlag();
+        return evaluatedValue;
+      }
+    }
+
     while(lhs instanceof FunctionCall) {
       FunctionCall call = (FunctionCall) lhs;
       FunctionCall setterCall = setterCall(call, rhs);
@@ -117,6 +130,14 @@ public class AssignLeftFunction extends SpecialFunction {
     throw new EvalException("invalid function in complex assignment");
   }
 
+  /**
+   * @return {@code true} if this function assigns to the environment in which it is called, allowing
+   * simple replacements like {@code x[i] <- v} to update an unshared vector in place.
+   */
+  protected boolean isLocalAssignment() {
+    return true;
+  }
+
   protected void assignResult(Context context, Environment rho, Symbol target, SEXP rhs) {
     if(target.isReservedWord() && rhs instanceof Function) {
       context.warn("Renjin does not honor redefinition of '" + target.getPrintName() + "' function");
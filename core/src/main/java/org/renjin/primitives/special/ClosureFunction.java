@@ -44,6 +44,16 @@ public class ClosureFunction extends SpecialFunction {
 
     SEXP body = call.getArgument(1);
 
-    return new Closure(rho, (PairList) formals, body);
+    // Closures created by the same expression share the same layout, which is computed
+    // when the expression is first evaluated.
+    ClosureLayout layout;
+    if(call.cache instanceof ClosureLayout) {
+      layout = (ClosureLayout) call.cache;
+    } else {
+      layout = ClosureLayout.analyze((PairList) formals, body);
+      call.cache = layout;
+    }
+
+    return new Closure(rho, (PairList) formals, body, layout);
   }
 }
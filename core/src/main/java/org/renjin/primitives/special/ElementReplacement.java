@@ -0,0 +1,437 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.primitives.special;
+
+import org.renjin.eval.Context;
+import org.renjin.primitives.Primitives;
+import org.renjin.repackaged.guava.collect.ImmutableSet;
+import org.renjin.sexp.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Carries out element replacements of the form {@code x[i] <- v}, {@code x[[i]] <- v} and
+ * {@code x[i, j] <- v} by updating the vector bound to {@code x} in place when that binding is
+ * the vector's only reference.
+ *
+ * <p>The first replacement copies {@code x} as {@code [<-} would, and binds the copy as an
+ * {@link OwnableVector} owned by the environment. Subsequent replacements write into the copy
+ * directly, growing it geometrically when assigning past its end, until the binding is read by
+ * anything else.</p>
+ *
+ * <p>Reading an owned vector in the index or value of the replacement, as in
+ * {@code x[i] <- x[i - 1] + 1}, would normally release its ownership. When an atomic vector is
+ * updated we keep ownership in that case if the expressions consist only of builtins from
+ * {@link #PURE_BUILTINS} applied to unclassed values, as these cannot hold on to a reference
+ * beyond the evaluation of the expression.</p>
+ *
+ * <p>Anything else, including replacements that would change the type of {@code x} or extend
+ * a vector with attributes, is left to the regular {@code [<-} and {@code [[<-} builtins.</p>
+ */
+final class ElementReplacement {
+
+  private static final Symbol SUBSET = Symbol.get("[");
+  private static final Symbol ELEMENT = Symbol.get("[[");
+  private static final Symbol SUBSET_ASSIGN = Symbol.get("[<-");
+  private static final Symbol ELEMENT_ASSIGN = Symbol.get("[[<-");
+
+  private static final Set<Symbol> PURE_BUILTINS = symbols(
+      "(", "[", "[[", "+", "-", "*", "/", "^", "%%", "%/%",
+      "==", "!=", "<", ">", "<=", ">=", "!",
+      "length", "abs", "sqrt", "exp", "floor", "ceiling", "sum", "min", "max");
+
+  private final Context context;
+  private final Environment rho;
+  private final FunctionCall call;
+  private final Symbol target;
+  private final boolean element;
+
+  /**
+   * The vector owned by the {@code target} binding before the value was evaluated, or {@code null}
+   */
+  private final OwnableVector owned;
+
+  /**
+   * True if evaluating the value and indexes cannot leave behind a reference to any vector they read.
+   */
+  private boolean pure = true;
+
+  /**
+   * Owned vectors read by the value or indexes, whose ownership is restored if they are pure.
+   */
+  private List<OwnedBinding> reads = null;
+
+  private ElementReplacement(Context context, Environment rho, FunctionCall call, Symbol target, boolean element) {
+    this.context = context;
+    this.rho = rho;
+    this.call = call;
+    this.target = target;
+    this.element = element;
+    this.owned = rho.getOwnedVariable(target);
+  }
+
+  /**
+   * Matches the left-hand side of an assignment against {@code x[i]}, {@code x[[i]]} and
+   * {@code x[i, j]}. This must be called before the value is evaluated.
+   *
+   * @return a replacement to {@link #apply(Context, SEXP)} once the value has been evaluated,
+   * or {@code null} if {@code lhs} does not have a supported form.
+   */
+  static ElementReplacement match(Context context, Environment rho, FunctionCall lhs, SEXP valueExpression) {
+    boolean element;
+    if(lhs.getFunction() == SUBSET) {
+      element = false;
+    } else if(lhs.getFunction() == ELEMENT) {
+      element = true;
+    } else {
+      return null;
+    }
+
+    PairList arguments = lhs.getArguments();
+    int argumentCount = arguments.length();
+    if(argumentCount < 2 || argumentCount > 3) {
+      return null;
+    }
+    for (PairList.Node node : arguments.nodes()) {
+      SEXP argument = node.getValue();
+      if(node.hasTag() || argument == Symbol.MISSING_ARG || argument == Symbols.ELLIPSES) {
+        return null;
+      }
+    }
+    SEXP target = lhs.getArgument(0);
+    if(!(target instanceof Symbol) || ((Symbol) target).isVarArgReference()) {
+      return null;
+    }
+
+    ElementReplacement replacement = new ElementReplacement(context, rho, lhs, (Symbol) target, element);
+    replacement.checkPurity(valueExpression);
+    for (int i = 1; i < argumentCount; i++) {
+      replacement.checkPurity(lhs.<SEXP>getArgument(i));
+    }
+    return replacement;
+  }
+
+  /**
+   * Performs the replacement if possible.
+   *
+   * @param value the evaluated right-hand side of the assignment
+   * @return {@code null} if the replacement has been made, or otherwise the left-hand side to evaluate
+   * through the regular replacement functions, with any index arguments that have already been
+   * evaluated wrapped in promises.
+   */
+  FunctionCall apply(Context context, SEXP value) {
+
+    Symbol setterName = element ? ELEMENT_ASSIGN : SUBSET_ASSIGN;
+    if(rho.findFunction(context, setterName) != Primitives.getBuiltin(setterName)) {
+      return call;
+    }
+
+    int indexCount = call.getArguments().length() - 1;
+    SEXP[] indexes = new SEXP[indexCount];
+    for (int i = 0; i < indexCount; i++) {
+      indexes[i] = context.evaluate(call.getArgument(i + 1), rho);
+    }
+
+    if(tryReplace(context, indexes, value)) {
+      return null;
+    }
+
+    // Fall back to the regular replacement function, without evaluating the indexes again
+    PairList.Builder arguments = new PairList.Builder();
+    arguments.add(target);
+    for (int i = 0; i < indexCount; i++) {
+      arguments.add(call.getArgument(i + 1).repromise(indexes[i]));
+    }
+    return new FunctionCall(call.getFunction(), arguments.build());
+  }
+
+  private boolean tryReplace(Context context, SEXP[] indexes, SEXP value) {
+    SEXP current = rho.peekVariable(target);
+    if(!(current instanceof Vector) || rho.bindingIsLocked(target) || rho.isActiveBinding(target)) {
+      return false;
+    }
+
+    // The value is also the result of the assignment, so a vector that is the value may be bound elsewhere
+    // afterwards, as in y <- (x[1] <- x), and must not be updated in place later.
+    if(current == owned && current != value && (owned.isOwnedBy(rho) || (pure && !(owned instanceof ListVector)))) {
+      if(!replace(owned, indexes, value)) {
+        return false;
+      }
+      owned.setOwner(rho);
+
+    } else {
+      OwnableVector copy = copyOf((Vector) current);
+      if(copy == null || !replace(copy, indexes, value)) {
+        return false;
+      }
+      rho.setOwnedVariable(context, target, copy);
+    }
+
+    if(reads != null && pure && !(current instanceof ListVector)) {
+      for (OwnedBinding read : reads) {
+        if(read.vector != value) {
+          read.restore();
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Stores {@code value} into {@code vector} if the replacement is one we can carry out without
+   * changing the type or the attributes of the vector.
+   *
+   * @return {@code false} if {@code vector} has not been modified.
+   */
+  private boolean replace(OwnableVector vector, SEXP[] indexes, SEXP value) {
+    if(vector.isObject()) {
+      return false;
+    }
+    int index = linearIndex((Vector) vector, indexes);
+    if(index < 0) {
+      return false;
+    }
+    if(index >= vector.length() && vector.getAttributes() != AttributeMap.EMPTY) {
+      return false;
+    }
+
+    if(vector instanceof ListVector) {
+      SEXP elementValue = listElement(value);
+      if(elementValue == null || elementValue == vector) {
+        return false;
+      }
+      ((ListVector) vector).setElementInPlace(index, elementValue);
+      return true;
+    }
+
+    if(!(value instanceof AtomicVector) || value.length() != 1 || value.isObject()) {
+      return false;
+    }
+    AtomicVector atomicValue = (AtomicVector) value;
+
+    if(vector instanceof DoubleArrayVector) {
+      if(atomicValue instanceof DoubleVector || atomicValue instanceof IntVector ||
+          atomicValue instanceof LogicalVector) {
+        ((DoubleArrayVector) vector).setElementInPlace(index, atomicValue.getElementAsDouble(0));
+        return true;
+      }
+    } else if(vector instanceof IntArrayVector) {
+      if(atomicValue instanceof IntVector || atomicValue instanceof LogicalVector) {
+        ((IntArrayVector) vector).setElementInPlace(index, atomicValue.getElementAsInt(0));
+        return true;
+      }
+    } else if(vector instanceof StringArrayVector) {
+      if(atomicValue instanceof StringVector) {
+        ((StringArrayVector) vector).setElementInPlace(index, atomicValue.getElementAsString(0));
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the value to store in a list, or {@code null} if {@code value} would delete the
+   * element or requires coercion.
+   */
+  private SEXP listElement(SEXP value) {
+    if(element) {
+      return value == Null.INSTANCE ? null : value;
+    }
+    if(value.getClass() == ListVector.class && value.length() == 1 && !value.isObject()) {
+      return ((ListVector) value).getElementAsSEXP(0);
+    }
+    return null;
+  }
+
+  /**
+   * @return the zero-based index of the element to replace, or -1 if the indexes are not positive
+   * scalars within the bounds of the vector. A single index may point past the end of the vector.
+   */
+  private static int linearIndex(Vector vector, SEXP[] indexes) {
+    if(indexes.length == 1) {
+      return scalarIndex(indexes[0]);
+    }
+    Vector dim = vector.getAttributes().getDim();
+    if(dim.length() != 2) {
+      return -1;
+    }
+    int row = scalarIndex(indexes[0]);
+    int col = scalarIndex(indexes[1]);
+    int nrows = dim.getElementAsInt(0);
+    int ncols = dim.getElementAsInt(1);
+    if(row < 0 || row >= nrows || col < 0 || col >= ncols) {
+      return -1;
+    }
+    return row + col * nrows;
+  }
+
+  private static int scalarIndex(SEXP index) {
+    if(index.length() != 1 || index.isObject()) {
+      return -1;
+    }
+    if(index instanceof IntVector) {
+      int i = ((IntVector) index).getElementAsInt(0);
+      return i >= 1 ? i - 1 : -1;
+    }
+    if(index instanceof DoubleVector) {
+      double d = ((DoubleVector) index).getElementAsDouble(0);
+      return d >= 1 && d < Integer.MAX_VALUE ? (int) d - 1 : -1;
+    }
+    return -1;
+  }
+
+  /**
+   * @return a private copy of {@code vector} that may be owned, or {@code null} if {@code vector}
+   * is not of a supported type.
+   */
+  private static OwnableVector copyOf(Vector vector) {
+    if(vector.isObject()) {
+      return null;
+    }
+    if(vector instanceof DoubleVector) {
+      return new DoubleArrayVector((AtomicVector) vector);
+    }
+    if(vector instanceof IntVector) {
+      return new IntArrayVector((AtomicVector) vector);
+    }
+    if(vector instanceof StringVector) {
+      return new StringArrayVector(((StringVector) vector).toArray(), vector.getAttributes());
+    }
+    if(vector.getClass() == ListVector.class) {
+      return new ListVector(((ListVector) vector).toArrayUnsafe(), vector.getAttributes());
+    }
+    return null;
+  }
+
+  /**
+   * Clears {@link #pure} unless evaluating {@code expression} in {@link #rho} runs no closures, forces
+   * no promises and calls only builtins that do not retain their arguments.
+   */
+  private void checkPurity(SEXP expression) {
+    if(!pure) {
+      return;
+    }
+    if(expression instanceof Symbol) {
+      checkPurity((Symbol) expression);
+
+    } else if(expression instanceof FunctionCall) {
+      FunctionCall call = (FunctionCall) expression;
+      if(!PURE_BUILTINS.contains(call.getFunction()) ||
+          lookupFunction((Symbol) call.getFunction()) != Primitives.getBuiltin((Symbol) call.getFunction())) {
+        pure = false;
+        return;
+      }
+      for (SEXP argument : call.getArguments().values()) {
+        checkPurity(argument);
+      }
+
+    } else if(expression instanceof Promise || expression.isObject()) {
+      pure = false;
+    }
+  }
+
+  private void checkPurity(Symbol symbol) {
+    if(symbol == Symbols.ELLIPSES || symbol == Symbol.MISSING_ARG || symbol.isVarArgReference()) {
+      pure = false;
+      return;
+    }
+    for (Environment env = rho; env != Environment.EMPTY; env = env.getParent(context)) {
+      if(env.isActiveBinding(symbol)) {
+        break;
+      }
+      SEXP value = env.peekVariable(symbol);
+      if(value != Symbol.UNBOUND_VALUE) {
+        if(value instanceof Promise) {
+          if(!((Promise) value).isEvaluated()) {
+            break;
+          }
+          value = ((Promise) value).getValue();
+        }
+        if(value.isObject()) {
+          break;
+        }
+        if(value instanceof OwnableVector && ((OwnableVector) value).isOwnedBy(env)) {
+          if(reads == null) {
+            reads = new ArrayList<>();
+          }
+          reads.add(new OwnedBinding(env, symbol, (OwnableVector) value));
+        }
+        return;
+      }
+    }
+    pure = false;
+  }
+
+  /**
+   * Looks up a function without forcing promises or invoking active bindings.
+   *
+   * @return the function bound to {@code symbol}, or {@code null} if it cannot be determined without
+   * evaluating anything.
+   */
+  private Function lookupFunction(Symbol symbol) {
+    for (Environment env = rho; env != Environment.EMPTY; env = env.getParent(context)) {
+      if(env.isActiveBinding(symbol)) {
+        return null;
+      }
+      SEXP value = env.peekVariable(symbol);
+      if(value instanceof Promise) {
+        if(!((Promise) value).isEvaluated()) {
+          return null;
+        }
+        value = ((Promise) value).getValue();
+      }
+      if(value instanceof Function) {
+        return (Function) value;
+      }
+    }
+    return null;
+  }
+
+  private static Set<Symbol> symbols(String... names) {
+    ImmutableSet.Builder<Symbol> set = ImmutableSet.builder();
+    for (String name : names) {
+      set.add(Symbol.get(name));
+    }
+    return set.build();
+  }
+
+  /**
+   * An owned vector read while evaluating the replacement. Its ownership may only be restored if it is
+   * still bound to the same symbol and has not escaped as the result of the assignment.
+   */
+  private static class OwnedBinding {
+    private final Environment environment;
+    private final Symbol symbol;
+    private final OwnableVector vector;
+
+    OwnedBinding(Environment environment, Symbol symbol, OwnableVector vector) {
+      this.environment = environment;
+      this.symbol = symbol;
+      this.vector = vector;
+    }
+
+    void restore() {
+      if(environment.peekVariable(symbol) == vector) {
+        vector.setOwner(environment);
+      }
+    }
+  }
+}
@@ -19,7 +19,6 @@
 package org.renjin.primitives.special;
 
 import org.renjin.eval.Context;
-import org.renjin.pipeliner.VectorPipeliner;
 import org.renjin.sexp.*;
 
 public class IfFunction extends SpecialFunction {
@@ -35,7 +34,7 @@ public class IfFunction extends SpecialFunction {
           context.evaluate( call.getArguments().getElementAsSEXP(0), rho));
 
     // force any deferred operations
-    if(VectorPipeliner.ENABLED) {
+    if(context.isDeferredEvaluationEnabled()) {
       condition = context.materialize(condition);
     }
 
@@ -29,10 +29,15 @@ public class ReassignLeftFunction extends AssignLeftFunction {
     super("<<-");
   }
   
+  @Override
+  protected boolean isLocalAssignment() {
+    return false;
+  }
+
   @Override
   protected void assignResult(Context context, Environment rho, Symbol lhs, SEXP rhs) {
 
-    for(Environment env : rho.parents()) {
+    for(Environment env : rho.parents(context)) {
       if(env.hasVariable(lhs))  {
         env.setVariable(context, lhs, rhs);
         return;
@@ -0,0 +1,136 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.primitives.summary;
+
+import org.renjin.primitives.vector.DeferredComputation;
+import org.renjin.sexp.AttributeMap;
+import org.renjin.sexp.DoubleVector;
+import org.renjin.sexp.SEXP;
+import org.renjin.sexp.Vector;
+
+/**
+ * Deferred result of {@code pmin(x, y)} or {@code pmax(x, y)} over two double vectors
+ * without {@code na.rm}.
+ *
+ * <p>Each subclass exposes a static {@code compute(double, double)} method, so the
+ * {@link org.renjin.pipeliner.VectorPipeliner} can inline the comparison into a fused loop
+ * rather than materializing the intermediate vector.</p>
+ */
+public abstract class DeferredParallelExtreme extends DoubleVector implements DeferredComputation {
+
+  protected final Vector x;
+  protected final Vector y;
+  private final int xLength;
+  private final int yLength;
+  private final int length;
+
+  protected DeferredParallelExtreme(Vector x, Vector y, AttributeMap attributes) {
+    super(attributes);
+    this.x = x;
+    this.y = y;
+    this.xLength = x.length();
+    this.yLength = y.length();
+    this.length = Math.max(xLength, yLength);
+  }
+
+  @Override
+  public final Vector[] getOperands() {
+    return new Vector[] { x, y };
+  }
+
+  @Override
+  public final int length() {
+    return length;
+  }
+
+  @Override
+  public final boolean isDeferred() {
+    return true;
+  }
+
+  @Override
+  public final boolean isConstantAccessTime() {
+    return x.isConstantAccessTime() && y.isConstantAccessTime();
+  }
+
+  @Override
+  public final double getElementAsDouble(int index) {
+    return apply(x.getElementAsDouble(index % xLength), y.getElementAsDouble(index % yLength));
+  }
+
+  protected abstract double apply(double a, double b);
+
+  public static final class Min extends DeferredParallelExtreme {
+
+    public Min(Vector x, Vector y, AttributeMap attributes) {
+      super(x, y, attributes);
+    }
+
+    public static double compute(double a, double b) {
+      if (Double.isNaN(b) || (!Double.isNaN(a) && b < a)) {
+        return b;
+      }
+      return a;
+    }
+
+    @Override
+    protected double apply(double a, double b) {
+      return compute(a, b);
+    }
+
+    @Override
+    public String getComputationName() {
+      return "pmin";
+    }
+
+    @Override
+    protected SEXP cloneWithNewAttributes(AttributeMap attributes) {
+      return new Min(x, y, attributes);
+    }
+  }
+
+  public static final class Max extends DeferredParallelExtreme {
+
+    public Max(Vector x, Vector y, AttributeMap attributes) {
+      super(x, y, attributes);
+    }
+
+    public static double compute(double a, double b) {
+      if (Double.isNaN(b) || (!Double.isNaN(a) && b > a)) {
+        return b;
+      }
+      return a;
+    }
+
+    @Override
+    protected double apply(double a, double b) {
+      return compute(a, b);
+    }
+
+    @Override
+    public String getComputationName() {
+      return "pmax";
+    }
+
+    @Override
+    protected SEXP cloneWithNewAttributes(AttributeMap attributes) {
+      return new Max(x, y, attributes);
+    }
+  }
+}
@@ -28,7 +28,12 @@ import org.renjin.sexp.Vector;
 public abstract class DeferredSummary extends DoubleVector implements MemoizedComputation {
   protected final Vector vector;
   private double result;
-  private boolean calculated = false;
+
+  /**
+   * Set after {@code result}, so that a result computed by the {@link org.renjin.pipeliner.VectorPipeliner}
+   * on another thread is safely published.
+   */
+  private volatile boolean calculated = false;
 
   public DeferredSummary(Vector vector, AttributeMap attributes) {
     super(attributes);
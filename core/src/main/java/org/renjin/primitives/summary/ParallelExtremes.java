@@ -0,0 +1,206 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.primitives.summary;
+
+import org.renjin.eval.Context;
+import org.renjin.eval.EvalException;
+import org.renjin.sexp.*;
+
+/**
+ * Computes the parallel minima and maxima for {@code pmin()} and {@code pmax()}.
+ *
+ * <p>The result is accumulated in a primitive {@code double[]} or {@code int[]} array,
+ * one argument at a time, so that no element is boxed. NA handling follows GNU R: without
+ * {@code na.rm}, an NA or NaN argument always replaces the current result, and with
+ * {@code na.rm}, an NA result is replaced by the next value.</p>
+ *
+ * <p>When deferred evaluation is enabled, {@code pmin(x, y)} and {@code pmax(x, y)} on long
+ * double vectors return a {@link DeferredParallelExtreme} which the
+ * {@link org.renjin.pipeliner.VectorPipeliner} can fuse into a surrounding loop.</p>
+ */
+public final class ParallelExtremes {
+
+  /**
+   * Minimum length above which a two-argument call returns a deferred result.
+   */
+  private static final int DEFERRED_THRESHOLD = 100000;
+
+  private ParallelExtremes() { }
+
+  public static Vector pmin(Context context, boolean naRm, ListVector arguments) {
+    return compute(context, naRm, arguments, false);
+  }
+
+  public static Vector pmax(Context context, boolean naRm, ListVector arguments) {
+    return compute(context, naRm, arguments, true);
+  }
+
+  private static Vector compute(Context context, boolean naRm, ListVector arguments, boolean max) {
+    int argumentCount = arguments.length();
+    if(argumentCount == 0) {
+      throw new EvalException("no arguments");
+    }
+
+    boolean realResult = false;
+    boolean anyEmpty = false;
+    int resultLength = 0;
+    for (int i = 0; i < argumentCount; i++) {
+      SEXP argument = arguments.getElementAsSEXP(i);
+      if (argument instanceof DoubleVector) {
+        realResult = true;
+      } else if (argument.length() > 0 && !(argument instanceof IntVector || argument instanceof LogicalVector)) {
+        throw new EvalException("cannot handle argument of type '%s'", argument.getTypeName());
+      }
+      int length = argument.length();
+      if (length == 0) {
+        anyEmpty = true;
+      } else if (length > resultLength) {
+        resultLength = length;
+      }
+    }
+
+    if (anyEmpty) {
+      return realResult ? DoubleArrayVector.EMPTY : IntVector.EMPTY;
+    }
+
+    for (int i = 0; i < argumentCount; i++) {
+      if (resultLength % arguments.getElementAsSEXP(i).length() != 0) {
+        context.warn("an argument will be fractionally recycled");
+        break;
+      }
+    }
+
+    if (realResult) {
+      if (argumentCount == 2 && !naRm && context.isDeferredEvaluationEnabled()) {
+        Vector x = (Vector) arguments.getElementAsSEXP(0);
+        Vector y = (Vector) arguments.getElementAsSEXP(1);
+        if (x instanceof DoubleVector && y instanceof DoubleVector &&
+            (x.isDeferred() || y.isDeferred() || resultLength > DEFERRED_THRESHOLD)) {
+          return max ? new DeferredParallelExtreme.Max(x, y, AttributeMap.EMPTY) :
+                       new DeferredParallelExtreme.Min(x, y, AttributeMap.EMPTY);
+        }
+      }
+      return DoubleArrayVector.unsafe(computeDouble(arguments, resultLength, naRm, max));
+    } else {
+      return IntArrayVector.unsafe(computeInt(arguments, resultLength, naRm, max));
+    }
+  }
+
+  private static double[] computeDouble(ListVector arguments, int resultLength, boolean naRm, boolean max) {
+    double[] result = new double[resultLength];
+    fill(result, (Vector) arguments.getElementAsSEXP(0));
+
+    for (int argumentIndex = 1; argumentIndex < arguments.length(); argumentIndex++) {
+      Vector argument = (Vector) arguments.getElementAsSEXP(argumentIndex);
+      int length = argument.length();
+      double[] array = (argument instanceof DoubleArrayVector) ?
+          ((DoubleArrayVector) argument).toDoubleArrayUnsafe() : null;
+
+      int j = 0;
+      for (int i = 0; i < resultLength; i++) {
+        double r = result[i];
+        double x = array != null ? array[j] : argument.getElementAsDouble(j);
+        boolean replace;
+        if (Double.isNaN(r)) {
+          replace = naRm || Double.isNaN(x);
+        } else if (Double.isNaN(x)) {
+          replace = !naRm;
+        } else {
+          replace = max ? x > r : x < r;
+        }
+        if (replace) {
+          result[i] = x;
+        }
+        if (++j == length) {
+          j = 0;
+        }
+      }
+    }
+    return result;
+  }
+
+  private static int[] computeInt(ListVector arguments, int resultLength, boolean naRm, boolean max) {
+    int[] result = new int[resultLength];
+    fill(result, (Vector) arguments.getElementAsSEXP(0));
+
+    for (int argumentIndex = 1; argumentIndex < arguments.length(); argumentIndex++) {
+      Vector argument = (Vector) arguments.getElementAsSEXP(argumentIndex);
+      int length = argument.length();
+      int[] array = (argument instanceof IntArrayVector) ?
+          ((IntArrayVector) argument).toIntArrayUnsafe() : null;
+
+      int j = 0;
+      for (int i = 0; i < resultLength; i++) {
+        int r = result[i];
+        int x = array != null ? array[j] : argument.getElementAsInt(j);
+        boolean replace;
+        if (r == IntVector.NA) {
+          replace = naRm || x == IntVector.NA;
+        } else if (x == IntVector.NA) {
+          replace = !naRm;
+        } else {
+          replace = max ? x > r : x < r;
+        }
+        if (replace) {
+          result[i] = x;
+        }
+        if (++j == length) {
+          j = 0;
+        }
+      }
+    }
+    return result;
+  }
+
+  private static void fill(double[] result, Vector first) {
+    int length = first.length();
+    if (first instanceof DoubleArrayVector) {
+      double[] array = ((DoubleArrayVector) first).toDoubleArrayUnsafe();
+      for (int i = 0; i < result.length; i += length) {
+        System.arraycopy(array, 0, result, i, Math.min(length, result.length - i));
+      }
+    } else {
+      int j = 0;
+      for (int i = 0; i < result.length; i++) {
+        result[i] = first.getElementAsDouble(j);
+        if (++j == length) {
+          j = 0;
+        }
+      }
+    }
+  }
+
+  private static void fill(int[] result, Vector first) {
+    int length = first.length();
+    if (first instanceof IntArrayVector) {
+      int[] array = ((IntArrayVector) first).toIntArrayUnsafe();
+      for (int i = 0; i < result.length; i += length) {
+        System.arraycopy(array, 0, result, i, Math.min(length, result.length - i));
+      }
+    } else {
+      int j = 0;
+      for (int i = 0; i < result.length; i++) {
+        result[i] = first.getElementAsInt(j);
+        if (++j == length) {
+          j = 0;
+        }
+      }
+    }
+  }
+}
@@ -328,14 +328,14 @@ public class Text {
    */
   @Internal
   @DataParallel
-  public static String sub(String pattern, String replacement,
+  public static String sub(@Current Context context, String pattern, String replacement,
                            @Recycle String x,
                            boolean ignoreCase,
                            boolean perl,
                            boolean fixed,
                            boolean useBytes) {
     
-    RE re = REFactory.compile(pattern, ignoreCase, perl, fixed, useBytes);
+    RE re = REFactory.compile(context, pattern, ignoreCase, perl, fixed, useBytes);
     return  re.subst(x, replacement, ExtendedRE.REPLACE_FIRSTONLY | ExtendedRE.REPLACE_BACKREFERENCES );
   }
 
@@ -355,14 +355,14 @@ public class Text {
    */
   @Internal
   @DataParallel
-  public static String gsub(String pattern, String replacement,
+  public static String gsub(@Current Context context, String pattern, String replacement,
                             @Recycle String x,
                             boolean ignoreCase,
                             boolean perl,
                             boolean fixed,
                             boolean useBytes) {
 
-    RE re = REFactory.compile(pattern, ignoreCase, perl, fixed, useBytes);
+    RE re = REFactory.compile(context, pattern, ignoreCase, perl, fixed, useBytes);
     return re.subst(x, replacement, ExtendedRE.REPLACE_ALL | ExtendedRE.REPLACE_BACKREFERENCES );
   }
 
@@ -378,17 +378,18 @@ public class Text {
    */
   @Internal
   @DataParallel
-  public static StringVector strsplit(@Recycle String x, @Recycle String split,
+  public static StringVector strsplit(@Current Context context, @Recycle String x, @Recycle String split,
                                       boolean fixed,
                                       boolean perl,
                                       boolean useBytes) {
 
-    RE re = REFactory.compile(split, false, perl, fixed, useBytes);
+    RE re = REFactory.compile(context, split, false, perl, fixed, useBytes);
     return new StringArrayVector( re.split(x) );
   }
 
   @Internal
   public static Vector grep(
+      @Current Context context,
       String pattern,
       StringVector x,
       boolean ignoreCase,
@@ -402,7 +403,7 @@ public class Text {
       return new StringArrayVector(new String[x.length()]);
     }
 
-    RE re = REFactory.compile(pattern,ignoreCase, perl, fixed, useBytes);
+    RE re = REFactory.compile(context, pattern,ignoreCase, perl, fixed, useBytes);
     if(value) {
       StringVector.Builder result = new StringVector.Builder();
       for(String string : x) {
@@ -439,6 +440,7 @@ public class Text {
    */
   @Internal
   public static Vector grepl(
+      @Current Context context,
       String pattern,
       StringVector x,
       boolean ignoreCase,
@@ -452,7 +454,7 @@ public class Text {
       return new StringArrayVector(new String[x.length()]);
     }
 
-    RE re = REFactory.compile(pattern, ignoreCase,  perl, fixed, useBytes);
+    RE re = REFactory.compile(context, pattern, ignoreCase,  perl, fixed, useBytes);
     LogicalArrayVector.Builder result = new LogicalArrayVector.Builder();
     for(String string : x) {
       result.add( ! StringVector.isNA(string) && re.match(string ));
@@ -513,10 +515,10 @@ public class Text {
 
 
   @Internal
-  public static IntVector regexpr(String pattern, StringVector vector, boolean ignoreCase, boolean perl,
+  public static IntVector regexpr(@Current Context context, String pattern, StringVector vector, boolean ignoreCase, boolean perl,
                                   boolean fixed, boolean useBytes) {
 
-    RE re = REFactory.compile(pattern, ignoreCase,  perl, fixed, useBytes);
+    RE re = REFactory.compile(context, pattern, ignoreCase,  perl, fixed, useBytes);
 
     IntArrayVector.Builder position = IntArrayVector.Builder.withInitialCapacity(vector.length());
     IntArrayVector.Builder matchLength = IntArrayVector.Builder.withInitialCapacity(vector.length());
@@ -575,8 +577,8 @@ public class Text {
   }
 
   @Internal
-  public static ListVector regexec(String pattern, StringVector vector, boolean ignoreCase, boolean fixed, boolean useBytes) {
-    RE re = REFactory.compile(pattern, ignoreCase, false, fixed, useBytes);
+  public static ListVector regexec(@Current Context context, String pattern, StringVector vector, boolean ignoreCase, boolean fixed, boolean useBytes) {
+    RE re = REFactory.compile(context, pattern, ignoreCase, false, fixed, useBytes);
     int groupCount = re.getGroupCount();
 
 
@@ -611,11 +613,11 @@ public class Text {
 
 
   @Internal
-  public static ListVector gregexpr(String pattern, StringVector vector, boolean ignoreCase, boolean perl,
+  public static ListVector gregexpr(@Current Context context, String pattern, StringVector vector, boolean ignoreCase, boolean perl,
                                   boolean fixed, boolean useBytes) {
 
     ListVector.Builder regexpResults = new ListVector.Builder(0, vector.length());
-    RE re = REFactory.compile(pattern, ignoreCase,  perl, fixed, useBytes);
+    RE re = REFactory.compile(context, pattern, ignoreCase,  perl, fixed, useBytes);
 
     for(String text : vector) {
       IntArrayVector.Builder position = IntArrayVector.Builder.withInitialCapacity(vector.length());
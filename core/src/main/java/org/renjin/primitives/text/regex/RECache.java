@@ -0,0 +1,139 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.primitives.text.regex;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Session-wide, bounded cache of compiled regular expression programs.
+ *
+ * <p>Primitives like {@code gsub()} and {@code strsplit()} are invoked once per element
+ * of their input, so without this cache the same pattern would be compiled for every element.
+ * Compiled {@link REProgram}s are immutable and can be shared, but {@link ExtendedRE} matchers
+ * hold match state, so a new matcher is created around the cached program for each use.</p>
+ *
+ * <p>Obtain the instance for the current session with
+ * {@code context.getSession().getSingleton(RECache.class)}.</p>
+ */
+public class RECache {
+
+  public static final int DEFAULT_MAX_SIZE = 256;
+
+  private final int maxSize;
+
+  private final Map<Key, REProgram> programs;
+
+  private long hitCount;
+  private long missCount;
+
+  public RECache() {
+    this(DEFAULT_MAX_SIZE);
+  }
+
+  public RECache(final int maxSize) {
+    this.maxSize = maxSize;
+    this.programs = new LinkedHashMap<Key, REProgram>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, REProgram> eldest) {
+        return size() > RECache.this.maxSize;
+      }
+    };
+  }
+
+  /**
+   * Returns the compiled program for the given pattern, compiling it only if it is not
+   * already in the cache.
+   *
+   * @throws RESyntaxException if the pattern is not a valid regular expression. Invalid
+   * patterns are not cached.
+   */
+  public REProgram getProgram(String pattern, boolean ignoreCase, boolean perl) throws RESyntaxException {
+    Key key = new Key(pattern, ignoreCase, perl);
+    synchronized (this) {
+      REProgram program = programs.get(key);
+      if(program != null) {
+        hitCount++;
+        return program;
+      }
+      missCount++;
+    }
+
+    REProgram program = new RECompiler().compile(pattern);
+
+    synchronized (this) {
+      programs.put(key, program);
+    }
+    return program;
+  }
+
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  public synchronized int size() {
+    return programs.size();
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  public synchronized void clear() {
+    programs.clear();
+    hitCount = 0;
+    missCount = 0;
+  }
+
+  private static final class Key {
+    private final String pattern;
+    private final boolean ignoreCase;
+    private final boolean perl;
+
+    private Key(String pattern, boolean ignoreCase, boolean perl) {
+      this.pattern = pattern;
+      this.ignoreCase = ignoreCase;
+      this.perl = perl;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return ignoreCase == key.ignoreCase &&
+          perl == key.perl &&
+          pattern.equals(key.pattern);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(pattern, ignoreCase, perl);
+    }
+  }
+}
@@ -21,6 +21,7 @@
 
 package org.renjin.primitives.text.regex;
 
+import org.renjin.eval.Context;
 import org.renjin.eval.EvalException;
 
 import java.util.function.Predicate;
@@ -61,14 +62,49 @@ public class REFactory {
         return new ExtendedRE(pattern, ignoreCase);
       }
     } catch (RESyntaxException e) {
-      throw new EvalException("Invalid pattern '%s': %s (perl=%s, fixed=%s)",
-          pattern,
-          e.getMessage(),
-          perl ? "TRUE" : "FALSE",
-          fixed ? "TRUE" : "FALSE");
+      throw invalidPattern(pattern, perl, fixed, e);
     }
   }
 
+  /**
+   * Compiles the pattern based on the supplied arguments, reusing a previously compiled
+   * program from the session's {@link RECache} if possible.
+   *
+   * @param context the current context
+   * @param pattern    the matching pattern
+   * @param ignoreCase whether case should be ignored
+   * @param perl       true to use "perl-style" regular expressions (not yet implemented)
+   * @param fixed      true to treat the pattern as a literal string
+   * @param useBytes   true to match on bytes (not implemented)
+   * @return the compiled regular expression
+   */
+  public static RE compile(Context context, String pattern, boolean ignoreCase, boolean perl, boolean fixed,
+                           boolean useBytes) {
+
+    if(fixed || (!perl && pattern.equals("*"))) {
+      // Nothing to compile
+      return compile(pattern, ignoreCase, perl, fixed, useBytes);
+    }
+
+    RECache cache = context.getSession().getSingleton(RECache.class);
+    REProgram program;
+    try {
+      program = cache.getProgram(pattern, ignoreCase, perl);
+    } catch (RESyntaxException e) {
+      throw invalidPattern(pattern, perl, fixed, e);
+    }
+
+    return new ExtendedRE(program, ignoreCase ? ExtendedRE.MATCH_CASEINDEPENDENT : ExtendedRE.MATCH_NORMAL);
+  }
+
+  private static EvalException invalidPattern(String pattern, boolean perl, boolean fixed, RESyntaxException e) {
+    return new EvalException("Invalid pattern '%s': %s (perl=%s, fixed=%s)",
+        pattern,
+        e.getMessage(),
+        perl ? "TRUE" : "FALSE",
+        fixed ? "TRUE" : "FALSE");
+  }
+
   public static Predicate<String> asPredicate(final RE re) {
     return input -> re.match(input);
   }
@@ -35,10 +35,13 @@ import org.renjin.sexp.*;
 import java.io.*;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
 import java.nio.IntBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
+import java.util.Collections;
 import java.util.List;
 
 import static org.renjin.serialization.SerializationFormat.*;
@@ -51,15 +54,36 @@ import static org.renjin.sexp.SexpType.LISTSXP;
  */
 public class RDataReader implements AutoCloseable {
 
+  /**
+   * Vectors smaller than this number of bytes are copied onto the heap even when reading from a
+   * memory-mapped file, as element access is faster for arrays than for buffers.
+   */
+  private static final int MIN_MAPPED_BYTES = 8192;
+
   private InputStream conn;
   private StreamReader in;
 
+  /**
+   * The reader of the memory-mapped file, if this reader was created by {@link #openMapped(Context, FileChannel)}
+   */
+  private MappedReader mapped;
+
+  /**
+   * True if large vectors may be returned as views of the mapped file instead of copies.
+   */
+  private boolean shareMapping;
+
   private int version;
   private Version writerVersion;
   private Version releaseVersion;
 
   private List<SEXP> referenceTable = Lists.newArrayList();
 
+  /**
+   * Objects which occupy the first entries of the reference table, before those read from the stream.
+   */
+  private List<? extends SEXP> sharedReferences = Collections.emptyList();
+
   private PersistentRestorer restorer;
   private ReadContext readContext;
 
@@ -73,13 +97,80 @@ public class RDataReader implements AutoCloseable {
     this.conn = conn;
   }
 
+  private RDataReader(Context context, MappedReader mapped, boolean shareMapping) {
+    this.readContext = new SessionReadContext(context);
+    this.mapped = mapped;
+    this.in = mapped;
+    this.shareMapping = shareMapping;
+  }
+
+  /**
+   * Creates a reader that memory-maps an uncompressed file in the XDR or native binary format,
+   * starting at the channel's current position. Vectors are bulk-copied from the mapping onto the heap.
+   *
+   * @return a reader, or {@code null} if the file is not in a binary format.
+   */
+  public static RDataReader openMapped(Context context, FileChannel channel) throws IOException {
+    return openMapped(context, channel, false);
+  }
+
+  /**
+   * Creates a reader that memory-maps an uncompressed file in the XDR or native binary format,
+   * starting at the channel's current position.
+   *
+   * <p>If {@code shareMapping} is true, large double, integer and logical vectors are returned as views of
+   * the mapped file rather than being copied onto the heap, and the elements of large character vectors are
+   * only decoded when accessed, so reading even a very large object is quick, and the pages of the file are
+   * shared through the operating system's page cache. The views reflect any later change to the file,
+   * and fail if it is truncated, so this is only safe for files which cannot be modified while the
+   * objects read are in use.</p>
+   *
+   * @return a reader, or {@code null} if the file is not in a binary format.
+   */
+  public static RDataReader openMapped(Context context, FileChannel channel, boolean shareMapping) throws IOException {
+    long start = channel.position();
+    byte streamType = readStreamType(Channels.newInputStream(channel));
+    ByteOrder byteOrder;
+    switch (streamType) {
+      case XDR_FORMAT:
+        byteOrder = ByteOrder.BIG_ENDIAN;
+        break;
+      case BINARY_FORMAT:
+        byteOrder = ByteOrder.nativeOrder();
+        break;
+      default:
+        channel.position(start);
+        return null;
+    }
+    return new RDataReader(context, new MappedReader(channel, start, channel.position(), byteOrder, shareMapping),
+        shareMapping);
+  }
+
+  /**
+   * Uses the given objects as the first entries of the reference table, to read a stream written by an
+   * {@link RDataWriter} that was given the same objects with {@link RDataWriter#setSharedReferences(List)}.
+   */
+  public void setSharedReferences(List<? extends SEXP> shared) {
+    this.sharedReferences = shared;
+  }
+
   public SEXP readFile() throws IOException {
-    byte streamType = readStreamType(conn);
-    in = createStreamReader(streamType, conn);
+    if(in == null) {
+      byte streamType = readStreamType(conn);
+      in = createStreamReader(streamType, conn);
+    }
     readAndVerifyVersion();
     return readExp();
   }
 
+  /**
+   * @return the number of bytes of the file that have been read by a reader created with
+   * {@link #openMapped(Context, FileChannel)}
+   */
+  public long getMappedBytesRead() {
+    return mapped.getBytesRead();
+  }
+
   protected void readAndVerifyVersion() throws IOException {
     version = in.readInt();
     writerVersion = new Version(in.readInt());
@@ -228,6 +319,7 @@ public class RDataReader implements AutoCloseable {
 
 
   private SEXP rawRawVector(int flags) throws IOException {
+    // RawVector is always backed by a heap array, so raw vectors are copied even from a mapped file
     int length = in.readInt();
     byte[] bytes = in.readString(length);
     AttributeMap attributes = readAttributes(flags);
@@ -469,7 +561,10 @@ public class RDataReader implements AutoCloseable {
 
   private SEXP readReference(int flags) throws IOException {
     int i = readReferenceIndex(flags);
-    return referenceTable.get(i);
+    if(i < sharedReferences.size()) {
+      return sharedReferences.get(i);
+    }
+    return referenceTable.get(i - sharedReferences.size());
   }
 
   private int readReferenceIndex(int flags) throws IOException {
@@ -622,7 +717,9 @@ public class RDataReader implements AutoCloseable {
 
   private SEXP readStringVector(int flags) throws IOException {
     int length = in.readInt();
-    if(length > 100) {
+    if(mapped != null && shareMapping && length > 100) {
+      return readStringVectorAsBuffer(length, flags);
+    } else if(length > 100) {
       return readStringVectorAsByteArray(length, flags);
     } else {
       return readStringsAsArray(length, flags);
@@ -672,6 +769,43 @@ public class RDataReader implements AutoCloseable {
     return builder.build(readAttributes(flags));
   }
 
+  private SEXP readStringVectorAsBuffer(int length, int flags) throws IOException {
+    long start = mapped.getPosition();
+    int[] offsets = new int[length];
+    int[] lengths = new int[length];
+
+    int elementFlags = 0;
+    for(int i=0;i!=length;++i) {
+      // each element is encoded as a CHARSXP
+      elementFlags = in.readInt();
+      assert Flags.getType(elementFlags) == SexpType.CHARSXP;
+
+      int elementLength = in.readInt();
+      long offset = mapped.getPosition() - start;
+      if(offset > Integer.MAX_VALUE) {
+        // Too large to view through a single buffer
+        mapped.setPosition(start);
+        return readStringVectorAsByteArray(length, flags);
+      }
+      offsets[i] = (int) offset;
+      lengths[i] = elementLength;
+      if(elementLength > 0) {
+        mapped.skip(elementLength);
+      }
+    }
+
+    // Assume encoding is the same for all elements
+    Charset charset = Charset.defaultCharset();
+    if(Flags.isUTF8Encoded(elementFlags)) {
+      charset = Charsets.UTF_8;
+    } else if(Flags.isLatin1Encoded(elementFlags)) {
+      charset = Charset.forName("Latin1");
+    }
+
+    ByteBuffer buffer = mapped.map(start, mapped.getPosition() - start);
+    return new StringBufferVector(buffer, offsets, lengths, charset, readAttributes(flags));
+  }
+
   private SEXP readComplexExp(int flags) throws IOException {
     int length = in.readInt();
     Complex[] values = new Complex[length];
@@ -683,6 +817,15 @@ public class RDataReader implements AutoCloseable {
 
   private SEXP readDoubleExp(int flags) throws IOException {
     int length = in.readInt();
+    if(mapped != null && isMappable(length, 8)) {
+      DoubleBuffer buffer = mapped.mapNext(length * 8L).asDoubleBuffer();
+      if(shareMapping) {
+        return new DoubleBufferVector(buffer, length, readAttributes(flags));
+      }
+      double[] values = new double[length];
+      buffer.get(values);
+      return new DoubleArrayVector(values, readAttributes(flags));
+    }
     double[] values = new double[length];
     for(int i=0;i!=length;++i) {
       values[i] = in.readDouble();
@@ -699,6 +842,15 @@ public class RDataReader implements AutoCloseable {
 
   private SEXP readLogical(int flags) throws IOException {
     int length = in.readInt();
+    if(mapped != null && isMappable(length, 4)) {
+      IntBuffer buffer = mapped.mapNext(length * 4L).asIntBuffer();
+      if(shareMapping) {
+        return new LogicalBufferVector(buffer, length, readAttributes(flags));
+      }
+      int[] values = new int[length];
+      buffer.get(values);
+      return new LogicalArrayVector(values, readAttributes(flags));
+    }
     int values[] = new int[length];
     for(int i=0;i!=length;++i) {
       values[i] = in.readInt();
@@ -706,6 +858,11 @@ public class RDataReader implements AutoCloseable {
     return new LogicalArrayVector(values, readAttributes(flags));
   }
 
+  private static boolean isMappable(int length, int elementSize) {
+    long bytes = (long) length * elementSize;
+    return bytes >= MIN_MAPPED_BYTES && bytes <= Integer.MAX_VALUE;
+  }
+
   private SEXP readCharExp(int flags) throws IOException {
     int length = in.readInt();
     if (length == -1) {
@@ -778,7 +935,9 @@ public class RDataReader implements AutoCloseable {
 
   @Override
   public void close() throws IOException {
-    conn.close();
+    if(conn != null) {
+      conn.close();
+    }
   }
 
   interface StreamReader {
@@ -963,6 +1122,134 @@ public class RDataReader implements AutoCloseable {
     }
   }
 
+  /**
+   * Reads from a memory-mapped file through a sliding window, mapping large vectors directly.
+   */
+  private static class MappedReader implements StreamReader {
+
+    private static final int WINDOW_SIZE = 16 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final long start;
+    private final ByteOrder byteOrder;
+    private final boolean shareMapping;
+
+    private ByteBuffer window = ByteBuffer.allocate(0);
+    private long windowStart;
+    private long position;
+
+    public MappedReader(FileChannel channel, long start, long position, ByteOrder byteOrder,
+                        boolean shareMapping) throws IOException {
+      this.channel = channel;
+      this.size = channel.size();
+      this.start = start;
+      this.position = position;
+      this.byteOrder = byteOrder;
+      this.shareMapping = shareMapping;
+    }
+
+    public long getPosition() {
+      return position;
+    }
+
+    public void setPosition(long position) {
+      this.position = position;
+    }
+
+    public long getBytesRead() {
+      return position - start;
+    }
+
+    public void skip(long bytes) throws IOException {
+      if(position + bytes > size) {
+        throw new EOFException();
+      }
+      position += bytes;
+    }
+
+    /**
+     * Positions the window at the next {@code bytes} bytes of the file and advances past them.
+     */
+    private ByteBuffer next(int bytes) throws IOException {
+      if(position < windowStart || position + bytes > windowStart + window.limit()) {
+        if(position + bytes > size) {
+          throw new EOFException();
+        }
+        long length = Math.min(Math.max(WINDOW_SIZE, bytes), size - position);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, length).order(byteOrder);
+        windowStart = position;
+      }
+      window.position((int) (position - windowStart));
+      position += bytes;
+      return window;
+    }
+
+    /**
+     * Returns a read-only view of the next {@code bytes} bytes of the file and advances past them.
+     */
+    public ByteBuffer mapNext(long bytes) throws IOException {
+      ByteBuffer buffer = map(position, bytes);
+      position += bytes;
+      return buffer;
+    }
+
+    /**
+     * Returns a read-only view of the given region of the file, sharing the current window if it
+     * already covers the region.
+     */
+    public ByteBuffer map(long offset, long bytes) throws IOException {
+      if(offset + bytes > size) {
+        throw new EOFException();
+      }
+      if(offset >= windowStart && offset + bytes <= windowStart + window.limit()) {
+        ByteBuffer view = window.duplicate();
+        view.limit((int) (offset - windowStart + bytes));
+        view.position((int) (offset - windowStart));
+        return view.slice().order(byteOrder);
+      }
+      return channel.map(FileChannel.MapMode.READ_ONLY, offset, bytes).order(byteOrder);
+    }
+
+    @Override
+    public int readInt() throws IOException {
+      return next(4).getInt();
+    }
+
+    @Override
+    public IntBuffer readIntBuffer(int size) throws IOException {
+      IntBuffer buffer = mapNext(size * 4L).asIntBuffer();
+      if(shareMapping) {
+        return buffer;
+      }
+      int[] array = new int[size];
+      buffer.get(array);
+      return IntBuffer.wrap(array);
+    }
+
+    @Override
+    public byte[] readString(int length) throws IOException {
+      byte[] buf = new byte[length];
+      readFully(buf, 0, length);
+      return buf;
+    }
+
+    @Override
+    public void readFully(byte[] buffer, int offset, int length) throws IOException {
+      while(length > 0) {
+        int chunk = Math.min(length, WINDOW_SIZE);
+        next(chunk).get(buffer, offset, chunk);
+        offset += chunk;
+        length -= chunk;
+      }
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+      return next(8).getDouble();
+    }
+  }
+
   /**
    * Interface that allows Renjin containers to restore objects
    * previously stored by {@link RDataWriter.PersistenceHook}
@@ -29,7 +29,10 @@ import org.renjin.sexp.*;
 
 import java.io.*;
 import java.nio.ByteOrder;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.renjin.serialization.SerializationFormat.*;
 
@@ -63,6 +66,11 @@ public class RDataWriter implements AutoCloseable {
 
   private Map<SEXP, Integer> references = Maps.newIdentityHashMap();
 
+  /**
+   * Objects which occupy the first entries of the reference table without being written to the stream.
+   */
+  private Map<SEXP, Integer> sharedReferences = Collections.emptyMap();
+
   public RDataWriter(WriteContext context, PersistenceHook hook, OutputStream out,
                      SerializationType type) {
     this.context = context;
@@ -104,6 +112,29 @@ public class RDataWriter implements AutoCloseable {
   }
 
 
+  /**
+   * Uses the given objects as the first entries of the reference table, so that they are written
+   * as references rather than in full. The stream can only be read by an {@link RDataReader} given
+   * the same objects with {@link RDataReader#setSharedReferences(List)}.
+   *
+   * <p>This allows a set of streams, like the values of a lazy-loaded frame, to share a single copy
+   * of the symbols they have in common.</p>
+   */
+  public void setSharedReferences(List<? extends SEXP> shared) {
+    sharedReferences = Maps.newIdentityHashMap();
+    for (SEXP exp : shared) {
+      sharedReferences.put(exp, sharedReferences.size() + 1);
+    }
+  }
+
+  /**
+   * @return the objects added to the reference table by the values written so far, not including
+   * shared references.
+   */
+  public Set<SEXP> getReferences() {
+    return Collections.unmodifiableSet(references.keySet());
+  }
+
   /**
    * @deprecated Call save() explicitly
    * @param sexp
@@ -478,7 +509,11 @@ public class RDataWriter implements AutoCloseable {
   }
 
   private boolean tryWriteRef(SEXP exp) throws IOException {
-    if(references.containsKey(exp)) {
+    Integer shared = sharedReferences.get(exp);
+    if(shared != null) {
+      writeRefIndex(shared);
+      return true;
+    } else if(references.containsKey(exp)) {
       writeRefIndex(references.get(exp));
       return true;
     } else {
@@ -496,7 +531,7 @@ public class RDataWriter implements AutoCloseable {
   }
  
   private void addRef(SEXP exp) {
-    references.put(exp, references.size() + 1);
+    references.put(exp, sharedReferences.size() + references.size() + 1);
   }
 
   private StringVector getNamespaceName(Environment ns) {
@@ -25,14 +25,21 @@ import org.renjin.invoke.annotations.DotCall;
 import org.renjin.invoke.annotations.Internal;
 import org.renjin.primitives.io.connections.Connection;
 import org.renjin.primitives.io.connections.Connections;
+import org.renjin.primitives.io.connections.FileConnection;
 import org.renjin.primitives.io.connections.OpenSpec;
 import org.renjin.serialization.RDataWriter.PersistenceHook;
 import org.renjin.sexp.*;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 
 /**
  * Implementation of serialization builtins and internal functions.
@@ -47,17 +54,61 @@ public class Serialization {
   @Internal
   public static SEXP unserializeFromConn(@Current Context context,
       SEXP conn, Environment rho) throws IOException {
-    
-    RDataReader reader = new RDataReader(context, Connections.getConnection(context, conn).getInputStream());
-    return reader.readFile();
+
+    return readFromConnection(context, Connections.getConnection(context, conn));
   }
 
   @Internal
   public static SEXP unserializeFromConn(@Current Context context,
       SEXP conn, Null nz) throws IOException {
-    
-    RDataReader reader = new RDataReader(context, 
-        Connections.getConnection(context, conn).getInputStream());
+
+    return readFromConnection(context, Connections.getConnection(context, conn));
+  }
+
+  /**
+   * Reads a serialized object from a connection, memory-mapping the underlying file
+   * if it is a local, uncompressed file in a binary format.
+   *
+   * <p>Large vectors are only left as views of the mapping if this process cannot write to the file, as is
+   * usually the case for data installed in a shared library or on a read-only file system. Otherwise R code
+   * could overwrite or truncate the file while the object read from it is still in use, so the vectors are
+   * copied onto the heap from the mapping, which is still several times faster than reading the file
+   * through the connection's stream. A read-only file can still be truncated by its owner while the views
+   * are in use, in which case the JVM throws an {@link InternalError} when the lost pages are accessed.</p>
+   *
+   * <p>The size and modification time of the file are checked before and after reading it, so that a file
+   * which is modified while it is being read fails with an error rather than yielding a mix of old and
+   * new contents.</p>
+   */
+  private static SEXP readFromConnection(Context context, Connection connection) throws IOException {
+    if(connection instanceof FileConnection) {
+      FileConnection fileConnection = (FileConnection) connection;
+      File file = fileConnection.getMappableFile();
+      if(file != null) {
+        Path path = file.toPath();
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+          long size = channel.size();
+          FileTime lastModified = Files.getLastModifiedTime(path);
+          boolean shareMapping = !Files.isWritable(path);
+          RDataReader reader = RDataReader.openMapped(context, channel, shareMapping);
+          if(reader != null) {
+            SEXP result;
+            try {
+              result = reader.readFile();
+            } catch (InternalError e) {
+              // Thrown by the JVM when a mapped page is no longer backed by the file
+              throw new EvalException("File '" + file + "' was truncated while being read", e);
+            }
+            if(channel.size() != size || !Files.getLastModifiedTime(path).equals(lastModified)) {
+              throw new EvalException("File '%s' was modified while being read", file);
+            }
+            fileConnection.skipInput(reader.getMappedBytesRead());
+            return result;
+          }
+        }
+      }
+    }
+    RDataReader reader = new RDataReader(context, connection.getInputStream());
     return reader.readFile();
   }
 
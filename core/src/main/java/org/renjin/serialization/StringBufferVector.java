@@ -0,0 +1,90 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.serialization;
+
+import org.renjin.sexp.AttributeMap;
+import org.renjin.sexp.StringVector;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Character vector backed by a region of a memory-mapped file and a list of element offsets
+ * into that region. Elements are only decoded when they are accessed.
+ */
+class StringBufferVector extends StringVector {
+
+  /**
+   * Region of the file containing the encoded contents of all elements of this vector.
+   */
+  private final ByteBuffer buffer;
+
+  /**
+   * Offsets of the elements into the buffer.
+   */
+  private final int[] offsets;
+
+  /**
+   * Lengths, in bytes, of the elements. Elements that are NA have a length of -1.
+   */
+  private final int[] lengths;
+
+  private final Charset charset;
+
+  StringBufferVector(ByteBuffer buffer, int[] offsets, int[] lengths, Charset charset, AttributeMap attributes) {
+    super(attributes);
+    this.buffer = buffer;
+    this.offsets = offsets;
+    this.lengths = lengths;
+    this.charset = charset;
+  }
+
+  @Override
+  public int length() {
+    return offsets.length;
+  }
+
+  @Override
+  protected StringVector cloneWithNewAttributes(AttributeMap attributes) {
+    return new StringBufferVector(buffer, offsets, lengths, charset, attributes);
+  }
+
+  @Override
+  public String getElementAsString(int index) {
+    int length = lengths[index];
+    if(length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    ByteBuffer source = buffer.duplicate();
+    source.position(offsets[index]);
+    source.get(bytes);
+    return new String(bytes, charset);
+  }
+
+  @Override
+  public boolean isElementNA(int index) {
+    return lengths[index] < 0;
+  }
+
+  @Override
+  public boolean isConstantAccessTime() {
+    return true;
+  }
+}
@@ -57,6 +57,14 @@ abstract class AbstractVector extends AbstractSEXP implements Vector {
     return false;
   }
 
+  /**
+   * Releases ownership of this vector if it is an {@link OwnableVector}. Declared here so that
+   * {@link Environment} can release the value of every binding it reads with a class check
+   * rather than an interface check, which is slow on the JVM when it fails.
+   */
+  void disown() {
+  }
+
   @Override
   public byte getElementAsByte(int index) {
     int value = getElementAsInt(index);
@@ -0,0 +1,42 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.sexp;
+
+import org.renjin.eval.Context;
+
+/**
+ * The environment of the base namespace.
+ *
+ * <p>As in GNU R, the parent of the base namespace is the global environment. The base namespace is
+ * shared with sessions forked from, or created from the same template as, the session which created it,
+ * but each of those sessions has its own global environment. Lookups which continue past the base
+ * namespace therefore continue in the global environment of the session evaluating the code, rather
+ * than in that of the session which created the namespace.</p>
+ */
+public class BaseNamespaceEnvironment extends DynamicEnvironment {
+
+  public BaseNamespaceEnvironment(Environment globalEnvironment, Frame frame) {
+    super(Environment.BASE_NAMESPACE_ENVIRONMENT, globalEnvironment, frame);
+  }
+
+  @Override
+  public Environment getParent(Context context) {
+    return context.getGlobalEnvironment();
+  }
+}
@@ -18,14 +18,16 @@
  */
 package org.renjin.sexp;
 
+import org.renjin.compiler.CachedClosureBody;
+import org.renjin.compiler.ClosureJit;
 import org.renjin.eval.*;
 import org.renjin.primitives.special.ReturnException;
 
 import java.lang.invoke.MethodHandle;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.function.Supplier;
 
 
@@ -45,11 +47,40 @@ public class Closure extends AbstractSEXP implements Function {
   private Supplier<SEXP> body;
   private PairList formals;
 
-  private ArgumentMatcher matcher;
+  /**
+   * The frame symbols of the compiled body, or {@code null} if this closure was not compiled ahead of time.
+   */
   private SEXP[] frameSymbols;
 
+  /**
+   * The layout of this closure's frame, computed on the first call.
+   */
+  private ClosureLayout layout;
+
   public MethodHandle compiledBody;
 
+  /**
+   * The body compiled by the {@link ClosureJit}, or {@code null} if this closure
+   * has not (yet) been compiled.
+   */
+  private volatile CachedClosureBody jitBody;
+
+  /**
+   * The number of invocations since this closure was created, modified or deoptimized. Closures may be
+   * called concurrently from several sessions, so the counters are updated atomically.
+   */
+  private volatile int invocationCount;
+  private volatile int deoptimizationCount;
+
+  private static final AtomicReferenceFieldUpdater<Closure, CachedClosureBody> JIT_BODY =
+      AtomicReferenceFieldUpdater.newUpdater(Closure.class, CachedClosureBody.class, "jitBody");
+
+  private static final AtomicIntegerFieldUpdater<Closure> INVOCATION_COUNT =
+      AtomicIntegerFieldUpdater.newUpdater(Closure.class, "invocationCount");
+
+  private static final AtomicIntegerFieldUpdater<Closure> DEOPTIMIZATION_COUNT =
+      AtomicIntegerFieldUpdater.newUpdater(Closure.class, "deoptimizationCount");
+
   public Closure(Environment enclosingEnvironment, PairList formals, SEXP body, AttributeMap attributes) {
     super(attributes);
     assert !(formals instanceof FunctionCall);
@@ -69,6 +100,21 @@ public class Closure extends AbstractSEXP implements Function {
   }
 
 
+  /**
+   * Creates a closure whose frame layout has already been computed, for example by an
+   * earlier evaluation of the same {@code function} expression.
+   */
+  public Closure(Environment enclosingEnvironment, PairList formals, SEXP body, ClosureLayout layout) {
+    this(enclosingEnvironment, formals, body, AttributeMap.EMPTY);
+    this.layout = layout;
+  }
+
+  private Closure(Environment enclosingEnvironment, PairList formals, Supplier<SEXP> body, AttributeMap attributes,
+                  MethodHandle methodHandle, SEXP[] frameSymbols, ClosureLayout layout) {
+    this(enclosingEnvironment, formals, body, attributes, methodHandle, frameSymbols);
+    this.layout = layout;
+  }
+
   public Closure(Environment environment, PairList formals, SEXP body) {
     this(environment, formals, body, AttributeMap.EMPTY);
   }
@@ -83,7 +129,8 @@ public class Closure extends AbstractSEXP implements Function {
   protected SEXP cloneWithNewAttributes(AttributeMap newAttributes) {
     return new Closure(this.enclosingEnvironment, this.formals, this.body, newAttributes,
         compiledBody,
-        frameSymbols);
+        frameSymbols,
+        layout);
   }
 
   @Override
@@ -99,47 +146,69 @@ public class Closure extends AbstractSEXP implements Function {
   @Override
   public final SEXP apply(Context context, Environment rho, FunctionCall call) {
 
-    List<String> argumentNames = new ArrayList<>();
-    List<SEXP> arguments = new ArrayList<>();
+    // Count the arguments first so that the arrays can be allocated at their final size
+
+    PairList actuals = call.getArguments();
+    SEXP expando = null;
+    int argumentCount = 0;
+    for (PairList node = actuals; node != Null.INSTANCE; node = ((PairList.Node) node).getNext()) {
+      if(((PairList.Node) node).getValue() == Symbols.ELLIPSES) {
+        if(expando == null) {
+          expando = rho.getEllipsesVariable();
+          if (expando == Symbol.UNBOUND_VALUE) {
+            throw new EvalException("'...' used in an incorrect context");
+          }
+        }
+        if(expando instanceof PromisePairList) {
+          argumentCount += expando.length();
+        }
+      } else {
+        argumentCount++;
+      }
+    }
+
+    String[] argumentNames = new String[argumentCount];
+    SEXP[] arguments = new SEXP[argumentCount];
 
-    for (PairList.Node node : call.getArguments().nodes()) {
-      SEXP value = node.getValue();
+    int argumentIndex = 0;
+    for (PairList node = actuals; node != Null.INSTANCE; node = ((PairList.Node) node).getNext()) {
+      PairList.Node argument = (PairList.Node) node;
+      SEXP value = argument.getValue();
       if(value == Symbols.ELLIPSES) {
-        SEXP expando = rho.getEllipsesVariable();
-        if(expando == Symbol.UNBOUND_VALUE) {
-          throw new EvalException("'...' used in an incorrect context");
-        }
         if(expando instanceof PromisePairList) {
-          PromisePairList extra = (PromisePairList) expando;
-          for (PairList.Node extraNode : extra.nodes()) {
-            argumentNames.add(extraNode.hasTag() ? extraNode.getName() : null);
-            arguments.add(extraNode.getValue());
+          for (PairList.Node extraNode : ((PromisePairList) expando).nodes()) {
+            argumentNames[argumentIndex] = extraNode.hasTag() ? extraNode.getName() : null;
+            arguments[argumentIndex] = extraNode.getValue();
+            argumentIndex++;
           }
         }
-
       } else {
-        if(node.hasName()) {
-          argumentNames.add(node.getTag().getPrintName());
-        } else {
-          argumentNames.add(null);
+        if(argument.hasName()) {
+          argumentNames[argumentIndex] = argument.getTag().getPrintName();
         }
         if(value == Symbol.MISSING_ARG) {
-          arguments.add(value);
+          arguments[argumentIndex] = value;
         } else {
-          arguments.add(value.promise(rho));
+          arguments[argumentIndex] = value.promise(rho);
         }
+        argumentIndex++;
       }
     }
-    return applyPromised(context, rho, call, argumentNames.toArray(new String[0]), arguments.toArray(new SEXP[0]), null);
+    return applyPromised(context, rho, call, argumentNames, arguments, null);
   }
 
   public SEXP applyPromised(Context callingContext, Environment callingEnvironment, FunctionCall call, String[] argNames, SEXP[] args, DispatchTable dispatch) {
 
-    if(this.matcher == null) {
-      this.matcher = new ArgumentMatcher(getFormals());
-    }
-    if(frameSymbols == null) {
-      this.frameSymbols = matcher.getFormalNameArray();
+    ClosureLayout layout = getLayout();
+    ArgumentMatcher matcher = layout.getMatcher();
+
+    MethodHandle handle = compiledBody;
+    if(handle == null && callingContext.getSession().isClosureJitEnabled()) {
+      CachedClosureBody jitCompiled = jitCompiledBody(callingContext, call);
+      if(jitCompiled != null) {
+        handle = jitCompiled.getHandle();
+        layout = jitCompiled.getLayout();
+      }
     }
 
     MatchedArguments matching = matcher.match(argNames, args);
@@ -162,11 +231,11 @@ public class Closure extends AbstractSEXP implements Function {
       }
     }
 
-    SEXP[] locals = Arrays.copyOf(matchedArguments, frameSymbols.length);
+    SEXP[] locals = Arrays.copyOf(matchedArguments, layout.getFrameNames().length);
 
     FunctionEnvironment functionEnvironment = new FunctionEnvironment(
         getEnclosingEnvironment(),
-        frameSymbols,
+        layout,
         matchedArguments,
         matching,
         locals,
@@ -194,8 +263,8 @@ public class Closure extends AbstractSEXP implements Function {
 
       try {
 
-        if(compiledBody != null) {
-          return (SEXP)compiledBody.invokeExact(functionContext, functionEnvironment);
+        if(handle != null) {
+          return (SEXP)handle.invokeExact(functionContext, functionEnvironment);
         } else {
           return body.get().eval(functionContext, functionEnvironment);
         }
@@ -239,6 +308,93 @@ public class Closure extends AbstractSEXP implements Function {
   }
 
 
+  /**
+   * @return the layout of this closure's frame, analyzing the closure if this is the first call.
+   */
+  public ClosureLayout getLayout() {
+    ClosureLayout layout = this.layout;
+    if(layout == null) {
+      if(frameSymbols != null) {
+        layout = ClosureLayout.of(formals, frameSymbols);
+      } else {
+        layout = ClosureLayout.analyze(formals, body.get());
+      }
+      this.layout = layout;
+    }
+    return layout;
+  }
+
+  /**
+   * Returns the body compiled by the {@link ClosureJit} if its assumptions still hold, compiling
+   * the body if this closure has become hot, or {@code null} if the body should be interpreted.
+   */
+  private CachedClosureBody jitCompiledBody(Context context, FunctionCall call) {
+    CachedClosureBody compiled = jitBody;
+    if(compiled != null) {
+      if(compiled.assumptionsStillMet(context, enclosingEnvironment)) {
+        return compiled;
+      }
+      // Only the thread which discards the compiled body counts the deoptimization
+      if(JIT_BODY.compareAndSet(this, compiled, null)) {
+        invocationCount = 0;
+        DEOPTIMIZATION_COUNT.incrementAndGet(this);
+        ClosureJit.deoptimized(this);
+      }
+    }
+
+    if(deoptimizationCount < ClosureJit.MAX_DEOPTIMIZATIONS &&
+        INVOCATION_COUNT.incrementAndGet(this) == context.getSession().getClosureJitThreshold()) {
+      Symbol name = call.getFunction() instanceof Symbol ? (Symbol) call.getFunction() : Symbol.get("fn");
+      compiled = ClosureJit.tryCompile(context, this, name);
+      if(compiled == null) {
+        // Don't try again
+        deoptimizationCount = ClosureJit.MAX_DEOPTIMIZATIONS;
+      } else {
+        jitBody = compiled;
+        return compiled;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Compiles this closure's body with the {@link ClosureJit} now, rather than once it has become hot.
+   * The compiled body is only used in sessions which have the closure JIT enabled.
+   *
+   * @return the compiled body, or {@code null} if the body could not be compiled.
+   */
+  public CachedClosureBody jitCompile(Context context, Symbol name) {
+    CachedClosureBody compiled = jitBody;
+    if(compiled == null) {
+      compiled = ClosureJit.tryCompile(context, this, name);
+      if(compiled == null) {
+        // Don't try again when this closure becomes hot
+        deoptimizationCount = ClosureJit.MAX_DEOPTIMIZATIONS;
+      } else {
+        jitBody = compiled;
+      }
+    }
+    return compiled;
+  }
+
+  /**
+   * Uses a body which the {@link ClosureJit} compiled for another closure with the same formals and body.
+   * Its assumptions are checked against this closure's enclosing environment on each call, as for a body
+   * compiled for this closure.
+   */
+  public void setJitBody(CachedClosureBody compiled) {
+    jitBody = compiled;
+  }
+
+  /**
+   * Discards any body compiled by the {@link ClosureJit} after this closure has been modified.
+   */
+  private void resetJit() {
+    jitBody = null;
+    invocationCount = 0;
+    deoptimizationCount = 0;
+  }
+
   /**
    * A function's <strong> evaluation environment</strong> is the environment
    * that was active at the time that the
@@ -256,7 +412,7 @@ public class Closure extends AbstractSEXP implements Function {
    * Creates a copy of this Closure with the new enclosing environment.
    */
   public Closure setEnclosingEnvironment(Environment env) {
-    return new Closure(env, formals, body, getAttributes(), compiledBody, frameSymbols);
+    return new Closure(env, formals, body, getAttributes(), compiledBody, frameSymbols, layout);
   }
 
   /**
@@ -288,14 +444,19 @@ public class Closure extends AbstractSEXP implements Function {
 
   public void unsafeSetFormals(PairList formals) {
     this.formals = formals;
+    this.layout = null;
+    resetJit();
   }
 
   public void unsafeSetBody(SEXP body) {
     this.body = () -> body;
+    this.layout = null;
+    resetJit();
   }
 
   public void unsafeSetEnclosingEnvironment(Environment v) {
     this.enclosingEnvironment = v;
+    resetJit();
   }
 
   @Override
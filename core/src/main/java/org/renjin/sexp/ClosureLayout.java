@@ -0,0 +1,212 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.sexp;
+
+import org.renjin.eval.ArgumentMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The layout of the frame of a {@link Closure}'s {@link FunctionEnvironment}, computed once per closure.
+ *
+ * <p>The formal arguments are assigned the first slots of the frame, followed by all the local variables
+ * which can be found by scanning the closure's body for assignments. Variables created in other ways,
+ * for example by {@code assign()} or {@code eval()}, are stored in the environment's overflow map.</p>
+ */
+public final class ClosureLayout {
+
+  /**
+   * Frames with at most this many slots are searched linearly, which is faster
+   * than hashing for small frames.
+   */
+  private static final int MAX_LINEAR_SEARCH = 8;
+
+  private static final Symbol ASSIGN = Symbol.get("<-");
+  private static final Symbol EQUALS_ASSIGN = Symbol.get("=");
+  private static final Symbol FOR = Symbol.get("for");
+  private static final Symbol FUNCTION = Symbol.get("function");
+  private static final Symbol QUOTE = Symbol.get("quote");
+
+  private final ArgumentMatcher matcher;
+  private final SEXP[] frameNames;
+
+  /**
+   * Open addressing hash table mapping symbols to slot index + 1, or {@code null} for small frames.
+   */
+  private final int[] slotTable;
+
+  private ClosureLayout(ArgumentMatcher matcher, SEXP[] frameNames) {
+    this.matcher = matcher;
+    this.frameNames = frameNames;
+    if(frameNames.length > MAX_LINEAR_SEARCH) {
+      this.slotTable = buildSlotTable(frameNames);
+    } else {
+      this.slotTable = null;
+    }
+  }
+
+  /**
+   * Creates a layout with slots for the closure's formals and all local variables assigned
+   * in the closure's body.
+   */
+  public static ClosureLayout analyze(PairList formals, SEXP body) {
+    ArgumentMatcher matcher = new ArgumentMatcher(formals);
+    List<SEXP> names = new ArrayList<>();
+    for (SEXP formalName : matcher.getFormalNameArray()) {
+      names.add(formalName);
+    }
+    findAssignedVariables(body, names);
+
+    return new ClosureLayout(matcher, names.toArray(new SEXP[names.size()]));
+  }
+
+  /**
+   * Creates a layout with the given frame names, which must begin with the names of the formals.
+   */
+  public static ClosureLayout of(PairList formals, SEXP[] frameNames) {
+    return new ClosureLayout(new ArgumentMatcher(formals), frameNames);
+  }
+
+  /**
+   * Creates a copy of this layout sharing the same argument matcher, but with a different set
+   * of frame names, for example those chosen by the compiler.
+   */
+  public ClosureLayout withFrameNames(SEXP[] frameNames) {
+    return new ClosureLayout(matcher, frameNames);
+  }
+
+  private static void findAssignedVariables(SEXP exp, List<SEXP> names) {
+    if(!(exp instanceof FunctionCall)) {
+      return;
+    }
+    FunctionCall call = (FunctionCall) exp;
+    SEXP function = call.getFunction();
+
+    if(function == FUNCTION || function == QUOTE) {
+      // Variables assigned in nested functions belong to their own frames
+      return;
+    }
+
+    if(function == ASSIGN || function == EQUALS_ASSIGN) {
+      addVariable(assignmentTarget(call.getArguments()), names);
+
+    } else if(function == FOR) {
+      addVariable(call.getArguments() instanceof PairList.Node ? call.getArgument(0) : null, names);
+    }
+
+    findAssignedVariables(function, names);
+    for (PairList.Node node : call.getArguments().nodes()) {
+      findAssignedVariables(node.getValue(), names);
+    }
+  }
+
+  /**
+   * Finds the variable assigned by a call to {@code <-}, which may be the target of
+   * a complex assignment like {@code names(x)[1] <- "a"}.
+   */
+  private static SEXP assignmentTarget(PairList arguments) {
+    if(!(arguments instanceof PairList.Node)) {
+      return null;
+    }
+    SEXP target = ((PairList.Node) arguments).getValue();
+    while(target instanceof FunctionCall) {
+      PairList targetArguments = ((FunctionCall) target).getArguments();
+      if(!(targetArguments instanceof PairList.Node)) {
+        return null;
+      }
+      target = ((PairList.Node) targetArguments).getValue();
+    }
+    if(target instanceof StringVector && target.length() == 1) {
+      String name = ((StringVector) target).getElementAsString(0);
+      return name == null ? null : Symbol.get(name);
+    }
+    return target;
+  }
+
+  private static void addVariable(SEXP name, List<SEXP> names) {
+    if(name instanceof Symbol && name != Symbol.MISSING_ARG && name != Symbols.ELLIPSES &&
+        !((Symbol) name).isVarArgReference() && !names.contains(name)) {
+      names.add(name);
+    }
+  }
+
+  private static int[] buildSlotTable(SEXP[] frameNames) {
+    int size = Integer.highestOneBit(frameNames.length * 2 - 1) << 1;
+    int[] table = new int[size];
+    int mask = size - 1;
+    for (int i = 0; i < frameNames.length; i++) {
+      int pos = hash(frameNames[i]) & mask;
+      while(table[pos] != 0) {
+        pos = (pos + 1) & mask;
+      }
+      table[pos] = i + 1;
+    }
+    return table;
+  }
+
+  private static int hash(SEXP name) {
+    // String caches its hash code, so this is cheaper than System.identityHashCode()
+    int h = ((Symbol) name).getPrintName().hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  public ArgumentMatcher getMatcher() {
+    return matcher;
+  }
+
+  /**
+   * @return the names of the slots of the frame, beginning with the formals.
+   */
+  public SEXP[] getFrameNames() {
+    return frameNames;
+  }
+
+  public int getFormalCount() {
+    return matcher.getFormalCount();
+  }
+
+  /**
+   * @return the index of the slot assigned to {@code name}, or -1 if the variable has no slot.
+   */
+  public int indexOf(Symbol name) {
+    SEXP[] names = this.frameNames;
+    int[] table = this.slotTable;
+    if(table == null) {
+      for (int i = 0; i < names.length; i++) {
+        if (names[i] == name) {
+          return i;
+        }
+      }
+      return -1;
+    }
+    int mask = table.length - 1;
+    int pos = hash(name) & mask;
+    while(true) {
+      int slot = table[pos];
+      if(slot == 0) {
+        return -1;
+      }
+      if(names[slot - 1] == name) {
+        return slot - 1;
+      }
+      pos = (pos + 1) & mask;
+    }
+  }
+}
@@ -105,6 +105,16 @@ public class ComplexArrayVector extends ComplexVector {
     return new Complex(real, imag);
   }
 
+  @Override
+  public double getElementAsDouble(int index) {
+    return values[index*2];
+  }
+
+  @Override
+  public double getElementAsComplexIm(int index) {
+    return values[index*2+1];
+  }
+
   @Override
   protected SEXP cloneWithNewAttributes(AttributeMap attributes) {
     return new ComplexArrayVector(this.values, attributes);
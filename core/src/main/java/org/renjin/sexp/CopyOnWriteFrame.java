@@ -0,0 +1,117 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.sexp;
+
+import org.renjin.eval.Context;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * A {@link Frame} which initially shares the bindings of an existing frame, but
+ * keeps all modifications to itself.
+ *
+ * <p>This is used to give a forked {@link org.renjin.eval.Session} its own global environment, and a
+ * session created from a {@link org.renjin.eval.SessionTemplate} its own base and package environments,
+ * without copying the parent's bindings. The parent frame must not be modified concurrently
+ * by another thread while this frame is in use.</p>
+ */
+public class CopyOnWriteFrame implements Frame {
+
+  private final Frame parent;
+
+  private final HashFrame local = new HashFrame();
+
+  /**
+   * Symbols which have been removed from this frame, and should no longer be
+   * looked up in the parent.
+   */
+  private final Set<Symbol> removed = Collections.newSetFromMap(new IdentityHashMap<Symbol, Boolean>());
+
+  private boolean cleared = false;
+
+  public CopyOnWriteFrame(Frame parent) {
+    this.parent = parent;
+  }
+
+  private boolean isVisibleInParent(Symbol name) {
+    return !cleared && !removed.contains(name);
+  }
+
+  @Override
+  public Set<Symbol> getSymbols() {
+    Set<Symbol> symbols = new HashSet<>(local.getSymbols());
+    if(!cleared) {
+      for (Symbol symbol : parent.getSymbols()) {
+        if(!removed.contains(symbol)) {
+          symbols.add(symbol);
+        }
+      }
+    }
+    return symbols;
+  }
+
+  @Override
+  public SEXP getVariable(Symbol name) {
+    SEXP value = local.getVariable(name);
+    if(value == Symbol.UNBOUND_VALUE && isVisibleInParent(name)) {
+      value = parent.getVariable(name);
+    }
+    return value;
+  }
+
+  @Override
+  public Function getFunction(Context context, Symbol name) {
+    if(local.getVariable(name) != Symbol.UNBOUND_VALUE) {
+      return local.getFunction(context, name);
+    }
+    if(isVisibleInParent(name)) {
+      return parent.getFunction(context, name);
+    }
+    return null;
+  }
+
+  @Override
+  public boolean isMissingArgument(Symbol name) {
+    if(local.getVariable(name) != Symbol.UNBOUND_VALUE) {
+      return local.isMissingArgument(name);
+    }
+    return isVisibleInParent(name) && parent.isMissingArgument(name);
+  }
+
+  @Override
+  public void setVariable(Symbol name, SEXP value) {
+    local.setVariable(name, value);
+  }
+
+  @Override
+  public void clear() {
+    local.clear();
+    removed.clear();
+    cleared = true;
+  }
+
+  @Override
+  public void remove(Symbol name) {
+    local.remove(name);
+    removed.add(name);
+  }
+}
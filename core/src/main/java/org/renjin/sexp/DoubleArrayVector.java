@@ -22,7 +22,7 @@ import java.util.Arrays;
 import java.util.Collection;
 
 
-public final class DoubleArrayVector extends DoubleVector {
+public final class DoubleArrayVector extends DoubleVector implements OwnableVector {
 
   public static final DoubleArrayVector ZERO = new DoubleArrayVector(0);
 
@@ -35,6 +35,15 @@ public final class DoubleArrayVector extends DoubleVector {
 
   private double[] values;
 
+  /**
+   * The number of unused elements at the end of {@code values}, reserved when an owned
+   * vector grows in place. Left in place when the vector is disowned. The owner's next
+   * replacement copies the vector without it.
+   */
+  private int spare;
+
+  private Environment owner;
+
   private DoubleArrayVector(AttributeMap attributes) {
     super(attributes);
   }
@@ -115,7 +124,7 @@ public final class DoubleArrayVector extends DoubleVector {
   @Override
   protected SEXP cloneWithNewAttributes(AttributeMap attributes) {
     DoubleArrayVector clone = new DoubleArrayVector(attributes);
-    clone.values = values;
+    clone.values = trimmedValues();
     return clone;
   }
 
@@ -126,7 +135,48 @@ public final class DoubleArrayVector extends DoubleVector {
 
   @Override
   public int length() {
-    return values.length;
+    return values.length - spare;
+  }
+
+  @Override
+  public boolean isOwnedBy(Environment environment) {
+    return owner == environment;
+  }
+
+  @Override
+  public void setOwner(Environment environment) {
+    owner = environment;
+  }
+
+  @Override
+  public void disown() {
+    if(owner != null) {
+      owner = null;
+    }
+  }
+
+  /**
+   * Replaces the element at {@code index} without copying, growing the vector with {@code NA}s
+   * if {@code index} is past its end. May only be called on a vector that is not referenced
+   * from anywhere else.
+   */
+  public void setElementInPlace(int index, double value) {
+    int length = length();
+    if(index >= length) {
+      if(index >= values.length) {
+        values = Arrays.copyOf(values, Math.max(index + 1, values.length + (values.length >> 1)));
+      }
+      Arrays.fill(values, length, index, NA);
+      spare = values.length - index - 1;
+    }
+    values[index] = value;
+  }
+
+  /**
+   * @return the backing array, without any spare capacity reserved when this vector grew in place.
+   */
+  private double[] trimmedValues() {
+    return spare == 0 ? values : Arrays.copyOf(values, length());
   }
 
 
@@ -173,12 +223,12 @@ public final class DoubleArrayVector extends DoubleVector {
    * @return a pointer to the underlying array. DO NOT MODIFY!!
    */
   public double[] toDoubleArrayUnsafe() {
-    return values;
+    return trimmedValues();
   }
 
   @Override
   public double[] toDoubleArray() {
-    return Arrays.copyOf(this.values, this.values.length);
+    return Arrays.copyOf(this.values, length());
   }
 
   @Override
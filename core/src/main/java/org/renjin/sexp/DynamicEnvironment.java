@@ -24,6 +24,7 @@ import java.util.Collection;
 
 public class DynamicEnvironment extends Environment {
   private final Frame frame;
+  private DynamicEnvironment frameSibling;
 
   public DynamicEnvironment(String name, Environment parent, AttributeMap attributes, Frame frame) {
     super(parent, name, attributes);
@@ -46,6 +47,35 @@ public class DynamicEnvironment extends Environment {
     this(null, Environment.EMPTY, attributes, new HashFrame());
   }
 
+  /**
+   * Creates a new environment with the given {@code parent}, whose bindings start out as those of this
+   * environment, but which keeps any changes to itself. This environment must not be modified while the
+   * copy is in use.
+   */
+  public DynamicEnvironment copyOnWrite(Environment parent) {
+    DynamicEnvironment copy = new DynamicEnvironment(null, parent, getAttributes(), new CopyOnWriteFrame(frame));
+    copyStateTo(copy);
+    return copy;
+  }
+
+  /**
+   * Links the binding versions of this environment and {@code other}, which must share this
+   * environment's frame, as the base environment and the base namespace do. A binding changed through
+   * either environment then invalidates lookups cached through both.
+   */
+  public void shareFrameWith(DynamicEnvironment other) {
+    if(other.frame != frame) {
+      throw new IllegalArgumentException("environments do not share a frame");
+    }
+    this.frameSibling = other;
+    other.frameSibling = this;
+  }
+
+  @Override
+  protected Environment getFrameSibling() {
+    return frameSibling;
+  }
+
   @Override
   protected Collection<Symbol> listBindings() {
     return frame.getSymbols();
@@ -25,6 +25,7 @@ import org.renjin.repackaged.guava.collect.Sets;
 import org.renjin.repackaged.guava.collect.UnmodifiableIterator;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.function.Predicate;
 
 /**
@@ -65,6 +66,21 @@ public abstract class Environment extends AbstractSEXP implements Recursive {
   private Set<Symbol> lockedBindings;
   private Map<Symbol, Closure> activeBindings = null;
 
+  private static final AtomicIntegerFieldUpdater<Environment> BINDING_VERSION =
+      AtomicIntegerFieldUpdater.newUpdater(Environment.class, "bindingVersion");
+
+  /**
+   * Incremented whenever a binding is added to or removed from this environment, a function may have been
+   * rebound, or its parent changes, so that cached lookups through this environment can be cheaply validated.
+   *
+   * <p>The version is incremented after the frame has been updated, so a thread which reads the version
+   * and then searches the frame will see at least the bindings made before that version. Caches must
+   * therefore read the version of an environment before searching it.</p>
+   *
+   * @see FunctionInlineCache
+   */
+  private volatile int bindingVersion;
+
   /**
    * The root of the environment hierarchy.
    */
@@ -101,6 +117,7 @@ public abstract class Environment extends AbstractSEXP implements Recursive {
       activeBindings.remove(symbol);
     }
     removeBinding(symbol);
+    bindingChanged();
   }
 
 
@@ -118,12 +135,25 @@ public abstract class Environment extends AbstractSEXP implements Recursive {
   /**
    * return the parent Environment
    *
+   * <p>For the shared {@link BaseNamespaceEnvironment base namespace}, this is the global environment of
+   * the session which created it. Walks that may pass through a namespace on behalf of evaluated code
+   * should use {@link #getParent(Context)}.</p>
+   *
    * @return parent environment
    */
   public final Environment getParent() {
     return parent;
   }
 
+  /**
+   * Returns the parent of this environment as seen by code evaluated in {@code context}. This is
+   * the same as {@link #getParent()}, except for the {@link BaseNamespaceEnvironment base namespace},
+   * which is shared between sessions but whose parent is the evaluating session's global environment.
+   */
+  public Environment getParent(Context context) {
+    return parent;
+  }
+
   /**
    * set parent environment to provided environment
    *
@@ -131,6 +161,48 @@ public abstract class Environment extends AbstractSEXP implements Recursive {
    */
   public final void setParent(Environment parent) {
     this.parent = parent;
+    bindingChanged();
+  }
+
+  /**
+   * @return a stamp which changes whenever a binding is added or removed, a function binding changes, or
+   * the parent of this environment changes.
+   */
+  public final int getBindingVersion() {
+    return bindingVersion;
+  }
+
+  protected final void bindingChanged() {
+    BINDING_VERSION.incrementAndGet(this);
+    Environment sibling = getFrameSibling();
+    if(sibling != null) {
+      BINDING_VERSION.incrementAndGet(sibling);
+    }
+  }
+
+  /**
+   * @return another environment over the same frame as this one, whose binding version must change
+   * whenever this environment's does, or {@code null}
+   */
+  protected Environment getFrameSibling() {
+    return null;
+  }
+
+  /**
+   * Called after a binding in this environment has changed from {@code previous} to {@code value}.
+   * Rebinding a variable from one ordinary value to another doesn't affect function lookup, and
+   * leaves the version unchanged.
+   */
+  protected final void bindingChanged(SEXP previous, SEXP value) {
+    if(previous == Symbol.UNBOUND_VALUE || mayBeFunction(previous) || mayBeFunction(value)) {
+      bindingChanged();
+    }
+  }
+
+  private static boolean mayBeFunction(SEXP value) {
+    // Most bindings hold vectors, which are ruled out with a class check before the
+    // slower interface check for Function.
+    return !(value instanceof AbstractVector) && (value instanceof Function || value instanceof Promise);
   }
 
   public final Environment insertAbove(Frame frame) {
@@ -184,7 +256,9 @@ public abstract class Environment extends AbstractSEXP implements Recursive {
    * @param value value to be assigned.
    */
   public final void setVariableUnsafe(Symbol symbol, SEXP value) {
+    SEXP previous = getBinding(symbol);
     updateBinding(symbol, value);
+    bindingChanged(previous, value);
   }
 
   /**
@@ -269,7 +343,9 @@ public abstract class Environment extends AbstractSEXP implements Recursive {
       throw new EvalException("cannot add bindings to a locked environment");
     }
 
+    SEXP previous = getBinding(symbol);
     updateBinding(symbol, value);
+    bindingChanged(previous, value);
 
     return Null.INSTANCE;
   }
@@ -294,6 +370,7 @@ public abstract class Environment extends AbstractSEXP implements Recursive {
       activeBindings = new HashMap<>();
     }
     activeBindings.put(symbol, closure);
+    bindingChanged();
   }
 
   /**
@@ -338,7 +415,7 @@ public abstract class Environment extends AbstractSEXP implements Recursive {
       }
     }
     if(inherits) {
-      return parent.findVariable(context, symbol, predicate, inherits);
+      return getParent(context).findVariable(context, symbol, predicate, inherits);
     } else {
       return Symbol.UNBOUND_VALUE;
     }
@@ -359,11 +436,11 @@ public abstract class Environment extends AbstractSEXP implements Recursive {
     if(activeBindings != null && activeBindings.containsKey(symbol)) {
       return evaluateFunction(context, symbol);
     }
-    SEXP value = getBinding(symbol);
+    SEXP value = release(getBinding(symbol));
     if(value != Symbol.UNBOUND_VALUE) {
       return value;
     }
-    return parent.findVariable(context, symbol);
+    return getParent(context).findVariable(context, symbol);
   }
 
   private SEXP evaluateFunction(Context context, Symbol symbol) {
@@ -397,7 +474,7 @@ public abstract class Environment extends AbstractSEXP implements Recursive {
       return findVarArg(symbol.getVarArgReferenceIndex());
     }
     assert ( !isActiveBinding(symbol) );
-    SEXP value = getBinding(symbol);
+    SEXP value = release(getBinding(symbol));
     if(value != Symbol.UNBOUND_VALUE) {
       return value;
     }
@@ -448,7 +525,7 @@ public abstract class Environment extends AbstractSEXP implements Recursive {
     if(value != null) {
       return value;
     }
-    return parent.findFunction(context, symbol);
+    return getParent(context).findFunction(context, symbol);
   }
 
 
@@ -476,6 +553,21 @@ public abstract class Environment extends AbstractSEXP implements Recursive {
     }
   }
 
+  /**
+   * Copies this environment's name, locks and active bindings to {@code copy}, an environment
+   * which has the same regular bindings.
+   */
+  protected final void copyStateTo(Environment copy) {
+    copy.name = name;
+    copy.locked = locked;
+    if(lockedBindings != null) {
+      copy.lockedBindings = Sets.newHashSet(lockedBindings);
+    }
+    if(activeBindings != null) {
+      copy.activeBindings = new HashMap<>(activeBindings);
+    }
+  }
+
   @Override
   public final int length() {
     int length = listBindings().size();
@@ -534,8 +626,20 @@ public abstract class Environment extends AbstractSEXP implements Recursive {
     visitor.visit(this);
   }
 
+  /**
+   * Iterates over the ancestors of this environment as stored, without resolving the parent of the
+   * {@link BaseNamespaceEnvironment base namespace} for the evaluating session. Walks that may pass
+   * through a namespace should use {@link #parents(Context)} instead.
+   */
   public final Iterable<Environment> parents() {
-    return () -> new EnvIterator(Environment.this.getParent());
+    return () -> new EnvIterator(null, Environment.this.getParent());
+  }
+
+  /**
+   * Iterates over the ancestors of this environment as seen by code evaluated in {@code context}.
+   */
+  public final Iterable<Environment> parents(Context context) {
+    return () -> new EnvIterator(context, Environment.this.getParent(context));
   }
 
   /**
@@ -573,7 +677,7 @@ public abstract class Environment extends AbstractSEXP implements Recursive {
     if(activeBindings != null && activeBindings.containsKey(symbol)) {
       return evaluateFunction(context, symbol);
     }
-    return getBinding(symbol);
+    return release(getBinding(symbol));
   }
 
   /**
@@ -600,16 +704,72 @@ public abstract class Environment extends AbstractSEXP implements Recursive {
    * @return SEXP value
    */
   public final SEXP getVariableUnsafe(Symbol symbol) {
-    return getBinding(symbol);
+    return release(getBinding(symbol));
   }
 
   public final SEXP getVariableOrThrowIfActivelyBound(Symbol symbol) {
     if (isActiveBinding(symbol)) {
       throw new IllegalStateException("Encountered active binding " + symbol + " in environment " + getName());
     }
+    return release(getBinding(symbol));
+  }
+
+  /**
+   * Returns the value bound to {@code symbol} in this environment's own frame without invoking active
+   * bindings and without releasing ownership of an {@link OwnableVector}. The caller must neither
+   * retain nor modify the returned value.
+   *
+   * @param symbol the {@code SYMSXP} that should be looked up
+   * @return the bound value, or {@code Symbol.UNBOUND_VALUE} if there is no regular binding.
+   */
+  public final SEXP peekVariable(Symbol symbol) {
     return getBinding(symbol);
   }
 
+  /**
+   * Returns the vector bound to {@code symbol} in this environment's own frame if that binding is its
+   * only reference, so that it may be modified in place.
+   *
+   * @param symbol the {@code SYMSXP} that should be looked up
+   * @return the owned vector, or {@code null} if the binding is locked or active, or its value may be shared.
+   */
+  public final OwnableVector getOwnedVariable(Symbol symbol) {
+    if(bindingIsLocked(symbol) || isActiveBinding(symbol)) {
+      return null;
+    }
+    SEXP value = getBinding(symbol);
+    if(value instanceof OwnableVector && ((OwnableVector) value).isOwnedBy(this)) {
+      return (OwnableVector) value;
+    }
+    return null;
+  }
+
+  /**
+   * Binds a newly allocated vector to {@code symbol}, recording the binding as its only reference.
+   * The caller must not keep any other reference to {@code value}.
+   *
+   * @param context the current evaluation context
+   * @param symbol  the {@code SYMSXP} that should be assigned
+   * @param value a vector that is not referenced from anywhere else
+   */
+  public final void setOwnedVariable(Context context, Symbol symbol, OwnableVector value) {
+    setVariable(context, symbol, value);
+    if(!isActiveBinding(symbol)) {
+      value.setOwner(this);
+    }
+  }
+
+  /**
+   * Releases ownership of a value that is read from a binding, as it may now be
+   * referenced from elsewhere.
+   */
+  static SEXP release(SEXP value) {
+    if(value instanceof AbstractVector) {
+      ((AbstractVector) value).disown();
+    }
+    return value;
+  }
+
   /**
    * getVariable returns the value for the provided symbol without handling active bindings.
    * Does not invoke active bindings
@@ -637,9 +797,11 @@ public abstract class Environment extends AbstractSEXP implements Recursive {
   }
 
   private static class EnvIterator extends UnmodifiableIterator<Environment> {
+    private final Context context;
     private Environment next;
 
-    private EnvIterator(Environment next) {
+    private EnvIterator(Context context, Environment next) {
+      this.context = context;
       this.next = next;
     }
 
@@ -651,7 +813,7 @@ public abstract class Environment extends AbstractSEXP implements Recursive {
     @Override
     public Environment next() {
       Environment toReturn = next;
-      next = next.parent;
+      next = context == null ? next.parent : next.getParent(context);
       return toReturn;
     }
   }
@@ -36,6 +36,12 @@ public class FunctionCall extends PairList.Node {
 
   public Object cache;
 
+  /**
+   * The inline cache of the function called, kept apart from {@link #cache} so that call
+   * sites which also cache a closure layout or a compiled loop body can use both.
+   */
+  FunctionInlineCache functionCache;
+
   public FunctionCall(SEXP function, PairList arguments) {
     super(function, arguments);
   }
@@ -74,7 +80,12 @@ public class FunctionCall extends PairList.Node {
     context.clearInvisibleFlag();
 
     SEXP fn = getFunction();
-    Function functionExpr = context.evaluateFunction(rho, fn);
+    Function functionExpr;
+    if(fn instanceof Symbol && !((Symbol) fn).isReservedWord()) {
+      functionExpr = FunctionInlineCache.findFunction(context, rho, this, (Symbol) fn);
+    } else {
+      functionExpr = context.evaluateFunction(rho, fn);
+    }
 
     try {
       return functionExpr.apply(context, rho, this);
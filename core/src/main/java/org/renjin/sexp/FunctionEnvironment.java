@@ -33,11 +33,13 @@ public final class FunctionEnvironment extends Environment {
    * An array of Symbols that correspond to the names of the local variables stored in {@link #locals}.
    *
    * Names of formal arguments are stored at the beginning. The rest of the array contains names of local variables
-   * that were found at compile time. In compiled code, these variables can be refered to by index rather than name,
-   * sparing the expense of a hash lookup.
+   * that were found at compile time, or by the closure's {@link ClosureLayout}. In compiled code, these variables
+   * can be refered to by index rather than name, sparing the expense of a hash lookup.
    */
   private final SEXP[] localNames;
 
+  private final ClosureLayout layout;
+
 
   /**
    * An array of arguments passed to this function. Missing arguments will be {@code null} in the array, even if they
@@ -51,14 +53,15 @@ public final class FunctionEnvironment extends Environment {
   private final DispatchTable dispatchTable;
 
   /**
-   * A map to store bindings of variables not identified at compile time. It is only allocated if needed.
+   * A map to store bindings of variables which were not assigned a slot in the layout. It is only allocated if needed.
    */
   private IdentityHashMap<Symbol, SEXP> overflow = null;
 
 
-  public FunctionEnvironment(Environment parent, SEXP[] localNames, SEXP[] matchedArguments, MatchedArguments matching, SEXP[] locals, DispatchTable dispatch) {
+  public FunctionEnvironment(Environment parent, ClosureLayout layout, SEXP[] matchedArguments, MatchedArguments matching, SEXP[] locals, DispatchTable dispatch) {
     super(parent, null, AttributeMap.EMPTY);
-    this.localNames = localNames;
+    this.layout = layout;
+    this.localNames = layout.getFrameNames();
     this.matchedArguments = matchedArguments;
     this.matching = matching;
     this.locals = locals;
@@ -192,14 +195,16 @@ public final class FunctionEnvironment extends Environment {
   }
 
   public void set(int index, SEXP value) {
+    SEXP previous = locals[index];
     locals[index] = value;
+    bindingChanged(previous, value);
     if(index < matchedArguments.length) {
       matchedArguments[index] = value;
     }
   }
 
   public SEXP getPromised(int index) {
-    return locals[index];
+    return release(locals[index]);
   }
 
 
@@ -215,14 +220,14 @@ public final class FunctionEnvironment extends Environment {
   public SEXP get(Context context, int index) {
     SEXP value = locals[index];
     if(value != null) {
-      return value.force(context);
+      return release(value).force(context);
     }
     Symbol symbol = (Symbol) localNames[index];
 
     if(overflow != null) {
       value = overflow.get(symbol);
       if(value != null) {
-        return value.force(context);
+        return release(value).force(context);
       }
     }
 
@@ -239,12 +244,7 @@ public final class FunctionEnvironment extends Environment {
   }
 
   private int indexOf(Symbol name) {
-    for (int i = 0; i < localNames.length; i++) {
-      if (localNames[i] == name) {
-        return i;
-      }
-    }
-    return -1;
+    return layout.indexOf(name);
   }
 
   @Override
@@ -383,7 +383,7 @@ public final class FunctionEnvironment extends Environment {
    * was provided for the first formal.
    */
   public SEXP getFormalValue(int index) {
-    return matchedArguments[index];
+    return release(matchedArguments[index]);
   }
 
   public Symbol getLocalName(int index) {
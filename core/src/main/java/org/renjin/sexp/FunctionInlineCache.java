@@ -0,0 +1,297 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.sexp;
+
+import org.renjin.eval.Context;
+import org.renjin.eval.EvalException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Inline cache of the function resolved at a {@link FunctionCall} site.
+ *
+ * <p>Looking up a function by name requires walking the chain of enclosing environments, which for a call
+ * to a base function like {@code length(x)} includes the global environment, every attached package
+ * and finally the base environment. The immediate environment in which the call is evaluated
+ * usually changes with each call, but its parent rarely does, so we cache the function found by searching
+ * from the parent environment. Up to {@link #MAX_ENTRIES} parent environments are cached per call site
+ * before the site is considered megamorphic and no longer cached.</p>
+ *
+ * <p>Each entry records the environments searched from the parent environment up to and including the one
+ * in which the function was found, along with their {@link Environment#getBindingVersion() binding versions}.
+ * An environment's version changes whenever a function is bound or unbound in it, or its parent changes, for
+ * example when a package is attached or detached. An entry is valid as long as none of these versions have
+ * changed. Versions belong to the environments themselves, so a change in one session never invalidates
+ * entries for the environments of another.</p>
+ *
+ * <p>Call sites live as long as the closures in whose bodies they appear, so we do not cache
+ * searches which pass through a {@link FunctionEnvironment}: an entry would keep the function's
+ * frame alive long after the call returned, and a new environment is created for each call anyway.
+ * This means that calls within a closure defined inside another function are not cached.</p>
+ *
+ * <p>The {@link BaseNamespaceEnvironment base namespace} is shared between sessions, but its parent is the
+ * global environment of the session evaluating the call. An entry whose search continued past the base
+ * namespace is therefore only valid for the session whose global environment it searched.</p>
+ */
+public final class FunctionInlineCache {
+
+  static final int MAX_ENTRIES = 4;
+
+  /**
+   * True to collect global statistics on cache hits and misses, enabled with the
+   * {@code renjin.profile.inlinecache} system property.
+   */
+  private static final boolean PROFILE = Boolean.getBoolean("renjin.profile.inlinecache");
+
+  private static final LongAdder HITS = new LongAdder();
+  private static final LongAdder MISSES = new LongAdder();
+  private static final LongAdder INVALIDATIONS = new LongAdder();
+  private static final LongAdder MEGAMORPHIC = new LongAdder();
+
+  private static final class Entry {
+    private final Environment environment;
+    private final Function function;
+
+    /**
+     * The environments searched, starting with {@code environment}, and their versions before they were searched.
+     */
+    private final Environment[] searched;
+    private final int[] versions;
+
+    /**
+     * The index of the base namespace in {@code searched} if the search continued past it, or -1.
+     */
+    private final int baseNamespaceIndex;
+
+    /**
+     * False if the search passed through a {@link FunctionEnvironment}, which we must not hold on to.
+     */
+    private final boolean cacheable;
+
+    Entry(Environment environment, Function function, List<Environment> searched, List<Integer> versions) {
+      this.environment = environment;
+      this.function = function;
+      this.searched = searched.toArray(new Environment[searched.size()]);
+      this.versions = new int[versions.size()];
+      for (int i = 0; i < this.versions.length; i++) {
+        this.versions[i] = versions.get(i);
+      }
+      int baseNamespaceIndex = -1;
+      boolean cacheable = true;
+      for (int i = 0; i < this.searched.length; i++) {
+        if(this.searched[i] instanceof BaseNamespaceEnvironment && i + 1 < this.searched.length) {
+          baseNamespaceIndex = i;
+        }
+        if(this.searched[i] instanceof FunctionEnvironment) {
+          cacheable = false;
+        }
+      }
+      this.baseNamespaceIndex = baseNamespaceIndex;
+      this.cacheable = cacheable;
+    }
+
+    boolean isValid(Context context) {
+      for (int i = 0; i < searched.length; i++) {
+        if(searched[i].getBindingVersion() != versions[i]) {
+          return false;
+        }
+      }
+      return baseNamespaceIndex == -1 ||
+          searched[baseNamespaceIndex].getParent(context) == searched[baseNamespaceIndex + 1];
+    }
+  }
+
+  /**
+   * Call sites are shared by the sessions forked for the workers of {@code mclapply()}, so the entries
+   * are replaced rather than modified. Concurrent updates may lose an entry, which is only re-searched.
+   */
+  private volatile Entry[] entries = new Entry[0];
+  private volatile boolean megamorphic;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  FunctionInlineCache() {
+  }
+
+  /**
+   * Finds the function named {@code symbol} for a call evaluated in {@code rho}, using and updating
+   * the inline cache of the given {@code call}.
+   */
+  static Function findFunction(Context context, Environment rho, FunctionCall call, Symbol symbol) {
+
+    // The function's own environment is always searched
+    Function function = rho.getFunctionBinding(context, symbol);
+    if(function != null) {
+      return function;
+    }
+
+    Environment parent = rho.getParent(context);
+    FunctionInlineCache cache = call.functionCache;
+    if(cache == null) {
+      cache = new FunctionInlineCache();
+      call.functionCache = cache;
+    }
+
+    return cache.find(context, parent, symbol);
+  }
+
+  private Function find(Context context, Environment parent, Symbol symbol) {
+    if(megamorphic) {
+      return findOrThrow(context, parent, symbol);
+    }
+
+    Entry[] entries = this.entries;
+    for (int i = 0; i < entries.length; i++) {
+      Entry entry = entries[i];
+      if(entry != null && entry.environment == parent) {
+        if(entry.isValid(context)) {
+          hits.increment();
+          if(PROFILE) {
+            HITS.increment();
+          }
+          return entry.function;
+        }
+        if(PROFILE) {
+          INVALIDATIONS.increment();
+        }
+        Entry updated = search(context, parent, symbol);
+        if(updated.cacheable) {
+          update(i, updated);
+        }
+        return updated.function;
+      }
+    }
+
+    misses.increment();
+    if(PROFILE) {
+      MISSES.increment();
+    }
+
+    if(parent instanceof FunctionEnvironment) {
+      return findOrThrow(context, parent, symbol);
+    }
+
+    if(entries.length < MAX_ENTRIES) {
+      Entry entry = search(context, parent, symbol);
+      if(entry.cacheable) {
+        update(entries.length, entry);
+      }
+      return entry.function;
+    } else {
+      // Too many different environments, stop caching and release the
+      // environments we are holding on to
+      megamorphic = true;
+      this.entries = new Entry[0];
+      if(PROFILE) {
+        MEGAMORPHIC.increment();
+      }
+      return findOrThrow(context, parent, symbol);
+    }
+  }
+
+  /**
+   * Searches for the function from {@code parent}, recording the version of each environment
+   * before it is searched.
+   */
+  private static Entry search(Context context, Environment parent, Symbol symbol) {
+    List<Environment> searched = new ArrayList<>();
+    List<Integer> versions = new ArrayList<>();
+    Environment environment = parent;
+    while(environment != Environment.EMPTY) {
+      versions.add(environment.getBindingVersion());
+      searched.add(environment);
+
+      Function function = environment.getFunctionBinding(context, symbol);
+      if(function != null) {
+        return new Entry(parent, function, searched, versions);
+      }
+      environment = environment.getParent(context);
+    }
+    throw new EvalException("could not find function '%s'", symbol.getPrintName());
+  }
+
+  /**
+   * Replaces, or appends, the entry at {@code index}. The array is copied so that other
+   * threads evaluating the same call site always see a consistent set of entries.
+   */
+  private void update(int index, Entry entry) {
+    Entry[] updated = new Entry[Math.max(entries.length, index + 1)];
+    System.arraycopy(entries, 0, updated, 0, entries.length);
+    updated[index] = entry;
+    this.entries = updated;
+  }
+
+  private static Function findOrThrow(Context context, Environment parent, Symbol symbol) {
+    Function function = parent.findFunction(context, symbol);
+    if(function == null) {
+      throw new EvalException("could not find function '%s'", symbol.getPrintName());
+    }
+    return function;
+  }
+
+  /**
+   * @return the number of lookups at this call site answered from the cache.
+   */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * @return the number of lookups at this call site which missed the cache.
+   */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  public boolean isMegamorphic() {
+    return megamorphic;
+  }
+
+  /**
+   * @return the number of parent environments currently cached at this call site.
+   */
+  int getEntryCount() {
+    return entries.length;
+  }
+
+  /**
+   * @return a summary of cache hits and misses across all call sites, collected
+   * when the {@code renjin.profile.inlinecache} system property is set.
+   */
+  public static String getStatistics() {
+    long hits = HITS.sum();
+    long misses = MISSES.sum();
+    long total = hits + misses + INVALIDATIONS.sum();
+    return "hits: " + hits +
+        ", misses: " + misses +
+        ", invalidations: " + INVALIDATIONS.sum() +
+        ", megamorphic sites: " + MEGAMORPHIC.sum() +
+        ", hit rate: " + (total == 0 ? "NA" : String.format("%.1f%%", 100d * hits / total));
+  }
+
+  public static void resetStatistics() {
+    HITS.reset();
+    MISSES.reset();
+    INVALIDATIONS.reset();
+    MEGAMORPHIC.reset();
+  }
+}
@@ -20,12 +20,21 @@ package org.renjin.sexp;
 
 import java.util.Arrays;
 
-public class IntArrayVector extends IntVector {
+public class IntArrayVector extends IntVector implements OwnableVector {
 
   public static final IntArrayVector NA_VECTOR = new IntArrayVector(IntVector.NA);
 
   private int[] values;
 
+  /**
+   * The number of unused elements at the end of {@code values}, reserved when an owned
+   * vector grows in place. Left in place when the vector is disowned. The owner's next
+   * replacement copies the vector without it.
+   */
+  private int spare;
+
+  private Environment owner;
+
   private IntArrayVector(AttributeMap attributes) {
     super(attributes);
   }
@@ -59,7 +68,7 @@ public class IntArrayVector extends IntVector {
   
   @Override
   public int length() {
-    return values.length;
+    return values.length - spare;
   }
 
   @Override
@@ -70,7 +79,7 @@ public class IntArrayVector extends IntVector {
   @Override
   protected SEXP cloneWithNewAttributes(AttributeMap attributes) {
     IntArrayVector clone = new IntArrayVector(attributes);
-    clone.values = values;
+    clone.values = trimmedValues();
     return clone;
   }
 
@@ -78,7 +87,48 @@ public class IntArrayVector extends IntVector {
    * @return a pointer to the underlying array. DO NOT MODIFY!!
    */
   public int[] toIntArrayUnsafe() {
-    return values;
+    return trimmedValues();
+  }
+
+  @Override
+  public boolean isOwnedBy(Environment environment) {
+    return owner == environment;
+  }
+
+  @Override
+  public void setOwner(Environment environment) {
+    owner = environment;
+  }
+
+  @Override
+  public void disown() {
+    if(owner != null) {
+      owner = null;
+    }
+  }
+
+  /**
+   * Replaces the element at {@code index} without copying, growing the vector with {@code NA}s
+   * if {@code index} is past its end. May only be called on a vector that is not referenced
+   * from anywhere else.
+   */
+  public void setElementInPlace(int index, int value) {
+    int length = length();
+    if(index >= length) {
+      if(index >= values.length) {
+        values = Arrays.copyOf(values, Math.max(index + 1, values.length + (values.length >> 1)));
+      }
+      Arrays.fill(values, length, index, NA);
+      spare = values.length - index - 1;
+    }
+    values[index] = value;
+  }
+
+  /**
+   * @return the backing array, without any spare capacity reserved when this vector grew in place.
+   */
+  private int[] trimmedValues() {
+    return spare == 0 ? values : Arrays.copyOf(values, length());
   }
 
   /**
@@ -35,13 +35,22 @@ import java.util.List;
 /**
  * Generic vector of {@code SEXP}s
  */
-public class ListVector extends AbstractVector implements Iterable<SEXP>, HasNamedValues, Recursive {
+public class ListVector extends AbstractVector implements Iterable<SEXP>, HasNamedValues, Recursive, OwnableVector {
 
   public static final String TYPE_NAME = "list";
   public static final ListVector EMPTY = new ListVector();
   public static final Vector.Type VECTOR_TYPE = new ListType();
 
-  private final SEXP[] values;
+  private SEXP[] values;
+
+  /**
+   * The number of unused elements at the end of {@code values}, reserved when an owned
+   * vector grows in place. Left in place when the vector is disowned. The owner's next
+   * replacement copies the vector without it.
+   */
+  private int spare;
+
+  private Environment owner;
 
   public ListVector(List<? extends SEXP> values,  AttributeMap attributes) {
     super(Null.INSTANCE, attributes);
@@ -103,17 +112,51 @@ public class ListVector extends AbstractVector implements Iterable<SEXP>, HasNam
 
   @Override
   public Iterator<SEXP> iterator() {
-    return Iterators.forArray(values);
+    return Iterators.limit(Iterators.forArray(values), length());
   }
 
   @Override
   public int length() {
-    return values.length;
+    return values.length - spare;
+  }
+
+  @Override
+  public boolean isOwnedBy(Environment environment) {
+    return owner == environment;
+  }
+
+  @Override
+  public void setOwner(Environment environment) {
+    owner = environment;
+  }
+
+  @Override
+  public void disown() {
+    if(owner != null) {
+      owner = null;
+    }
+  }
+
+  /**
+   * Replaces the element at {@code index} without copying, growing the list with {@code NULL}s
+   * if {@code index} is past its end. May only be called on a list that is not referenced
+   * from anywhere else.
+   */
+  public void setElementInPlace(int index, SEXP value) {
+    int length = length();
+    if(index >= length) {
+      if(index >= values.length) {
+        values = Arrays.copyOf(values, Math.max(index + 1, values.length + (values.length >> 1)));
+      }
+      Arrays.fill(values, length, index, Null.INSTANCE);
+      spare = values.length - index - 1;
+    }
+    values[index] = value;
   }
  
   @Override
   public int indexOf(Vector vector, int vectorIndex, int startIndex) {
-    for(int i=0;i!=values.length;++i) {
+    for(int i=0;i!=length();++i) {
       SEXP element = values[i]; 
       if(element instanceof AtomicVector && element.length() == 1) {
         if(((AtomicVector)element).indexOf(vector, vectorIndex, 0) != -1) {
@@ -277,7 +320,7 @@ public class ListVector extends AbstractVector implements Iterable<SEXP>, HasNam
    * @return a reference to the array backing this ListVector. 
    */
   public SEXP[] toArrayUnsafe() {
-    return values;
+    return spare == 0 ? values : Arrays.copyOf(values, length());
   }
   
   @Override
@@ -386,17 +429,27 @@ public class ListVector extends AbstractVector implements Iterable<SEXP>, HasNam
       return false;
     }
 
-    if (!Arrays.equals(values, that.values)) {
+    if (this.length() != that.length()) {
       return false;
     }
 
+    for (int i = 0; i < length(); i++) {
+      if (!values[i].equals(that.values[i])) {
+        return false;
+      }
+    }
+
     return true;
   }
 
   
   @Override
   public int hashCode() {
-    return Arrays.hashCode(values);
+    int hashCode = 1;
+    for (int i = 0; i < length(); i++) {
+      hashCode = 31 * hashCode + values[i].hashCode();
+    }
+    return hashCode;
   }
 
   @Override
@@ -455,7 +508,7 @@ public class ListVector extends AbstractVector implements Iterable<SEXP>, HasNam
 
   @Override
   protected SEXP cloneWithNewAttributes(AttributeMap attributes) {
-    return new ListVector(values, attributes);
+    return new ListVector(toArrayUnsafe(), attributes);
   }
 
 
@@ -0,0 +1,55 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.sexp;
+
+/**
+ * A vector whose storage the interpreter may update in place while it is referenced only by a
+ * single variable binding, much like a vector with a {@code NAMED} count of one in GNU R.
+ *
+ * <p>A vector becomes owned only when an element replacement such as {@code x[i] <- v} binds a
+ * private copy of it to {@code x}. Every read of a binding through {@link Environment} calls
+ * {@link #disown()}, so as soon as the vector might be referenced from anywhere else, the next
+ * replacement copies it again.</p>
+ *
+ * <p>Updates in place are not synchronized: growing a vector replaces its storage and its spare
+ * capacity in separate writes, during which its length is wrong. An owned vector must therefore never
+ * be reachable from another thread. Vectors reach other threads only through bindings, such as those
+ * of a global environment copied by {@link org.renjin.eval.Session#fork()}, which the owning thread
+ * does not update while the other threads run.</p>
+ *
+ * <p>Only implemented by {@link Vector}s. This interface does not extend {@code Vector} itself, because
+ * its nested {@code Builder} would then clash with the {@code Builder}s of the vector classes.</p>
+ */
+public interface OwnableVector extends SEXP {
+
+  /**
+   * @return {@code true} if the binding holding this vector in {@code environment} is its only reference.
+   */
+  boolean isOwnedBy(Environment environment);
+
+  /**
+   * Marks this vector as referenced only by a binding in {@code environment}.
+   */
+  void setOwner(Environment environment);
+
+  /**
+   * Releases ownership of this vector, after which it must be treated as immutable.
+   */
+  void disown();
+}
@@ -19,6 +19,12 @@
 package org.renjin.sexp;
 
 import org.renjin.eval.Context;
+import org.renjin.eval.EvalException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * Promises are the mechanism by which R implements lazy "call-by-need"
@@ -38,7 +44,32 @@ public class Promise extends AbstractSEXP implements Recursive {
 
   protected Environment environment;
   protected SEXP expression;
-  private SEXP result;
+  private volatile SEXP result;
+
+  /**
+   * The thread evaluating this promise, if any.
+   */
+  private volatile Thread evaluatingThread;
+
+  private static final AtomicReferenceFieldUpdater<Promise, Thread> EVALUATING_THREAD =
+      AtomicReferenceFieldUpdater.newUpdater(Promise.class, Thread.class, "evaluatingThread");
+
+  /**
+   * Guards {@link #WAITING}, and is the monitor on which threads wait for promises being evaluated
+   * by other threads.
+   */
+  private static final Object WAIT_LOCK = new Object();
+
+  /**
+   * The promise that each waiting thread is waiting for.
+   */
+  private static final Map<Thread, Promise> WAITING = new HashMap<>();
+
+  /**
+   * The number of threads waiting for a promise, so that evaluations only take {@link #WAIT_LOCK}
+   * to wake them when there are any.
+   */
+  private static final AtomicInteger WAITER_COUNT = new AtomicInteger(0);
 
   protected Promise(Environment environment, SEXP expression) {
     assert environment != null;
@@ -77,10 +108,91 @@ public class Promise extends AbstractSEXP implements Recursive {
    */
   @Override
   public SEXP force(Context context) {
-    if (result == null) {
-      this.result = doEval(context);
+    SEXP value = result;
+    if (value == null) {
+      value = forceOnce(context);
     }
-    return result;
+    return value;
+  }
+
+  /**
+   * Evaluates this promise exactly once, without holding a lock during the evaluation, as it may force
+   * other promises. Promises can be shared between threads, for example the lazily-loaded bindings of
+   * namespaces shared by sessions created from a template, or the arguments of a function whose closures
+   * are run by the workers of {@code mclapply()}.
+   *
+   * <p>A thread that forces a promise while another thread is evaluating it waits for the result. If the
+   * evaluation fails, the next thread to force the promise evaluates it again, as a promise is only
+   * evaluated once it has a value. A thread that would wait for a promise whose evaluation is in turn
+   * waiting for a promise that thread is evaluating raises the same error as a recursive promise on a
+   * single thread, rather than deadlocking.</p>
+   */
+  private SEXP forceOnce(Context context) {
+    Thread currentThread = Thread.currentThread();
+    while (true) {
+      SEXP value = result;
+      if (value != null) {
+        return value;
+      }
+      if (EVALUATING_THREAD.compareAndSet(this, null, currentThread)) {
+        try {
+          value = doEval(context);
+          result = value;
+          return value;
+        } finally {
+          evaluatingThread = null;
+          if (WAITER_COUNT.get() > 0) {
+            synchronized (WAIT_LOCK) {
+              WAIT_LOCK.notifyAll();
+            }
+          }
+        }
+      }
+      awaitEvaluation(currentThread);
+    }
+  }
+
+  /**
+   * Waits until the thread now evaluating this promise has finished.
+   */
+  private void awaitEvaluation(Thread currentThread) {
+    synchronized (WAIT_LOCK) {
+      Thread owner = evaluatingThread;
+      if (owner == null) {
+        return;
+      }
+      if (waitsFor(owner, currentThread)) {
+        throw new EvalException("promise already under evaluation: recursive default argument reference or earlier problems?");
+      }
+      WAITING.put(currentThread, this);
+      WAITER_COUNT.incrementAndGet();
+      try {
+        while (evaluatingThread == owner) {
+          WAIT_LOCK.wait();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new EvalException("Interrupted while waiting for a promise to be evaluated");
+      } finally {
+        WAITER_COUNT.decrementAndGet();
+        WAITING.remove(currentThread);
+      }
+    }
+  }
+
+  /**
+   * @return true if {@code thread} is {@code target}, or is waiting, directly or through other
+   * waiting threads, for a promise being evaluated by {@code target}.
+   */
+  private static boolean waitsFor(Thread thread, Thread target) {
+    for (int i = 0; thread != null && i <= WAITING.size(); i++) {
+      if (thread == target) {
+        return true;
+      }
+      Promise awaited = WAITING.get(thread);
+      thread = awaited == null ? null : awaited.evaluatingThread;
+    }
+    return false;
   }
 
   protected SEXP doEval(Context context) {
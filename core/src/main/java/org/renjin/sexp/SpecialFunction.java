@@ -21,7 +21,6 @@ package org.renjin.sexp;
 import org.renjin.eval.Context;
 import org.renjin.eval.DispatchTable;
 import org.renjin.eval.EvalException;
-import org.renjin.pipeliner.VectorPipeliner;
 
 
 public abstract class SpecialFunction extends PrimitiveFunction {
@@ -65,7 +64,7 @@ public abstract class SpecialFunction extends PrimitiveFunction {
       context.warn(call, "the condition has length > 1 and only the first element will be used");
     }
 
-    if(VectorPipeliner.ENABLED) {
+    if(context.isDeferredEvaluationEnabled()) {
       s = context.materialize(s);
     }
     
@@ -24,9 +24,18 @@ import org.renjin.repackaged.guava.collect.Iterables;
 import java.util.Arrays;
 import java.util.Collection;
 
-public class StringArrayVector extends StringVector implements Iterable<String> {
+public class StringArrayVector extends StringVector implements Iterable<String>, OwnableVector {
 
-  protected final String values[];
+  protected String values[];
+
+  /**
+   * The number of unused elements at the end of {@code values}, reserved when an owned
+   * vector grows in place. Left in place when the vector is disowned. The owner's next
+   * replacement copies the vector without it.
+   */
+  private int spare;
+
+  private Environment owner;
 
 
   public StringArrayVector(String[] values, AttributeMap attributes) {
@@ -56,16 +65,16 @@ public class StringArrayVector extends StringVector implements Iterable<String>
 
   @Override
   public int length() {
-    return values.length;
+    return values.length - spare;
   }
 
   public StringVector setLength(int newLength) {
-    if(newLength == values.length) {
+    if(newLength == length()) {
       return this;
     }
     String newValues[] = new String[newLength];
     for(int i=0;i!=newValues.length;++i){
-      if(i < this.values.length) {
+      if(i < length()) {
         newValues[i] = values[i];
       } else {
         newValues[i] = StringVector.NA;
@@ -87,11 +96,52 @@ public class StringArrayVector extends StringVector implements Iterable<String>
 
   @Override
   protected StringArrayVector cloneWithNewAttributes(AttributeMap attributes) {
-    return new StringArrayVector(values, attributes);
+    return new StringArrayVector(trimmedValues(), attributes);
   }
 
   public String[] toArray() {
-    return values.clone();
+    return Arrays.copyOf(values, length());
+  }
+
+  @Override
+  public boolean isOwnedBy(Environment environment) {
+    return owner == environment;
+  }
+
+  @Override
+  public void setOwner(Environment environment) {
+    owner = environment;
+  }
+
+  @Override
+  public void disown() {
+    if(owner != null) {
+      owner = null;
+    }
+  }
+
+  /**
+   * Replaces the element at {@code index} without copying, growing the vector with {@code NA}s
+   * if {@code index} is past its end. May only be called on a vector that is not referenced
+   * from anywhere else.
+   */
+  public void setElementInPlace(int index, String value) {
+    int length = length();
+    if(index >= length) {
+      if(index >= values.length) {
+        values = Arrays.copyOf(values, Math.max(index + 1, values.length + (values.length >> 1)));
+      }
+      Arrays.fill(values, length, index, NA);
+      spare = values.length - index - 1;
+    }
+    values[index] = value;
+  }
+
+  /**
+   * @return the backing array, without any spare capacity reserved when this vector grew in place.
+   */
+  private String[] trimmedValues() {
+    return spare == 0 ? values : Arrays.copyOf(values, length());
   }
 
   public static StringArrayVector coerceFrom(SEXP exp) {
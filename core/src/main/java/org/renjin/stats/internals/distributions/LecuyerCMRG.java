@@ -0,0 +1,158 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.stats.internals.distributions;
+
+/**
+ * L'Ecuyer's MRG32k3a combined multiple-recursive generator, as used by GNU R's
+ * {@code "L'Ecuyer-CMRG"} RNG kind.
+ *
+ * <p>The generator has a period of about 2^191 and supports jumping ahead by 2^127 steps
+ * with {@link #nextStream()}, which provides independent streams for parallel workers.</p>
+ */
+public class LecuyerCMRG {
+
+  private static final long M1 = 4294967087L;
+  private static final long M2 = 4294944443L;
+
+  private static final long A12 = 1403580L;
+  private static final long A13N = 810728L;
+  private static final long A21 = 527612L;
+  private static final long A23N = 1370589L;
+
+  private static final double NORMC = 2.328306549295727688e-10;
+
+  private static final double I2_32M1 = 2.328306437080797e-10;
+
+  /**
+   * Transition matrices raised to the power 2^127, used to jump to the next stream.
+   */
+  private static final long[][] A1P127 = {
+      { 2427906178L, 3580155704L,  949770784L },
+      {  226153695L, 1230515664L, 3580155704L },
+      { 1988835001L,  986791581L, 1230515664L }
+  };
+
+  private static final long[][] A2P127 = {
+      { 1464411153L,  277697599L, 1610723613L },
+      {   32183930L, 1464411153L, 1022607788L },
+      { 2824425944L,   32183930L, 2093834863L }
+  };
+
+  /**
+   * The six 32-bit seeds, treated as unsigned integers.
+   */
+  private final int[] seed = new int[6];
+
+  public LecuyerCMRG(int seed) {
+    setSeed(seed);
+  }
+
+  public LecuyerCMRG(int[] seed) {
+    setSeed(seed);
+  }
+
+  /**
+   * Initializes the seeds from a single integer in the same way as GNU R's {@code set.seed()}
+   */
+  public void setSeed(int seed) {
+    // Initial scrambling
+    for (int j = 0; j < 50; j++) {
+      seed = (69069 * seed + 1);
+    }
+    for (int j = 0; j < this.seed.length; j++) {
+      seed = (69069 * seed + 1);
+      while(Integer.toUnsignedLong(seed) >= M2) {
+        seed = (69069 * seed + 1);
+      }
+      this.seed[j] = seed;
+    }
+  }
+
+  public void setSeed(int[] seed) {
+    if(seed.length != 6) {
+      throw new IllegalArgumentException("L'Ecuyer-CMRG requires 6 seeds");
+    }
+    System.arraycopy(seed, 0, this.seed, 0, 6);
+  }
+
+  /**
+   * @return a copy of the current state of the generator
+   */
+  public int[] getSeed() {
+    return seed.clone();
+  }
+
+  public double nextDouble() {
+    long p1 = A12 * Integer.toUnsignedLong(seed[1]) - A13N * Integer.toUnsignedLong(seed[0]);
+    p1 %= M1;
+    if(p1 < 0) {
+      p1 += M1;
+    }
+    seed[0] = seed[1];
+    seed[1] = seed[2];
+    seed[2] = (int) p1;
+
+    long p2 = A21 * Integer.toUnsignedLong(seed[5]) - A23N * Integer.toUnsignedLong(seed[3]);
+    p2 %= M2;
+    if(p2 < 0) {
+      p2 += M2;
+    }
+    seed[3] = seed[4];
+    seed[4] = seed[5];
+    seed[5] = (int) p2;
+
+    double value = ((p1 > p2) ? (p1 - p2) : (p1 - p2 + M1)) * NORMC;
+
+    // Ensure that the value lies strictly within (0, 1)
+    if(value <= 0.0) {
+      return 0.5 * I2_32M1;
+    }
+    if((1.0 - value) <= 0.0) {
+      return 1.0 - 0.5 * I2_32M1;
+    }
+    return value;
+  }
+
+  /**
+   * @return the seeds of the stream which begins 2^127 steps after the start of this generator's
+   * current stream, equivalent to {@code parallel::nextRNGStream()}
+   */
+  public int[] nextStream() {
+    return nextStream(seed);
+  }
+
+  public static int[] nextStream(int[] seed) {
+    int[] next = new int[6];
+    for (int i = 0; i < 3; i++) {
+      long sum = 0;
+      for (int j = 0; j < 3; j++) {
+        sum = Long.remainderUnsigned(sum + A1P127[i][j] * Integer.toUnsignedLong(seed[j]), M1);
+      }
+      next[i] = (int) sum;
+    }
+    for (int i = 0; i < 3; i++) {
+      long sum = 0;
+      for (int j = 0; j < 3; j++) {
+        sum = Long.remainderUnsigned(sum + A2P127[i][j] * Integer.toUnsignedLong(seed[j + 3]), M2);
+      }
+      next[i + 3] = (int) sum;
+    }
+    return next;
+  }
+}
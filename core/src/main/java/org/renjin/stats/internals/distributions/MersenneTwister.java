@@ -65,6 +65,14 @@ public class MersenneTwister {
         setSeed(seed);
     }
 
+    /**
+     * Construct a new MersenneTwister with the same state as {@code other}
+     */
+    public MersenneTwister(MersenneTwister other) {
+        System.arraycopy(other.stateVector, 0, stateVector, 0, stateVector.length);
+        stateVectorIndex = other.stateVectorIndex;
+    }
+
     /**
      * Sets the PRNG seed
      * @param seed The seed
@@ -34,6 +34,7 @@ import java.lang.invoke.MethodType;
 public class RNG {
 
   public MersenneTwister mersenneTwisterAlg = null;
+  public LecuyerCMRG lecuyerCMRGAlg = null;
   public RNGtype RNG_kind = RNGtype.MERSENNE_TWISTER; //default
   public N01type N01_kind = N01type.INVERSION; //default
   int randomseed = 0;
@@ -46,6 +47,51 @@ public class RNG {
     this.methodHandle = createMethodHandle(this);
   }
 
+  /**
+   * Creates a new RNG for the given session which continues from the current state of
+   * this generator.
+   */
+  public RNG copy(Session globals) {
+    RNG copy = new RNG(globals);
+    copy.RNG_kind = RNG_kind;
+    copy.N01_kind = N01_kind;
+    copy.randomseed = randomseed;
+    if(mersenneTwisterAlg != null) {
+      copy.mersenneTwisterAlg = new MersenneTwister(mersenneTwisterAlg);
+    }
+    if(lecuyerCMRGAlg != null) {
+      copy.lecuyerCMRGAlg = new LecuyerCMRG(lecuyerCMRGAlg.getSeed());
+    }
+    return copy;
+  }
+
+  /**
+   * @return the current seeds of the L'Ecuyer-CMRG generator, initializing the generator
+   * if it has not yet been used.
+   */
+  public int[] getLecuyerSeed() {
+    if(lecuyerCMRGAlg == null) {
+      if(randomseed == 0) {
+        randomseed = (int) System.currentTimeMillis();
+      }
+      lecuyerCMRGAlg = new LecuyerCMRG(randomseed);
+    }
+    return lecuyerCMRGAlg.getSeed();
+  }
+
+  /**
+   * Selects the L'Ecuyer-CMRG generator and sets its state to the given seeds,
+   * for example to start a new stream for a parallel worker.
+   */
+  public void setLecuyerSeed(int[] seed) {
+    RNG_kind = RNGtype.LECUYER_CMRG;
+    if(lecuyerCMRGAlg == null) {
+      lecuyerCMRGAlg = new LecuyerCMRG(seed);
+    } else {
+      lecuyerCMRGAlg.setSeed(seed);
+    }
+  }
+
   @Internal
   public static IntVector RNGkind(@Current Context context, SEXP kindExp, SEXP normalkindExp) {
     RNG rng = context.getSession().rng;  
@@ -89,34 +135,48 @@ public class RNG {
    */
   @Internal("set.seed")
   public static void set_seed(@Current Context context, int seed, SEXP kind, SEXP normalkind) {
-    RNG rng = context.getSession().rng;
-    rng.randomseed = seed;
     RNGkind(context, kind, normalkind);
-    switch (rng.RNG_kind) {
+    context.getSession().rng.setSeed(seed);
+  }
+
+  /**
+   * Seeds the currently selected generator.
+   */
+  public void setSeed(int seed) {
+    this.randomseed = seed;
+    switch (RNG_kind) {
     case WICHMANN_HILL:
-      throw new EvalException(rng.RNG_kind + " not implemented yet");
+      throw new EvalException(RNG_kind + " not implemented yet");
 
     case MARSAGLIA_MULTICARRY:
-      throw new EvalException(rng.RNG_kind + " not implemented yet");
+      throw new EvalException(RNG_kind + " not implemented yet");
 
     case SUPER_DUPER:
-      throw new EvalException(rng.RNG_kind + " not implemented yet");
+      throw new EvalException(RNG_kind + " not implemented yet");
 
     case MERSENNE_TWISTER:
-      if (rng.mersenneTwisterAlg == null) {
-        rng.mersenneTwisterAlg = new MersenneTwister(seed);
+      if (mersenneTwisterAlg == null) {
+        mersenneTwisterAlg = new MersenneTwister(seed);
+      } else {
+        mersenneTwisterAlg.setSeed(seed);
+      }
+      return;
+
+    case LECUYER_CMRG:
+      if (lecuyerCMRGAlg == null) {
+        lecuyerCMRGAlg = new LecuyerCMRG(seed);
       } else {
-        rng.mersenneTwisterAlg.setSeed(seed);
+        lecuyerCMRGAlg.setSeed(seed);
       }
       return;
 
     case KNUTH_TAOCP:
     case KNUTH_TAOCP2:
-      throw new EvalException(rng.RNG_kind + " not implemented yet");
+      throw new EvalException(RNG_kind + " not implemented yet");
     case USER_UNIF:
-      throw new EvalException(rng.RNG_kind + " not implemented yet");
+      throw new EvalException(RNG_kind + " not implemented yet");
     default:
-      throw new EvalException(rng.RNG_kind + " not implemented yet");
+      throw new EvalException(RNG_kind + " not implemented yet");
     }
   }
   /*
@@ -153,6 +213,16 @@ public class RNG {
         }
         return (mersenneTwisterAlg.nextDouble());
 
+      case LECUYER_CMRG:
+        if (lecuyerCMRGAlg == null) {
+          if (this.randomseed == 0) {
+            Randomize(RNG_kind);
+          } else {
+            lecuyerCMRGAlg = new LecuyerCMRG(this.randomseed);
+          }
+        }
+        return (lecuyerCMRGAlg.nextDouble());
+
       case KNUTH_TAOCP:
       case KNUTH_TAOCP2:
         throw new EvalException(RNG_kind + " not implemented yet");
@@ -189,6 +259,14 @@ public class RNG {
         }
         return;
 
+      case LECUYER_CMRG:
+        if (lecuyerCMRGAlg == null) {
+          lecuyerCMRGAlg = new LecuyerCMRG(sseed);
+        } else {
+          lecuyerCMRGAlg.setSeed(sseed);
+        }
+        return;
+
       case KNUTH_TAOCP:
       case KNUTH_TAOCP2:
         throw new EvalException(RNG_kind + " not implemented yet");
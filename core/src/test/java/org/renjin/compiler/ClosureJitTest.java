@@ -0,0 +1,111 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.compiler;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.renjin.EvalTestCase;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class ClosureJitTest extends EvalTestCase {
+
+  @Before
+  public void enableJit() {
+    topLevelContext.getSession().setClosureJitEnabled(true);
+    topLevelContext.getSession().setClosureJitThreshold(10);
+    ClosureJit.resetStatistics();
+  }
+
+  @Test
+  public void hotClosureIsCompiledOnce() {
+    eval("f <- function(x, y) { z <- x * y; if(z > 10) z - 1 else z + 1 }");
+    eval("s <- 0");
+    eval("for(i in 1:100) s <- s + f(i, 2)");
+
+    assertThat(eval("s"), elementsIdenticalTo(c(10010)));
+    assertThat(ClosureJit.getCompilationCount(), equalTo(1L));
+    assertThat(ClosureJit.getFailureCount(), equalTo(0L));
+  }
+
+  @Test
+  public void coldClosureIsNotCompiled() {
+    eval("f <- function(x) x + 1");
+    eval("for(i in 1:5) f(i)");
+
+    assertThat(ClosureJit.getCompilationCount() + ClosureJit.getFailureCount(), equalTo(0L));
+  }
+
+  @Test
+  public void deoptimizeWhenAssumptionsAreViolated() {
+    eval("f <- function(x) return(x + 1)");
+    eval("for(i in 1:20) f(i)");
+
+    assertThat(ClosureJit.getCompilationCount(), equalTo(1L));
+    assertThat(ClosureJit.getFailureCount(), equalTo(0L));
+
+    // Redefine a function which was resolved at compile time
+    eval("return <- function(x) x * 10");
+
+    assertThat(eval("f(1)"), elementsIdenticalTo(c(20)));
+    assertThat(ClosureJit.getDeoptimizationCount(), equalTo(1L));
+
+    // Once hot again, the closure is recompiled against the new binding,
+    // and the new return() closure, called from each iteration, is compiled as well
+    eval("for(i in 1:20) f(i)");
+
+    assertThat(ClosureJit.getCompilationCount(), equalTo(3L));
+    assertThat(eval("f(2)"), elementsIdenticalTo(c(30)));
+  }
+
+  @Test
+  public void builtinsAreResolved() {
+    eval("f <- function(x) sqrt(x)");
+    eval("for(i in 1:20) f(i)");
+
+    assertThat(ClosureJit.getCompilationCount(), equalTo(1L));
+    assertThat(ClosureJit.getFailureCount(), equalTo(0L));
+    assertThat(eval("f(9)"), elementsIdenticalTo(c(3)));
+
+    // The compiled body calls the builtin directly, so redefining it must deoptimize
+    eval("sqrt <- function(x) x - 1");
+
+    assertThat(eval("f(9)"), elementsIdenticalTo(c(8)));
+    assertThat(ClosureJit.getDeoptimizationCount(), equalTo(1L));
+  }
+
+  @Test
+  public void jitIsEnabledPerSession() {
+    eval("f <- function(x) x + 1");
+    topLevelContext.getSession().setClosureJitEnabled(false);
+    eval("for(i in 1:20) f(i)");
+
+    assertThat(ClosureJit.getCompilationCount() + ClosureJit.getFailureCount(), equalTo(0L));
+  }
+
+  @Test
+  public void modifiedBodyIsNotCompiled() {
+    eval("f <- function(x) x + 1");
+    eval("for(i in 1:20) f(i)");
+    eval("body(f) <- quote(x + 2)");
+
+    assertThat(eval("f(1)"), elementsIdenticalTo(c(3)));
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.eval;
+
+import org.junit.Test;
+import org.renjin.parser.RParser;
+import org.renjin.sexp.DoubleArrayVector;
+import org.renjin.sexp.LogicalVector;
+import org.renjin.sexp.SEXP;
+import org.renjin.sexp.StringArrayVector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class SessionTemplateTest {
+
+  @Test
+  public void sessionsShareTemplateState() {
+    Session session = new SessionBuilder().build();
+    eval(session, "x <- 41");
+    eval(session, "attach(list(attached = 1), name = 'tenant:test')");
+    SessionTemplate template = new SessionTemplate(session);
+
+    Session first = template.newSession();
+    Session second = template.newSession();
+
+    assertThat(eval(first, "x + attached"), equalTo((SEXP) new DoubleArrayVector(42)));
+    assertThat(first.getNamespaceRegistry(), sameInstance(second.getNamespaceRegistry()));
+    assertThat(first.getBaseEnvironment(), not(sameInstance(second.getBaseEnvironment())));
+  }
+
+  @Test
+  public void baseEnvironmentIsPrivate() {
+    SessionTemplate template = new SessionBuilder().buildTemplate();
+
+    Session first = template.newSession();
+    Session second = template.newSession();
+
+    eval(first, "f <- function() warning('first tenant')");
+    eval(first, "f()");
+    eval(first, "assign('.Library', 'first', envir = baseenv())");
+
+    assertThat(eval(first, "exists('last.warning', envir = baseenv())"), equalTo((SEXP) LogicalVector.TRUE));
+    assertThat(eval(second, "exists('last.warning', envir = baseenv())"), equalTo((SEXP) LogicalVector.FALSE));
+    assertThat(eval(second, "identical(.Library, 'first')"), equalTo((SEXP) LogicalVector.FALSE));
+    assertThat(eval(first, "identical(.Library, 'first')"), equalTo((SEXP) LogicalVector.TRUE));
+
+    second.clearWarnings();
+    assertThat(eval(first, "exists('last.warning', envir = baseenv())"), equalTo((SEXP) LogicalVector.TRUE));
+  }
+
+  @Test(expected = EvalException.class)
+  public void sharedBaseNamespaceIsFrozen() {
+    Session session = new SessionBuilder().buildTemplate().newSession();
+    eval(session, "assign('tenant.value', 1, envir = .BaseNamespaceEnv)");
+  }
+
+  @Test
+  public void baseNamespaceParentIsTenantGlobal() {
+    SessionTemplate template = new SessionBuilder().buildTemplate();
+
+    Session first = template.newSession();
+    Session second = template.newSession();
+
+    eval(first, "tenant.fn <- function() 'first'");
+    eval(second, "tenant.fn <- function() 'second'");
+
+    assertThat(eval(first, "eval(quote(tenant.fn()), .BaseNamespaceEnv)"), equalTo((SEXP) new StringArrayVector("first")));
+    assertThat(eval(second, "eval(quote(tenant.fn()), .BaseNamespaceEnv)"), equalTo((SEXP) new StringArrayVector("second")));
+    assertThat(eval(second, "identical(parent.env(.BaseNamespaceEnv), globalenv())"), equalTo((SEXP) LogicalVector.TRUE));
+  }
+
+  @Test
+  public void superAssignmentPastBaseNamespaceUsesTenantGlobal() {
+    Session session = new SessionBuilder().build();
+    eval(session, "counter <- 0");
+    SessionTemplate template = new SessionTemplate(session);
+
+    Session first = template.newSession();
+    Session second = template.newSession();
+
+    eval(first, "counter <- 10");
+    eval(first, "local(counter <<- counter + 1, envir = new.env(parent = .BaseNamespaceEnv))");
+
+    assertThat(eval(first, "counter"), equalTo((SEXP) new DoubleArrayVector(11)));
+    assertThat(eval(second, "counter"), equalTo((SEXP) new DoubleArrayVector(0)));
+    assertThat(eval(session, "counter"), equalTo((SEXP) new DoubleArrayVector(0)));
+  }
+
+  @Test
+  public void sessionsForceSharedNamespacesConcurrently() throws Exception {
+    SessionTemplate template = new SessionBuilder().buildTemplate();
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<SEXP>> results = new ArrayList<>();
+      for (int i = 0; i < 16; i++) {
+        // Base functions are loaded lazily, and these have not been forced in the template
+        Callable<SEXP> task = () -> eval(template.newSession(),
+            "c(base::rev(c(3, 1, 5))[3], base::tabulate(c(1, 2, 2))[2], base::mean(c(3, 7)))");
+        results.add(executor.submit(task));
+      }
+      for (Future<SEXP> result : results) {
+        assertThat(result.get(), equalTo((SEXP) new DoubleArrayVector(3, 2, 5)));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void sessionsArePrivate() {
+    SessionTemplate template = new SessionBuilder().buildTemplate();
+
+    Session first = template.newSession();
+    Session second = template.newSession();
+
+    eval(first, "x <- 1");
+    eval(first, "options(tenant.option = 'first')");
+    eval(first, "Sys.setenv(TENANT_VAR = 'first')");
+
+    assertThat(eval(second, "exists('x')"), equalTo((SEXP) LogicalVector.FALSE));
+    assertThat(eval(second, "is.null(getOption('tenant.option'))"), equalTo((SEXP) LogicalVector.TRUE));
+    assertThat(eval(second, "Sys.getenv('TENANT_VAR') == ''"), equalTo((SEXP) LogicalVector.TRUE));
+    assertThat(first.getConnectionTable(), not(sameInstance(second.getConnectionTable())));
+    assertThat(first.getRNG(), not(sameInstance(second.getRNG())));
+  }
+
+  @Test
+  public void poolReplacesReleasedSessions() {
+    SessionPool pool = new SessionPool(new SessionBuilder().buildTemplate(), 2);
+    pool.prestart();
+    assertThat(pool.getIdleCount(), equalTo(2));
+
+    Session session = pool.acquire();
+    eval(session, "x <- 1");
+    assertThat(pool.getIdleCount(), equalTo(1));
+
+    pool.release(session);
+    assertThat(pool.getIdleCount(), equalTo(2));
+
+    Session next = pool.acquire();
+    assertThat(next, not(sameInstance(session)));
+    assertThat(eval(next, "exists('x')"), equalTo((SEXP) LogicalVector.FALSE));
+  }
+
+  private static SEXP eval(Session session, String source) {
+    return session.getTopLevelContext().evaluate(RParser.parseSource(source + "\n"));
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.invoke.reflection;
+
+import org.renjin.eval.Context;
+import org.renjin.eval.Session;
+import org.renjin.eval.SessionBuilder;
+import org.renjin.invoke.reflection.converters.Converter;
+import org.renjin.invoke.reflection.converters.Converters;
+import org.renjin.parser.RParser;
+import org.renjin.repackaged.guava.base.Stopwatch;
+import org.renjin.sexp.DoubleArrayVector;
+import org.renjin.sexp.SEXP;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times calls to a JVM method through the method handle held by {@link FunctionBinding.Overload}, against
+ * calls to the same method through {@link Method#invoke(Object, Object...)} with the same argument and
+ * return value conversions, and times the same method called from R.
+ */
+public class OverloadInvokeBenchmark {
+
+  private static final int CALLS = 10_000_000;
+
+  public static double add(double x, double y) {
+    return x + y;
+  }
+
+  public static void main(String[] args) throws Exception {
+
+    Session session = new SessionBuilder().build();
+    Context context = session.getTopLevelContext();
+
+    Method method = OverloadInvokeBenchmark.class.getMethod("add", double.class, double.class);
+    FunctionBinding.Overload overload = new FunctionBinding.Overload(method);
+    Converter returnValueConverter = Converters.get(double.class);
+    List<SEXP> arguments = Arrays.<SEXP>asList(new DoubleArrayVector(1), new DoubleArrayVector(2));
+
+    for (int round = 0; round < 5; round++) {
+
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      for (int i = 0; i < CALLS; i++) {
+        overload.invoke(context, null, arguments);
+      }
+      long handleNanos = stopwatch.elapsed(TimeUnit.NANOSECONDS);
+
+      stopwatch = Stopwatch.createStarted();
+      for (int i = 0; i < CALLS; i++) {
+        returnValueConverter.convertToR(method.invoke(null, overload.convertArguments(context, arguments)));
+      }
+      long reflectionNanos = stopwatch.elapsed(TimeUnit.NANOSECONDS);
+
+      System.out.println(String.format("method handle %8.1f ns/call    Method.invoke %8.1f ns/call",
+          (double) handleNanos / CALLS, (double) reflectionNanos / CALLS));
+    }
+
+    eval(session, "import(org.renjin.invoke.reflection.OverloadInvokeBenchmark)");
+    eval(session, "n <- 1000000L");
+    String loop = "for(i in 1:n) OverloadInvokeBenchmark$add(i, 1)";
+
+    // Warm up
+    for (int i = 0; i < 3; i++) {
+      eval(session, loop);
+    }
+
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    eval(session, loop);
+    System.out.println(String.format("%-50s %8.1f ns/call", loop,
+        (double) stopwatch.elapsed(TimeUnit.NANOSECONDS) / 1_000_000));
+  }
+
+  private static SEXP eval(Session session, String source) {
+    return session.getTopLevelContext().evaluate(RParser.parseSource(source + "\n"));
+  }
+}
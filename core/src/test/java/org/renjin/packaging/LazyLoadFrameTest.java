@@ -0,0 +1,103 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.packaging;
+
+import org.junit.Test;
+import org.renjin.EvalTestCase;
+import org.renjin.repackaged.guava.io.Files;
+import org.renjin.sexp.Closure;
+import org.renjin.sexp.DoubleVector;
+import org.renjin.sexp.Logical;
+import org.renjin.sexp.NamedValue;
+import org.renjin.sexp.SEXP;
+
+import java.io.*;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.renjin.ExpMatchers.logicalVectorOf;
+
+public class LazyLoadFrameTest extends EvalTestCase {
+
+  @Test
+  public void pack() throws IOException {
+    eval("factor <- 2");
+    eval("offset <- 1");
+    eval("f <- function(x) x * factor + offset");
+    eval("g <- function(y) f(y) + factor");
+    eval("x <- c(a = 1, b = 2)");
+    eval("e <- quote(factor + offset)");
+    eval("big <- as.double(1:1000)");
+    eval("warm <- as.double(1001:2000)");
+
+    File dir = Files.createTempDir();
+    new LazyLoadFrameBuilder(topLevelContext)
+        .outputTo(dir)
+        .warmUp(Collections.singleton("warm"))
+        .build(global);
+
+    // A FileInputStream is memory-mapped...
+    checkFrame(LazyLoadFrame.load(topLevelContext, name -> openFile(new File(dir, name))));
+
+    // ...and other streams are read onto the heap
+    checkFrame(LazyLoadFrame.load(topLevelContext, name -> readFile(new File(dir, name))));
+  }
+
+  private void checkFrame(Iterable<NamedValue> frame) {
+    Map<String, SEXP> values = new HashMap<>();
+    for (NamedValue namedValue : frame) {
+      values.put(namedValue.getName(), namedValue.getValue());
+    }
+
+    // Small values are read when the frame is loaded, larger ones when first used
+    assertThat(values.get("f"), instanceOf(Closure.class));
+    assertThat(values.get("big"), instanceOf(SerializedPromise4.class));
+    assertThat(values.get("warm"), instanceOf(DoubleVector.class));
+
+    for (Map.Entry<String, SEXP> entry : values.entrySet()) {
+      global.setVariable(topLevelContext, "loaded." + entry.getKey(), entry.getValue());
+    }
+
+    assertThat(eval("loaded.f(3)"), elementsIdenticalTo(7));
+    assertThat(eval("loaded.g(3)"), elementsIdenticalTo(9));
+    assertThat(eval("identical(loaded.x, x)"), logicalVectorOf(Logical.TRUE));
+    assertThat(eval("identical(loaded.e, e)"), logicalVectorOf(Logical.TRUE));
+    assertThat(eval("identical(loaded.big, big)"), logicalVectorOf(Logical.TRUE));
+    assertThat(eval("identical(loaded.warm, warm)"), logicalVectorOf(Logical.TRUE));
+  }
+
+  private static InputStream openFile(File file) {
+    try {
+      return new FileInputStream(file);
+    } catch (FileNotFoundException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static InputStream readFile(File file) {
+    try {
+      return new ByteArrayInputStream(Files.toByteArray(file));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
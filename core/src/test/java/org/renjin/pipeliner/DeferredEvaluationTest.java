@@ -0,0 +1,97 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.pipeliner;
+
+import org.junit.Test;
+import org.renjin.eval.Session;
+import org.renjin.eval.SessionBuilder;
+import org.renjin.parser.RParser;
+import org.renjin.sexp.DoubleVector;
+import org.renjin.sexp.SEXP;
+import org.renjin.sexp.Vector;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DeferredEvaluationTest {
+
+  private static final String SETUP =
+      "x <- as.double(1:200000) / 7\n" +
+      "y <- cos(x)\n" +
+      "z <- sqrt(x)\n";
+
+  private static SEXP eval(Session session, String source) {
+    return session.getTopLevelContext().evaluate(RParser.parseSource(source + "\n"));
+  }
+
+  @Test
+  public void disabledByDefault() {
+    Session session = new SessionBuilder().build();
+    assertFalse(session.getVectorEngine().isEnabled());
+
+    eval(session, SETUP);
+    SEXP result = eval(session, "x * y + z");
+
+    assertFalse(((Vector) result).isDeferred());
+  }
+
+  @Test
+  public void fusedPipelineMatchesEagerResult() {
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      Session deferred = new SessionBuilder()
+          .setDeferredEvaluation(true)
+          .setExecutorService(executorService)
+          .build();
+      Session eager = new SessionBuilder()
+          .setDeferredEvaluation(false)
+          .build();
+
+      assertTrue(deferred.getVectorEngine().isEnabled());
+
+      eval(deferred, SETUP);
+      eval(eager, SETUP);
+
+      assertTrue(((Vector) eval(deferred, "x * y + z")).isDeferred());
+
+      double expected = ((DoubleVector) eval(eager, "mean(x * y + z)")).getElementAsDouble(0);
+      SEXP actual = deferred.getTopLevelContext().materialize(eval(deferred, "mean(x * y + z)"));
+
+      assertEquals(expected, ((DoubleVector) actual).getElementAsDouble(0), 1e-9);
+
+      // Shared subexpressions must only be computed once, and in the right order
+      double sharedExpected = ((DoubleVector) eval(eager, "{ a <- x * y; sum(a + a * z) }")).getElementAsDouble(0);
+      SEXP sharedActual = deferred.getTopLevelContext().materialize(eval(deferred, "{ a <- x * y; sum(a + a * z) }"));
+      assertEquals(sharedExpected, ((DoubleVector) sharedActual).getElementAsDouble(0), 1e-6);
+
+      SEXP colSums = deferred.getTopLevelContext().materialize(eval(deferred, "colSums(matrix(x * 2, ncol = 4))"));
+      SEXP expectedColSums = eval(eager, "colSums(matrix(x * 2, ncol = 4))");
+      for (int i = 0; i < 4; i++) {
+        assertEquals(((DoubleVector) expectedColSums).getElementAsDouble(i),
+            ((DoubleVector) colSums).getElementAsDouble(i), 1e-6);
+      }
+    } finally {
+      executorService.shutdown();
+    }
+  }
+}
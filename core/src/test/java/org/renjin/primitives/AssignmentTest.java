@@ -20,7 +20,10 @@ package org.renjin.primitives;
 
 import org.junit.Test;
 import org.renjin.EvalTestCase;
+import org.renjin.sexp.SEXP;
+import org.renjin.sexp.Symbol;
 
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 
 public class AssignmentTest extends EvalTestCase {
@@ -36,4 +39,154 @@ public class AssignmentTest extends EvalTestCase {
     eval(" x <- 1");
     assertThat( eval("x"), elementsIdenticalTo( c(1) ));
   }
+
+  @Test
+  public void elementReplacementUpdatesOwnedVectorInPlace() {
+    eval("x <- c(1, 2, 3)");
+    eval("x[1] <- 10");
+    SEXP owned = global.peekVariable(Symbol.get("x"));
+    eval("x[2] <- 20");
+    eval("x[[3]] <- 30L");
+
+    assertSame(owned, global.peekVariable(Symbol.get("x")));
+    assertThat(eval("x"), elementsIdenticalTo(c(10, 20, 30)));
+  }
+
+  @Test
+  public void elementReplacementDoesNotAffectCopies() {
+    eval("x <- c(1, 2, 3)");
+    eval("x[1] <- 10");
+    eval("y <- x");
+    eval("l <- list(x)");
+    eval("x[2] <- 20");
+    eval("x[3] <- 30");
+
+    assertThat(eval("x"), elementsIdenticalTo(c(10, 20, 30)));
+    assertThat(eval("y"), elementsIdenticalTo(c(10, 2, 3)));
+    assertThat(eval("l[[1]]"), elementsIdenticalTo(c(10, 2, 3)));
+  }
+
+  @Test
+  public void elementReplacementInFunction() {
+    eval("f <- function(v) { v[1] <- 99; saved <- v; for(i in 2:3) v[i] <- v[i-1] * 2; list(saved, v) }");
+    eval("x <- c(1, 1, 1)");
+    eval("r <- f(x)");
+
+    assertThat(eval("x"), elementsIdenticalTo(c(1, 1, 1)));
+    assertThat(eval("r[[1]]"), elementsIdenticalTo(c(99, 1, 1)));
+    assertThat(eval("r[[2]]"), elementsIdenticalTo(c(99, 198, 396)));
+  }
+
+  @Test
+  public void elementReplacementGrowsVector() {
+    eval("x <- numeric(0)");
+    eval("for(i in 1:100) x[i] <- i");
+    eval("x[length(x) + 1] <- 101");
+
+    assertThat(eval("length(x)"), elementsIdenticalTo(c_i(101)));
+    assertThat(eval("sum(x)"), elementsIdenticalTo(c(5151)));
+
+    eval("x[105] <- 1");
+    assertThat(eval("is.na(x[102:104])"), elementsIdenticalTo(c(true, true, true)));
+  }
+
+  @Test
+  public void grownVectorKeepsItsLengthOnceShared() {
+    eval("x <- numeric(0)");
+    eval("for(i in 1:10) x[i] <- i");
+    eval("y <- x");
+    eval("x[11] <- 11");
+
+    assertThat(eval("length(y)"), elementsIdenticalTo(c_i(10)));
+    assertThat(eval("sum(y)"), elementsIdenticalTo(c(55)));
+    assertThat(eval("length(x)"), elementsIdenticalTo(c_i(11)));
+  }
+
+  @Test
+  public void elementReplacementChangingType() {
+    eval("x <- 1:3");
+    eval("x[1] <- 10L");
+    eval("x[2] <- 2.5");
+    eval("x[3] <- 'a'");
+
+    assertThat(eval("x"), elementsIdenticalTo(c("10", "2.5", "a")));
+  }
+
+  @Test
+  public void elementReplacementPreservesAttributes() {
+    eval("x <- c(a = 1, b = 2)");
+    eval("x[2] <- 3");
+    eval("x[3] <- 4");
+
+    assertThat(eval("x"), elementsIdenticalTo(c(1, 3, 4)));
+    assertThat(eval("names(x)"), elementsIdenticalTo(c("a", "b", "")));
+
+    eval("m <- matrix(0, 2, 2)");
+    eval("m[2, 1] <- 5");
+    eval("m[1, 2] <- 6");
+    assertThat(eval("m"), elementsIdenticalTo(c(0, 5, 6, 0)));
+    assertThat(eval("dim(m)"), elementsIdenticalTo(c_i(2, 2)));
+  }
+
+  @Test
+  public void listElementReplacement() {
+    eval("l <- list()");
+    eval("for(i in 1:5) l[[i]] <- i");
+    eval("l[2] <- list(NULL)");
+    eval("saved <- l");
+    eval("l[[1]] <- l");
+    eval("l[[3]] <- NULL");
+
+    assertThat(eval("length(l)"), elementsIdenticalTo(c_i(4)));
+    assertThat(eval("l[[1]]"), identicalTo(eval("saved")));
+    assertThat(eval("saved[[2]]"), identicalTo(NULL));
+  }
+
+  @Test
+  public void elementReplacementValueEscapesAsResult() {
+    eval("x <- 1");
+    eval("x[1] <- 2");
+    eval("z <- 0");
+    eval("y <- (z[1] <- x)");
+    eval("x[1] <- 99");
+
+    assertThat(eval("y"), elementsIdenticalTo(c(2)));
+    assertThat(eval("z"), elementsIdenticalTo(c(2)));
+
+    eval("w <- 1");
+    eval("w[1] <- 3");
+    eval("v <- (w[1] <- w)");
+    eval("w[1] <- 42");
+
+    assertThat(eval("v"), elementsIdenticalTo(c(3)));
+    assertThat(eval("w"), elementsIdenticalTo(c(42)));
+  }
+
+  @Test
+  public void nestedReplacementFunction() {
+    eval("ident <- function(x) x");
+    eval("`ident<-` <- function(x, value) value");
+    eval("x <- c(1, 2, 3)");
+    eval("x[1] <- 10");
+    eval("y <- x");
+    eval("ident(x)[2] <- 20");
+    eval("x[3] <- 30");
+
+    assertThat(eval("x"), elementsIdenticalTo(c(10, 20, 30)));
+    assertThat(eval("y"), elementsIdenticalTo(c(10, 2, 3)));
+  }
+
+  @Test
+  public void namesElementReplacement() {
+    eval("x <- c(a = 1, b = 2)");
+    eval("x[1] <- 5");
+    eval("y <- x");
+    eval("names(x)[2] <- 'z'");
+    eval("x[2] <- 7");
+
+    assertThat(eval("names(x)"), elementsIdenticalTo(c("a", "z")));
+    assertThat(eval("names(y)"), elementsIdenticalTo(c("a", "b")));
+    assertThat(eval("y"), elementsIdenticalTo(c(5, 2)));
+    assertThat(eval("x"), elementsIdenticalTo(c(5, 7)));
+  }
 }
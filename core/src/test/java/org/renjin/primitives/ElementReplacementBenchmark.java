@@ -0,0 +1,74 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.primitives;
+
+import org.renjin.eval.Session;
+import org.renjin.eval.SessionBuilder;
+import org.renjin.parser.RParser;
+import org.renjin.repackaged.guava.base.Stopwatch;
+import org.renjin.sexp.SEXP;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times element replacement loops of increasing length. Since replacements update vectors owned by
+ * their binding in place, the time per element should stay roughly constant as {@code n} doubles,
+ * rather than doubling along with it.
+ */
+public class ElementReplacementBenchmark {
+
+  private static final int[] SIZES = { 25_000, 50_000, 100_000, 200_000 };
+
+  public static void main(String[] args) {
+
+    Session session = new SessionBuilder().build();
+
+    String[] loops = {
+        "x <- numeric(n); for(i in 1:n) x[i] <- i",
+        "x <- numeric(0); for(i in 1:n) x[i] <- i",
+        "x <- numeric(n); for(i in 2:n) x[i] <- x[i - 1] + 1",
+        "x <- integer(0); y <- integer(0); for(i in 1:n) { x[i] <- i; y[i] <- x[i] * 2L }",
+        "x <- character(n); for(i in 1:n) x[[i]] <- 'a'",
+        "l <- list(); for(i in 1:n) l[[i]] <- i"
+    };
+
+    for (String loop : loops) {
+      java.lang.System.out.println(loop);
+
+      // Warm up
+      eval(session, "n <- 10000L");
+      eval(session, loop);
+
+      for (int n : SIZES) {
+        eval(session, "n <- " + n + "L");
+
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        eval(session, loop);
+        long elapsed = stopwatch.elapsed(TimeUnit.NANOSECONDS);
+
+        java.lang.System.out.println(String.format("  n = %7d %8.1f ms %8.1f ns/element",
+            n, elapsed / 1e6, (double) elapsed / n));
+      }
+    }
+  }
+
+  private static SEXP eval(Session session, String source) {
+    return session.getTopLevelContext().evaluate(RParser.parseSource(source + "\n"));
+  }
+}
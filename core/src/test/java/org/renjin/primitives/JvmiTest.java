@@ -159,6 +159,45 @@ public class JvmiTest extends EvalTestCase {
     assertThat( eval("MyBean$sumArray32(numeric(0))"), elementsIdenticalTo(c(0)));
   }
 
+  @Test
+  public void primitiveArrayArguments() {
+    eval("import(org.renjin.primitives.MyBean)");
+    assertThat( eval("MyBean$sumInts(1:4)"), elementsIdenticalTo(c_i(10)));
+    assertThat( eval("MyBean$squareInts(c(2L, 3L))"), elementsIdenticalTo(c_i(4, 9)));
+    assertThat( eval("MyBean$reverse(c(1, 2, 3))"), elementsIdenticalTo(c(3, 2, 1)));
+    assertThat( eval("MyBean$not(c(TRUE, FALSE))"), elementsIdenticalTo(c(false, true)));
+  }
+
+  @Test
+  public void overloadSelectedPerCall() {
+    eval("import(org.renjin.primitives.MyBean)");
+    eval("f <- function(x) MyBean$describe(x)");
+
+    assertThat( eval("f(1L)"), elementsIdenticalTo(c("int")));
+    assertThat( eval("f('a')"), elementsIdenticalTo(c("String")));
+    assertThat( eval("sapply(list(1L, 'a', 2L), f)"), elementsIdenticalTo(c("int", "String", "int")));
+  }
+
+  @Test
+  public void overloadSelectedByLengthAndWrappedClass() {
+    eval("import(org.renjin.primitives.MyBean)");
+    eval("import(java.util.ArrayList)");
+    eval("f <- function(x) MyBean$describe(x)");
+
+    assertThat( eval("sapply(list('a', c('a', 'b'), 'b'), f)"), elementsIdenticalTo(c("String", "Object", "String")));
+    assertThat( eval("f(MyBean$new())"), elementsIdenticalTo(c("MyBean")));
+    assertThat( eval("f(ArrayList$new())"), elementsIdenticalTo(c("Object")));
+    assertThat( eval("f(MyBean$new())"), elementsIdenticalTo(c("MyBean")));
+  }
+
+  @Test
+  public void constructorExceptionIsRError() {
+    eval("import(org.renjin.primitives.MyBean)");
+    eval("msg <- tryCatch(MyBean$new('fred', TRUE), error = function(e) conditionMessage(e))");
+
+    assertThat( eval("msg"), elementsIdenticalTo(c("invalid bean: fred")));
+  }
+
   private static class MyPrivateImpl implements MyPublicInterface {
 
     @Override
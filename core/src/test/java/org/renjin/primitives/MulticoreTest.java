@@ -0,0 +1,73 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.primitives;
+
+import org.junit.Test;
+import org.renjin.EvalTestCase;
+
+import static org.junit.Assert.assertThat;
+
+public class MulticoreTest extends EvalTestCase {
+
+  @Test
+  public void workersForceSharedPromisesConcurrently() {
+    // Base functions are loaded lazily, so the workers may force the same
+    // bindings of the base namespace at the same time
+    eval("f <- function(i) c(base::rev(c(i, 1, 3))[3], base::tabulate(c(1, i, i))[i], base::mean(c(i, i + 2)))");
+    eval("x <- .Internal(mclapply(as.list(1:64), f, FALSE, TRUE, 8L))");
+
+    assertThat(eval("identical(x, lapply(as.list(1:64), f))"), elementsIdenticalTo(c(true)));
+  }
+
+  @Test
+  public void workersForceSharedArgumentsConcurrently() {
+    // y is a promise in g's frame, which is forced by the first worker to need it
+    eval("g <- function(y) .Internal(mclapply(as.list(1:64), function(i) y + i, FALSE, TRUE, 8L))");
+    eval("x <- g(base::sum(c(1, 1)))");
+
+    assertThat(eval("identical(unlist(x), as.double(3:66))"), elementsIdenticalTo(c(true)));
+  }
+
+  @Test
+  public void workersDispatchConcurrently() {
+    eval("describe <- function(x) UseMethod('describe')");
+    eval("describe.default <- function(x) 'default'");
+    eval("describe.foo <- function(x) paste('foo', NextMethod())");
+    eval("x <- .Internal(mclapply(as.list(1:64), " +
+        "function(i) describe(structure(i, class = if(i %% 2) 'foo' else 'bar')), FALSE, TRUE, 8L))");
+
+    assertThat(eval("identical(unlist(x), rep(c('foo default', 'default'), 32))"), elementsIdenticalTo(c(true)));
+  }
+
+  @Test
+  public void workersContinueFromParentSeedWithoutSetSeed() {
+    eval("set.seed(1)");
+    eval("expected <- sample.int(1000000L, 6, replace = TRUE)");
+
+    // Each job starts from the parent's state, and the elements of a job continue its stream
+    eval("set.seed(1)");
+    eval("x <- .Internal(mclapply(as.list(1:4), function(i) sample.int(1000000L, 3, replace = TRUE), TRUE, FALSE, 2L))");
+    assertThat(eval("identical(x, list(expected[1:3], expected[1:3], expected[4:6], expected[4:6]))"),
+        elementsIdenticalTo(c(true)));
+
+    eval("set.seed(1)");
+    eval("y <- .Internal(mclapply(as.list(1:4), function(i) sample.int(1000000L, 3, replace = TRUE), FALSE, FALSE, 2L))");
+    assertThat(eval("identical(y, rep(list(expected[1:3]), 4))"), elementsIdenticalTo(c(true)));
+  }
+}
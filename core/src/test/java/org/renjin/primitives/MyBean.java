@@ -25,6 +25,7 @@ import org.renjin.repackaged.guava.collect.Lists;
 import org.renjin.sexp.DoubleArrayVector;
 import org.renjin.sexp.DoubleVector;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
@@ -52,6 +53,13 @@ public class MyBean {
   public MyBean(String name) {
     this.name = name;
   }
+
+  public MyBean(String name, boolean invalid) throws IOException {
+    if(invalid) {
+      throw new IOException("invalid bean: " + name);
+    }
+    this.name = name;
+  }
   
   public String getName() {
     return name;
@@ -179,6 +187,54 @@ public class MyBean {
     }
   }
 
+  public static int sumInts(int[] values) {
+    int sum = 0;
+    for (int i = 0; i < values.length; i++) {
+      sum += values[i];
+    }
+    return sum;
+  }
+
+  public static int[] squareInts(int[] values) {
+    int[] squares = new int[values.length];
+    for (int i = 0; i < values.length; i++) {
+      squares[i] = values[i] * values[i];
+    }
+    return squares;
+  }
+
+  public static double[] reverse(double[] values) {
+    double[] reversed = new double[values.length];
+    for (int i = 0; i < values.length; i++) {
+      reversed[values.length - 1 - i] = values[i];
+    }
+    return reversed;
+  }
+
+  public static boolean[] not(boolean[] values) {
+    boolean[] result = new boolean[values.length];
+    for (int i = 0; i < values.length; i++) {
+      result[i] = !values[i];
+    }
+    return result;
+  }
+
+  public static String describe(int value) {
+    return "int";
+  }
+
+  public static String describe(String value) {
+    return "String";
+  }
+
+  public static String describe(MyBean value) {
+    return "MyBean";
+  }
+
+  public static String describe(Object value) {
+    return "Object";
+  }
+
 
 
 }
@@ -0,0 +1,120 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.primitives;
+
+import org.junit.Test;
+import org.renjin.primitives.sequence.DoubleSequence;
+import org.renjin.primitives.sequence.IntSequence;
+import org.renjin.sexp.*;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class NativeArraysTest {
+
+  private final NativeArrays arrays = new NativeArrays();
+
+  @Test
+  public void arrayVectorsAreShared() {
+    double[] values = { 1, 2, 3 };
+    DoubleArrayVector vector = DoubleArrayVector.unsafe(values);
+
+    long copies = NativeArrays.getCopyCount();
+    assertThat(arrays.doubleArray(vector), sameInstance(values));
+    assertThat(NativeArrays.getCopyCount(), equalTo(copies));
+  }
+
+  @Test
+  public void copiesAreCached() {
+    DoubleSequence sequence = new DoubleSequence(1, 1, 1000);
+
+    long copies = NativeArrays.getCopyCount();
+    double[] first = arrays.doubleArray(sequence);
+    for (int i = 0; i < 100; i++) {
+      assertThat(arrays.doubleArray(sequence), sameInstance(first));
+    }
+    assertThat(NativeArrays.getCopyCount(), equalTo(copies + 1));
+    assertThat(first[999], equalTo(1000d));
+  }
+
+  @Test
+  public void writesAreKeptInResult() {
+    AttributeMap attributes = AttributeMap.builder().setDim(2, 5).build();
+    IntSequence sequence = new IntSequence(attributes, 1, 1, 10);
+
+    int[] array = arrays.intArray(sequence);
+    array[3] = 42;
+    assertThat(arrays.intArray(sequence)[3], equalTo(42));
+
+    SEXP result = arrays.writeBack(sequence);
+    assertThat(result, instanceOf(IntArrayVector.class));
+    assertThat(((IntVector) result).getElementAsInt(3), equalTo(42));
+    assertThat(result.getAttributes().getDim(), equalTo(sequence.getAttributes().getDim()));
+  }
+
+  @Test
+  public void writesAreKeptInListElements() {
+    DoubleSequence sequence = new DoubleSequence(1, 1, 3);
+    DoubleArrayVector other = new DoubleArrayVector(5, 6);
+    ListVector list = new ListVector(sequence, other);
+
+    arrays.doubleArray(sequence)[0] = -1;
+
+    ListVector result = (ListVector) arrays.writeBack(list);
+    assertThat(result.getElementAsSEXP(0).asReal(), equalTo(-1d));
+    assertThat(result.getElementAsSEXP(1), sameInstance((SEXP) other));
+  }
+
+  @Test
+  public void copiesAreDiscardedWhenNativeCallReturns() {
+    DoubleSequence sequence = new DoubleSequence(1, 1, 3);
+
+    NativeArrays previous = NativeArrays.enter();
+    try {
+      NativeArrays.current().doubleArray(sequence)[0] = -1;
+      assertThat(NativeArrays.current().doubleArray(sequence)[0], equalTo(-1d));
+    } finally {
+      NativeArrays.exit(previous);
+    }
+
+    previous = NativeArrays.enter();
+    try {
+      assertThat(NativeArrays.current().doubleArray(sequence)[0], equalTo(1d));
+    } finally {
+      NativeArrays.exit(previous);
+    }
+  }
+
+  @Test
+  public void copiesAreNotCachedOutsideNativeCall() {
+    DoubleSequence sequence = new DoubleSequence(1, 1, 3);
+
+    NativeArrays.current().doubleArray(sequence)[0] = -1;
+    assertThat(NativeArrays.current().doubleArray(sequence)[0], equalTo(1d));
+    assertThat(NativeArrays.current().writeBack(sequence), sameInstance((SEXP) sequence));
+  }
+
+  @Test
+  public void untouchedResultsAreUnchanged() {
+    DoubleSequence sequence = new DoubleSequence(1, 1, 3);
+    assertThat(arrays.writeBack(sequence), sameInstance((SEXP) sequence));
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.primitives;
+
+import org.renjin.eval.Session;
+import org.renjin.eval.SessionBuilder;
+import org.renjin.parser.RParser;
+import org.renjin.repackaged.guava.base.Stopwatch;
+import org.renjin.sexp.SEXP;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times S3 dispatch of generics on classed objects, and reports the hit rate of the
+ * {@link S3DispatchCache}.
+ */
+public class S3DispatchBenchmark {
+
+  private static final int CALLS = 100_000;
+
+  public static void main(String[] args) {
+
+    Session session = new SessionBuilder().build();
+
+    eval(session, "describe <- function(x) UseMethod('describe')");
+    eval(session, "describe.foo <- function(x) 1");
+    eval(session, "x <- structure(1, class = c('baz', 'bar', 'foo'))");
+    eval(session, "df <- data.frame(a = 1:10, b = letters[1:10])");
+    eval(session, "f <- factor(c('a', 'b', 'a'))");
+
+    String[] loops = {
+        "for(i in 1:n) describe(x)",
+        "for(i in 1:n) df[1, 'a']",
+        "for(i in 1:n) format(f)",
+        "for(i in 1:n) length(f)"
+    };
+
+    eval(session, "n <- " + CALLS + "L");
+
+    S3DispatchCache cache = session.getS3DispatchCache();
+
+    for (String loop : loops) {
+
+      // Warm up
+      eval(session, loop);
+      cache.resetStatistics();
+
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      eval(session, loop);
+      double nanosPerCall = (double) stopwatch.elapsed(TimeUnit.NANOSECONDS) / CALLS;
+
+      java.lang.System.out.println(String.format("%-35s %10.1f ns/call  %s", loop, nanosPerCall, cache.getStatistics()));
+    }
+  }
+
+  private static SEXP eval(Session session, String source) {
+    return session.getTopLevelContext().evaluate(RParser.parseSource(source + "\n"));
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.primitives;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.renjin.EvalTestCase;
+import org.renjin.primitives.packaging.Namespaces;
+import org.renjin.sexp.Function;
+import org.renjin.sexp.SEXP;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class S3DispatchCacheTest extends EvalTestCase {
+
+  private S3DispatchCache cache;
+
+  @Before
+  public void setUpGeneric() {
+    cache = topLevelContext.getSession().getS3DispatchCache();
+
+    eval("describe <- function(x) UseMethod('describe')");
+    eval("describe.default <- function(x) 'default'");
+    eval("describe.foo <- function(x) 'foo'");
+    eval("x <- structure(1, class = c('bar', 'foo'))");
+  }
+
+  @Test
+  public void repeatedDispatchHitsCache() {
+    assertThat(eval("describe(x)"), elementsIdenticalTo(c("foo")));
+    long hits = cache.getHitCount();
+
+    assertThat(eval("describe(x)"), elementsIdenticalTo(c("foo")));
+    assertThat(eval("describe(x)"), elementsIdenticalTo(c("foo")));
+    assertThat(cache.getHitCount(), equalTo(hits + 2));
+  }
+
+  @Test
+  public void dispatchFromFunctionsHitsCache() {
+    eval("f <- function(y) describe(y)");
+    assertThat(eval("f(x)"), elementsIdenticalTo(c("foo")));
+    long hits = cache.getHitCount();
+
+    assertThat(eval("f(x)"), elementsIdenticalTo(c("foo")));
+    assertThat(cache.getHitCount(), equalTo(hits + 1));
+  }
+
+  @Test
+  public void redefiningMethodInvalidates() {
+    assertThat(eval("describe(x)"), elementsIdenticalTo(c("foo")));
+
+    eval("describe.foo <- function(x) 'new foo'");
+    assertThat(eval("describe(x)"), elementsIdenticalTo(c("new foo")));
+
+    eval("describe.bar <- function(x) 'bar'");
+    assertThat(eval("describe(x)"), elementsIdenticalTo(c("bar")));
+
+    eval("rm(describe.bar, describe.foo)");
+    assertThat(eval("describe(x)"), elementsIdenticalTo(c("default")));
+  }
+
+  @Test
+  public void methodsInFunctionFramesAreNotCached() {
+    assertThat(eval("describe(x)"), elementsIdenticalTo(c("foo")));
+
+    eval("f <- function(y) { " +
+        "describe.foo <- function(x) 'local'; " +
+        "generic <- function(x) UseMethod('describe'); " +
+        "generic(y) }");
+    assertThat(eval("f(x)"), elementsIdenticalTo(c("local")));
+    assertThat(eval("f(x)"), elementsIdenticalTo(c("local")));
+    assertThat(eval("describe(x)"), elementsIdenticalTo(c("foo")));
+  }
+
+  @Test
+  public void dispatchMetadataIsReplayed() {
+    eval("describe.bar <- function(x) c(.Generic, .Method, .Class)");
+    eval("describe.default <- function(x) c(.Method, is.null(.Class))");
+
+    SEXP bar = eval("describe(x)");
+    SEXP defaultMethod = eval("describe(1)");
+    assertThat(defaultMethod, elementsIdenticalTo(c("describe.default", "TRUE")));
+
+    // Cached dispatches must leave the same metadata as the initial lookup
+    for (int i = 0; i < 3; i++) {
+      assertThat(eval("describe(x)"), equalTo(bar));
+      assertThat(eval("describe(1)"), equalTo(defaultMethod));
+    }
+  }
+
+  @Test
+  public void nextMethodUsesCache() {
+    eval("describe.bar <- function(x) paste('bar', NextMethod())");
+
+    for (int i = 0; i < 3; i++) {
+      assertThat(eval("describe(x)"), elementsIdenticalTo(c("bar foo")));
+    }
+  }
+
+  @Test
+  public void registeringMethodInvalidates() {
+    eval("y <- structure(1, class = 'baz')");
+    assertThat(eval("describe(y)"), elementsIdenticalTo(c("default")));
+
+    Function method = (Function) eval("function(x) 'baz'");
+    Namespaces.registerS3Method(topLevelContext, "describe", "baz", method, global);
+    assertThat(cache.size(), equalTo(0));
+
+    assertThat(eval("describe(y)"), elementsIdenticalTo(c("baz")));
+  }
+}
@@ -106,6 +106,45 @@ public class SortTest extends EvalTestCase {
     assertThat( eval(".Internal(qsort(c(3,1,5,0), FALSE))"), elementsIdenticalTo(c(0, 1, 3, 5)));
   }
 
+  @Test
+  public void orderWithNAs() {
+    assertThat( eval(".Internal(order(TRUE, FALSE, c(3, NA, 1, NaN, -Inf, 2)))"), elementsIdenticalTo(c_i(5, 3, 6, 1, 2, 4)));
+    assertThat( eval(".Internal(order(FALSE, FALSE, c(3, NA, 1, NaN, -Inf, 2)))"), elementsIdenticalTo(c_i(2, 4, 5, 3, 6, 1)));
+    assertThat( eval(".Internal(order(TRUE, TRUE, c(3L, NA, 1L, -5L)))"), elementsIdenticalTo(c_i(1, 3, 4, 2)));
+    assertThat( eval(".Internal(order(TRUE, FALSE, c('b', NA, 'a', 'c')))"), elementsIdenticalTo(c_i(3, 1, 4, 2)));
+  }
+
+  @Test
+  public void orderIsStable() {
+    assertThat( eval(".Internal(order(TRUE, FALSE, c(2L, 1L, 2L, 1L)))"), elementsIdenticalTo(c_i(2, 4, 1, 3)));
+    assertThat( eval(".Internal(order(TRUE, TRUE, c(2L, 1L, 2L, 1L)))"), elementsIdenticalTo(c_i(1, 3, 2, 4)));
+    assertThat( eval(".Internal(order(TRUE, FALSE, c(0, -0, 0)))"), elementsIdenticalTo(c_i(1, 2, 3)));
+  }
+
+  @Test
+  public void orderLargeMultiColumn() {
+    eval("set.seed(42)");
+    eval("a <- sample(c(1:50, NA), 5000, replace = TRUE)");
+    eval("b <- round(sample(-2000:2000, 5000, replace = TRUE) / 1000, 1)");
+    eval("f <- factor(sample(letters, 5000, replace = TRUE))");
+    eval("o <- .Internal(order(TRUE, FALSE, a, f, b))");
+
+    assertThat( eval("length(unique(o))"), elementsIdenticalTo(c_i(5000)));
+    assertThat( eval("sum(is.na(a[o][4800:5000])) == sum(is.na(a))"), elementsIdenticalTo(c(true)));
+    eval("x <- a[o]; y <- as.integer(f)[o]; z <- b[o]; n <- sum(!is.na(x))");
+    assertThat( eval("all(diff(x[1:n]) >= 0)"), elementsIdenticalTo(c(true)));
+    assertThat( eval("all(x[-1][1:(n-1)] > x[1:(n-1)] | diff(y[1:n]) >= 0)"), elementsIdenticalTo(c(true)));
+    assertThat( eval("all(x[-1][1:(n-1)] > x[1:(n-1)] | y[-1][1:(n-1)] > y[1:(n-1)] | diff(z[1:n]) >= 0)"),
+        elementsIdenticalTo(c(true)));
+  }
+
+  @Test
+  public void qsortWithIndexes() {
+    eval("y <- .Internal(qsort(c(3,1,5,0), TRUE))");
+    assertThat( eval("y$x"), elementsIdenticalTo(c(0, 1, 3, 5)));
+    assertThat( eval("y$ix"), elementsIdenticalTo(c_i(4, 2, 1, 3)));
+  }
+
   @Test
   public void unsorted() {
     assertThat( eval(".Internal(is.unsorted(c(1,2,3), TRUE))"), elementsIdenticalTo(c(false)) );
@@ -20,7 +20,9 @@ package org.renjin.primitives;
 
 import org.junit.Test;
 import org.renjin.EvalTestCase;
+import org.renjin.sexp.DoubleArrayVector;
 import org.renjin.sexp.DoubleVector;
+import org.renjin.sexp.IntArrayVector;
 import org.renjin.sexp.IntVector;
 import org.renjin.sexp.Logical;
 
@@ -151,4 +153,38 @@ public class SummaryTest extends EvalTestCase {
     assertThat(eval(".Internal(pmax(FALSE, c(1,2,3), c(0,NA,0)))"), elementsIdenticalTo(c(1, DoubleVector.NA, 3)));
     assertThat(eval(".Internal(pmax(TRUE, c(1,2,3), c(0,NA,0)))"), elementsIdenticalTo(c(1, 2, 3)));
   }
+
+  @Test
+  public void pminIntegers() {
+    assertThat(eval(".Internal(pmin(FALSE, 1:6, 3L))"), elementsIdenticalTo(c_i(1, 2, 3, 3, 3, 3)));
+    assertThat(eval(".Internal(pmin(FALSE, c(1L,NA,3L), 2L))"), elementsIdenticalTo(c_i(1, IntVector.NA, 2)));
+    assertThat(eval(".Internal(pmin(TRUE, c(1L,NA,3L), 2L))"), elementsIdenticalTo(c_i(1, 2, 2)));
+    assertThat(eval(".Internal(pmax(FALSE, c(TRUE,FALSE), FALSE))"), elementsIdenticalTo(c_i(1, 0)));
+  }
+
+  @Test
+  public void pmaxNaN() {
+    // The last NA or NaN seen wins, as in GNU R
+    assertThat(eval("is.nan(.Internal(pmax(FALSE, NA_real_, NaN)))"), elementsIdenticalTo(c(Logical.TRUE)));
+    assertThat(eval("is.nan(.Internal(pmax(FALSE, NaN, NA_real_)))"), elementsIdenticalTo(c(Logical.FALSE)));
+    assertThat(eval(".Internal(pmax(TRUE, c(NaN, 1), NA, c(2, NaN)))"), elementsIdenticalTo(c(2, 1)));
+  }
+
+  @Test
+  public void pminRecycling() {
+    assertThat(eval(".Internal(pmin(FALSE, c(1,5,2,6), c(3,4), 4L))"), elementsIdenticalTo(c(1, 4, 2, 4)));
+    assertThat(eval(".Internal(pmin(FALSE, 1:3, double(0)))"), elementsIdenticalTo(new DoubleArrayVector()));
+    assertThat(eval(".Internal(pmin(FALSE, 1:3, integer(0)))"), elementsIdenticalTo(new IntArrayVector()));
+  }
+
+  @Test
+  public void pmaxLong() {
+    eval("x <- as.double(1:200000)");
+    eval("y <- rev(x)");
+    eval("m <- .Internal(pmax(FALSE, x, y))");
+    eval("m2 <- m * 2");
+    assertThat(eval("length(m2)"), elementsIdenticalTo(c_i(200000)));
+    assertThat(eval("m2[c(1, 100000, 100001, 200000)]"), elementsIdenticalTo(c(400000, 200002, 200002, 400000)));
+    assertThat(eval("sum(.Internal(pmin(FALSE, x, y)))"), elementsIdenticalTo(c(10000100000d)));
+  }
 }
@@ -0,0 +1,142 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.primitives.io.connections;
+
+import org.junit.Test;
+import org.renjin.EvalTestCase;
+import org.renjin.repackaged.guava.io.ByteStreams;
+import org.renjin.sexp.StringArrayVector;
+import org.tukaani.xz.XZInputStream;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+public class BlockCompressingOutputStreamTest extends EvalTestCase {
+
+  @Test
+  public void gzipMembersAreConcatenated() throws IOException {
+    byte[] input = randomText(3 * 1024 * 1024 + 17);
+
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try(OutputStream out = BlockCompressingOutputStream.gzip(compressed, 6, 4)) {
+      // Write in odd-sized chunks to cross block boundaries
+      for (int i = 0; i < input.length; i += 1000) {
+        out.write(input, i, Math.min(1000, input.length - i));
+      }
+    }
+
+    byte[] output = ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray())));
+    assertArrayEquals(input, output);
+  }
+
+  @Test
+  public void flushDoesNotEndBlock() throws IOException {
+    byte[] input = randomText(200000);
+
+    ByteArrayOutputStream unflushed = new ByteArrayOutputStream();
+    try(OutputStream out = BlockCompressingOutputStream.gzip(unflushed, 6, 4)) {
+      out.write(input);
+    }
+
+    // writeLines() flushes the connection after each call
+    ByteArrayOutputStream flushed = new ByteArrayOutputStream();
+    try(OutputStream out = BlockCompressingOutputStream.gzip(flushed, 6, 4)) {
+      for (int i = 0; i < input.length; i += 20) {
+        out.write(input, i, 20);
+        out.flush();
+      }
+    }
+
+    assertThat(flushed.size(), equalTo(unflushed.size()));
+
+    byte[] output = ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(flushed.toByteArray())));
+    assertArrayEquals(input, output);
+  }
+
+  @Test
+  public void emptyGzip() throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    BlockCompressingOutputStream.gzip(compressed, 6, 4).close();
+
+    byte[] output = ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray())));
+    assertArrayEquals(new byte[0], output);
+  }
+
+  @Test
+  public void xzStreamsAreConcatenated() throws IOException {
+    byte[] input = randomText(9 * 1024 * 1024);
+
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try(OutputStream out = BlockCompressingOutputStream.xz(compressed, 1, 2)) {
+      out.write(input);
+    }
+
+    byte[] output = ByteStreams.toByteArray(new XZInputStream(new ByteArrayInputStream(compressed.toByteArray())));
+    assertArrayEquals(input, output);
+  }
+
+  @Test
+  public void gzfileWritesSingleMemberByDefault() throws IOException {
+    File file = File.createTempFile("single", ".gz");
+    file.deleteOnExit();
+    global.setVariable(topLevelContext, "file", new StringArrayVector(file.getAbsolutePath()));
+
+    eval("con <- gzfile(file, 'w')");
+    eval("writeLines(rep(paste(letters, collapse = ''), 100000), con)");
+    eval("close(con)");
+
+    byte[] compressed = Files.readAllBytes(file.toPath());
+    byte[] input = ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed)));
+    assertThat(input.length > 1024 * 1024, equalTo(true));
+
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    try(OutputStream out = new BlockCompressingOutputStream.LeveledGZIPOutputStream(expected, 6)) {
+      out.write(input);
+    }
+    assertArrayEquals(expected.toByteArray(), compressed);
+  }
+
+  @Test
+  public void saveAndReadRds() throws IOException {
+    File file = File.createTempFile("parallel", ".rds");
+    file.deleteOnExit();
+    global.setVariable(topLevelContext, "file", new StringArrayVector(file.getAbsolutePath()));
+
+    eval("options(renjin.compress.threads = 4L)");
+    eval("x <- data.frame(a = as.double(1:500000), b = rep(letters, length.out = 500000))");
+    eval("saveRDS(x, file)");
+
+    assertThat(eval("identical(readRDS(file), x)"), elementsIdenticalTo(c(true)));
+  }
+
+  private static byte[] randomText(int length) {
+    Random random = new Random(42);
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = (byte) ('a' + random.nextInt(8));
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.primitives.io.connections;
+
+import org.renjin.eval.Session;
+import org.renjin.eval.SessionBuilder;
+import org.renjin.parser.RParser;
+import org.renjin.repackaged.guava.base.Stopwatch;
+import org.renjin.sexp.SEXP;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times {@code saveRDS()} of a data frame of about 1 GB with gzip and xz compression,
+ * single-threaded and with {@link BlockCompressingOutputStream}.
+ */
+public class CompressionBenchmark {
+
+  private static final int ROWS = 25_000_000;
+
+  public static void main(String[] args) throws IOException {
+
+    Session session = new SessionBuilder().build();
+
+    File file = File.createTempFile("benchmark", ".rds");
+    file.deleteOnExit();
+
+    // Five double columns of 25 million rows each
+    eval(session, "n <- " + ROWS + "L");
+    eval(session, "df <- data.frame(id = as.double(seq_len(n)), x = runif(n), y = round(rnorm(n), 2), " +
+        "z = as.double(seq_len(n) %% 100L), w = rep(c(1.5, 2.5, NA), length.out = n))");
+    eval(session, "file <- '" + file.getAbsolutePath().replace("\\", "/") + "'");
+
+    int cores = Runtime.getRuntime().availableProcessors();
+    String[] compressions = { "TRUE", "'xz'" };
+
+    for (String compress : compressions) {
+      for (int threads : new int[] { 1, cores }) {
+        eval(session, "options(renjin.compress.threads = " + threads + "L)");
+
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        eval(session, "saveRDS(df, file, compress = " + compress + ")");
+        long saveMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+
+        stopwatch = Stopwatch.createStarted();
+        eval(session, "readRDS(file)");
+        long readMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+
+        System.out.println(String.format("compress = %-6s threads = %2d  save: %6d ms  read: %6d ms  size: %5d MB",
+            compress, threads, saveMillis, readMillis, file.length() / 1024 / 1024));
+      }
+    }
+  }
+
+  private static SEXP eval(Session session, String source) {
+    return session.getTopLevelContext().evaluate(RParser.parseSource(source + "\n"));
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.primitives.match;
+
+import org.renjin.eval.Session;
+import org.renjin.eval.SessionBuilder;
+import org.renjin.parser.RParser;
+import org.renjin.repackaged.guava.base.Stopwatch;
+import org.renjin.sexp.SEXP;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times {@code match()}, {@code %in%}, {@code unique()} and {@code anyDuplicated()} over increasing input
+ * sizes. With hashed indexes, the time per element should stay roughly constant as n grows.
+ */
+public class MatchBenchmark {
+
+  public static void main(String[] args) {
+
+    Session session = new SessionBuilder().build();
+
+    String[] setups = {
+        "x <- sample.int(n); table <- sample.int(n)",
+        "x <- runif(n); table <- c(sample(x), NA, NaN)",
+        "x <- as.character(sample.int(n)); table <- as.character(sample.int(n))"
+    };
+
+    for (String setup : setups) {
+      System.out.println(setup);
+      for (int n = 10_000; n <= 1_000_000; n *= 10) {
+        eval(session, "n <- " + n + "L");
+        eval(session, setup);
+
+        // Warm up
+        eval(session, "match(x, table)");
+
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        for (int i = 0; i < 10; i++) {
+          eval(session, "match(x, table)");
+          eval(session, "sum(x %in% table)");
+        }
+        double nanosPerElement = stopwatch.elapsed(TimeUnit.NANOSECONDS) / 20d / n;
+
+        stopwatch = Stopwatch.createStarted();
+        for (int i = 0; i < 10; i++) {
+          eval(session, "unique(x)");
+          eval(session, "anyDuplicated(x)");
+        }
+        double uniqueNanosPerElement = stopwatch.elapsed(TimeUnit.NANOSECONDS) / 20d / n;
+
+        System.out.println(String.format("  n = %8d: %6.1f ns/element, unique: %6.1f ns/element",
+            n, nanosPerElement, uniqueNanosPerElement));
+      }
+    }
+  }
+
+  private static SEXP eval(Session session, String source) {
+    return session.getTopLevelContext().evaluate(RParser.parseSource(source + "\n"));
+  }
+}
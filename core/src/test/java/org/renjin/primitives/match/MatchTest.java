@@ -20,11 +20,12 @@ package org.renjin.primitives.match;
 
 import org.junit.Test;
 import org.renjin.EvalTestCase;
-import org.renjin.sexp.IntVector;
-import org.renjin.sexp.SEXP;
-import org.renjin.sexp.StringArrayVector;
+import org.renjin.sexp.*;
+
+import java.lang.ref.WeakReference;
 
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 public class MatchTest extends EvalTestCase {
 
@@ -117,6 +118,56 @@ public class MatchTest extends EvalTestCase {
     assertThat( eval(" .Internal(duplicated(c(2,2,3,3), FALSE, TRUE, NA)) "), elementsIdenticalTo( c(true, false,true,false) ));
   }
  
+  @Test
+  public void matchNaNAndNA() {
+    assertThat( eval(".Internal(match(c(NA, NaN, 0, -0), c(1:20, NaN, NA, 0), NA_integer_, NULL))"),
+        elementsIdenticalTo(c_i(22, 21, 23, 23)));
+    assertThat( eval(".Internal(match(c(NaN, NA), c(NA, 2, 3), NA_integer_, NULL))"),
+        elementsIdenticalTo(c_i(IntVector.NA, 1)));
+  }
+
+  @Test
+  public void matchLongTables() {
+    eval("table <- as.integer(seq(1, 2000, by = 2))");
+    assertThat( eval(".Internal(match(c(1L, 2L, 1999L, NA), table, 0L, NULL))"), elementsIdenticalTo(c_i(1, 0, 1000, 0)));
+
+    // The index of this table is cached, so make sure we get the same result the second time
+    assertThat( eval(".Internal(match(c(3L, 1999L), table, 0L, NULL))"), elementsIdenticalTo(c_i(2, 1000)));
+
+    eval("s <- c(as.character(1:1000), NA, 'a', 'a')");
+    assertThat( eval(".Internal(match(c('a', NA, '500', 'b'), s, 0L, NULL))"), elementsIdenticalTo(c_i(1002, 1001, 500, 0)));
+    assertThat( eval(".Internal(match(c('a', '500'), s, 0L, 'a'))"), elementsIdenticalTo(c_i(0, 500)));
+  }
+
+  @Test
+  public void matchRaw() {
+    assertThat( eval(".Internal(match(as.raw(c(1, 255, 7)), as.raw(rep(c(0:255), 2)), NA_integer_, NULL))"),
+        elementsIdenticalTo(c_i(2, 256, 8)));
+  }
+
+  @Test
+  public void cachedTablesCanBeCollected() throws InterruptedException {
+    ListVector.Builder list = new ListVector.Builder();
+    double[] values = new double[1000];
+    for (int i = 0; i < values.length; i++) {
+      list.add(new DoubleArrayVector(i));
+      values[i] = i;
+    }
+    assertTrue(isCollectedAfterIndexing(list.build()));
+    assertTrue(isCollectedAfterIndexing(new DoubleArrayVector(values)));
+  }
+
+  private static boolean isCollectedAfterIndexing(Vector table) throws InterruptedException {
+    MatchIndex.forTable(table);
+    WeakReference<Vector> ref = new WeakReference<>(table);
+    table = null;
+    for (int i = 0; i < 50 && ref.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    return ref.get() == null;
+  }
+
   @Test
   public void whichWithEmptyNames() {
     eval("x <- which(c(a=FALSE, b=FALSE, c=FALSE))");
@@ -20,6 +20,8 @@ package org.renjin.primitives.match;
 
 import org.junit.Test;
 import org.renjin.EvalTestCase;
+import org.renjin.sexp.DoubleVector;
+import org.renjin.sexp.IntVector;
 
 import static org.junit.Assert.assertThat;
 
@@ -65,4 +67,55 @@ public class UniqueTest extends EvalTestCase {
 
   }
 
+  @Test
+  public void naAndNaN() {
+    assertThat( eval(".Internal(unique(c(NA, NaN, 1, NA, NaN, 0, -0), FALSE, FALSE, NA))"),
+            elementsIdenticalTo(c(DoubleVector.NA, Double.NaN, 1, 0)));
+    assertThat( eval(".Internal(duplicated(c('a', NA, 'b', NA, 'a'), FALSE, FALSE, NA))"),
+            elementsIdenticalTo(c(false, false, false, true, true)));
+    assertThat( eval(".Internal(unique(c(1L, NA, NA, 1L), FALSE, FALSE, NA))"),
+            elementsIdenticalTo(c_i(1, IntVector.NA)));
+  }
+
+  @Test
+  public void complex() {
+    assertThat( eval(".Internal(duplicated(c(1+1i, 1+2i, 1+1i, 2+1i), FALSE, FALSE, NA))"),
+            elementsIdenticalTo(c(false, false, true, false)));
+  }
+
+  @Test
+  public void raw() {
+    assertThat( eval(".Internal(anyDuplicated(as.raw(c(1, 2, 255, 2)), FALSE, FALSE))"),
+            elementsIdenticalTo(c_i(4)));
+  }
+
+  @Test
+  public void sorted() {
+    assertThat( eval(".Internal(unique(c(1, 1, 2, 3, 3, 3), FALSE, FALSE, NA))"),
+            elementsIdenticalTo(c(1, 2, 3)));
+    assertThat( eval(".Internal(duplicated(c(-0, 0, 1), FALSE, FALSE, NA))"),
+            elementsIdenticalTo(c(false, true, false)));
+    assertThat( eval(".Internal(duplicated(c(1L, 1L, 2L, 2L), FALSE, TRUE, NA))"),
+            elementsIdenticalTo(c(true, false, true, false)));
+    assertThat( eval(".Internal(anyDuplicated(c('a', 'b', 'b'), FALSE, FALSE))"),
+            elementsIdenticalTo(c_i(3)));
+    assertThat( eval(".Internal(anyDuplicated(1:100000, FALSE, FALSE))"),
+            elementsIdenticalTo(c_i(0)));
+  }
+
+  @Test
+  public void incomparables() {
+    assertThat( eval(".Internal(duplicated(c(1, 2, 1, 2), 2, FALSE, NA))"),
+            elementsIdenticalTo(c(false, false, true, false)));
+    assertThat( eval(".Internal(unique(c('a', 'b', 'a', 'b'), 'a', FALSE, NA))"),
+            elementsIdenticalTo(c("a", "b", "a")));
+  }
+
+  @Test
+  public void large() {
+    assertThat( eval("length(.Internal(unique(rep(c(3L, 1L, 2L), 10000), FALSE, FALSE, NA)))"),
+            elementsIdenticalTo(c_i(3)));
+    assertThat( eval("sum(.Internal(duplicated(c(sample.int(5000), sample.int(5000)), FALSE, FALSE, NA)))"),
+            elementsIdenticalTo(c_i(5000)));
+  }
 }
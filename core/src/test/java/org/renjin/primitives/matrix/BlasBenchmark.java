@@ -0,0 +1,114 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.primitives.matrix;
+
+import org.renjin.repackaged.guava.base.Stopwatch;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports GFLOPS of the pure-JVM BLAS for square and skinny products, on one thread and on the
+ * common pool, alongside the implementation selected by {@link Blas#getInstance()} if that is a
+ * different one.
+ */
+public class BlasBenchmark {
+
+  private static final Random RANDOM = new Random(1);
+
+  public static void main(String[] args) {
+
+    Blas[] implementations = {
+        new JvmBlas(new ForkJoinPool(1)),
+        new JvmBlas(),
+        Blas.getInstance()
+    };
+    String[] names = {
+        "jvm (1 thread)",
+        "jvm (" + ForkJoinPool.commonPool().getParallelism() + " threads)",
+        Blas.getInstance().getClass().getSimpleName()
+    };
+    int count = Blas.getInstance() instanceof JvmBlas ? 2 : 3;
+
+    for (int i = 0; i < count; i++) {
+      System.out.println(names[i]);
+      for (int n : new int[] { 256, 512, 1024 }) {
+        gemm(implementations[i], "  %*% " + n + " x " + n, n, n, n);
+      }
+      gemm(implementations[i], "  %*% 2000 x 20 by 20 x 2000", 2000, 2000, 20);
+      gemm(implementations[i], "  %*% 20 x 2000 by 2000 x 20", 20, 20, 2000);
+      crossprod(implementations[i], "  crossprod 100000 x 10", 100_000, 10);
+      crossprod(implementations[i], "  crossprod 10000 x 200", 10_000, 200);
+      potrf(implementations[i], "  chol 1024 x 1024", 1024);
+    }
+  }
+
+  private static void gemm(Blas blas, String label, int m, int n, int k) {
+    double[] a = random(m * k);
+    double[] b = random(k * n);
+    double[] c = new double[m * n];
+    report(label, 2.0 * m * n * k, () -> blas.dgemm("N", "N", m, n, k, 1.0, a, m, b, k, 0.0, c, m));
+  }
+
+  private static void crossprod(Blas blas, String label, int rows, int columns) {
+    double[] x = random(rows * columns);
+    double[] z = new double[columns * columns];
+    report(label, (double) rows * columns * (columns + 1),
+        () -> blas.dsyrk("U", "T", columns, rows, 1.0, x, rows, 0.0, z, columns));
+  }
+
+  private static void potrf(Blas blas, String label, int n) {
+    double[] x = random(n * n);
+    double[] spd = new double[n * n];
+    blas.dgemm("T", "N", n, n, n, 1.0, x, n, x, n, 0.0, spd, n);
+    for (int i = 0; i < n; i++) {
+      spd[i + i * n] += n;
+    }
+    double[] a = new double[n * n];
+    report(label, n * (double) n * n / 3.0, () -> {
+      System.arraycopy(spd, 0, a, 0, a.length);
+      blas.dpotrf("U", n, a, n);
+    });
+  }
+
+  private static void report(String label, double flops, Runnable operation) {
+    // Warm up
+    for (int i = 0; i < 3; i++) {
+      operation.run();
+    }
+    int repetitions = 0;
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    do {
+      operation.run();
+      repetitions++;
+    } while (stopwatch.elapsed(TimeUnit.MILLISECONDS) < 1000);
+
+    double seconds = stopwatch.elapsed(TimeUnit.NANOSECONDS) / 1e9 / repetitions;
+    System.out.println(String.format("%-36s %9.2f ms %7.2f GFLOPS", label, seconds * 1e3, flops / seconds / 1e9));
+  }
+
+  private static double[] random(int length) {
+    double[] x = new double[length];
+    for (int i = 0; i < length; i++) {
+      x[i] = RANDOM.nextDouble();
+    }
+    return x;
+  }
+}
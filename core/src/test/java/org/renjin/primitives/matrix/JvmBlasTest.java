@@ -0,0 +1,246 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.primitives.matrix;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+
+public class JvmBlasTest {
+
+  private final Random random = new Random(42);
+
+  private final JvmBlas blas = new JvmBlas(new ForkJoinPool(4));
+
+  @Test
+  public void gemm() {
+    for (String transa : new String[] { "N", "T" }) {
+      for (String transb : new String[] { "N", "T" }) {
+        checkGemm(transa, transb, 131, 277, 300, 1.0, 0.0);
+        checkGemm(transa, transb, 5, 3, 7, -2.5, 1.5);
+      }
+    }
+  }
+
+  @Test
+  public void gemmWithLongInnerDimension() {
+    // Fewer output tiles than threads: the inner dimension is split instead
+    checkGemm("T", "N", 10, 10, 5000, 1.0, 0.0);
+    checkGemm("N", "T", 9, 6, 3000, 0.5, 2.0);
+  }
+
+  @Test
+  public void gemmOnSingleThread() {
+    JvmBlas sequential = new JvmBlas(new ForkJoinPool(1));
+    double[] a = random(70 * 90);
+    double[] b = random(90 * 50);
+    double[] c = new double[70 * 50];
+    sequential.dgemm("N", "N", 70, 50, 90, 1.0, a, 70, b, 90, 0.0, c, 70);
+    assertClose(naiveGemm(false, false, 70, 50, 90, 1.0, a, 70, b, 90, 0.0, new double[70 * 50]), c);
+  }
+
+  @Test
+  public void gemmIsReproducibleAcrossParallelism() {
+    double[] a = random(5000 * 10);
+    double[] b = random(5000 * 12);
+    double[] expected = new double[10 * 12];
+    new JvmBlas(new ForkJoinPool(1)).dgemm("T", "N", 10, 12, 5000, 1.0, a, 5000, b, 5000, 0.0, expected, 10);
+
+    for (int parallelism : new int[] { 2, 3, 16 }) {
+      double[] c = new double[10 * 12];
+      new JvmBlas(new ForkJoinPool(parallelism)).dgemm("T", "N", 10, 12, 5000, 1.0, a, 5000, b, 5000, 0.0, c, 10);
+      assertArrayEquals(expected, c, 0);
+    }
+  }
+
+  @Test
+  public void syrk() {
+    for (String uplo : new String[] { "U", "L" }) {
+      for (String trans : new String[] { "N", "T" }) {
+        int n = 150;
+        int k = 280;
+        double[] a = random(n * k);
+        int lda = trans.equals("N") ? n : k;
+        double[] c = random(n * n);
+        double[] expected = c.clone();
+        naiveGemm(trans.equals("T"), trans.equals("N"), n, n, k, 2.0, a, lda, a, lda, 0.5, expected);
+
+        blas.dsyrk(uplo, trans, n, k, 2.0, a, lda, 0.5, c, n);
+
+        double[] original = c.clone();
+        for (int j = 0; j < n; j++) {
+          for (int i = 0; i < n; i++) {
+            boolean inTriangle = uplo.equals("U") ? i <= j : i >= j;
+            if(inTriangle) {
+              assertEquals(expected[i + j * n], c[i + j * n], 1e-9);
+            } else {
+              assertEquals(original[i + j * n], c[i + j * n], 0);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void trsm() {
+    for (String side : new String[] { "L", "R" }) {
+      for (String uplo : new String[] { "U", "L" }) {
+        for (String trans : new String[] { "N", "T" }) {
+          for (String diag : new String[] { "N", "U" }) {
+            checkTrsm(side, uplo, trans, diag, 203, 37);
+            checkTrsm(side, uplo, trans, diag, 4, 3);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void potrf() {
+    for (String uplo : new String[] { "U", "L" }) {
+      int n = 250;
+      double[] spd = symmetricPositiveDefinite(n);
+      double[] a = spd.clone();
+      assertEquals(0, blas.dpotrf(uplo, n, a, n));
+
+      // Reconstruct A from its factor
+      double[] factor = new double[n * n];
+      for (int j = 0; j < n; j++) {
+        for (int i = 0; i < n; i++) {
+          if(uplo.equals("U") ? i <= j : i >= j) {
+            factor[i + j * n] = a[i + j * n];
+          }
+        }
+      }
+      double[] product = new double[n * n];
+      if(uplo.equals("U")) {
+        naiveGemm(true, false, n, n, n, 1.0, factor, n, factor, n, 0.0, product);
+      } else {
+        naiveGemm(false, true, n, n, n, 1.0, factor, n, factor, n, 0.0, product);
+      }
+      assertClose(spd, product);
+    }
+  }
+
+  @Test
+  public void potrfNotPositiveDefinite() {
+    int n = 150;
+    double[] a = symmetricPositiveDefinite(n);
+    a[120 + 120 * n] = -1e6;
+    assertEquals(121, blas.dpotrf("U", n, a.clone(), n));
+    assertEquals(121, blas.dpotrf("L", n, a.clone(), n));
+  }
+
+  private void checkGemm(String transa, String transb, int m, int n, int k, double alpha, double beta) {
+    boolean ta = transa.equals("T");
+    boolean tb = transb.equals("T");
+    int lda = ta ? k : m;
+    int ldb = tb ? n : k;
+    double[] a = random(m * k);
+    double[] b = random(k * n);
+    double[] c = random(m * n);
+    double[] expected = naiveGemm(ta, tb, m, n, k, alpha, a, lda, b, ldb, beta, c.clone());
+
+    blas.dgemm(transa, transb, m, n, k, alpha, a, lda, b, ldb, beta, c, m);
+
+    assertClose(expected, c);
+  }
+
+  private void checkTrsm(String side, String uplo, String trans, String diag, int m, int n) {
+    boolean left = side.equals("L");
+    int na = left ? m : n;
+    double[] a = random(na * na);
+    for (int i = 0; i < na; i++) {
+      a[i + i * na] += na;
+    }
+    // Keep only the referenced triangle, plus the diagonal when it is not unit
+    double[] triangular = new double[na * na];
+    for (int j = 0; j < na; j++) {
+      for (int i = 0; i < na; i++) {
+        if(i == j) {
+          triangular[i + j * na] = diag.equals("U") ? 1 : a[i + j * na];
+        } else if(uplo.equals("U") ? i < j : i > j) {
+          triangular[i + j * na] = a[i + j * na];
+        }
+      }
+    }
+    double[] b = random(m * n);
+    double[] x = b.clone();
+    blas.dtrsm(side, uplo, trans, diag, m, n, 3.0, a, na, x, m);
+
+    boolean transposed = trans.equals("T");
+    double[] product = new double[m * n];
+    if(left) {
+      naiveGemm(transposed, false, m, n, m, 1.0, triangular, na, x, m, 0.0, product);
+    } else {
+      naiveGemm(false, transposed, m, n, n, 1.0, x, m, triangular, na, 0.0, product);
+    }
+    for (int i = 0; i < b.length; i++) {
+      b[i] *= 3.0;
+    }
+    assertClose(b, product);
+  }
+
+  private double[] symmetricPositiveDefinite(int n) {
+    double[] x = random(n * n);
+    double[] a = naiveGemm(true, false, n, n, n, 1.0, x, n, x, n, 0.0, new double[n * n]);
+    for (int i = 0; i < n; i++) {
+      a[i + i * n] += n;
+    }
+    return a;
+  }
+
+  private static double[] naiveGemm(boolean ta, boolean tb, int m, int n, int k,
+                                    double alpha, double[] a, int lda, double[] b, int ldb,
+                                    double beta, double[] c) {
+    for (int j = 0; j < n; j++) {
+      for (int i = 0; i < m; i++) {
+        double sum = 0;
+        for (int p = 0; p < k; p++) {
+          double aip = ta ? a[p + i * lda] : a[i + p * lda];
+          double bpj = tb ? b[j + p * ldb] : b[p + j * ldb];
+          sum += aip * bpj;
+        }
+        c[i + j * m] = alpha * sum + beta * c[i + j * m];
+      }
+    }
+    return c;
+  }
+
+  private double[] random(int length) {
+    double[] x = new double[length];
+    for (int i = 0; i < length; i++) {
+      x[i] = random.nextDouble() - 0.5;
+    }
+    return x;
+  }
+
+  private static void assertClose(double[] expected, double[] actual) {
+    assertEquals(expected.length, actual.length);
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i], actual[i], 1e-8 * (1 + Math.abs(expected[i])));
+    }
+  }
+}
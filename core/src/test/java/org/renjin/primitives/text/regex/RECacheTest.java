@@ -0,0 +1,67 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.primitives.text.regex;
+
+import org.junit.Test;
+import org.renjin.EvalTestCase;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class RECacheTest extends EvalTestCase {
+
+  @Test
+  public void patternIsCompiledOnce() {
+    RECache cache = topLevelContext.getSession().getSingleton(RECache.class);
+    cache.clear();
+
+    eval("x <- paste('row', 1:1000)");
+    eval("y <- gsub('[0-9]+$', 'N', x)");
+
+    assertThat(eval("y[1000]"), elementsIdenticalTo(c("row N")));
+    assertThat(cache.getMissCount(), equalTo(1L));
+    assertThat(cache.getHitCount(), equalTo(999L));
+
+    eval("z <- sub('[0-9]+$', 'N', x)");
+    assertThat(cache.getMissCount(), equalTo(1L));
+  }
+
+  @Test
+  public void flagsAreSeparateEntries() {
+    RECache cache = topLevelContext.getSession().getSingleton(RECache.class);
+    cache.clear();
+
+    assertThat(eval("grepl('a', c('A', 'a'))"), elementsIdenticalTo(c(false, true)));
+    assertThat(eval("grepl('a', c('A', 'a'), ignore.case = TRUE)"), elementsIdenticalTo(c(true, true)));
+    assertThat(cache.size(), equalTo(2));
+  }
+
+  @Test
+  public void leastRecentlyUsedIsEvicted() throws RESyntaxException {
+    RECache cache = new RECache(2);
+    REProgram a = cache.getProgram("a+", false, false);
+    cache.getProgram("b+", false, false);
+    cache.getProgram("a+", false, false);
+    cache.getProgram("c+", false, false);
+
+    assertThat(cache.size(), equalTo(2));
+    assertThat(cache.getProgram("a+", false, false) == a, equalTo(true));
+    assertThat(cache.getMissCount(), equalTo(3L));
+  }
+}
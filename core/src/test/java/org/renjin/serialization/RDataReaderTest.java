@@ -25,8 +25,12 @@ import org.renjin.primitives.Types;
 import org.renjin.repackaged.guava.io.ByteSource;
 import org.renjin.sexp.*;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.zip.GZIPInputStream;
 
 import static org.hamcrest.CoreMatchers.equalTo;
@@ -257,6 +261,79 @@ public class RDataReaderTest extends EvalTestCase {
     assertThat( env.getVariable(topLevelContext, "f"), elementsIdenticalTo(c(42)));
   }
 
+  @Test
+  public void readMapped() throws IOException {
+    File file = File.createTempFile("mapped", ".rds");
+    file.deleteOnExit();
+
+    eval("x <- list(a = as.double(1:5000), b = rep(c(TRUE, NA, FALSE), 1000), " +
+        "c = paste0('s', 1:200), d = c(NA, 'x'), e = 1:3, f = 2.5)");
+
+    try(FileOutputStream out = new FileOutputStream(file)) {
+      RDataWriter writer = new RDataWriter(topLevelContext, out);
+      writer.serialize(global.getVariable(topLevelContext, "x"));
+      writer.close();
+    }
+
+    SEXP exp;
+    try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      RDataReader reader = RDataReader.openMapped(topLevelContext, channel, true);
+      assertNotNull(reader);
+      exp = reader.readFile();
+      assertThat(reader.getMappedBytesRead(), equalTo(file.length()));
+    }
+
+    ListVector list = (ListVector) exp;
+    assertThat(list.get("a"), instanceOf(DoubleBufferVector.class));
+    assertThat(list.get("b"), instanceOf(LogicalBufferVector.class));
+    assertThat(list.get("c"), instanceOf(StringBufferVector.class));
+
+    global.setVariable(topLevelContext, "y", exp);
+    assertThat(eval("identical(x, y)"), elementsIdenticalTo(c(true)));
+  }
+
+  @Test
+  public void readMappedFromConnection() throws IOException {
+    File file = File.createTempFile("mapped", ".rds");
+    file.deleteOnExit();
+    global.setVariable(topLevelContext, "file", new StringArrayVector(file.getAbsolutePath()));
+
+    eval("saveRDS(as.double(1:5000), file, compress = FALSE)");
+    assertThat(eval("identical(readRDS(file), as.double(1:5000))"), elementsIdenticalTo(c(true)));
+
+    // Consecutive objects must still be read from the same connection
+    try(FileOutputStream out = new FileOutputStream(file)) {
+      RDataWriter writer = new RDataWriter(topLevelContext, out);
+      writer.serialize(c(1, 2, 3));
+      writer.serialize(c_i(4, 5));
+      writer.close();
+    }
+    eval("con <- file(file, 'rb')");
+    assertThat(eval("readRDS(con)"), elementsIdenticalTo(c(1, 2, 3)));
+    assertThat(eval("readRDS(con)"), elementsIdenticalTo(c_i(4, 5)));
+    eval("close(con)");
+  }
+
+  @Test
+  public void mappedFileRewrittenAfterRead() throws IOException {
+    File file = File.createTempFile("mapped", ".rds");
+    file.deleteOnExit();
+    global.setVariable(topLevelContext, "file", new StringArrayVector(file.getAbsolutePath()));
+
+    eval("x0 <- list(a = as.double(1:5000), b = rep(c(TRUE, NA, FALSE), 1000), c = 1:5000, " +
+        "d = paste0('s', 1:200))");
+    eval("saveRDS(x0, file, compress = FALSE)");
+    eval("x <- readRDS(file)");
+
+    // The file can be rewritten by this session, so x must not be a view of it
+    eval("saveRDS(lapply(x0, rev), file, compress = FALSE)");
+    assertThat(eval("identical(x, x0)"), elementsIdenticalTo(c(true)));
+
+    eval("saveRDS(1, file, compress = FALSE)");
+    assertThat(eval("identical(x, x0)"), elementsIdenticalTo(c(true)));
+    assertThat(eval("sum(x$a)"), elementsIdenticalTo(c(12502500)));
+  }
+
   protected Symbol symbol(String name){
     return Symbol.get(name);
   }
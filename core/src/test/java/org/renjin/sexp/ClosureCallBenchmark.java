@@ -0,0 +1,85 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.sexp;
+
+import org.renjin.eval.Session;
+import org.renjin.eval.SessionBuilder;
+import org.renjin.parser.RParser;
+import org.renjin.repackaged.guava.base.Stopwatch;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times a loop of calls to small closures, reporting the time and bytes allocated per call.
+ */
+public class ClosureCallBenchmark {
+
+  private static final int CALLS = 1_000_000;
+
+  /**
+   * The number of closure calls made by fib(25): fib(n) makes 2 * F(n + 1) - 1 calls.
+   */
+  private static final int FIB_CALLS = 242_785;
+
+  public static void main(String[] args) {
+
+    Session session = new SessionBuilder().build();
+
+    eval(session, "add <- function(x, y) { z <- x + y; z }");
+    eval(session, "scale <- function(x, by = 2, ...) { result <- x * by; result }");
+    eval(session, "fib <- function(n) if(n < 2) n else fib(n - 1) + fib(n - 2)");
+
+    String[] loops = {
+        "for(i in 1:n) add(i, 1)",
+        "for(i in 1:n) scale(by = 3, i)",
+        "fib(25)"
+    };
+    int[] calls = { CALLS, CALLS, FIB_CALLS };
+
+    eval(session, "n <- " + CALLS + "L");
+
+    for (int l = 0; l < loops.length; l++) {
+      String loop = loops[l];
+
+      // Warm up
+      for (int i = 0; i < 3; i++) {
+        eval(session, loop);
+      }
+
+      long allocatedBefore = allocatedBytes();
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      eval(session, loop);
+      long nanos = stopwatch.elapsed(TimeUnit.NANOSECONDS);
+      long allocated = allocatedBytes() - allocatedBefore;
+
+      System.out.println(String.format("%-35s %8.1f ns/call %8.1f bytes/call", loop,
+          (double) nanos / calls[l], (double) allocated / calls[l]));
+    }
+  }
+
+  private static long allocatedBytes() {
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  private static SEXP eval(Session session, String source) {
+    return session.getTopLevelContext().evaluate(RParser.parseSource(source + "\n"));
+  }
+}
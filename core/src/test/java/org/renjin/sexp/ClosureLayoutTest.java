@@ -0,0 +1,155 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.sexp;
+
+import org.junit.Test;
+import org.renjin.EvalTestCase;
+import org.renjin.parser.RParser;
+
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class ClosureLayoutTest extends EvalTestCase {
+
+  @Test
+  public void assignedVariablesGetSlots() {
+    ClosureLayout layout = analyze("function(x, ...) { " +
+        "y <- 1; " +
+        "names(z)[1] <- 'a'; " +
+        "for(i in 1:3) NULL; " +
+        "'w' = 2; " +
+        "g <- function() inner <- 1; " +
+        "quote(q <- 1); " +
+        "x <- 3; " +
+        "outer <<- 4 }");
+
+    assertThat(Arrays.asList(layout.getFrameNames()), equalTo(Arrays.<SEXP>asList(
+        Symbol.get("x"), Symbols.ELLIPSES, Symbol.get("y"), Symbol.get("z"), Symbol.get("i"),
+        Symbol.get("w"), Symbol.get("g"))));
+  }
+
+  @Test
+  public void indexOfLargeFrame() {
+    StringBuilder body = new StringBuilder();
+    for (int i = 0; i < 40; i++) {
+      body.append("v").append(i).append(" <- ").append(i).append("; ");
+    }
+    ClosureLayout layout = analyze("function(a, b) { " + body + "}");
+
+    assertThat(layout.indexOf(Symbol.get("a")), equalTo(0));
+    assertThat(layout.indexOf(Symbol.get("b")), equalTo(1));
+    for (int i = 0; i < 40; i++) {
+      assertThat(layout.indexOf(Symbol.get("v" + i)), equalTo(i + 2));
+    }
+    assertThat(layout.indexOf(Symbol.get("notAssigned")), equalTo(-1));
+  }
+
+  @Test
+  public void unassignedSlotsAreUnbound() {
+    eval("y <- 'global'");
+    eval("f <- function(assign) { if(assign) y <- 'local'; y }");
+
+    assertThat(eval("f(FALSE)"), elementsIdenticalTo(c("global")));
+    assertThat(eval("f(TRUE)"), elementsIdenticalTo(c("local")));
+
+    eval("g <- function() { exists('z', inherits = FALSE) }");
+    eval("h <- function() { before <- exists('z', inherits = FALSE); z <- 1; c(before, exists('z', inherits = FALSE)) }");
+    assertThat(eval("g()"), elementsIdenticalTo(c(false)));
+    assertThat(eval("h()"), elementsIdenticalTo(c(false, true)));
+  }
+
+  @Test
+  public void localsCanBeRemoved() {
+    eval("z <- 'global'");
+    eval("f <- function() { z <- 'local'; rm(z); z }");
+    assertThat(eval("f()"), elementsIdenticalTo(c("global")));
+  }
+
+  @Test
+  public void localsAreListed() {
+    eval("f <- function(a) { b <- 1; assign('c', 2); ls() }");
+    assertThat(eval("f(0)"), elementsIdenticalTo(c("a", "b", "c")));
+  }
+
+  @Test
+  public void localFunctionsAreFound() {
+    eval("f <- function() { length <- function(x) 42; length(1:3) }");
+    assertThat(eval("f()"), elementsIdenticalTo(c(42)));
+    assertThat(eval("length(1:3)"), elementsIdenticalTo(c_i(3)));
+  }
+
+  @Test
+  public void nestedClosuresShareLayout() {
+    eval("make <- function(n) function() { total <- n; total * 2 }");
+    eval("a <- make(1)");
+    eval("b <- make(2)");
+    assertThat(eval("a()"), elementsIdenticalTo(c(2)));
+    assertThat(eval("b()"), elementsIdenticalTo(c(4)));
+
+    Closure a = (Closure) global.getVariable(topLevelContext, "a");
+    Closure b = (Closure) global.getVariable(topLevelContext, "b");
+    assertThat(a.getLayout() == b.getLayout(), equalTo(true));
+  }
+
+  @Test
+  public void changedBodyIsReanalyzed() {
+    eval("f <- function() { x <- 1; x }");
+    assertThat(eval("f()"), elementsIdenticalTo(c(1)));
+
+    eval("body(f) <- quote({ y <- 2; y })");
+    Closure f = (Closure) global.getVariable(topLevelContext, "f");
+    assertThat(f.getLayout().indexOf(Symbol.get("y")), equalTo(0));
+    assertThat(eval("f()"), elementsIdenticalTo(c(2)));
+  }
+
+  @Test
+  public void argumentShapesAreMatched() {
+    eval("f <- function(alpha, beta, ...) paste(alpha, beta, length(list(...)))");
+
+    // Repeat each shape to exercise the cached matches, and use more
+    // shapes than are cached at once
+    for (int i = 0; i < 3; i++) {
+      assertThat(eval("f(1, 2)"), elementsIdenticalTo(c("1 2 0")));
+      assertThat(eval("f(beta = 1, 2)"), elementsIdenticalTo(c("2 1 0")));
+      assertThat(eval("f(be = 1, al = 2)"), elementsIdenticalTo(c("2 1 0")));
+      assertThat(eval("f(1, 2, 3, 4)"), elementsIdenticalTo(c("1 2 2")));
+      assertThat(eval("f(x = 1, 2, 3)"), elementsIdenticalTo(c("2 3 1")));
+      assertThat(eval("f(1, alpha = 2)"), elementsIdenticalTo(c("2 1 0")));
+    }
+  }
+
+  @Test
+  public void forwardedArguments() {
+    eval("g <- function(a, b) a - b");
+    eval("f <- function(...) g(...)");
+    eval("h <- function(...) g(..., 1)");
+
+    assertThat(eval("f(5, 3)"), elementsIdenticalTo(c(2)));
+    assertThat(eval("f(b = 5, 3)"), elementsIdenticalTo(c(-2)));
+    assertThat(eval("h(5)"), elementsIdenticalTo(c(4)));
+    assertThat(eval("h(b = 5)"), elementsIdenticalTo(c(-4)));
+  }
+
+  private ClosureLayout analyze(String source) {
+    FunctionCall function = (FunctionCall) RParser.parseSource(source + "\n").getElementAsSEXP(0);
+    return ClosureLayout.analyze((PairList) function.getArgument(0), function.getArgument(1));
+  }
+}
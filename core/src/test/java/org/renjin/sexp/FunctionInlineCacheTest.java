@@ -0,0 +1,152 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.sexp;
+
+import org.junit.Test;
+import org.renjin.EvalTestCase;
+import org.renjin.parser.RParser;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class FunctionInlineCacheTest extends EvalTestCase {
+
+  @Test
+  public void rebindingInvalidatesCache() {
+    eval("f <- function() g(1)");
+    eval("g <- function(x) x + 1");
+    assertThat(eval("f()"), elementsIdenticalTo(c(2)));
+    assertThat(eval("f()"), elementsIdenticalTo(c(2)));
+
+    eval("g <- function(x) x + 100");
+    assertThat(eval("f()"), elementsIdenticalTo(c(101)));
+  }
+
+  @Test
+  public void removalInvalidatesCache() {
+    eval("f <- function() length(1:3)");
+    assertThat(eval("f()"), elementsIdenticalTo(c_i(3)));
+
+    eval("length <- function(x) 42");
+    assertThat(eval("f()"), elementsIdenticalTo(c(42)));
+
+    eval("rm(length)");
+    assertThat(eval("f()"), elementsIdenticalTo(c_i(3)));
+  }
+
+  @Test
+  public void localBindingsShadowCachedFunctions() {
+    eval("f <- function(length) length(1:3)");
+    assertThat(eval("f(base::length)"), elementsIdenticalTo(c_i(3)));
+    assertThat(eval("f(function(x) 99)"), elementsIdenticalTo(c(99)));
+    assertThat(eval("f(base::length)"), elementsIdenticalTo(c_i(3)));
+  }
+
+  @Test
+  public void attachInvalidatesCache() {
+    eval("f <- function() nchar('abc')");
+    assertThat(eval("f()"), elementsIdenticalTo(c_i(3)));
+
+    eval("attach(list(nchar = function(x) -1), name = 'e')");
+    assertThat(eval("f()"), elementsIdenticalTo(c(-1)));
+
+    eval("detach('e')");
+    assertThat(eval("f()"), elementsIdenticalTo(c_i(3)));
+  }
+
+  @Test
+  public void rebindingThroughBaseEnvInvalidatesNamespaceLookups() {
+    eval("assign('.cacheTarget', function() 1, envir = baseenv())");
+    eval("f <- function() .cacheTarget()");
+    eval("environment(f) <- .BaseNamespaceEnv");
+    assertThat(eval("f()"), elementsIdenticalTo(c(1)));
+    assertThat(eval("f()"), elementsIdenticalTo(c(1)));
+
+    // The base environment and the base namespace share one frame
+    eval("assign('.cacheTarget', function() 2, envir = baseenv())");
+    assertThat(eval("f()"), elementsIdenticalTo(c(2)));
+  }
+
+  @Test
+  public void callSiteBecomesMegamorphic() {
+    FunctionCall call = (FunctionCall) RParser.parseSource("length(x)\n").getElementAsSEXP(0);
+    eval("g <- function(x) x");
+    for (int i = 0; i <= FunctionInlineCache.MAX_ENTRIES; i++) {
+      Environment parent = Environment.createChildEnvironment(global);
+      Environment rho = Environment.createChildEnvironment(parent);
+      rho.setVariable(topLevelContext, "x", IntVector.valueOf(1));
+      assertThat(topLevelContext.evaluate(call, rho), elementsIdenticalTo(c_i(1)));
+    }
+
+    FunctionInlineCache cache = call.functionCache;
+    assertThat(cache.isMegamorphic(), equalTo(true));
+    assertThat(cache.getMissCount(), equalTo(FunctionInlineCache.MAX_ENTRIES + 1L));
+  }
+
+  @Test
+  public void repeatedCallsHitCache() {
+    FunctionCall call = (FunctionCall) RParser.parseSource("length(x)\n").getElementAsSEXP(0);
+    Environment rho = Environment.createChildEnvironment(global);
+    rho.setVariable(topLevelContext, "x", IntVector.valueOf(1));
+
+    for (int i = 0; i < 10; i++) {
+      topLevelContext.evaluate(call, rho);
+    }
+
+    FunctionInlineCache cache = call.functionCache;
+    assertThat(cache.getMissCount(), equalTo(1L));
+    assertThat(cache.getHitCount(), equalTo(9L));
+  }
+
+  @Test
+  public void bindingsOutsideOfSearchPathDontInvalidate() {
+    FunctionCall call = (FunctionCall) RParser.parseSource("length(x)\n").getElementAsSEXP(0);
+    Environment rho = Environment.createChildEnvironment(global);
+    rho.setVariable(topLevelContext, "x", IntVector.valueOf(1));
+    eval("y <- 0");
+    topLevelContext.evaluate(call, rho);
+
+    // Neither rebinding ordinary values on the search path, nor binding the function name in
+    // an unrelated environment, such as one belonging to another session, affects the lookup
+    Environment unrelated = Environment.createChildEnvironment(Environment.EMPTY);
+    for (int i = 0; i < 10; i++) {
+      eval("y <- y + 1");
+      unrelated.setVariable(topLevelContext, "length", eval("function(x) 42"));
+      assertThat(topLevelContext.evaluate(call, rho), elementsIdenticalTo(c_i(1)));
+    }
+
+    FunctionInlineCache cache = call.functionCache;
+    assertThat(cache.getMissCount(), equalTo(1L));
+    assertThat(cache.getHitCount(), equalTo(10L));
+  }
+
+  @Test
+  public void functionEnvironmentsAreNotCached() {
+    eval("make <- function() { big <- 1:1e6; function() length(big) }");
+    eval("h <- make()");
+    assertThat(eval("h()"), elementsIdenticalTo(c_i(1000000)));
+    assertThat(eval("h()"), elementsIdenticalTo(c_i(1000000)));
+
+    // The call site must not keep make()'s frame alive
+    FunctionCall call = (FunctionCall) ((Closure) eval("h")).getBody();
+    FunctionInlineCache cache = call.functionCache;
+    assertThat(cache.getEntryCount(), equalTo(0));
+    assertThat(cache.getMissCount(), equalTo(2L));
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.sexp;
+
+import org.junit.Test;
+import org.renjin.eval.Context;
+import org.renjin.eval.EvalException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class PromiseTest {
+
+  /**
+   * A promise that forces {@code other} once both promises are being evaluated.
+   */
+  private static class DependentPromise extends Promise {
+    private final CountDownLatch started;
+    private Promise other;
+
+    DependentPromise(CountDownLatch started) {
+      super(Environment.EMPTY, Null.INSTANCE);
+      this.started = started;
+    }
+
+    @Override
+    protected SEXP doEval(Context context) {
+      started.countDown();
+      try {
+        started.await();
+      } catch (InterruptedException e) {
+        throw new AssertionError(e);
+      }
+      return other.force(context);
+    }
+  }
+
+  @Test(expected = EvalException.class)
+  public void recursivePromise() {
+    DependentPromise promise = new DependentPromise(new CountDownLatch(0));
+    promise.other = promise;
+    promise.force(null);
+  }
+
+  @Test(timeout = 10000)
+  public void promiseForcedConcurrentlyIsEvaluatedOnce() throws Exception {
+    AtomicInteger evaluations = new AtomicInteger(0);
+    CountDownLatch started = new CountDownLatch(1);
+    Promise promise = new Promise(Environment.EMPTY, Null.INSTANCE) {
+      @Override
+      protected SEXP doEval(Context context) {
+        evaluations.incrementAndGet();
+        started.countDown();
+        try {
+          Thread.sleep(50);
+        } catch (InterruptedException e) {
+          throw new AssertionError(e);
+        }
+        return new IntArrayVector(42);
+      }
+    };
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<SEXP>> results = new ArrayList<>();
+      results.add(executor.submit(() -> promise.force(null)));
+      started.await();
+      for (int i = 0; i < 3; i++) {
+        results.add(executor.submit(() -> promise.force(null)));
+      }
+      for (Future<SEXP> result : results) {
+        assertThat(result.get(), sameInstance(promise.getValue()));
+      }
+      assertThat(evaluations.get(), equalTo(1));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void mutuallyDependentPromisesForcedConcurrently() throws Exception {
+    CountDownLatch started = new CountDownLatch(2);
+    DependentPromise first = new DependentPromise(started);
+    DependentPromise second = new DependentPromise(started);
+    first.other = second;
+    second.other = first;
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<SEXP> firstResult = executor.submit(() -> first.force(null));
+      Future<SEXP> secondResult = executor.submit(() -> second.force(null));
+
+      assertRecursionError(firstResult);
+      assertRecursionError(secondResult);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static void assertRecursionError(Future<SEXP> result) throws InterruptedException {
+    try {
+      result.get();
+      fail("expected a recursive promise error");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(EvalException.class));
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.script;
+
+import org.renjin.compiler.CachedClosureBody;
+import org.renjin.eval.Context;
+import org.renjin.sexp.*;
+
+import javax.script.*;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A script which has been parsed once by {@link RenjinScriptEngine#compile(String)} and can be
+ * evaluated repeatedly without parsing it again.
+ *
+ * <p>The parse tree is shared between evaluations, so loop bodies and function call sites within
+ * the script which are compiled or cached by the evaluator on the first run are reused on
+ * subsequent runs.</p>
+ *
+ * <p>A script compiled with {@link RenjinScriptEngine#compile(String, boolean) precompile} set also
+ * compiles the closures which it assigns at top level with the closure JIT after each evaluation, so that they
+ * run compiled from their first call. Closures created from the same function definition on later runs reuse
+ * the body compiled on the first run.</p>
+ */
+public class RenjinCompiledScript extends CompiledScript {
+
+  private static final Symbol ASSIGN = Symbol.get("<-");
+  private static final Symbol EQUALS = Symbol.get("=");
+
+  private final RenjinScriptEngine engine;
+  private final ExpressionVector source;
+  private final boolean precompile;
+
+  /**
+   * Bodies compiled for the closures assigned by this script, keyed by the closure body. A {@code null} value
+   * means that the body could not be compiled.
+   */
+  private final Map<SEXP, CachedClosureBody> compiledBodies = new IdentityHashMap<>();
+
+  RenjinCompiledScript(RenjinScriptEngine engine, ExpressionVector source, boolean precompile) {
+    this.engine = engine;
+    this.source = source;
+    this.precompile = precompile;
+  }
+
+  /**
+   * @return the parsed expressions of this script
+   */
+  public ExpressionVector getSource() {
+    return source;
+  }
+
+  @Override
+  public Object eval() throws ScriptException {
+    Context context = engine.getTopLevelContext();
+    return eval(context, context.getEnvironment());
+  }
+
+  @Override
+  public Object eval(ScriptContext scriptContext) throws ScriptException {
+    Context context = engine.unwrapContext(scriptContext);
+    return eval(context, context.getEnvironment());
+  }
+
+  /**
+   * Evaluates this script in a new environment holding {@code bindings}, whose parent is the
+   * global environment. Assignments made by the script are local to this evaluation.
+   */
+  @Override
+  public Object eval(Bindings bindings) throws ScriptException {
+    Context context = engine.getTopLevelContext();
+    return eval(context, engine.newEnvironment(context, bindings));
+  }
+
+  private Object eval(Context context, Environment rho) {
+    Object result = engine.eval(context, source, rho);
+    if(precompile && context.getSession().isClosureJitEnabled()) {
+      precompileClosures(context, rho);
+    }
+    return result;
+  }
+
+  /**
+   * Compiles the closures assigned to variables in {@code rho} by top-level {@code <-} or {@code =}
+   * expressions of this script.
+   */
+  private void precompileClosures(Context context, Environment rho) {
+    for (SEXP expression : source) {
+      if(!isAssignment(expression)) {
+        continue;
+      }
+      Symbol name = ((FunctionCall) expression).getArgument(0);
+      SEXP value = rho.getVariableUnsafe(name);
+      if(value instanceof Closure) {
+        Closure closure = (Closure) value;
+        synchronized (compiledBodies) {
+          if(compiledBodies.containsKey(closure.getBody())) {
+            CachedClosureBody compiled = compiledBodies.get(closure.getBody());
+            if(compiled != null) {
+              closure.setJitBody(compiled);
+            }
+          } else {
+            compiledBodies.put(closure.getBody(), closure.jitCompile(context, name));
+          }
+        }
+      }
+    }
+  }
+
+  private static boolean isAssignment(SEXP expression) {
+    if(!(expression instanceof FunctionCall)) {
+      return false;
+    }
+    FunctionCall call = (FunctionCall) expression;
+    SEXP function = call.getFunction();
+    return (function == ASSIGN || function == EQUALS) &&
+        call.getArguments().length() == 2 &&
+        call.getArgument(0) instanceof Symbol;
+  }
+
+  @Override
+  public ScriptEngine getEngine() {
+    return engine;
+  }
+}
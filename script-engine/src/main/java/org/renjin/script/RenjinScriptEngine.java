@@ -28,7 +28,10 @@ import org.renjin.parser.RParser;
 import org.renjin.primitives.Warning;
 import org.renjin.primitives.special.BreakException;
 import org.renjin.primitives.special.NextException;
+import org.renjin.repackaged.guava.cache.Cache;
+import org.renjin.repackaged.guava.cache.CacheBuilder;
 import org.renjin.repackaged.guava.io.CharSource;
+import org.renjin.repackaged.guava.io.CharStreams;
 import org.renjin.sexp.*;
 
 import javax.script.*;
@@ -36,8 +39,14 @@ import java.io.*;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.Objects;
 
-public class RenjinScriptEngine implements ScriptEngine, Invocable {
+public class RenjinScriptEngine implements ScriptEngine, Invocable, Compilable {
+
+  /**
+   * The maximum number of parsed scripts retained for {@link #eval(String)}.
+   */
+  static final int PARSE_CACHE_SIZE = 256;
 
   private final RenjinScriptEngineFactory factory;
 
@@ -47,6 +56,11 @@ public class RenjinScriptEngine implements ScriptEngine, Invocable {
   // jsr context, which wrap renjincore context.
   private final ScriptContext scriptContext;
 
+  // parse trees of recently evaluated scripts, keyed by source text and file name
+  private final Cache<SourceKey, ExpressionVector> parseCache = CacheBuilder.newBuilder()
+      .maximumSize(PARSE_CACHE_SIZE)
+      .build();
+
   public RenjinScriptEngine() {
     this(new RenjinScriptEngineFactory(),
         new SessionBuilder().withDefaultPackages().build());
@@ -119,18 +133,19 @@ public class RenjinScriptEngine implements ScriptEngine, Invocable {
 
   @Override
   public Object eval(Reader reader, Bindings n) throws ScriptException {
-    throw new UnsupportedOperationException();
+    return eval(readFully(reader), n);
   }
 
   @Override
   public Object eval(String script, Bindings n) throws ScriptException {
-    throw new UnsupportedOperationException("nyi");
+    String filename = getFilenameFromContext(scriptContext,INLINE_STRING);
+    return eval(topLevelContext, parse(script, filename), n);
   }
 
   @Override
   public Object eval(String script) throws ScriptException {
     String filename = getFilenameFromContext(scriptContext,INLINE_STRING);
-    return eval(topLevelContext, RParser.parseSource(script + "\n", filename));
+    return eval(topLevelContext, parse(script, filename));
   }
   
   @Override
@@ -138,8 +153,52 @@ public class RenjinScriptEngine implements ScriptEngine, Invocable {
       throws ScriptException {
     //TODO: agreement to bind name.
     String filename = getFilenameFromContext(scriptContext,INLINE_STRING);
-    SEXP source = RParser.parseSource(script + "\n", filename);
-    return eval(unwrapContext(scriptContext), source);
+    return eval(unwrapContext(scriptContext), parse(script, filename));
+  }
+
+  /**
+   * Parses {@code script}, or returns the parse tree cached from an earlier call with the same
+   * source and file name.
+   */
+  private ExpressionVector parse(String script, String filename) {
+    SourceKey key = new SourceKey(script, filename);
+    ExpressionVector source = parseCache.getIfPresent(key);
+    if(source == null) {
+      source = RParser.parseSource(script + "\n", filename);
+      parseCache.put(key, source);
+    }
+    return source;
+  }
+
+  @Override
+  public CompiledScript compile(String script) throws ScriptException {
+    return compile(script, false);
+  }
+
+  /**
+   * Parses {@code script} so that it can be evaluated repeatedly without parsing it again.
+   *
+   * @param precompile true if the closures which the script assigns at top level should be compiled by the
+   *                   closure JIT as soon as the script has been evaluated, rather than once they become hot.
+   *                   This has no effect unless the closure JIT is enabled for this engine's session.
+   * @see Session#setClosureJitEnabled(boolean)
+   */
+  public RenjinCompiledScript compile(String script, boolean precompile) throws ScriptException {
+    String filename = getFilenameFromContext(scriptContext,INLINE_STRING);
+    return new RenjinCompiledScript(this, RParser.parseSource(script + "\n", filename), precompile);
+  }
+
+  @Override
+  public CompiledScript compile(Reader script) throws ScriptException {
+    return compile(readFully(script));
+  }
+
+  private String readFully(Reader reader) throws ScriptException {
+    try {
+      return CharStreams.toString(reader);
+    } catch (IOException e) {
+      throw new ScriptException(e);
+    }
   }
 
   @Override
@@ -169,9 +228,39 @@ public class RenjinScriptEngine implements ScriptEngine, Invocable {
     return eval(context, source);
   }
   
-  private Object eval(Context context, SEXP source) {
+  Object eval(Context context, SEXP source) {
+    return eval(context, source, context.getEnvironment());
+  }
+
+  /**
+   * Evaluates {@code source} in a new environment holding the given {@code bindings}, enclosed
+   * by the global environment.
+   */
+  Object eval(Context context, SEXP source, Bindings bindings) {
+    return eval(context, source, newEnvironment(context, bindings));
+  }
+
+  /**
+   * Creates a new environment holding the given {@code bindings}, enclosed by the global environment.
+   */
+  Environment newEnvironment(Context context, Bindings bindings) {
+    Environment rho = Environment.createChildEnvironment(context.getGlobalEnvironment());
+    for (String name : bindings.keySet()) {
+      Object value = bindings.get(name);
+      SEXP convertedValue;
+      if(value == null) {
+        convertedValue = Null.INSTANCE;
+      } else {
+        convertedValue = Converters.get(value.getClass()).convertToR(value);
+      }
+      rho.setVariable(context, Symbol.get(name), convertedValue);
+    }
+    return rho;
+  }
+
+  Object eval(Context context, SEXP source, Environment rho) {
     try {
-      return context.evaluate( source, context.getEnvironment());
+      return context.evaluate( source, rho);
     } catch(BreakException e) {
       throw new EvalException("no loop for break");
     } catch(NextException e) {
@@ -198,7 +287,7 @@ public class RenjinScriptEngine implements ScriptEngine, Invocable {
     };
   }
 
-  private Context unwrapContext(ScriptContext scriptContext) {
+  Context unwrapContext(ScriptContext scriptContext) {
     return ((RenjinScriptContext)scriptContext).getContext();
   }
 
@@ -339,4 +428,31 @@ public class RenjinScriptEngine implements ScriptEngine, Invocable {
     return topLevelContext;
   }
 
+  private static final class SourceKey {
+    private final String script;
+    private final String filename;
+
+    private SourceKey(String script, String filename) {
+      this.script = script;
+      this.filename = filename;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof SourceKey)) {
+        return false;
+      }
+      SourceKey other = (SourceKey) o;
+      return script.equals(other.script) && filename.equals(other.filename);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(script, filename);
+    }
+  }
+
 }
@@ -21,6 +21,7 @@ package org.renjin.script;
 import org.hamcrest.CoreMatchers;
 import org.junit.Before;
 import org.junit.Test;
+import org.renjin.compiler.ClosureJit;
 import org.renjin.eval.EvalException;
 import org.renjin.sexp.*;
 
@@ -168,6 +169,57 @@ public class RenjinScriptEngineTest {
     }
   }
 
+  @Test
+  public void compiledScript() throws ScriptException {
+    engine.eval("offset <- 100");
+    CompiledScript script = ((Compilable) engine).compile("y <- x * 2; y + offset");
+
+    Bindings first = new SimpleBindings();
+    first.put("x", 1);
+    Bindings second = new SimpleBindings();
+    second.put("x", 21);
+
+    assertThat(script.eval(first), equalTo((Object) new DoubleArrayVector(102)));
+    assertThat(script.eval(second), equalTo((Object) new DoubleArrayVector(142)));
+
+    // assignments are local to each evaluation
+    assertThat(engine.eval("exists('y')"), equalTo((Object) LogicalVector.FALSE));
+  }
+
+  @Test
+  public void compiledScriptInEngineScope() throws ScriptException {
+    CompiledScript script = ((Compilable) engine).compile("n <- if(exists('n')) n + 1L else 1L");
+    script.eval();
+    script.eval();
+    script.eval();
+
+    assertThat(engine.eval("n"), equalTo((Object) new IntArrayVector(3)));
+  }
+
+  @Test
+  public void precompiledScript() throws ScriptException {
+    RenjinScriptEngine renjinEngine = (RenjinScriptEngine) engine;
+    renjinEngine.getSession().setClosureJitEnabled(true);
+    ClosureJit.resetStatistics();
+
+    RenjinCompiledScript script = renjinEngine.compile("f <- function(x) x * 2", true);
+    script.eval();
+    script.eval();
+
+    // The body compiled on the first run is reused by the closure defined on the second
+    assertThat(ClosureJit.getCompilationCount(), equalTo(1L));
+    assertThat(engine.eval("f(21)"), equalTo((Object) new DoubleArrayVector(42)));
+  }
+
+  @Test
+  public void repeatedEvalOfSameScript() throws ScriptException {
+    engine.eval("i <- 0");
+    for (int k = 0; k < 10; k++) {
+      engine.eval("i <- i + 1");
+    }
+    assertThat(engine.eval("i"), equalTo((Object) new DoubleArrayVector(10)));
+  }
+
   @Test
   public void usefulMethodExceptions() {
     try {
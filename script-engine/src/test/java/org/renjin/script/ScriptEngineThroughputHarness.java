@@ -0,0 +1,71 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.script;
+
+import org.renjin.repackaged.guava.base.Stopwatch;
+
+import javax.script.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of evaluating the same small script repeatedly with different bindings,
+ * by re-parsing, through the engine's parse cache, and as a {@link CompiledScript}.
+ */
+public class ScriptEngineThroughputHarness {
+
+  private static final String SCRIPT = "score <- sum(x * weights) / length(x)\nif(score > 0.5) 'high' else 'low'";
+
+  private static final int WARMUP = 20_000;
+  private static final int ITERATIONS = 200_000;
+
+  public static void main(String[] args) throws ScriptException {
+
+    RenjinScriptEngine engine = new RenjinScriptEngineFactory().getScriptEngine();
+    engine.eval("weights <- c(0.2, 0.3, 0.5)");
+
+    CompiledScript compiled = engine.compile(SCRIPT);
+
+    // a unique comment defeats the parse cache
+    run("parse + eval", i -> engine.eval(SCRIPT + " # " + i, bindings(i)));
+    run("cached parse", i -> engine.eval(SCRIPT, bindings(i)));
+    run("compiled", i -> compiled.eval(bindings(i)));
+  }
+
+  private static Bindings bindings(int i) {
+    Bindings bindings = new SimpleBindings();
+    bindings.put("x", new double[] { i % 3, 0.5, 1 });
+    return bindings;
+  }
+
+  private interface Evaluation {
+    void eval(int i) throws ScriptException;
+  }
+
+  private static void run(String name, Evaluation evaluation) throws ScriptException {
+    for (int i = 0; i < WARMUP; i++) {
+      evaluation.eval(i);
+    }
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    for (int i = 0; i < ITERATIONS; i++) {
+      evaluation.eval(WARMUP + i);
+    }
+    double seconds = stopwatch.elapsed(TimeUnit.NANOSECONDS) / 1e9;
+    System.out.println(String.format("%-14s %,12.0f evals/s", name, ITERATIONS / seconds));
+  }
+}
@@ -116,6 +116,7 @@ public class GimpleCompiler  {
     addReferenceClass(Mathlib.class);
     addReferenceClass(Std.class);
     addReferenceClass(PosixThreads.class);
+    addReferenceClass(OpenMP.class);
   }
 
 
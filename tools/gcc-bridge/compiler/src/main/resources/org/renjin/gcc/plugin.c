@@ -1221,7 +1221,14 @@ plugin_init (struct plugin_name_args *plugin_info,
   const char *plugin_name = plugin_info->base_name;
 
   pass_info.pass = (struct opt_pass*)(&dump_functions_pass);
-  pass_info.reference_pass_name = "cfg";
+  /* When compiling with -fopenmp, parallel regions are only outlined into
+     separate functions and replaced with calls to the GOMP_* runtime by the
+     "ompexp" pass, so the functions must be dumped after that pass. */
+  if(flag_openmp) {
+    pass_info.reference_pass_name = "ompexp";
+  } else {
+    pass_info.reference_pass_name = "cfg";
+  }
   pass_info.ref_pass_instance_number = 1;
   pass_info.pos_op = PASS_POS_INSERT_AFTER;
   
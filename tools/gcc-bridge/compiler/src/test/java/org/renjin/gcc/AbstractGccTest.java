@@ -69,6 +69,13 @@ public abstract class AbstractGccTest {
   
   public static final String PACKAGE_NAME = "org.renjin.gcc";
 
+  /**
+   * Adds flags to pass to gcc when compiling sources in this test
+   */
+  protected void addCFlags(String... flags) {
+    gcc.addCFlags(Lists.newArrayList(flags));
+  }
+
   protected Integer call(Class<?> clazz, String methodName, double x) throws Exception {
     Method method = clazz.getMethod(methodName, double.class);
     return (Integer) method.invoke(null, x);
@@ -1257,6 +1257,17 @@ public class GimpleCompilerTest extends AbstractGccTest {
     compileAndTest("pthreads.c");
   }
 
+  @Test
+  public void threadsStressTest() throws Exception {
+    compileAndTest("pthreads_stress.c");
+  }
+
+  @Test
+  public void openmp() throws Exception {
+    addCFlags("-fopenmp");
+    compileAndTest("openmp.c");
+  }
+
   @Test
   public void pointerMath() throws Exception {
     compileAndTest("ptr_math.c");
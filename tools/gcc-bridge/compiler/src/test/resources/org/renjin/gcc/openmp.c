@@ -0,0 +1,69 @@
+
+#include <omp.h>
+#include <stdio.h>
+#include <stdlib.h>
+
+#include "assert.h"
+
+#define N 10000
+
+static double x[N];
+
+void test_parallel_region() {
+    int num_threads = 0;
+    int sum = 0;
+
+    #pragma omp parallel num_threads(4)
+    {
+        #pragma omp single
+        num_threads = omp_get_num_threads();
+
+        #pragma omp critical
+        sum += omp_get_thread_num() + 1;
+    }
+
+    ASSERT(num_threads == 4);
+    ASSERT(sum == 1 + 2 + 3 + 4);
+    ASSERT(omp_in_parallel() == 0);
+}
+
+void test_parallel_for_reduction() {
+    int i;
+    long sum = 0;
+
+    #pragma omp parallel for reduction(+:sum)
+    for(i = 0; i < N; ++i) {
+        sum += i;
+    }
+
+    ASSERT(sum == (long)N * (N - 1) / 2);
+}
+
+void test_dynamic_schedule() {
+    int i;
+    double total = 0;
+
+    #pragma omp parallel for schedule(dynamic, 16)
+    for(i = 0; i < N; ++i) {
+        x[i] = i * 2.0;
+    }
+
+    for(i = 0; i < N; ++i) {
+        total += x[i];
+    }
+
+    ASSERT(total == (double)N * (N - 1));
+}
+
+void test_atomic() {
+    int i;
+    int count = 0;
+
+    #pragma omp parallel for schedule(static, 7)
+    for(i = 0; i < N; ++i) {
+        #pragma omp atomic
+        count++;
+    }
+
+    ASSERT(count == N);
+}
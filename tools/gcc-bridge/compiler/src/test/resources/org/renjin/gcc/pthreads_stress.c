@@ -0,0 +1,96 @@
+
+#include <pthread.h>
+#include <stdio.h>
+#include <stdlib.h>
+
+#include "assert.h"
+
+#define NUM_THREADS 8
+#define ITERATIONS 10000
+#define ROUNDS 50
+
+static pthread_mutex_t counter_mutex = PTHREAD_MUTEX_INITIALIZER;
+static long counter = 0;
+
+static pthread_barrier_t barrier;
+static int serial_count = 0;
+
+static pthread_mutex_t queue_mutex = PTHREAD_MUTEX_INITIALIZER;
+static pthread_cond_t queue_cond = PTHREAD_COND_INITIALIZER;
+static int queue_value = 0;
+
+static void *increment(void *arg) {
+    int i;
+    for(i = 0; i < ITERATIONS; ++i) {
+        pthread_mutex_lock(&counter_mutex);
+        counter++;
+        pthread_mutex_unlock(&counter_mutex);
+    }
+    return NULL;
+}
+
+static void *barrier_rounds(void *arg) {
+    int round;
+    for(round = 0; round < ROUNDS; ++round) {
+        if(pthread_barrier_wait(&barrier) == PTHREAD_BARRIER_SERIAL_THREAD) {
+            pthread_mutex_lock(&counter_mutex);
+            serial_count++;
+            pthread_mutex_unlock(&counter_mutex);
+        }
+    }
+    return NULL;
+}
+
+static void *wait_for_value(void *arg) {
+    pthread_mutex_lock(&queue_mutex);
+    while(queue_value == 0) {
+        pthread_cond_wait(&queue_cond, &queue_mutex);
+    }
+    int *result = malloc(sizeof(int));
+    *result = queue_value * 2;
+    pthread_mutex_unlock(&queue_mutex);
+    return result;
+}
+
+void test_mutex() {
+    pthread_t threads[NUM_THREADS];
+    int i;
+    counter = 0;
+    for(i = 0; i < NUM_THREADS; ++i) {
+        ASSERT(pthread_create(&threads[i], NULL, &increment, NULL) == 0);
+    }
+    for(i = 0; i < NUM_THREADS; ++i) {
+        ASSERT(pthread_join(threads[i], NULL) == 0);
+    }
+    ASSERT(counter == NUM_THREADS * ITERATIONS);
+}
+
+void test_barrier() {
+    pthread_t threads[NUM_THREADS];
+    int i;
+    ASSERT(pthread_barrier_init(&barrier, NULL, NUM_THREADS) == 0);
+    for(i = 0; i < NUM_THREADS; ++i) {
+        ASSERT(pthread_create(&threads[i], NULL, &barrier_rounds, NULL) == 0);
+    }
+    for(i = 0; i < NUM_THREADS; ++i) {
+        ASSERT(pthread_join(threads[i], NULL) == 0);
+    }
+    ASSERT(pthread_barrier_destroy(&barrier) == 0);
+    ASSERT(serial_count == ROUNDS);
+}
+
+void test_condition() {
+    pthread_t thread;
+    void *result;
+
+    ASSERT(pthread_create(&thread, NULL, &wait_for_value, NULL) == 0);
+
+    pthread_mutex_lock(&queue_mutex);
+    queue_value = 21;
+    pthread_cond_signal(&queue_cond);
+    pthread_mutex_unlock(&queue_mutex);
+
+    ASSERT(pthread_join(thread, &result) == 0);
+    ASSERT(*((int*)result) == 42);
+    free(result);
+}
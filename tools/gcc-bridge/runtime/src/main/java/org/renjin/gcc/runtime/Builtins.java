@@ -315,10 +315,113 @@ public class Builtins {
     }
   }
 
+  /**
+   * Striped locks guarding the atomic builtins. There is no way to perform a compare-and-swap
+   * on an arbitrary {@link Ptr}, so atomic operations on the same memory location are
+   * serialized instead through the lock selected by {@link #atomicLock(Ptr)}
+   */
+  private static final Object[] ATOMIC_LOCKS = new Object[64];
+
+  static {
+    for (int i = 0; i < ATOMIC_LOCKS.length; i++) {
+      ATOMIC_LOCKS[i] = new Object();
+    }
+  }
+
+  private static Object atomicLock(Ptr ptr) {
+    Object array = ptr.getArray();
+    int hash;
+    if(array instanceof java.lang.reflect.Field) {
+      // Reflected Field instances are not canonical, so compare them by value
+      hash = array.hashCode();
+    } else {
+      hash = System.identityHashCode(array);
+    }
+    hash = hash * 31 + ptr.getOffsetInBytes();
+    hash ^= (hash >>> 16);
+    return ATOMIC_LOCKS[hash & (ATOMIC_LOCKS.length - 1)];
+  }
+
   public static int __atomic_fetch_add_4(Ptr result, int value) {
-    int previous = result.getInt();
-    result.setInt(previous + value);
-    return previous;
+    synchronized (atomicLock(result)) {
+      int previous = result.getInt();
+      result.setInt(previous + value);
+      return previous;
+    }
+  }
+
+  public static boolean __atomic_compare_exchange_4(Ptr ptr, Ptr expected, int desired,
+                                                    boolean weak, int successOrder, int failureOrder) {
+    synchronized (atomicLock(ptr)) {
+      int current = ptr.getInt();
+      if(current == expected.getInt()) {
+        ptr.setInt(desired);
+        return true;
+      }
+      expected.setInt(current);
+      return false;
+    }
+  }
+
+  public static boolean __atomic_compare_exchange_8(Ptr ptr, Ptr expected, long desired,
+                                                    boolean weak, int successOrder, int failureOrder) {
+    synchronized (atomicLock(ptr)) {
+      long current = ptr.getLong();
+      if(current == expected.getLong()) {
+        ptr.setLong(desired);
+        return true;
+      }
+      expected.setLong(current);
+      return false;
+    }
+  }
+
+  public static int __sync_fetch_and_add_4(Ptr ptr, int value) {
+    return __atomic_fetch_add_4(ptr, value);
+  }
+
+  public static long __sync_fetch_and_add_8(Ptr ptr, long value) {
+    synchronized (atomicLock(ptr)) {
+      long previous = ptr.getLong();
+      ptr.setLong(previous + value);
+      return previous;
+    }
+  }
+
+  public static int __sync_add_and_fetch_4(Ptr ptr, int value) {
+    return __atomic_fetch_add_4(ptr, value) + value;
+  }
+
+  public static long __sync_add_and_fetch_8(Ptr ptr, long value) {
+    return __sync_fetch_and_add_8(ptr, value) + value;
+  }
+
+  public static int __sync_val_compare_and_swap_4(Ptr ptr, int oldValue, int newValue) {
+    synchronized (atomicLock(ptr)) {
+      int current = ptr.getInt();
+      if(current == oldValue) {
+        ptr.setInt(newValue);
+      }
+      return current;
+    }
+  }
+
+  public static long __sync_val_compare_and_swap_8(Ptr ptr, long oldValue, long newValue) {
+    synchronized (atomicLock(ptr)) {
+      long current = ptr.getLong();
+      if(current == oldValue) {
+        ptr.setLong(newValue);
+      }
+      return current;
+    }
+  }
+
+  public static boolean __sync_bool_compare_and_swap_4(Ptr ptr, int oldValue, int newValue) {
+    return __sync_val_compare_and_swap_4(ptr, oldValue, newValue) == oldValue;
+  }
+
+  public static boolean __sync_bool_compare_and_swap_8(Ptr ptr, long oldValue, long newValue) {
+    return __sync_val_compare_and_swap_8(ptr, oldValue, newValue) == oldValue;
   }
 
   public static char __builtin_bswap16(char x) {
@@ -54,6 +54,40 @@ public interface FileHandle {
 
   void write(int b) throws IOException;
 
+  /**
+   * Reads up to {@code length} bytes from this file into {@code dest}.
+   *
+   * @return the number of bytes read, which is less than {@code length} only if the end of the file was reached.
+   */
+  default int read(Ptr dest, int length) throws IOException {
+    for (int i = 0; i < length; i++) {
+      int b = read();
+      if(b == -1) {
+        return i;
+      }
+      dest.setByte(i, (byte) b);
+    }
+    return length;
+  }
+
+  /**
+   * Writes up to {@code length} bytes from {@code source} to this file.
+   *
+   * @return the number of bytes written, which is less than {@code length} only if {@code source} is shorter.
+   */
+  default int write(Ptr source, int length) throws IOException {
+    for (int i = 0; i < length; i++) {
+      byte b;
+      try {
+        b = source.getByte(i);
+      } catch (ArrayIndexOutOfBoundsException e) {
+        return i;
+      }
+      write(b);
+    }
+    return length;
+  }
+
   void rewind() throws IOException;
 
   void flush() throws IOException;
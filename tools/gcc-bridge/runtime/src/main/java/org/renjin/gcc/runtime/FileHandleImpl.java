@@ -19,64 +19,330 @@
 package org.renjin.gcc.runtime;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 
 /**
- * C standard library file handle
+ * C standard library file handle, backed by a {@link FileChannel}.
+ *
+ * <p>Reads and writes go through a buffer, so that {@code fgetc()}, {@code fgets()} and
+ * {@code fprintf()} do not make a system call per byte. The buffer is written out before the file
+ * position is changed and when switching from writing to reading, as required by C's stdio.</p>
+ *
+ * <p>Files opened read-only may instead be memory-mapped, in which case the whole file serves as the buffer.</p>
  */
 public class FileHandleImpl extends AbstractFileHandle {
 
-  private RandomAccessFile file;
+  static final int BUFFER_SIZE = 64 * 1024;
+
+  private final FileChannel channel;
+  private final boolean writable;
+  private final boolean append;
+  private final boolean mapped;
+
+  /**
+   * When reading, holds the bytes of the file starting at {@code bufferStart}, with the buffer's position
+   * at the current file position. When writing, holds the bytes to be written at {@code bufferStart}.
+   */
+  private ByteBuffer buffer;
 
-  public FileHandleImpl(RandomAccessFile file) {
-    this.file = file;
+  private long bufferStart;
+
+  private boolean writing;
+
+  /**
+   * @param channel the open file channel
+   * @param writable true if the file was opened for writing
+   * @param append true if all writes should go to the end of the file
+   */
+  public FileHandleImpl(FileChannel channel, boolean writable, boolean append) {
+    this.channel = channel;
+    this.writable = writable;
+    this.append = append;
+    this.mapped = false;
+    this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    this.buffer.limit(0);
+  }
+
+  private FileHandleImpl(FileChannel channel, ByteBuffer mappedBuffer) {
+    this.channel = channel;
+    this.writable = false;
+    this.append = false;
+    this.mapped = true;
+    this.buffer = mappedBuffer;
+  }
+
+  /**
+   * Opens a read-only handle to the file by memory-mapping its contents.
+   */
+  public static FileHandleImpl map(FileChannel channel) throws IOException {
+    return new FileHandleImpl(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
   }
 
   @Override
   public int read() throws IOException {
-    return file.read();
+    if(writing) {
+      switchToReading();
+    }
+    if(!buffer.hasRemaining()) {
+      if(!fill()) {
+        return -1;
+      }
+    }
+    return buffer.get() & 0xFF;
+  }
+
+  /**
+   * Reads up to {@code length} bytes into {@code dest}, converting directly into the backing array of
+   * {@code BytePtr}s, {@code DoublePtr}s and {@code IntPtr}s.
+   */
+  @Override
+  public int read(Ptr dest, int length) throws IOException {
+    if(dest instanceof BytePtr) {
+      BytePtr ptr = (BytePtr) dest;
+      return read(ptr.array, ptr.offset, Math.min(length, ptr.array.length - ptr.offset));
+    }
+    byte[] bytes = new byte[length];
+    int bytesRead = read(bytes, 0, length);
+    ByteBuffer source = ByteBuffer.wrap(bytes, 0, bytesRead).order(ByteOrder.LITTLE_ENDIAN);
+    int copied = 0;
+    if(dest instanceof DoublePtr) {
+      DoublePtr ptr = (DoublePtr) dest;
+      int count = bytesRead / DoublePtr.BYTES;
+      source.asDoubleBuffer().get(ptr.array, ptr.offset, count);
+      copied = count * DoublePtr.BYTES;
+    } else if(dest instanceof IntPtr) {
+      IntPtr ptr = (IntPtr) dest;
+      int count = bytesRead / IntPtr.BYTES;
+      source.asIntBuffer().get(ptr.array, ptr.offset, count);
+      copied = count * IntPtr.BYTES;
+    }
+    for (int i = copied; i < bytesRead; i++) {
+      dest.setByte(i, bytes[i]);
+    }
+    return bytesRead;
+  }
+
+  private int read(byte[] bytes, int offset, int length) throws IOException {
+    if(writing) {
+      switchToReading();
+    }
+    int bytesRead = 0;
+    while(bytesRead < length) {
+      if(!buffer.hasRemaining()) {
+        if(!mapped && length - bytesRead >= BUFFER_SIZE) {
+          // Large reads bypass the buffer
+          bufferStart += buffer.position();
+          buffer.clear().limit(0);
+          int n = channel.read(ByteBuffer.wrap(bytes, offset + bytesRead, length - bytesRead), bufferStart);
+          if(n <= 0) {
+            break;
+          }
+          bufferStart += n;
+          bytesRead += n;
+          continue;
+        }
+        if(!fill()) {
+          break;
+        }
+      }
+      int n = Math.min(buffer.remaining(), length - bytesRead);
+      buffer.get(bytes, offset + bytesRead, n);
+      bytesRead += n;
+    }
+    return bytesRead;
+  }
+
+  /**
+   * Refills the exhausted read buffer from the current position.
+   *
+   * @return false if the end of the file has been reached.
+   */
+  private boolean fill() throws IOException {
+    if(mapped) {
+      return false;
+    }
+    bufferStart += buffer.position();
+    buffer.clear();
+    int n = channel.read(buffer, bufferStart);
+    buffer.flip();
+    return n > 0;
   }
 
   @Override
   public void write(int b) throws IOException {
-    file.write(b);
+    prepareWrite();
+    if(!buffer.hasRemaining()) {
+      flushBuffer();
+    }
+    buffer.put((byte) b);
+  }
+
+  /**
+   * Writes up to {@code length} bytes from {@code source}, converting directly from the backing array of
+   * {@code BytePtr}s, {@code DoublePtr}s and {@code IntPtr}s.
+   */
+  @Override
+  public int write(Ptr source, int length) throws IOException {
+    byte[] bytes;
+    int offset;
+    if(source instanceof BytePtr) {
+      BytePtr ptr = (BytePtr) source;
+      bytes = ptr.array;
+      offset = ptr.offset;
+      length = Math.min(length, ptr.array.length - ptr.offset);
+    } else if(source instanceof DoublePtr) {
+      DoublePtr ptr = (DoublePtr) source;
+      length = Math.min(length, (ptr.array.length - ptr.offset) * DoublePtr.BYTES);
+      bytes = new byte[length];
+      offset = 0;
+      ByteBuffer target = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+      int count = length / DoublePtr.BYTES;
+      target.asDoubleBuffer().put(ptr.array, ptr.offset, count);
+      for (int i = count * DoublePtr.BYTES; i < length; i++) {
+        bytes[i] = ptr.getByte(i);
+      }
+    } else if(source instanceof IntPtr) {
+      IntPtr ptr = (IntPtr) source;
+      length = Math.min(length, (ptr.array.length - ptr.offset) * IntPtr.BYTES);
+      bytes = new byte[length];
+      offset = 0;
+      ByteBuffer target = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+      int count = length / IntPtr.BYTES;
+      target.asIntBuffer().put(ptr.array, ptr.offset, count);
+      for (int i = count * IntPtr.BYTES; i < length; i++) {
+        bytes[i] = ptr.getByte(i);
+      }
+    } else {
+      bytes = new byte[length];
+      offset = 0;
+      for (int i = 0; i < length; i++) {
+        try {
+          bytes[i] = source.getByte(i);
+        } catch (ArrayIndexOutOfBoundsException e) {
+          length = i;
+        }
+      }
+    }
+    write(bytes, offset, length);
+    return length;
+  }
+
+  private void write(byte[] bytes, int offset, int length) throws IOException {
+    prepareWrite();
+    if(length >= BUFFER_SIZE) {
+      // Large writes bypass the buffer
+      flushBuffer();
+      ByteBuffer source = ByteBuffer.wrap(bytes, offset, length);
+      while(source.hasRemaining()) {
+        bufferStart += channel.write(source, bufferStart);
+      }
+      return;
+    }
+    int written = 0;
+    while(written < length) {
+      if(!buffer.hasRemaining()) {
+        flushBuffer();
+      }
+      int n = Math.min(buffer.remaining(), length - written);
+      buffer.put(bytes, offset + written, n);
+      written += n;
+    }
+  }
+
+  private void prepareWrite() throws IOException {
+    if(!writable) {
+      throw new IOException("File not open for writing");
+    }
+    if(!writing) {
+      bufferStart = append ? channel.size() : bufferStart + buffer.position();
+      buffer.clear();
+      writing = true;
+    }
+  }
+
+  /**
+   * Writes out the contents of the write buffer.
+   */
+  private void flushBuffer() throws IOException {
+    buffer.flip();
+    while(buffer.hasRemaining()) {
+      bufferStart += channel.write(buffer, bufferStart);
+    }
+    buffer.clear();
+  }
+
+  private void switchToReading() throws IOException {
+    flushBuffer();
+    buffer.limit(0);
+    writing = false;
+  }
+
+  /**
+   * Writes out any buffered output and discards any buffered input, so that the next read or write
+   * starts from {@code position} in the file.
+   */
+  private void moveTo(long position) throws IOException {
+    if(position < 0) {
+      throw new IOException("Invalid file position: " + position);
+    }
+    if(writing) {
+      flushBuffer();
+      writing = false;
+    }
+    if(mapped) {
+      buffer.position((int) Math.min(position, buffer.limit()));
+    } else {
+      bufferStart = position;
+      buffer.clear().limit(0);
+    }
   }
 
   @Override
   public void rewind() throws IOException {
-    file.seek(0);
+    moveTo(0);
   }
 
   @Override
   public void flush() throws IOException {
-    file.getFD().sync();
+    if(writing) {
+      flushBuffer();
+    }
   }
 
   @Override
   public void close() throws IOException {
-    file.close();
+    try {
+      flush();
+    } finally {
+      channel.close();
+    }
   }
 
   @Override
   public void seekSet(long offset) throws IOException {
-    file.seek(offset);
+    moveTo(offset);
   }
 
   @Override
   public void seekCurrent(long relativeOffset) throws IOException {
-    file.seek(file.getFilePointer() + relativeOffset);
+    moveTo(position() + relativeOffset);
   }
 
   @Override
   public void seekEnd(long relativeOffset) throws IOException {
-    long offset = file.length() - relativeOffset - 1;
-    file.seek(offset);
+    flush();
+    moveTo(channel.size() + relativeOffset);
   }
 
   @Override
   public boolean isEof() {
     try {
-      return file.getFilePointer() >= file.length();
+      if(writing) {
+        return position() >= channel.size();
+      }
+      return !buffer.hasRemaining() && position() >= channel.size();
     } catch (IOException e) {
       return true;
     }
@@ -84,6 +350,9 @@ public class FileHandleImpl extends AbstractFileHandle {
 
   @Override
   public long position() throws IOException {
-    return file.getFilePointer();
+    if(mapped) {
+      return buffer.position();
+    }
+    return bufferStart + buffer.position();
   }
 }
@@ -246,4 +246,28 @@ public class MixedPtr extends AbstractPtr {
 
     return copy;
   }
+
+  /**
+   * Exchanges the {@code numBytes} bytes at offsets {@code x} and {@code y} from this pointer,
+   * together with any references stored in them. References can only be stored at aligned
+   * offsets, so none are moved if either range is unaligned.
+   */
+  void swap(int x, int y, int numBytes) {
+    for (int i = 0; i < numBytes; i++) {
+      byte t = getByte(x + i);
+      setByte(x + i, getByte(y + i));
+      setByte(y + i, t);
+    }
+    int xStart = this.offset + x;
+    int yStart = this.offset + y;
+    if(xStart % POINTER_BYTES == 0 && yStart % POINTER_BYTES == 0) {
+      for (int i = 0; i < numBytes / POINTER_BYTES; i++) {
+        int xIndex = xStart / POINTER_BYTES + i;
+        int yIndex = yStart / POINTER_BYTES + i;
+        Object t = references[xIndex];
+        references[xIndex] = references[yIndex];
+        references[yIndex] = t;
+      }
+    }
+  }
 }
@@ -0,0 +1,890 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.gcc.runtime;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Implementation of the GNU OpenMP runtime library (libgomp) API used by code compiled with
+ * {@code gcc -fopenmp}.
+ *
+ * <p>GCC outlines the body of each {@code #pragma omp parallel} region into a separate function, and
+ * replaces the region with calls to {@code GOMP_parallel_start()} and {@code GOMP_parallel_end()}
+ * (or {@code GOMP_parallel()} in later versions). Here a team is formed from the calling thread, which
+ * becomes the master thread, and worker threads taken from a shared pool.</p>
+ *
+ * <p>Worksharing constructs (loops, sections and single) are matched across the threads of a team
+ * by the order in which each thread encounters them, as in libgomp.</p>
+ */
+public class OpenMP {
+
+  private static final int SCHEDULE_STATIC = 1;
+  private static final int SCHEDULE_DYNAMIC = 2;
+  private static final int SCHEDULE_GUIDED = 3;
+
+  private static final ExecutorService POOL = Executors.newCachedThreadPool(new ThreadFactory() {
+    private final AtomicInteger count = new AtomicInteger(0);
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "omp-worker-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  private static final int DEFAULT_NUM_THREADS = defaultNumThreads();
+
+  private static final ReentrantLock CRITICAL_LOCK = new ReentrantLock();
+
+  private static final ReentrantLock ATOMIC_LOCK = new ReentrantLock();
+
+  /**
+   * The value of the nthreads-var ICV, set by {@code omp_set_num_threads()}
+   */
+  private static final ThreadLocal<Integer> MAX_THREADS = new ThreadLocal<>();
+
+  private static final ThreadLocal<ThreadState> STATE = new ThreadLocal<>();
+
+  private OpenMP() { }
+
+  private static int defaultNumThreads() {
+    String env = System.getenv("OMP_NUM_THREADS");
+    if(env != null) {
+      try {
+        int n = Integer.parseInt(env.split(",")[0].trim());
+        if(n > 0) {
+          return n;
+        }
+      } catch (NumberFormatException ignored) {
+        // Fall through to default
+      }
+    }
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * A team of threads executing a parallel region.
+   */
+  private static class Team {
+    private final int size;
+    private final Map<Integer, WorkShare> workShares = new ConcurrentHashMap<>();
+
+    /**
+     * Set when a thread of this team has failed, so that threads waiting for their turn in an
+     * ordered loop give up rather than waiting forever.
+     */
+    private volatile boolean aborted = false;
+
+    /**
+     * The number of threads waiting at the current barrier, and the number of barriers passed
+     * so far. Guarded by this team's monitor.
+     */
+    private int arrived = 0;
+    private long barrierGeneration = 0;
+
+    Team(int size) {
+      this.size = size;
+    }
+
+    /**
+     * Returns the {@code index}th worksharing construct encountered by this team, creating it
+     * if this thread is the first to encounter it.
+     */
+    WorkShare workShare(int index, WorkShareFactory factory) {
+      return workShares.computeIfAbsent(index, i -> factory.create());
+    }
+
+    void release(int index, WorkShare workShare) {
+      if(workShare.departed.incrementAndGet() == size) {
+        workShares.remove(index);
+      }
+    }
+
+    /**
+     * Waits until all threads of the team have reached the barrier. Once the team has been aborted,
+     * throws instead of waiting, including for threads that reach the barrier only afterwards.
+     */
+    synchronized void barrier() {
+      if(size == 1) {
+        return;
+      }
+      checkNotAborted();
+      long generation = barrierGeneration;
+      if(++arrived == size) {
+        arrived = 0;
+        barrierGeneration++;
+        notifyAll();
+        return;
+      }
+      while(generation == barrierGeneration) {
+        checkNotAborted();
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          aborted = true;
+          notifyAll();
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("Interrupted at OpenMP barrier", e);
+        }
+      }
+    }
+
+    private void checkNotAborted() {
+      if(aborted) {
+        throw new IllegalStateException("OpenMP barrier broken by failure of another thread");
+      }
+    }
+
+    void abort() {
+      aborted = true;
+      synchronized (this) {
+        notifyAll();
+      }
+      for (WorkShare workShare : workShares.values()) {
+        synchronized (workShare) {
+          workShare.notifyAll();
+        }
+      }
+    }
+  }
+
+  private interface WorkShareFactory {
+    WorkShare create();
+  }
+
+  private static class WorkShare {
+    private final AtomicInteger departed = new AtomicInteger(0);
+  }
+
+  /**
+   * A worksharing loop over the iteration space {@code start, start + incr, ...} up to but
+   * not including {@code end}.
+   *
+   * <p>In an ordered loop, the chunks are handed over in iteration order: a thread may only enter
+   * the ordered region of its chunk once all preceding chunks have been completed.</p>
+   */
+  private static class LoopWorkShare extends WorkShare {
+    private final int schedule;
+    private final boolean ordered;
+    private final long start;
+    private final long incr;
+    private final long iterations;
+    private final long chunkSize;
+    private final AtomicLong next = new AtomicLong(0);
+
+    /**
+     * For ordered loops, the index of the first iteration whose chunk has not yet been completed.
+     * Guarded by this work share's monitor.
+     */
+    private long orderedNext = 0;
+
+    LoopWorkShare(int schedule, boolean ordered, long start, long end, long incr, long chunkSize) {
+      this.schedule = schedule;
+      this.ordered = ordered;
+      this.start = start;
+      this.incr = incr;
+      if(incr > 0) {
+        this.iterations = start < end ? (end - start + incr - 1) / incr : 0;
+      } else {
+        this.iterations = start > end ? (start - end - incr - 1) / -incr : 0;
+      }
+      this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Waits until all chunks preceding the chunk starting at iteration {@code first} have been completed.
+     */
+    synchronized void awaitTurn(Team team, long first) {
+      while(orderedNext != first) {
+        if(team.aborted) {
+          throw new IllegalStateException("OpenMP ordered loop abandoned after failure of another thread");
+        }
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("Interrupted waiting for OpenMP ordered region", e);
+        }
+      }
+    }
+
+    /**
+     * Marks the chunk of iterations {@code [first, last)} as completed, once its turn has come,
+     * and passes the turn on to the chunk that follows it.
+     */
+    synchronized void completeChunk(Team team, long first, long last) {
+      awaitTurn(team, first);
+      orderedNext = last;
+      notifyAll();
+    }
+  }
+
+  private static class SectionsWorkShare extends WorkShare {
+    private final int count;
+    private final AtomicInteger next = new AtomicInteger(0);
+
+    SectionsWorkShare(int count) {
+      this.count = count;
+    }
+  }
+
+  private static class SingleWorkShare extends WorkShare {
+    private final AtomicBoolean taken = new AtomicBoolean(false);
+    private volatile Ptr copyPrivate;
+  }
+
+  /**
+   * The state of a thread within a team.
+   */
+  private static class ThreadState {
+    private final Team team;
+    private final int threadNum;
+    private final ThreadState previous;
+
+    /**
+     * If this is the master thread, the other threads of the team, which are joined at the end of the region
+     */
+    private List<Future<?>> workers;
+
+    /**
+     * The number of worksharing constructs this thread has encountered
+     */
+    private int workShareCount = 0;
+
+    private int currentIndex;
+    private WorkShare current;
+
+    /**
+     * The number of chunks taken by this thread from the current statically scheduled loop
+     */
+    private long staticChunks;
+
+    /**
+     * The chunk of iterations {@code [chunkFirst, chunkLast)} this thread is executing in the
+     * current ordered loop, if {@code orderedChunk} is set.
+     */
+    private boolean orderedChunk;
+    private long chunkFirst;
+    private long chunkLast;
+
+    ThreadState(Team team, int threadNum, ThreadState previous) {
+      this.team = team;
+      this.threadNum = threadNum;
+      this.previous = previous;
+    }
+
+    WorkShare begin(WorkShareFactory factory) {
+      currentIndex = workShareCount++;
+      current = team.workShare(currentIndex, factory);
+      staticChunks = 0;
+      orderedChunk = false;
+      return current;
+    }
+
+    /**
+     * If this thread is executing a chunk of an ordered loop, waits for its turn and then
+     * hands the turn on to the next chunk.
+     */
+    void completeOrderedChunk() {
+      if(orderedChunk) {
+        orderedChunk = false;
+        ((LoopWorkShare) current).completeChunk(team, chunkFirst, chunkLast);
+      }
+    }
+
+    void end() {
+      if(current != null) {
+        completeOrderedChunk();
+        team.release(currentIndex, current);
+        current = null;
+      }
+    }
+  }
+
+  private static ThreadState state() {
+    ThreadState state = STATE.get();
+    if(state == null) {
+      // Orphaned constructs outside of a parallel region execute with a team of one thread
+      state = new ThreadState(new Team(1), 0, null);
+      STATE.set(state);
+    }
+    return state;
+  }
+
+  /*
+   * Parallel regions
+   */
+
+  private static int teamSize(int requested) {
+    ThreadState current = STATE.get();
+    if(current != null && current.team.size > 1) {
+      // Nested parallelism is disabled: inner regions are executed by a team of one thread
+      return 1;
+    }
+    if(requested > 0) {
+      return requested;
+    }
+    return omp_get_max_threads();
+  }
+
+  public static void GOMP_parallel_start(MethodHandle fn, Ptr data, int numThreads) {
+    startTeam(fn, data, numThreads, null);
+  }
+
+  public static void GOMP_parallel_end() {
+    ThreadState masterState = STATE.get();
+
+    Throwable failure = null;
+    for (Future<?> worker : masterState.workers) {
+      try {
+        worker.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        failure = e;
+      } catch (ExecutionException e) {
+        if(failure == null) {
+          failure = e.getCause();
+        }
+      }
+    }
+
+    if(masterState.previous == null) {
+      STATE.remove();
+    } else {
+      STATE.set(masterState.previous);
+    }
+
+    if(failure != null) {
+      throw new RuntimeException("Exception in OpenMP worker thread", failure);
+    }
+  }
+
+  /**
+   * Runs {@code fn(data)} on a team of {@code numThreads}, or the default number of threads if
+   * zero. The calling thread participates as the master thread.
+   */
+  public static void GOMP_parallel(MethodHandle fn, Ptr data, int numThreads, int flags) throws Throwable {
+    GOMP_parallel_start(fn, data, numThreads);
+    runMaster(fn, data);
+  }
+
+  private static void startTeam(MethodHandle fn, Ptr data, int numThreads, WorkShareFactory loop) {
+    int size = teamSize(numThreads);
+    Team team = new Team(size);
+
+    List<Future<?>> workers = new ArrayList<>();
+    for (int threadNum = 1; threadNum < size; threadNum++) {
+      final int workerNum = threadNum;
+      workers.add(POOL.submit(() -> {
+        ThreadState workerState = new ThreadState(team, workerNum, null);
+        if(loop != null) {
+          workerState.begin(loop);
+        }
+        STATE.set(workerState);
+        try {
+          fn.invoke(data);
+        } catch (Throwable e) {
+          team.abort();
+          throw new RuntimeException(e);
+        } finally {
+          STATE.remove();
+        }
+        return null;
+      }));
+    }
+
+    ThreadState masterState = new ThreadState(team, 0, STATE.get());
+    masterState.workers = workers;
+    if(loop != null) {
+      masterState.begin(loop);
+    }
+    STATE.set(masterState);
+  }
+
+  /**
+   * Runs the master thread's share of the region started on this thread, and then joins the team.
+   * If the master thread fails, the rest of the team is aborted so that no thread is left waiting
+   * for it, and the team is still joined.
+   */
+  private static void runMaster(MethodHandle fn, Ptr data) throws Throwable {
+    Team team = STATE.get().team;
+    try {
+      fn.invoke(data);
+    } catch (Throwable e) {
+      team.abort();
+      try {
+        GOMP_parallel_end();
+      } catch (RuntimeException workerFailure) {
+        e.addSuppressed(workerFailure);
+      }
+      throw e;
+    }
+    GOMP_parallel_end();
+  }
+
+  /*
+   * Combined parallel loops: the team is created with the loop already started.
+   */
+
+  public static void GOMP_parallel_loop_static_start(MethodHandle fn, Ptr data, int numThreads,
+                                                     int start, int end, int incr, int chunkSize) {
+    startTeam(fn, data, numThreads, () -> new LoopWorkShare(SCHEDULE_STATIC, false, start, end, incr, chunkSize));
+  }
+
+  public static void GOMP_parallel_loop_dynamic_start(MethodHandle fn, Ptr data, int numThreads,
+                                                      int start, int end, int incr, int chunkSize) {
+    startTeam(fn, data, numThreads, () -> new LoopWorkShare(SCHEDULE_DYNAMIC, false, start, end, incr, chunkSize));
+  }
+
+  public static void GOMP_parallel_loop_guided_start(MethodHandle fn, Ptr data, int numThreads,
+                                                     int start, int end, int incr, int chunkSize) {
+    startTeam(fn, data, numThreads, () -> new LoopWorkShare(SCHEDULE_GUIDED, false, start, end, incr, chunkSize));
+  }
+
+  public static void GOMP_parallel_loop_runtime_start(MethodHandle fn, Ptr data, int numThreads,
+                                                      int start, int end, int incr) {
+    GOMP_parallel_loop_dynamic_start(fn, data, numThreads, start, end, incr, 1);
+  }
+
+  public static void GOMP_parallel_loop_static(MethodHandle fn, Ptr data, int numThreads,
+                                               int start, int end, int incr, int chunkSize, int flags) throws Throwable {
+    GOMP_parallel_loop_static_start(fn, data, numThreads, start, end, incr, chunkSize);
+    runMaster(fn, data);
+  }
+
+  public static void GOMP_parallel_loop_dynamic(MethodHandle fn, Ptr data, int numThreads,
+                                                int start, int end, int incr, int chunkSize, int flags) throws Throwable {
+    GOMP_parallel_loop_dynamic_start(fn, data, numThreads, start, end, incr, chunkSize);
+    runMaster(fn, data);
+  }
+
+  public static void GOMP_parallel_loop_guided(MethodHandle fn, Ptr data, int numThreads,
+                                               int start, int end, int incr, int chunkSize, int flags) throws Throwable {
+    GOMP_parallel_loop_guided_start(fn, data, numThreads, start, end, incr, chunkSize);
+    runMaster(fn, data);
+  }
+
+  public static void GOMP_parallel_loop_runtime(MethodHandle fn, Ptr data, int numThreads,
+                                                int start, int end, int incr, int flags) throws Throwable {
+    GOMP_parallel_loop_runtime_start(fn, data, numThreads, start, end, incr);
+    runMaster(fn, data);
+  }
+
+  /*
+   * Worksharing loops
+   */
+
+  private static boolean loopStart(int schedule, boolean ordered, int start, int end, int incr, int chunkSize,
+                                   Ptr istart, Ptr iend) {
+    ThreadState state = state();
+    state.begin(() -> new LoopWorkShare(schedule, ordered, start, end, incr, chunkSize));
+    return loopNext(istart, iend);
+  }
+
+  private static boolean loopNext(Ptr istart, Ptr iend) {
+    ThreadState state = state();
+    state.completeOrderedChunk();
+
+    LoopWorkShare loop = (LoopWorkShare) state.current;
+    long first;
+    long last;
+
+    switch (loop.schedule) {
+      case SCHEDULE_STATIC:
+        if(loop.chunkSize <= 0 && state.staticChunks == 0) {
+          // Without a chunk size, divide the iterations into one contiguous block per thread
+          long blockSize = (loop.iterations + state.team.size - 1) / state.team.size;
+          first = blockSize * state.threadNum;
+          last = Math.min(first + blockSize, loop.iterations);
+          state.staticChunks = Long.MAX_VALUE;
+        } else if(state.staticChunks == Long.MAX_VALUE) {
+          return false;
+        } else {
+          first = (state.staticChunks * state.team.size + state.threadNum) * loop.chunkSize;
+          last = Math.min(first + loop.chunkSize, loop.iterations);
+          state.staticChunks++;
+        }
+        break;
+
+      case SCHEDULE_GUIDED:
+        while(true) {
+          first = loop.next.get();
+          long remaining = loop.iterations - first;
+          if(remaining <= 0) {
+            return false;
+          }
+          long size = Math.max(Math.max(1, loop.chunkSize), remaining / (2 * state.team.size));
+          last = Math.min(first + size, loop.iterations);
+          if(loop.next.compareAndSet(first, last)) {
+            break;
+          }
+        }
+        break;
+
+      default:
+        long size = Math.max(1, loop.chunkSize);
+        first = loop.next.getAndAdd(size);
+        last = Math.min(first + size, loop.iterations);
+        break;
+    }
+
+    if(first >= last) {
+      return false;
+    }
+    if(loop.ordered) {
+      state.orderedChunk = true;
+      state.chunkFirst = first;
+      state.chunkLast = last;
+    }
+    istart.setInt((int) (loop.start + first * loop.incr));
+    iend.setInt((int) (loop.start + last * loop.incr));
+    return true;
+  }
+
+  public static boolean GOMP_loop_static_start(int start, int end, int incr, int chunkSize, Ptr istart, Ptr iend) {
+    return loopStart(SCHEDULE_STATIC, false, start, end, incr, chunkSize, istart, iend);
+  }
+
+  public static boolean GOMP_loop_dynamic_start(int start, int end, int incr, int chunkSize, Ptr istart, Ptr iend) {
+    return loopStart(SCHEDULE_DYNAMIC, false, start, end, incr, chunkSize, istart, iend);
+  }
+
+  public static boolean GOMP_loop_guided_start(int start, int end, int incr, int chunkSize, Ptr istart, Ptr iend) {
+    return loopStart(SCHEDULE_GUIDED, false, start, end, incr, chunkSize, istart, iend);
+  }
+
+  public static boolean GOMP_loop_runtime_start(int start, int end, int incr, Ptr istart, Ptr iend) {
+    return loopStart(SCHEDULE_DYNAMIC, false, start, end, incr, 1, istart, iend);
+  }
+
+  public static boolean GOMP_loop_static_next(Ptr istart, Ptr iend) {
+    return loopNext(istart, iend);
+  }
+
+  public static boolean GOMP_loop_dynamic_next(Ptr istart, Ptr iend) {
+    return loopNext(istart, iend);
+  }
+
+  public static boolean GOMP_loop_guided_next(Ptr istart, Ptr iend) {
+    return loopNext(istart, iend);
+  }
+
+  public static boolean GOMP_loop_runtime_next(Ptr istart, Ptr iend) {
+    return loopNext(istart, iend);
+  }
+
+  /*
+   * Ordered worksharing loops
+   */
+
+  public static boolean GOMP_loop_ordered_static_start(int start, int end, int incr, int chunkSize,
+                                                       Ptr istart, Ptr iend) {
+    return loopStart(SCHEDULE_STATIC, true, start, end, incr, chunkSize, istart, iend);
+  }
+
+  public static boolean GOMP_loop_ordered_dynamic_start(int start, int end, int incr, int chunkSize,
+                                                        Ptr istart, Ptr iend) {
+    return loopStart(SCHEDULE_DYNAMIC, true, start, end, incr, chunkSize, istart, iend);
+  }
+
+  public static boolean GOMP_loop_ordered_guided_start(int start, int end, int incr, int chunkSize,
+                                                       Ptr istart, Ptr iend) {
+    return loopStart(SCHEDULE_GUIDED, true, start, end, incr, chunkSize, istart, iend);
+  }
+
+  public static boolean GOMP_loop_ordered_runtime_start(int start, int end, int incr, Ptr istart, Ptr iend) {
+    return loopStart(SCHEDULE_DYNAMIC, true, start, end, incr, 1, istart, iend);
+  }
+
+  public static boolean GOMP_loop_ordered_static_next(Ptr istart, Ptr iend) {
+    return loopNext(istart, iend);
+  }
+
+  public static boolean GOMP_loop_ordered_dynamic_next(Ptr istart, Ptr iend) {
+    return loopNext(istart, iend);
+  }
+
+  public static boolean GOMP_loop_ordered_guided_next(Ptr istart, Ptr iend) {
+    return loopNext(istart, iend);
+  }
+
+  public static boolean GOMP_loop_ordered_runtime_next(Ptr istart, Ptr iend) {
+    return loopNext(istart, iend);
+  }
+
+  public static void GOMP_loop_end() {
+    ThreadState state = state();
+    state.end();
+    state.team.barrier();
+  }
+
+  public static void GOMP_loop_end_nowait() {
+    state().end();
+  }
+
+  /*
+   * Sections
+   */
+
+  public static int GOMP_sections_start(int count) {
+    state().begin(() -> new SectionsWorkShare(count));
+    return GOMP_sections_next();
+  }
+
+  public static int GOMP_sections_next() {
+    SectionsWorkShare sections = (SectionsWorkShare) state().current;
+    int section = sections.next.incrementAndGet();
+    return section <= sections.count ? section : 0;
+  }
+
+  public static void GOMP_parallel_sections_start(MethodHandle fn, Ptr data, int numThreads, int count) {
+    startTeam(fn, data, numThreads, () -> new SectionsWorkShare(count));
+  }
+
+  public static void GOMP_parallel_sections(MethodHandle fn, Ptr data, int numThreads, int count, int flags) throws Throwable {
+    GOMP_parallel_sections_start(fn, data, numThreads, count);
+    runMaster(fn, data);
+  }
+
+  public static void GOMP_sections_end() {
+    GOMP_loop_end();
+  }
+
+  public static void GOMP_sections_end_nowait() {
+    GOMP_loop_end_nowait();
+  }
+
+  /*
+   * Single
+   */
+
+  public static boolean GOMP_single_start() {
+    ThreadState state = state();
+    SingleWorkShare single = (SingleWorkShare) state.begin(SingleWorkShare::new);
+    boolean first = single.taken.compareAndSet(false, true);
+    state.end();
+    return first;
+  }
+
+  public static Ptr GOMP_single_copy_start() {
+    ThreadState state = state();
+    SingleWorkShare single = (SingleWorkShare) state.begin(SingleWorkShare::new);
+    if(single.taken.compareAndSet(false, true)) {
+      // This thread executes the single region, and will publish its data with
+      // GOMP_single_copy_end()
+      return BytePtr.NULL;
+    }
+    state.team.barrier();
+    Ptr data = single.copyPrivate;
+    state.end();
+    return data;
+  }
+
+  public static void GOMP_single_copy_end(Ptr data) {
+    ThreadState state = state();
+    ((SingleWorkShare) state.current).copyPrivate = data;
+    state.team.barrier();
+    state.end();
+  }
+
+  /*
+   * Synchronization
+   */
+
+  public static void GOMP_barrier() {
+    state().team.barrier();
+  }
+
+  public static void GOMP_critical_start() {
+    CRITICAL_LOCK.lock();
+  }
+
+  public static void GOMP_critical_end() {
+    CRITICAL_LOCK.unlock();
+  }
+
+  /**
+   * Enters a named critical section. {@code pptr} points to a global variable which is unique to
+   * the name of the section.
+   */
+  public static void GOMP_critical_name_start(Ptr pptr) {
+    PosixThreads.pthread_mutex_lock(pptr);
+  }
+
+  public static void GOMP_critical_name_end(Ptr pptr) {
+    PosixThreads.pthread_mutex_unlock(pptr);
+  }
+
+  public static void GOMP_atomic_start() {
+    ATOMIC_LOCK.lock();
+  }
+
+  public static void GOMP_atomic_end() {
+    ATOMIC_LOCK.unlock();
+  }
+
+  /**
+   * Enters the ordered region of the current iteration, waiting until the ordered regions of
+   * all preceding chunks of the loop have completed.
+   */
+  public static void GOMP_ordered_start() {
+    ThreadState state = state();
+    if(state.orderedChunk) {
+      ((LoopWorkShare) state.current).awaitTurn(state.team, state.chunkFirst);
+    } else if(state.team.size > 1) {
+      throw new IllegalStateException("ordered region encountered outside of an ordered loop");
+    }
+  }
+
+  /**
+   * The turn is held until this thread's chunk is complete, and passed on when the thread takes
+   * its next chunk or leaves the loop, so there is nothing to do at the end of each region.
+   */
+  public static void GOMP_ordered_end() {
+  }
+
+  /**
+   * Tasks are executed immediately by the encountering thread.
+   */
+  public static void GOMP_task(MethodHandle fn, Ptr data, MethodHandle copyFn, int argSize, int argAlign,
+                               boolean ifClause, int flags) throws Throwable {
+    if(copyFn != null) {
+      Ptr copy = MixedPtr.malloc(argSize);
+      copyFn.invoke(copy, data);
+      fn.invoke(copy);
+    } else {
+      fn.invoke(data);
+    }
+  }
+
+  public static void GOMP_taskwait() {
+  }
+
+  public static void GOMP_taskyield() {
+    Thread.yield();
+  }
+
+  /*
+   * User-level API (omp.h)
+   */
+
+  public static void omp_set_num_threads(int numThreads) {
+    if(numThreads > 0) {
+      MAX_THREADS.set(numThreads);
+    }
+  }
+
+  public static int omp_get_num_threads() {
+    return state().team.size;
+  }
+
+  public static int omp_get_max_threads() {
+    Integer maxThreads = MAX_THREADS.get();
+    return maxThreads == null ? DEFAULT_NUM_THREADS : maxThreads;
+  }
+
+  public static int omp_get_thread_num() {
+    return state().threadNum;
+  }
+
+  public static int omp_get_num_procs() {
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  public static int omp_in_parallel() {
+    ThreadState state = STATE.get();
+    return state != null && state.team.size > 1 ? 1 : 0;
+  }
+
+  public static void omp_set_dynamic(int dynamic) {
+  }
+
+  public static int omp_get_dynamic() {
+    return 0;
+  }
+
+  public static void omp_set_nested(int nested) {
+  }
+
+  public static int omp_get_nested() {
+    return 0;
+  }
+
+  public static double omp_get_wtime() {
+    return System.nanoTime() / 1e9;
+  }
+
+  public static double omp_get_wtick() {
+    return 1e-9;
+  }
+
+  public static void omp_init_lock(Ptr lock) {
+    PosixThreads.pthread_mutex_init(lock, BytePtr.NULL);
+  }
+
+  public static void omp_destroy_lock(Ptr lock) {
+    PosixThreads.pthread_mutex_destroy(lock);
+  }
+
+  public static void omp_set_lock(Ptr lock) {
+    PosixThreads.pthread_mutex_lock(lock);
+  }
+
+  public static void omp_unset_lock(Ptr lock) {
+    PosixThreads.pthread_mutex_unlock(lock);
+  }
+
+  public static int omp_test_lock(Ptr lock) {
+    return PosixThreads.pthread_mutex_trylock(lock) == PosixThreads.SUCCESS ? 1 : 0;
+  }
+
+  public static void omp_init_nest_lock(Ptr lock) {
+    PosixThreads.pthread_mutex_init(lock, new IntPtr(PosixThreads.PTHREAD_MUTEX_RECURSIVE));
+  }
+
+  public static void omp_destroy_nest_lock(Ptr lock) {
+    omp_destroy_lock(lock);
+  }
+
+  public static void omp_set_nest_lock(Ptr lock) {
+    omp_set_lock(lock);
+  }
+
+  public static void omp_unset_nest_lock(Ptr lock) {
+    omp_unset_lock(lock);
+  }
+
+  public static int omp_test_nest_lock(Ptr lock) {
+    return omp_test_lock(lock);
+  }
+}
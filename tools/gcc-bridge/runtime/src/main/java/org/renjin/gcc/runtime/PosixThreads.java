@@ -19,39 +19,154 @@
 package org.renjin.gcc.runtime;
 
 import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Provides a mapping from the Posix Threads API (pthreads) to
  * the Java Concurrency APIs.
+ *
+ * <p>Threads created with {@code pthread_create()} are real JVM threads. Mutexes, condition variables
+ * and barriers are backed by {@link ReentrantLock}, {@link Condition} and {@link CyclicBarrier}
+ * instances which are associated with the address of the C object, and created on first use so that
+ * statically initialized objects such as {@code PTHREAD_MUTEX_INITIALIZER} work as expected.</p>
  */
 public class PosixThreads {
 
+  private static final Logger LOGGER = Logger.getLogger(PosixThreads.class.getName());
 
   public static final int SUCCESS = 0;
 
+  public static final int EPERM = 1;
+  public static final int ESRCH = 3;
+  public static final int EBUSY = 16;
+  public static final int EINVAL = 22;
+  public static final int EDEADLK = 35;
+  public static final int ETIMEDOUT = 110;
+
+  public static final int PTHREAD_MUTEX_NORMAL = 0;
+  public static final int PTHREAD_MUTEX_RECURSIVE = 1;
+  public static final int PTHREAD_MUTEX_ERRORCHECK = 2;
+
+  public static final int PTHREAD_BARRIER_SERIAL_THREAD = -1;
 
+  /**
+   * Thrown by {@code pthread_exit()} to unwind the calling thread's stack.
+   */
+  private static class ThreadExit extends Error {
+    private final Ptr result;
+
+    ThreadExit(Ptr result) {
+      super(null, null, false, false);
+      this.result = result;
+    }
+  }
 
   private static class PosixThread extends Thread {
 
-    private MethodHandle startRoutine;
-    private Ptr arg;
-    private Ptr result;
+    private final int id;
+    private final MethodHandle startRoutine;
+    private final Ptr arg;
+    private volatile Ptr result = BytePtr.NULL;
 
-    public PosixThread(MethodHandle startRoutine, Ptr arg) {
+    public PosixThread(int id, MethodHandle startRoutine, Ptr arg) {
+      super("pthread-" + id);
+      this.id = id;
       this.startRoutine = startRoutine;
       this.arg = arg;
+      setDaemon(true);
     }
 
     @Override
-    public synchronized void start() {
+    public void run() {
       try {
         result = (Ptr) startRoutine.invoke(arg);
+      } catch (ThreadExit exit) {
+        result = exit.result;
       } catch (Throwable throwable) {
-        throwable.printStackTrace();
+        LOGGER.log(Level.SEVERE, "Uncaught exception in " + getName(), throwable);
+      } finally {
+        runKeyDestructors();
+      }
+    }
+  }
+
+  /**
+   * Identifies a C object by its location in memory.
+   */
+  private static final class Address {
+    private final Object array;
+    private final int offset;
+
+    Address(Ptr ptr) {
+      this.array = ptr.getArray();
+      this.offset = ptr.getOffsetInBytes();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Address)) {
+        return false;
+      }
+      Address other = (Address) o;
+      if (offset != other.offset) {
+        return false;
+      }
+      // Field pointers return a new copy of the Field for each lookup
+      if (array instanceof Field) {
+        return array.equals(other.array);
+      }
+      return array == other.array;
+    }
+
+    @Override
+    public int hashCode() {
+      int arrayHash = (array instanceof Field) ? array.hashCode() : System.identityHashCode(array);
+      return arrayHash * 31 + offset;
+    }
+  }
+
+  private static class Mutex {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final int type;
+
+    Mutex(int type) {
+      this.type = type;
+    }
+  }
+
+  private static class ConditionVariable {
+    private ReentrantLock lock;
+    private Condition condition;
+
+    /**
+     * Returns the Java condition for waiting with the given lock. POSIX requires that all
+     * concurrent waiters use the same mutex.
+     */
+    synchronized Condition conditionFor(ReentrantLock lock) {
+      if (this.lock != lock) {
+        this.lock = lock;
+        this.condition = lock.newCondition();
       }
+      return condition;
+    }
+
+    synchronized ReentrantLock getLock() {
+      return lock;
+    }
+
+    synchronized Condition getCondition() {
+      return condition;
     }
   }
 
@@ -59,6 +174,24 @@ public class PosixThreads {
 
   private static final ConcurrentMap<Integer, PosixThread> THREAD_MAP = new ConcurrentHashMap<>();
 
+  private static final ThreadLocal<Integer> THREAD_ID = ThreadLocal.withInitial(NEXT_THREAD_ID::incrementAndGet);
+
+  private static final ConcurrentMap<Address, Mutex> MUTEXES = new ConcurrentHashMap<>();
+
+  private static final ConcurrentMap<Address, ConditionVariable> CONDITIONS = new ConcurrentHashMap<>();
+
+  private static final ConcurrentMap<Address, CyclicBarrier> BARRIERS = new ConcurrentHashMap<>();
+
+  private static final AtomicInteger NEXT_KEY = new AtomicInteger(0);
+
+  private static final ConcurrentMap<Integer, MethodHandle> KEY_DESTRUCTORS = new ConcurrentHashMap<>();
+
+  private static final ThreadLocal<Map<Integer, Ptr>> SPECIFIC_VALUES = ThreadLocal.withInitial(ConcurrentHashMap::new);
+
+  private static boolean isNull(Ptr ptr) {
+    return ptr == null || ptr.isNull();
+  }
+
   public static int pthread_attr_init(Ptr attr) {
     return SUCCESS;
   }
@@ -68,64 +201,152 @@ public class PosixThreads {
   }
 
   public static int pthread_create(Ptr thread, Ptr attr, MethodHandle startRoutine, Ptr arg) {
-    PosixThread posixThread = new PosixThread(startRoutine, arg);
-    posixThread.start();
-
     int threadId = NEXT_THREAD_ID.incrementAndGet();
+    PosixThread posixThread = new PosixThread(threadId, startRoutine, arg);
 
     THREAD_MAP.put(threadId, posixThread);
 
+    // Store the id before starting the thread, as the start routine
+    // may read it
     thread.setInt(threadId);
 
+    posixThread.start();
+
     return SUCCESS;
   }
 
   public static int pthread_join(int threadId, Ptr valuePtr) {
 
     PosixThread posixThread = THREAD_MAP.get(threadId);
+    if(posixThread == null) {
+      return ESRCH;
+    }
+    if(posixThread == Thread.currentThread()) {
+      return EDEADLK;
+    }
 
-    try {
-      posixThread.join();
-    } catch (InterruptedException e) {
-      e.printStackTrace();
+    boolean interrupted = false;
+    while (true) {
+      try {
+        posixThread.join();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if(interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    THREAD_MAP.remove(threadId);
+
+    if(!isNull(valuePtr)) {
+      valuePtr.setPointer(posixThread.result);
+    }
+
+    return SUCCESS;
+  }
+
+  public static int pthread_detach(int threadId) {
+    if(THREAD_MAP.remove(threadId) == null) {
+      return ESRCH;
+    }
+    return SUCCESS;
+  }
+
+  public static int pthread_self() {
+    Thread thread = Thread.currentThread();
+    if(thread instanceof PosixThread) {
+      return ((PosixThread) thread).id;
     }
+    return THREAD_ID.get();
+  }
+
+  public static int pthread_equal(int t1, int t2) {
+    return t1 == t2 ? 1 : 0;
+  }
 
-    valuePtr.setPointer(posixThread.result);
+  public static void pthread_exit(Ptr result) {
+    if(!(Thread.currentThread() instanceof PosixThread)) {
+      throw new IllegalStateException("pthread_exit() can only be called from a thread created by pthread_create()");
+    }
+    throw new ThreadExit(result);
+  }
 
+  public static int sched_yield() {
+    Thread.yield();
     return SUCCESS;
   }
 
+  /*
+   * Mutexes
+   */
+
   public static int pthread_mutex_init(Ptr mutex, Ptr attr) {
+    int type = PTHREAD_MUTEX_NORMAL;
+    if(!isNull(attr)) {
+      type = attr.getInt();
+    }
+    MUTEXES.put(new Address(mutex), new Mutex(type));
     return SUCCESS;
   }
 
   public static int pthread_mutexattr_init(Ptr attr) {
+    attr.setInt(PTHREAD_MUTEX_NORMAL);
     return SUCCESS;
   }
 
 
   public static int pthread_mutexattr_gettype(Ptr attr, Ptr type) {
-    throw new UnsupportedOperationException("TODO");
+    type.setInt(attr.getInt());
+    return SUCCESS;
   }
 
   public static int pthread_mutexattr_settype(Ptr attr, int type) {
+    if(type < PTHREAD_MUTEX_NORMAL || type > PTHREAD_MUTEX_ERRORCHECK) {
+      return EINVAL;
+    }
+    attr.setInt(type);
     return SUCCESS;
   }
 
+  private static Mutex mutex(Ptr mutex) {
+    return MUTEXES.computeIfAbsent(new Address(mutex), address -> new Mutex(PTHREAD_MUTEX_NORMAL));
+  }
 
   public static int pthread_mutex_lock(Ptr mutex) {
+    Mutex m = mutex(mutex);
+    if(m.type == PTHREAD_MUTEX_ERRORCHECK && m.lock.isHeldByCurrentThread()) {
+      return EDEADLK;
+    }
+    m.lock.lock();
     return SUCCESS;
   }
 
   public static int pthread_mutex_trylock(Ptr mutex) {
-    return SUCCESS;
+    Mutex m = mutex(mutex);
+    if(m.type != PTHREAD_MUTEX_RECURSIVE && m.lock.isHeldByCurrentThread()) {
+      return EBUSY;
+    }
+    return m.lock.tryLock() ? SUCCESS : EBUSY;
   }
 
   public static int pthread_mutex_unlock(Ptr mutex) {
+    Mutex m = mutex(mutex);
+    if(!m.lock.isHeldByCurrentThread()) {
+      return EPERM;
+    }
+    m.lock.unlock();
     return SUCCESS;
   }
 
   public static int pthread_mutex_destroy(Ptr mutex) {
+    Address address = new Address(mutex);
+    Mutex m = MUTEXES.get(address);
+    if(m != null && m.lock.isLocked()) {
+      return EBUSY;
+    }
+    MUTEXES.remove(address);
     return SUCCESS;
   }
 
@@ -133,6 +354,201 @@ public class PosixThreads {
     return SUCCESS;
   }
 
+  /*
+   * Condition variables
+   */
+
+  public static int pthread_condattr_init(Ptr attr) {
+    return SUCCESS;
+  }
+
+  public static int pthread_condattr_destroy(Ptr attr) {
+    return SUCCESS;
+  }
+
+  public static int pthread_cond_init(Ptr cond, Ptr attr) {
+    CONDITIONS.put(new Address(cond), new ConditionVariable());
+    return SUCCESS;
+  }
+
+  private static ConditionVariable condition(Ptr cond) {
+    return CONDITIONS.computeIfAbsent(new Address(cond), address -> new ConditionVariable());
+  }
+
+  public static int pthread_cond_wait(Ptr cond, Ptr mutex) {
+    Mutex m = mutex(mutex);
+    if(!m.lock.isHeldByCurrentThread()) {
+      return EPERM;
+    }
+    // Spurious wakeups are permitted by POSIX, so we can treat an
+    // interrupt as one.
+    try {
+      condition(cond).conditionFor(m.lock).await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return SUCCESS;
+  }
+
+  /**
+   * Waits on a condition variable until the absolute time {@code abstime}, given as a
+   * {@code struct timespec} with two int members.
+   */
+  public static int pthread_cond_timedwait(Ptr cond, Ptr mutex, Ptr abstime) {
+    Mutex m = mutex(mutex);
+    if(!m.lock.isHeldByCurrentThread()) {
+      return EPERM;
+    }
+    long deadlineMillis = TimeUnit.SECONDS.toMillis(abstime.getAlignedInt(0)) +
+        TimeUnit.NANOSECONDS.toMillis(abstime.getAlignedInt(1));
+    long remainingNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMillis - System.currentTimeMillis());
+    try {
+      if(condition(cond).conditionFor(m.lock).awaitNanos(remainingNanos) <= 0) {
+        return ETIMEDOUT;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return SUCCESS;
+  }
+
+  public static int pthread_cond_signal(Ptr cond) {
+    return notifyWaiters(cond, false);
+  }
+
+  public static int pthread_cond_broadcast(Ptr cond) {
+    return notifyWaiters(cond, true);
+  }
+
+  private static int notifyWaiters(Ptr cond, boolean all) {
+    ConditionVariable cv = condition(cond);
+    ReentrantLock lock = cv.getLock();
+    if(lock == null) {
+      // No thread has ever waited on this condition
+      return SUCCESS;
+    }
+    // POSIX allows signaling without holding the mutex, but Java requires
+    // the lock to be held.
+    lock.lock();
+    try {
+      Condition condition = cv.getCondition();
+      if(all) {
+        condition.signalAll();
+      } else {
+        condition.signal();
+      }
+    } finally {
+      lock.unlock();
+    }
+    return SUCCESS;
+  }
+
+  public static int pthread_cond_destroy(Ptr cond) {
+    CONDITIONS.remove(new Address(cond));
+    return SUCCESS;
+  }
+
+  /*
+   * Barriers
+   */
+
+  public static int pthread_barrierattr_init(Ptr attr) {
+    return SUCCESS;
+  }
+
+  public static int pthread_barrierattr_destroy(Ptr attr) {
+    return SUCCESS;
+  }
+
+  public static int pthread_barrier_init(Ptr barrier, Ptr attr, int count) {
+    if(count <= 0) {
+      return EINVAL;
+    }
+    BARRIERS.put(new Address(barrier), new CyclicBarrier(count));
+    return SUCCESS;
+  }
+
+  public static int pthread_barrier_wait(Ptr barrier) {
+    CyclicBarrier cyclicBarrier = BARRIERS.get(new Address(barrier));
+    if(cyclicBarrier == null) {
+      return EINVAL;
+    }
+    try {
+      int arrivalIndex = cyclicBarrier.await();
+      return arrivalIndex == 0 ? PTHREAD_BARRIER_SERIAL_THREAD : SUCCESS;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return EINVAL;
+    } catch (BrokenBarrierException e) {
+      return EINVAL;
+    }
+  }
+
+  public static int pthread_barrier_destroy(Ptr barrier) {
+    Address address = new Address(barrier);
+    CyclicBarrier cyclicBarrier = BARRIERS.get(address);
+    if(cyclicBarrier != null && cyclicBarrier.getNumberWaiting() > 0) {
+      return EBUSY;
+    }
+    BARRIERS.remove(address);
+    return SUCCESS;
+  }
+
+  /*
+   * Thread-specific data
+   */
+
+  public static int pthread_key_create(Ptr key, MethodHandle destructor) {
+    int keyId = NEXT_KEY.incrementAndGet();
+    if(destructor != null) {
+      KEY_DESTRUCTORS.put(keyId, destructor);
+    }
+    key.setInt(keyId);
+    return SUCCESS;
+  }
+
+  public static int pthread_key_delete(int key) {
+    KEY_DESTRUCTORS.remove(key);
+    SPECIFIC_VALUES.get().remove(key);
+    return SUCCESS;
+  }
+
+  public static int pthread_setspecific(int key, Ptr value) {
+    if(isNull(value)) {
+      SPECIFIC_VALUES.get().remove(key);
+    } else {
+      SPECIFIC_VALUES.get().put(key, value);
+    }
+    return SUCCESS;
+  }
+
+  public static Ptr pthread_getspecific(int key) {
+    Ptr value = SPECIFIC_VALUES.get().get(key);
+    if(value == null) {
+      return BytePtr.NULL;
+    }
+    return value;
+  }
+
+  /**
+   * Invokes the destructors of any non-null thread-specific values when a thread
+   * created by {@code pthread_create()} exits.
+   */
+  private static void runKeyDestructors() {
+    Map<Integer, Ptr> values = SPECIFIC_VALUES.get();
+    for (Map.Entry<Integer, Ptr> entry : values.entrySet()) {
+      MethodHandle destructor = KEY_DESTRUCTORS.get(entry.getKey());
+      if(destructor != null) {
+        try {
+          destructor.invoke(entry.getValue());
+        } catch (Throwable throwable) {
+          LOGGER.log(Level.SEVERE, "Exception in destructor of thread-specific key " + entry.getKey(), throwable);
+        }
+      }
+    }
+    SPECIFIC_VALUES.remove();
+  }
+
   public static int pthread_once(Ptr onceControl, MethodHandle initRoutine) throws Throwable {
     synchronized (onceControl.getArray()) {
       if(onceControl.getInt(0) == 0) {
@@ -0,0 +1,389 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.gcc.runtime;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+
+/**
+ * Implementation of the C standard library's {@code qsort()} and {@code bsearch()}.
+ */
+final class Sorting {
+
+  private static final MethodType COMPARATOR_TYPE = MethodType.methodType(int.class, Ptr.class, Ptr.class);
+
+  /**
+   * Ranges shorter than this are sorted by insertion sort.
+   */
+  private static final int INSERTION_SORT_THRESHOLD = 16;
+
+  private Sorting() {}
+
+  static void qsort(Ptr base, int nitems, int size, MethodHandle comparator) {
+    if(nitems < 2 || size <= 0) {
+      return;
+    }
+    MethodHandle cmp = comparator.asType(COMPARATOR_TYPE);
+
+    if(base instanceof DoublePtr && size == DoublePtr.BYTES) {
+      DoublePtr ptr = (DoublePtr) base;
+      if(!sortNaturally(ptr.array, ptr.offset, nitems, cmp)) {
+        introsort(new DoubleElements(ptr, cmp), nitems);
+      }
+    } else if(base instanceof IntPtr && size == IntPtr.BYTES) {
+      IntPtr ptr = (IntPtr) base;
+      if(!sortNaturally(ptr.array, ptr.offset, nitems, cmp)) {
+        introsort(new IntElements(ptr, cmp), nitems);
+      }
+    } else {
+      introsort(new GenericElements(base, size, cmp), nitems);
+    }
+  }
+
+  static Ptr bsearch(Ptr key, Ptr base, int nitems, int size, MethodHandle comparator) {
+    MethodHandle cmp = comparator.asType(COMPARATOR_TYPE);
+    int lo = 0;
+    int hi = nitems - 1;
+    while(lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      Ptr element = base.pointerPlus(mid * size);
+      int c = compare(cmp, key, element);
+      if(c < 0) {
+        hi = mid - 1;
+      } else if(c > 0) {
+        lo = mid + 1;
+      } else {
+        return element;
+      }
+    }
+    return BytePtr.NULL;
+  }
+
+  /**
+   * Sorts the array in ascending or descending natural order, and checks that the result is also ordered
+   * according to {@code cmp}, which is the case for the most common comparators. This needs only {@code n - 1}
+   * to {@code 2(n - 1)} calls to the comparator.
+   *
+   * @return false if {@code cmp} disagrees with natural ordering, in which case the array is left
+   * sorted in descending order and must still be sorted with the comparator.
+   */
+  private static boolean sortNaturally(double[] array, int offset, int n, MethodHandle cmp) {
+    Arrays.sort(array, offset, offset + n);
+    if(isOrdered(new DoubleElements(new DoublePtr(array, offset), cmp), n)) {
+      return true;
+    }
+    reverse(array, offset, n);
+    return isOrdered(new DoubleElements(new DoublePtr(array, offset), cmp), n);
+  }
+
+  private static boolean sortNaturally(int[] array, int offset, int n, MethodHandle cmp) {
+    Arrays.sort(array, offset, offset + n);
+    if(isOrdered(new IntElements(new IntPtr(array, offset), cmp), n)) {
+      return true;
+    }
+    reverse(array, offset, n);
+    return isOrdered(new IntElements(new IntPtr(array, offset), cmp), n);
+  }
+
+  private static void reverse(double[] array, int offset, int n) {
+    for (int i = offset, j = offset + n - 1; i < j; i++, j--) {
+      double t = array[i];
+      array[i] = array[j];
+      array[j] = t;
+    }
+  }
+
+  private static void reverse(int[] array, int offset, int n) {
+    for (int i = offset, j = offset + n - 1; i < j; i++, j--) {
+      int t = array[i];
+      array[i] = array[j];
+      array[j] = t;
+    }
+  }
+
+  private static boolean isOrdered(Elements elements, int n) {
+    for (int i = 1; i < n; i++) {
+      if(elements.compare(i - 1, i) > 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int compare(MethodHandle cmp, Ptr x, Ptr y) {
+    try {
+      return (int) cmp.invokeExact(x, y);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Sorts the elements by quicksort, switching to heapsort if the recursion becomes too deep, and to
+   * insertion sort for small ranges.
+   */
+  private static void introsort(Elements elements, int n) {
+    int depthLimit = 2 * (32 - Integer.numberOfLeadingZeros(n));
+    introsort(elements, 0, n - 1, depthLimit);
+  }
+
+  private static void introsort(Elements elements, int lo, int hi, int depthLimit) {
+    while(hi - lo + 1 > INSERTION_SORT_THRESHOLD) {
+      if(depthLimit-- == 0) {
+        heapsort(elements, lo, hi);
+        return;
+      }
+      int p = partition(elements, lo, hi);
+      // Recurse into the smaller partition to bound stack depth
+      if(p - lo < hi - p) {
+        introsort(elements, lo, p - 1, depthLimit);
+        lo = p + 1;
+      } else {
+        introsort(elements, p + 1, hi, depthLimit);
+        hi = p - 1;
+      }
+    }
+    insertionSort(elements, lo, hi);
+  }
+
+  /**
+   * Partitions the range around the median of its first, middle and last elements.
+   *
+   * @return the final index of the pivot
+   */
+  private static int partition(Elements elements, int lo, int hi) {
+    int mid = (lo + hi) >>> 1;
+    if(elements.compare(mid, lo) < 0) {
+      elements.swap(mid, lo);
+    }
+    if(elements.compare(hi, lo) < 0) {
+      elements.swap(hi, lo);
+    }
+    if(elements.compare(hi, mid) < 0) {
+      elements.swap(hi, mid);
+    }
+    // Move the median to lo, where it stays during partitioning
+    elements.swap(lo, mid);
+
+    int i = lo;
+    int j = hi + 1;
+    while(true) {
+      do {
+        i++;
+      } while(i < hi && elements.compare(i, lo) < 0);
+      do {
+        j--;
+      } while(j > lo && elements.compare(lo, j) < 0);
+      if(i >= j) {
+        break;
+      }
+      elements.swap(i, j);
+    }
+    elements.swap(lo, j);
+    return j;
+  }
+
+  private static void insertionSort(Elements elements, int lo, int hi) {
+    for (int i = lo + 1; i <= hi; i++) {
+      for (int j = i; j > lo && elements.compare(j - 1, j) > 0; j--) {
+        elements.swap(j - 1, j);
+      }
+    }
+  }
+
+  private static void heapsort(Elements elements, int lo, int hi) {
+    int n = hi - lo + 1;
+    for (int i = n / 2 - 1; i >= 0; i--) {
+      siftDown(elements, lo, i, n);
+    }
+    for (int end = n - 1; end > 0; end--) {
+      elements.swap(lo, lo + end);
+      siftDown(elements, lo, 0, end);
+    }
+  }
+
+  private static void siftDown(Elements elements, int lo, int root, int n) {
+    while(true) {
+      int child = 2 * root + 1;
+      if(child >= n) {
+        return;
+      }
+      if(child + 1 < n && elements.compare(lo + child, lo + child + 1) < 0) {
+        child++;
+      }
+      if(elements.compare(lo + root, lo + child) >= 0) {
+        return;
+      }
+      elements.swap(lo + root, lo + child);
+      root = child;
+    }
+  }
+
+  private interface Elements {
+    int compare(int i, int j);
+
+    void swap(int i, int j);
+  }
+
+  private static final class DoubleElements implements Elements {
+    private final double[] array;
+    private final int offset;
+    private final MethodHandle cmp;
+
+    DoubleElements(DoublePtr base, MethodHandle cmp) {
+      this.array = base.array;
+      this.offset = base.offset;
+      this.cmp = cmp;
+    }
+
+    @Override
+    public int compare(int i, int j) {
+      return Sorting.compare(cmp, new DoublePtr(array, offset + i), new DoublePtr(array, offset + j));
+    }
+
+    @Override
+    public void swap(int i, int j) {
+      double t = array[offset + i];
+      array[offset + i] = array[offset + j];
+      array[offset + j] = t;
+    }
+  }
+
+  private static final class IntElements implements Elements {
+    private final int[] array;
+    private final int offset;
+    private final MethodHandle cmp;
+
+    IntElements(IntPtr base, MethodHandle cmp) {
+      this.array = base.array;
+      this.offset = base.offset;
+      this.cmp = cmp;
+    }
+
+    @Override
+    public int compare(int i, int j) {
+      return Sorting.compare(cmp, new IntPtr(array, offset + i), new IntPtr(array, offset + j));
+    }
+
+    @Override
+    public void swap(int i, int j) {
+      int t = array[offset + i];
+      array[offset + i] = array[offset + j];
+      array[offset + j] = t;
+    }
+  }
+
+  /**
+   * Elements of any pointer type, swapped a word at a time with the accessor that matches the
+   * type of the array: pointers for arrays of pointers, so that the referenced objects are moved
+   * rather than their addresses, and otherwise the widest accessor that divides the element size.
+   */
+  private static final class GenericElements implements Elements {
+    private static final int DOUBLE_WORDS = 0;
+    private static final int LONG_WORDS = 1;
+    private static final int INT_WORDS = 2;
+    private static final int BYTES = 3;
+    private static final int POINTER_WORDS = 4;
+    private static final int MIXED = 5;
+
+    private final Ptr base;
+    private final int size;
+    private final int words;
+    private final MethodHandle cmp;
+
+    GenericElements(Ptr base, int size, MethodHandle cmp) {
+      this.base = base;
+      this.size = size;
+      this.cmp = cmp;
+      if(base instanceof MixedPtr) {
+        this.words = MIXED;
+      } else if(base instanceof PointerPtr) {
+        this.words = POINTER_WORDS;
+      } else if(size % 8 == 0 && base instanceof DoublePtr) {
+        this.words = DOUBLE_WORDS;
+      } else if(size % 8 == 0 && base instanceof LongPtr) {
+        this.words = LONG_WORDS;
+      } else if(size % 4 == 0) {
+        this.words = INT_WORDS;
+      } else {
+        this.words = BYTES;
+      }
+    }
+
+    private Ptr element(int i) {
+      return base.pointerPlus(i * size);
+    }
+
+    @Override
+    public int compare(int i, int j) {
+      return Sorting.compare(cmp, element(i), element(j));
+    }
+
+    @Override
+    public void swap(int i, int j) {
+      if(i == j) {
+        return;
+      }
+      int x = i * size;
+      int y = j * size;
+      if(words == MIXED) {
+        ((MixedPtr) base).swap(x, y, size);
+        return;
+      }
+      int step = words == DOUBLE_WORDS || words == LONG_WORDS ? 8 : words == BYTES ? 1 : 4;
+      for (int k = 0; k < size; k += step) {
+        switch (words) {
+          case DOUBLE_WORDS: {
+            double t = base.getDouble(x + k);
+            base.setDouble(x + k, base.getDouble(y + k));
+            base.setDouble(y + k, t);
+            break;
+          }
+          case LONG_WORDS: {
+            long t = base.getLong(x + k);
+            base.setLong(x + k, base.getLong(y + k));
+            base.setLong(y + k, t);
+            break;
+          }
+          case INT_WORDS: {
+            int t = base.getInt(x + k);
+            base.setInt(x + k, base.getInt(y + k));
+            base.setInt(y + k, t);
+            break;
+          }
+          case POINTER_WORDS: {
+            Ptr t = base.getPointer(x + k);
+            base.setPointer(x + k, base.getPointer(y + k));
+            base.setPointer(y + k, t);
+            break;
+          }
+          default: {
+            byte t = base.getByte(x + k);
+            base.setByte(x + k, base.getByte(y + k));
+            base.setByte(y + k, t);
+            break;
+          }
+        }
+      }
+    }
+  }
+}
@@ -22,9 +22,12 @@ import org.renjin.gcc.annotations.Struct;
 import org.renjin.gcc.format.*;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.lang.invoke.MethodHandle;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.time.Instant;
@@ -621,13 +624,30 @@ public class Stdlib {
     return formatter.format(input.apply(formatter));
   }
 
+  /**
+   * Sorts the {@code nitems} elements of {@code size} bytes each, pointed to by {@code base}, using
+   * the given {@code comparator}.
+   */
   public static void qsort(Ptr base, int nitems, int size, MethodHandle comparator) {
-    throw new UnsupportedOperationException();
+    Sorting.qsort(base, nitems, size, comparator);
   }
 
   @Deprecated
   public static void qsort(Object base, int nitems, int size, MethodHandle comparator) {
-    throw new UnsupportedOperationException();
+    if(!(base instanceof Ptr)) {
+      throw new UnsupportedOperationException();
+    }
+    qsort((Ptr) base, nitems, size, comparator);
+  }
+
+  /**
+   * Searches the sorted array of {@code nitems} elements of {@code size} bytes each, pointed to by {@code base},
+   * for an element which the {@code comparator} finds equal to {@code key}.
+   *
+   * @return a pointer to the matching element, or a null pointer if there is none.
+   */
+  public static Ptr bsearch(Ptr key, Ptr base, int nitems, int size, MethodHandle comparator) {
+    return Sorting.bsearch(key, base, nitems, size, comparator);
   }
 
 
@@ -873,19 +893,46 @@ public class Stdlib {
     }
   }
 
+  /**
+   * Files opened read-only which are at least this large are memory-mapped rather than buffered.
+   */
+  static final long MAP_THRESHOLD = 1024 * 1024;
+
   public static FileHandleImpl openFile(String filenameString, String modeString) throws IOException {
+    Path path = Paths.get(filenameString);
+    FileChannel channel;
     switch (modeString) {
       case "r":
       case "rb":
-        return new FileHandleImpl(new RandomAccessFile(filenameString, "r"));
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        if(channel.size() >= MAP_THRESHOLD && channel.size() <= Integer.MAX_VALUE) {
+          return FileHandleImpl.map(channel);
+        }
+        return new FileHandleImpl(channel, false, false);
+
+      case "r+":
+      case "r+b":
+      case "rb+":
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new FileHandleImpl(channel, true, false);
+
       case "w":
       case "wb":
-        return new FileHandleImpl(new RandomAccessFile(filenameString, "rw"));
-
+      case "w+":
       case "w+b":
-        RandomAccessFile raf = new RandomAccessFile(filenameString, "rw");
-        raf.seek(raf.length());
-        return new FileHandleImpl(raf);
+      case "wb+":
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new FileHandleImpl(channel, true, false);
+
+      case "a":
+      case "ab":
+      case "a+":
+      case "a+b":
+      case "ab+":
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+            StandardOpenOption.CREATE);
+        return new FileHandleImpl(channel, true, true);
 
       default:
         throw new UnsupportedOperationException("Not implemented. Mode = " + modeString);
@@ -919,20 +966,10 @@ public class Stdlib {
 
   public static int fwrite(Ptr ptr, int size, int count, Ptr stream) throws IOException {
     FileHandle handle = (FileHandle) stream.getArray();
-    int bytesWritten = 0;
+    int bytesWritten = handle.write(ptr, count * size);
 
-    // Super naive implementation.
-    // Performance to be improved...
-    for (int i = 0; i < (count * size); ++i) {
-      try {
-        handle.write(ptr.getByte(i));
-        bytesWritten++;
-      } catch (ArrayIndexOutOfBoundsException aioobe) {
-        i = count * size;
-      }
-    }
-
-    return bytesWritten;
+    // Return the number of elements written, _not_ bytes written
+    return size == 0 ? 0 : bytesWritten / size;
   }
 
   public static int ferror(Ptr stream) {
@@ -962,21 +999,10 @@ public class Stdlib {
 
     FileHandle handle = (FileHandle) stream.getArray();
 
-    int bytesRead = 0;
-
-    // Super naive implementation.
-    // Performance to be improved...
-    for(int i=0;i<(count*size);++i) {
-      int b = handle.read();
-      if(b == -1) {
-        break;
-      }
-      ptr.setByte(i, (byte)b);
-      bytesRead++;
-    }
+    int bytesRead = handle.read(ptr, count * size);
 
     // Return the number of elements read, _not_ bytes read
-    return bytesRead / size;
+    return size == 0 ? 0 : bytesRead / size;
   }
 
   /**
@@ -1054,8 +1080,20 @@ public class Stdlib {
     }
   }
 
+  /**
+   * Writes the C string pointed by {@code str} to the stream, without its terminating null character.
+   *
+   * @return a non-negative value on success, or EOF if an error occurs, in which case the error indicator is set.
+   */
   public static int fputs(Ptr str, Ptr stream) {
-    throw new UnsupportedOperationException("fputs");
+    FileHandle handle = fileHandle(stream);
+    try {
+      handle.write(str, strlen(str));
+      return 0;
+    } catch (IOException e) {
+      handle.setError(e);
+      return -1;
+    }
   }
 
 
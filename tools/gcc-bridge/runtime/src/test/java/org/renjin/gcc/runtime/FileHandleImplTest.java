@@ -0,0 +1,161 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.gcc.runtime;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class FileHandleImplTest {
+
+  @Test
+  public void writeAndReadDoubles() throws IOException {
+    File file = tempFile();
+    double[] values = new double[100_000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = i * 1.5;
+    }
+
+    Ptr out = fopen(file, "wb");
+    assertThat(Stdlib.fwrite(new DoublePtr(values), 8, values.length, out), equalTo(values.length));
+    assertThat(Stdlib.fclose(out), equalTo(0));
+    assertThat(file.length(), equalTo(values.length * 8L));
+
+    Ptr in = fopen(file, "rb");
+    DoublePtr read = new DoublePtr(new double[values.length + 1], 1);
+    assertThat(Stdlib.fread(read, 8, values.length + 10, in), equalTo(values.length));
+    assertThat(Stdlib.feof(in), equalTo(1));
+    for (int i = 0; i < values.length; i++) {
+      assertThat(read.getAlignedDouble(i), equalTo(values[i]));
+    }
+    Stdlib.fclose(in);
+  }
+
+  @Test
+  public void bytesAreLittleEndian() throws IOException {
+    File file = tempFile();
+    Ptr out = fopen(file, "wb");
+    Stdlib.fwrite(new IntPtr(0x01020304), 4, 1, out);
+    Stdlib.fclose(out);
+
+    byte[] bytes = Files.readAllBytes(file.toPath());
+    assertThat(bytes[0], equalTo((byte) 4));
+    assertThat(bytes[3], equalTo((byte) 1));
+
+    Ptr in = fopen(file, "rb");
+    IntPtr value = new IntPtr(0);
+    Stdlib.fread(value, 4, 1, in);
+    assertThat(value.getInt(), equalTo(0x01020304));
+  }
+
+  @Test
+  public void seekBetweenReadsAndWrites() throws IOException {
+    File file = tempFile();
+    Ptr stream = fopen(file, "w+b");
+    Stdlib.fputs(cstring("hello world\n"), stream);
+    assertThat(Stdlib.ftell(stream), equalTo(12L));
+
+    Stdlib.fseek(stream, 6, FileHandle.SEEK_SET);
+    assertThat(Stdlib.fgetc(stream), equalTo((int) 'w'));
+
+    Stdlib.fseek(stream, -1, FileHandle.SEEK_CURRENT);
+    Stdlib.fputc('W', stream);
+
+    Stdlib.fseek(stream, -2, FileHandle.SEEK_END);
+    assertThat(Stdlib.fgetc(stream), equalTo((int) 'd'));
+
+    Stdlib.rewind(stream);
+    BytePtr line = new BytePtr(new byte[64]);
+    Stdlib.fgets(line, 64, stream);
+    assertThat(line.nullTerminatedString(), equalTo("hello World\n"));
+    Stdlib.fclose(stream);
+
+    assertThat(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8), equalTo("hello World\n"));
+  }
+
+  @Test
+  public void writeModeTruncates() throws IOException {
+    File file = tempFile();
+    Files.write(file.toPath(), "a much longer existing content".getBytes(StandardCharsets.UTF_8));
+
+    Ptr stream = fopen(file, "w");
+    Stdlib.fputs(cstring("short"), stream);
+    Stdlib.fclose(stream);
+
+    assertThat(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8), equalTo("short"));
+  }
+
+  @Test
+  public void appendMode() throws IOException {
+    File file = tempFile();
+    Files.write(file.toPath(), "first\n".getBytes(StandardCharsets.UTF_8));
+
+    Ptr stream = fopen(file, "a");
+    Stdlib.fputs(cstring("second\n"), stream);
+    Stdlib.fclose(stream);
+
+    assertThat(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8), equalTo("first\nsecond\n"));
+  }
+
+  @Test
+  public void readMappedFile() throws IOException {
+    File file = tempFile();
+    byte[] content = new byte[(int) Stdlib.MAP_THRESHOLD + 100];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) ('a' + (i % 26));
+    }
+    content[content.length - 1] = '\n';
+    Files.write(file.toPath(), content);
+
+    Ptr stream = fopen(file, "r");
+    Stdlib.fseek(stream, 26, FileHandle.SEEK_SET);
+    assertThat(Stdlib.fgetc(stream), equalTo((int) 'a'));
+
+    Stdlib.fseek(stream, -1, FileHandle.SEEK_END);
+    assertThat(Stdlib.fgetc(stream), equalTo((int) '\n'));
+    assertThat(Stdlib.fgetc(stream), equalTo(-1));
+    assertThat(Stdlib.feof(stream), equalTo(1));
+
+    Stdlib.rewind(stream);
+    BytePtr buffer = new BytePtr(new byte[content.length]);
+    assertThat(Stdlib.fread(buffer, 1, content.length, stream), equalTo(content.length));
+    assertThat(buffer.getByte(25), equalTo((byte) 'z'));
+    Stdlib.fclose(stream);
+  }
+
+  private static File tempFile() throws IOException {
+    File file = File.createTempFile("filehandle", ".bin");
+    file.deleteOnExit();
+    return file;
+  }
+
+  private static Ptr fopen(File file, String mode) {
+    return Stdlib.fopen(cstring(file.getAbsolutePath()), cstring(mode));
+  }
+
+  private static BytePtr cstring(String str) {
+    return BytePtr.nullTerminatedString(str, StandardCharsets.UTF_8);
+  }
+}
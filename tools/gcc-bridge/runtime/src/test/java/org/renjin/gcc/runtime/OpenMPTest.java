@@ -0,0 +1,298 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.gcc.runtime;
+
+import org.junit.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class OpenMPTest {
+
+  private static final int THREAD_COUNT = 4;
+  private static final int N = 1000;
+
+  private static final AtomicInteger SINGLE_COUNT = new AtomicInteger(0);
+
+  private static int schedule;
+  private static int chunkSize;
+
+  private static MethodHandle outlined(String name) throws Exception {
+    return MethodHandles.lookup().findStatic(OpenMPTest.class, name,
+        MethodType.methodType(void.class, Ptr.class));
+  }
+
+  private static void recordThreadNum(Ptr data) {
+    data.setAlignedInt(OpenMP.omp_get_thread_num(), OpenMP.omp_get_num_threads());
+  }
+
+  @Test
+  public void parallelRegion() throws Throwable {
+    IntPtr threads = new IntPtr(new int[THREAD_COUNT]);
+    OpenMP.GOMP_parallel(outlined("recordThreadNum"), threads, THREAD_COUNT, 0);
+
+    for (int i = 0; i < THREAD_COUNT; i++) {
+      assertThat(threads.getAlignedInt(i), equalTo(THREAD_COUNT));
+    }
+    assertThat(OpenMP.omp_in_parallel(), equalTo(0));
+    assertThat(OpenMP.omp_get_num_threads(), equalTo(1));
+  }
+
+  @Test
+  public void legacyParallelRegion() throws Throwable {
+    IntPtr threads = new IntPtr(new int[THREAD_COUNT]);
+    MethodHandle fn = outlined("recordThreadNum");
+    OpenMP.GOMP_parallel_start(fn, threads, THREAD_COUNT);
+    fn.invoke((Ptr)threads);
+    OpenMP.GOMP_parallel_end();
+
+    for (int i = 0; i < THREAD_COUNT; i++) {
+      assertThat(threads.getAlignedInt(i), equalTo(THREAD_COUNT));
+    }
+  }
+
+  private static void visitLoop(Ptr visits) {
+    IntPtr istart = new IntPtr(0);
+    IntPtr iend = new IntPtr(0);
+    boolean more;
+    switch (schedule) {
+      case 1:
+        more = OpenMP.GOMP_loop_static_start(0, N, 1, chunkSize, istart, iend);
+        break;
+      case 2:
+        more = OpenMP.GOMP_loop_dynamic_start(0, N, 1, chunkSize, istart, iend);
+        break;
+      default:
+        more = OpenMP.GOMP_loop_guided_start(0, N, 1, chunkSize, istart, iend);
+        break;
+    }
+    while(more) {
+      for (int i = istart.getInt(); i < iend.getInt(); i++) {
+        visits.setAlignedInt(i, visits.getAlignedInt(i) + 1);
+      }
+      more = OpenMP.GOMP_loop_dynamic_next(istart, iend);
+    }
+    OpenMP.GOMP_loop_end();
+  }
+
+  private void assertEachVisitedOnce(int schedule, int chunkSize) throws Throwable {
+    OpenMPTest.schedule = schedule;
+    OpenMPTest.chunkSize = chunkSize;
+
+    IntPtr visits = new IntPtr(new int[N]);
+    OpenMP.GOMP_parallel(outlined("visitLoop"), visits, THREAD_COUNT, 0);
+
+    for (int i = 0; i < N; i++) {
+      assertThat(visits.getAlignedInt(i), equalTo(1));
+    }
+  }
+
+  @Test
+  public void staticLoop() throws Throwable {
+    assertEachVisitedOnce(1, 0);
+    assertEachVisitedOnce(1, 7);
+  }
+
+  @Test
+  public void dynamicLoop() throws Throwable {
+    assertEachVisitedOnce(2, 1);
+    assertEachVisitedOnce(2, 13);
+  }
+
+  @Test
+  public void guidedLoop() throws Throwable {
+    assertEachVisitedOnce(3, 2);
+  }
+
+  private static void combinedLoop(Ptr visits) {
+    IntPtr istart = new IntPtr(0);
+    IntPtr iend = new IntPtr(0);
+    while(OpenMP.GOMP_loop_dynamic_next(istart, iend)) {
+      for (int i = istart.getInt(); i > iend.getInt(); i--) {
+        visits.setAlignedInt(i, visits.getAlignedInt(i) + 1);
+      }
+    }
+    OpenMP.GOMP_loop_end_nowait();
+  }
+
+  @Test
+  public void combinedParallelLoopWithNegativeIncrement() throws Throwable {
+    IntPtr visits = new IntPtr(new int[N]);
+    OpenMP.GOMP_parallel_loop_dynamic(outlined("combinedLoop"), visits, THREAD_COUNT, N - 1, -1, -1, 5, 0);
+
+    for (int i = 0; i < N; i++) {
+      assertThat(visits.getAlignedInt(i), equalTo(1));
+    }
+  }
+
+  private static void criticalSum(Ptr sum) {
+    for (int i = 0; i < N; i++) {
+      OpenMP.GOMP_critical_start();
+      sum.setInt(sum.getInt() + 1);
+      OpenMP.GOMP_critical_end();
+    }
+    for (int i = 0; i < N; i++) {
+      Builtins.__sync_fetch_and_add_4(sum, 1);
+    }
+  }
+
+  @Test
+  public void criticalAndAtomicUpdates() throws Throwable {
+    IntPtr sum = new IntPtr(0);
+    OpenMP.GOMP_parallel(outlined("criticalSum"), sum, THREAD_COUNT, 0);
+
+    assertThat(sum.getInt(), equalTo(THREAD_COUNT * N * 2));
+  }
+
+  private static void singleAndBarrier(Ptr arrived) {
+    for (int i = 0; i < 10; i++) {
+      if(OpenMP.GOMP_single_start()) {
+        SINGLE_COUNT.incrementAndGet();
+      }
+      Builtins.__sync_fetch_and_add_4(arrived, 1);
+      OpenMP.GOMP_barrier();
+
+      // Every thread must have arrived before any thread passes the barrier
+      if(arrived.getInt() < (i + 1) * THREAD_COUNT) {
+        throw new AssertionError("passed barrier early");
+      }
+      OpenMP.GOMP_barrier();
+    }
+  }
+
+  @Test
+  public void singleAndBarrier() throws Throwable {
+    SINGLE_COUNT.set(0);
+    IntPtr arrived = new IntPtr(0);
+    OpenMP.GOMP_parallel(outlined("singleAndBarrier"), arrived, THREAD_COUNT, 0);
+
+    assertThat(SINGLE_COUNT.get(), equalTo(10));
+    assertThat(arrived.getInt(), equalTo(10 * THREAD_COUNT));
+  }
+
+  private static void sections(Ptr done) {
+    int section = OpenMP.GOMP_sections_start(3);
+    while(section != 0) {
+      Builtins.__sync_fetch_and_add_4(done.pointerPlus((section - 1) * 4), 1);
+      section = OpenMP.GOMP_sections_next();
+    }
+    OpenMP.GOMP_sections_end();
+  }
+
+  @Test
+  public void sections() throws Throwable {
+    IntPtr done = new IntPtr(new int[3]);
+    OpenMP.GOMP_parallel(outlined("sections"), done, THREAD_COUNT, 0);
+
+    assertThat(done.getAlignedInt(0), equalTo(1));
+    assertThat(done.getAlignedInt(1), equalTo(1));
+    assertThat(done.getAlignedInt(2), equalTo(1));
+  }
+
+  private static void orderedLoop(Ptr order) {
+    IntPtr istart = new IntPtr(0);
+    IntPtr iend = new IntPtr(0);
+    boolean more;
+    switch (schedule) {
+      case 1:
+        more = OpenMP.GOMP_loop_ordered_static_start(0, N, 1, chunkSize, istart, iend);
+        break;
+      case 2:
+        more = OpenMP.GOMP_loop_ordered_dynamic_start(0, N, 1, chunkSize, istart, iend);
+        break;
+      default:
+        more = OpenMP.GOMP_loop_ordered_guided_start(0, N, 1, chunkSize, istart, iend);
+        break;
+    }
+    while(more) {
+      for (int i = istart.getInt(); i < iend.getInt(); i++) {
+        // Unordered work of varying length, so that threads would otherwise overtake each other
+        if(i % 3 == 0) {
+          Thread.yield();
+        }
+        OpenMP.GOMP_ordered_start();
+        int count = order.getAlignedInt(0);
+        order.setAlignedInt(count + 1, i);
+        order.setAlignedInt(0, count + 1);
+        OpenMP.GOMP_ordered_end();
+      }
+      more = OpenMP.GOMP_loop_ordered_dynamic_next(istart, iend);
+    }
+    OpenMP.GOMP_loop_end();
+  }
+
+  private void assertExecutedInOrder(int schedule, int chunkSize) throws Throwable {
+    OpenMPTest.schedule = schedule;
+    OpenMPTest.chunkSize = chunkSize;
+
+    IntPtr order = new IntPtr(new int[N + 1]);
+    OpenMP.GOMP_parallel(outlined("orderedLoop"), order, THREAD_COUNT, 0);
+
+    assertThat(order.getAlignedInt(0), equalTo(N));
+    for (int i = 0; i < N; i++) {
+      assertThat(order.getAlignedInt(i + 1), equalTo(i));
+    }
+  }
+
+  @Test
+  public void orderedLoop() throws Throwable {
+    assertExecutedInOrder(1, 0);
+    assertExecutedInOrder(1, 3);
+    assertExecutedInOrder(2, 1);
+    assertExecutedInOrder(2, 10);
+    assertExecutedInOrder(3, 1);
+  }
+
+  private static void orderedOutsideOfOrderedLoop(Ptr data) {
+    OpenMP.GOMP_ordered_start();
+    OpenMP.GOMP_ordered_end();
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void orderedRegionOutsideOfOrderedLoop() throws Throwable {
+    OpenMP.GOMP_parallel(outlined("orderedOutsideOfOrderedLoop"), new IntPtr(0), THREAD_COUNT, 0);
+  }
+
+  private static void masterFails(Ptr data) {
+    if(OpenMP.omp_get_thread_num() == 0) {
+      throw new ArithmeticException("master failed");
+    }
+    OpenMP.GOMP_barrier();
+    OpenMP.GOMP_barrier();
+  }
+
+  @Test(timeout = 10000)
+  public void masterThreadFails() throws Throwable {
+    try {
+      OpenMP.GOMP_parallel(outlined("masterFails"), new IntPtr(0), THREAD_COUNT, 0);
+      throw new AssertionError("expected the master's exception");
+    } catch (ArithmeticException expected) {
+      // The workers waiting at the barrier have been released
+    }
+    assertThat(OpenMP.omp_in_parallel(), equalTo(0));
+    assertThat(OpenMP.omp_get_num_threads(), equalTo(1));
+
+    parallelRegion();
+  }
+}
@@ -0,0 +1,242 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.gcc.runtime;
+
+import org.junit.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class PosixThreadsTest {
+
+  private static final int THREAD_COUNT = 8;
+  private static final int ITERATIONS = 20_000;
+
+  private static final IntPtr COUNTER = new IntPtr(0);
+  private static final IntPtr COUNTER_MUTEX = new IntPtr(new int[10]);
+
+  private static final IntPtr BARRIER = new IntPtr(new int[8]);
+  private static final AtomicInteger SERIAL_COUNT = new AtomicInteger(0);
+
+  private static final IntPtr QUEUE_MUTEX = new IntPtr(new int[10]);
+  private static final IntPtr QUEUE_NOT_EMPTY = new IntPtr(new int[12]);
+  private static final IntPtr QUEUE_NOT_FULL = new IntPtr(new int[12]);
+  private static final IntPtr QUEUE = new IntPtr(new int[2]);
+
+  private static final IntPtr KEY = new IntPtr(0);
+  private static final AtomicInteger DESTRUCTED = new AtomicInteger(0);
+
+  private static MethodHandle routine(String name) throws Exception {
+    return MethodHandles.lookup().findStatic(PosixThreadsTest.class, name,
+        MethodType.methodType(Ptr.class, Ptr.class));
+  }
+
+  private static int[] start(String routine, int count) throws Exception {
+    int[] threads = new int[count];
+    for (int i = 0; i < count; i++) {
+      IntPtr thread = new IntPtr(0);
+      assertThat(PosixThreads.pthread_create(thread, BytePtr.NULL, routine(routine), new IntPtr(i)),
+          equalTo(PosixThreads.SUCCESS));
+      threads[i] = thread.getInt();
+    }
+    return threads;
+  }
+
+  private static void joinAll(int[] threads) {
+    for (int thread : threads) {
+      assertThat(PosixThreads.pthread_join(thread, BytePtr.NULL), equalTo(PosixThreads.SUCCESS));
+    }
+  }
+
+  public static Ptr increment(Ptr arg) {
+    for (int i = 0; i < ITERATIONS; i++) {
+      PosixThreads.pthread_mutex_lock(COUNTER_MUTEX);
+      COUNTER.setInt(COUNTER.getInt() + 1);
+      PosixThreads.pthread_mutex_unlock(COUNTER_MUTEX);
+    }
+    return arg;
+  }
+
+  @Test(timeout = 30_000)
+  public void mutexStress() throws Exception {
+    COUNTER.setInt(0);
+    joinAll(start("increment", THREAD_COUNT));
+
+    assertThat(COUNTER.getInt(), equalTo(THREAD_COUNT * ITERATIONS));
+  }
+
+  @Test
+  public void trylockAndErrorCheck() {
+    IntPtr attr = new IntPtr(0);
+    IntPtr mutex = new IntPtr(new int[10]);
+    PosixThreads.pthread_mutexattr_init(attr);
+    PosixThreads.pthread_mutexattr_settype(attr, PosixThreads.PTHREAD_MUTEX_ERRORCHECK);
+    PosixThreads.pthread_mutex_init(mutex, attr);
+
+    assertThat(PosixThreads.pthread_mutex_lock(mutex), equalTo(PosixThreads.SUCCESS));
+    assertThat(PosixThreads.pthread_mutex_lock(mutex), equalTo(PosixThreads.EDEADLK));
+    assertThat(PosixThreads.pthread_mutex_trylock(mutex), equalTo(PosixThreads.EBUSY));
+    assertThat(PosixThreads.pthread_mutex_destroy(mutex), equalTo(PosixThreads.EBUSY));
+    assertThat(PosixThreads.pthread_mutex_unlock(mutex), equalTo(PosixThreads.SUCCESS));
+    assertThat(PosixThreads.pthread_mutex_unlock(mutex), equalTo(PosixThreads.EPERM));
+    assertThat(PosixThreads.pthread_mutex_destroy(mutex), equalTo(PosixThreads.SUCCESS));
+  }
+
+  public static Ptr barrierRounds(Ptr arg) {
+    for (int round = 0; round < 100; round++) {
+      if(PosixThreads.pthread_barrier_wait(BARRIER) == PosixThreads.PTHREAD_BARRIER_SERIAL_THREAD) {
+        SERIAL_COUNT.incrementAndGet();
+      }
+    }
+    return arg;
+  }
+
+  /**
+   * All threads must be running at the same time to pass the barrier, so this
+   * would deadlock if threads were run one after another.
+   */
+  @Test(timeout = 30_000)
+  public void barrierRequiresConcurrentThreads() throws Exception {
+    SERIAL_COUNT.set(0);
+    PosixThreads.pthread_barrier_init(BARRIER, BytePtr.NULL, THREAD_COUNT);
+    joinAll(start("barrierRounds", THREAD_COUNT));
+    PosixThreads.pthread_barrier_destroy(BARRIER);
+
+    assertThat(SERIAL_COUNT.get(), equalTo(100));
+  }
+
+  /**
+   * Producer: puts the numbers 1..ITERATIONS into a single-slot queue.
+   */
+  public static Ptr produce(Ptr arg) {
+    for (int i = 1; i <= ITERATIONS; i++) {
+      PosixThreads.pthread_mutex_lock(QUEUE_MUTEX);
+      while(QUEUE.getAlignedInt(0) != 0) {
+        PosixThreads.pthread_cond_wait(QUEUE_NOT_FULL, QUEUE_MUTEX);
+      }
+      QUEUE.setAlignedInt(0, i);
+      PosixThreads.pthread_cond_signal(QUEUE_NOT_EMPTY);
+      PosixThreads.pthread_mutex_unlock(QUEUE_MUTEX);
+    }
+    return arg;
+  }
+
+  /**
+   * Consumer: sums the numbers from the queue into the second element of QUEUE
+   */
+  public static Ptr consume(Ptr arg) {
+    for (int i = 1; i <= ITERATIONS; i++) {
+      PosixThreads.pthread_mutex_lock(QUEUE_MUTEX);
+      while(QUEUE.getAlignedInt(0) == 0) {
+        PosixThreads.pthread_cond_wait(QUEUE_NOT_EMPTY, QUEUE_MUTEX);
+      }
+      QUEUE.setAlignedInt(1, QUEUE.getAlignedInt(1) + QUEUE.getAlignedInt(0));
+      QUEUE.setAlignedInt(0, 0);
+      PosixThreads.pthread_cond_signal(QUEUE_NOT_FULL);
+      PosixThreads.pthread_mutex_unlock(QUEUE_MUTEX);
+    }
+    return arg;
+  }
+
+  @Test(timeout = 30_000)
+  public void producerConsumer() throws Exception {
+    QUEUE.setAlignedInt(0, 0);
+    QUEUE.setAlignedInt(1, 0);
+    PosixThreads.pthread_mutex_init(QUEUE_MUTEX, BytePtr.NULL);
+    PosixThreads.pthread_cond_init(QUEUE_NOT_EMPTY, BytePtr.NULL);
+    PosixThreads.pthread_cond_init(QUEUE_NOT_FULL, BytePtr.NULL);
+
+    int[] consumer = start("consume", 1);
+    int[] producer = start("produce", 1);
+    joinAll(producer);
+    joinAll(consumer);
+
+    assertThat(QUEUE.getAlignedInt(1), equalTo(ITERATIONS * (ITERATIONS + 1) / 2));
+
+    PosixThreads.pthread_cond_destroy(QUEUE_NOT_EMPTY);
+    PosixThreads.pthread_cond_destroy(QUEUE_NOT_FULL);
+    PosixThreads.pthread_mutex_destroy(QUEUE_MUTEX);
+  }
+
+  @Test
+  public void timedWaitExpires() {
+    IntPtr mutex = new IntPtr(new int[10]);
+    IntPtr cond = new IntPtr(new int[12]);
+    IntPtr deadline = new IntPtr(new int[2]);
+    long now = System.currentTimeMillis();
+    deadline.setAlignedInt(0, (int) (now / 1000));
+    deadline.setAlignedInt(1, (int) ((now % 1000) * 1_000_000) + 50_000_000);
+
+    PosixThreads.pthread_mutex_lock(mutex);
+    int result;
+    do {
+      result = PosixThreads.pthread_cond_timedwait(cond, mutex, deadline);
+    } while(result == PosixThreads.SUCCESS);
+    PosixThreads.pthread_mutex_unlock(mutex);
+
+    assertThat(result, equalTo(PosixThreads.ETIMEDOUT));
+  }
+
+  public static void destructor(Ptr value) {
+    DESTRUCTED.incrementAndGet();
+  }
+
+  public static Ptr useKey(Ptr arg) {
+    PosixThreads.pthread_setspecific(KEY.getInt(), arg);
+    Thread.yield();
+    if(PosixThreads.pthread_getspecific(KEY.getInt()) != arg) {
+      throw new AssertionError("thread-specific value was overwritten");
+    }
+    return arg;
+  }
+
+  @Test(timeout = 30_000)
+  public void threadSpecificData() throws Exception {
+    DESTRUCTED.set(0);
+    MethodHandle destructor = MethodHandles.lookup().findStatic(PosixThreadsTest.class, "destructor",
+        MethodType.methodType(void.class, Ptr.class));
+    PosixThreads.pthread_key_create(KEY, destructor);
+
+    joinAll(start("useKey", THREAD_COUNT));
+
+    assertThat(DESTRUCTED.get(), equalTo(THREAD_COUNT));
+    assertThat(PosixThreads.pthread_getspecific(KEY.getInt()).isNull(), equalTo(true));
+    PosixThreads.pthread_key_delete(KEY.getInt());
+  }
+
+  public static Ptr exitEarly(Ptr arg) {
+    PosixThreads.pthread_exit(new IntPtr(42));
+    throw new AssertionError("unreachable");
+  }
+
+  @Test(timeout = 30_000)
+  public void joinReturnsExitValue() throws Exception {
+    int[] threads = start("exitEarly", 1);
+    PointerPtr result = PointerPtr.malloc(4);
+    assertThat(PosixThreads.pthread_join(threads[0], result), equalTo(PosixThreads.SUCCESS));
+    assertThat(result.getPointer().getInt(), equalTo(42));
+
+    assertThat(PosixThreads.pthread_join(threads[0], BytePtr.NULL), equalTo(PosixThreads.ESRCH));
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.gcc.runtime;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Compares the time taken by {@link Stdlib#qsort(Ptr, int, int, MethodHandle)} with equivalent Java sorts.
+ */
+public class QsortBenchmark {
+
+  private static final int N = 1_000_000;
+  private static final int RUNS = 10;
+
+  public static void main(String[] args) {
+    double[] input = QsortTest.randomDoubles(N);
+    MethodHandle natural = QsortTest.comparator("compareDoubles", Object.class);
+    MethodHandle absolute = QsortTest.comparator("compareAbsolute", Ptr.class);
+
+    Comparator<Double> absoluteComparator = Comparator.comparingDouble(Math::abs);
+
+    for (int i = 0; i < 2; i++) {
+      time("Arrays.sort(double[])", () -> Arrays.sort(input.clone()));
+      time("qsort, natural order", () -> {
+        double[] values = input.clone();
+        Stdlib.qsort(new DoublePtr(values), N, 8, natural);
+      });
+      time("Arrays.sort(Double[], Comparator)", () -> {
+        Double[] values = Arrays.stream(input).boxed().toArray(Double[]::new);
+        Arrays.sort(values, absoluteComparator);
+      });
+      time("qsort, custom order", () -> {
+        double[] values = input.clone();
+        Stdlib.qsort(new DoublePtr(values), N, 8, absolute);
+      });
+    }
+  }
+
+  private static void time(String name, Runnable sort) {
+    long start = System.nanoTime();
+    for (int i = 0; i < RUNS; i++) {
+      sort.run();
+    }
+    double millis = (System.nanoTime() - start) / 1e6 / RUNS;
+    System.out.println(String.format("%-36s %8.1f ms", name, millis));
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.gcc.runtime;
+
+import org.junit.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class QsortTest {
+
+  public static int compareDoubles(Object x, Object y) {
+    return Double.compare(((Ptr) x).getDouble(), ((Ptr) y).getDouble());
+  }
+
+  public static int compareIntsDescending(Ptr x, Ptr y) {
+    return Integer.compare(y.getInt(), x.getInt());
+  }
+
+  public static int compareAbsolute(Ptr x, Ptr y) {
+    return Double.compare(Math.abs(x.getDouble()), Math.abs(y.getDouble()));
+  }
+
+  /**
+   * Compares records of two ints by their second field.
+   */
+  public static int compareSecondField(Ptr x, Ptr y) {
+    return Integer.compare(x.getInt(4), y.getInt(4));
+  }
+
+  /**
+   * Compares elements of a {@code char*[]} with {@code strcmp}.
+   */
+  public static int compareStrings(Ptr x, Ptr y) {
+    return Stdlib.strcmp(x.getPointer(), y.getPointer());
+  }
+
+  /**
+   * Compares records of an int followed by a pointer by their first field.
+   */
+  public static int compareFirstField(Ptr x, Ptr y) {
+    return Integer.compare(x.getInt(), y.getInt());
+  }
+
+  @Test
+  public void sortDoubles() {
+    double[] values = randomDoubles(1000);
+    double[] expected = values.clone();
+    Arrays.sort(expected);
+
+    Stdlib.qsort(new DoublePtr(values), values.length, 8, comparator("compareDoubles", Object.class));
+
+    assertTrue(Arrays.equals(values, expected));
+  }
+
+  @Test
+  public void sortIntsDescending() {
+    int[] values = new int[] { 0, 5, 3, 9, 1, 5, -2, 7 };
+
+    Stdlib.qsort(new IntPtr(values, 1), 6, 4, comparator("compareIntsDescending", Ptr.class));
+
+    // The first and last elements are outside the sorted range
+    assertTrue(Arrays.equals(values, new int[] { 0, 9, 5, 5, 3, 1, -2, 7 }));
+  }
+
+  @Test
+  public void sortWithCustomComparator() {
+    double[] values = randomDoubles(5000);
+
+    Stdlib.qsort(new DoublePtr(values), values.length, 8, comparator("compareAbsolute", Ptr.class));
+
+    for (int i = 1; i < values.length; i++) {
+      assertTrue(Math.abs(values[i - 1]) <= Math.abs(values[i]));
+    }
+  }
+
+  @Test
+  public void sortRecords() {
+    int n = 500;
+    int[] records = new int[n * 2];
+    Random random = new Random(42);
+    for (int i = 0; i < n; i++) {
+      records[i * 2] = i;
+      records[i * 2 + 1] = random.nextInt(100);
+    }
+
+    Stdlib.qsort(new IntPtr(records), n, 8, comparator("compareSecondField", Ptr.class));
+
+    boolean[] seen = new boolean[n];
+    for (int i = 0; i < n; i++) {
+      if(i > 0) {
+        assertTrue(records[i * 2 - 1] <= records[i * 2 + 1]);
+      }
+      seen[records[i * 2]] = true;
+    }
+    for (boolean id : seen) {
+      assertTrue(id);
+    }
+  }
+
+  @Test
+  public void sortStrings() {
+    String[] strings = new String[] { "pear", "apple", "fig", "banana", "cherry" };
+    Ptr[] array = new Ptr[strings.length];
+    for (int i = 0; i < strings.length; i++) {
+      array[i] = BytePtr.nullTerminatedString(strings[i], StandardCharsets.UTF_8);
+    }
+
+    Stdlib.qsort(new PointerPtr(array), array.length, 4, comparator("compareStrings", Ptr.class));
+
+    String[] sorted = new String[array.length];
+    for (int i = 0; i < array.length; i++) {
+      sorted[i] = Stdlib.nullTerminatedString(array[i]);
+    }
+    assertThat(sorted, equalTo(new String[] { "apple", "banana", "cherry", "fig", "pear" }));
+  }
+
+  @Test
+  public void sortRecordsWithPointers() {
+    int n = 50;
+    MixedPtr records = MixedPtr.malloc(n * 8);
+    Random random = new Random(42);
+    for (int i = 0; i < n; i++) {
+      int key = random.nextInt(1000);
+      records.setInt(i * 8, key);
+      records.setPointer(i * 8 + 4, new IntPtr(key));
+    }
+
+    Stdlib.qsort(records, n, 8, comparator("compareFirstField", Ptr.class));
+
+    for (int i = 0; i < n; i++) {
+      if(i > 0) {
+        assertTrue(records.getInt((i - 1) * 8) <= records.getInt(i * 8));
+      }
+      assertThat(records.getPointer(i * 8 + 4).getInt(), equalTo(records.getInt(i * 8)));
+    }
+  }
+
+  @Test
+  public void sortManyEqualElements() {
+    double[] values = new double[100_000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (i % 3) - 1;
+    }
+
+    Stdlib.qsort(new DoublePtr(values), values.length, 8, comparator("compareAbsolute", Ptr.class));
+
+    for (int i = 1; i < values.length; i++) {
+      assertTrue(Math.abs(values[i - 1]) <= Math.abs(values[i]));
+    }
+  }
+
+  @Test
+  public void bsearch() {
+    double[] values = new double[] { 1, 3, 5, 7, 9, 11 };
+    MethodHandle cmp = comparator("compareDoubles", Object.class);
+    DoublePtr base = new DoublePtr(values);
+
+    Ptr found = Stdlib.bsearch(new DoublePtr(7), base, values.length, 8, cmp);
+    assertThat(found.getDouble(), equalTo(7d));
+    assertThat(found.getOffsetInBytes(), equalTo(3 * 8));
+
+    assertTrue(Stdlib.bsearch(new DoublePtr(4), base, values.length, 8, cmp).isNull());
+    assertTrue(Stdlib.bsearch(new DoublePtr(4), base, 0, 8, cmp).isNull());
+  }
+
+  static MethodHandle comparator(String name, Class<?> parameterType) {
+    try {
+      return MethodHandles.lookup().findStatic(QsortTest.class, name,
+          MethodType.methodType(int.class, parameterType, parameterType));
+    } catch (ReflectiveOperationException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  static double[] randomDoubles(int n) {
+    Random random = new Random(1);
+    double[] values = new double[n];
+    for (int i = 0; i < n; i++) {
+      values[i] = random.nextGaussian();
+    }
+    return values;
+  }
+}
@@ -590,11 +590,8 @@ public final class Rinternals {
   }
 
   public static IntPtr LOGICAL(SEXP x) {
-    if(x instanceof LogicalArrayVector) {
-      return new IntPtr(((LogicalArrayVector)x).toIntArrayUnsafe());
-    } else if(x instanceof LogicalVector) {
-      // TODO: cache arrays for the case of repeated LOGICAL() calls?
-      return new IntPtr(((LogicalVector) x).toIntArray());
+    if(x instanceof LogicalVector) {
+      return new IntPtr(NativeArrays.current().intArray((LogicalVector) x));
     } else {
       throw new EvalException("LOGICAL(): expected logical vector, found %s", x.getTypeName());
     }
@@ -605,17 +602,8 @@ public final class Rinternals {
    */
   @Deprecated
   public static IntPtr INTEGER(SEXP x) {
-    if(x instanceof IntArrayVector) {
-      return new IntPtr(((IntArrayVector) x).toIntArrayUnsafe());
-    } else if(x instanceof LogicalArrayVector) {
-      return new IntPtr(((LogicalArrayVector) x).toIntArrayUnsafe());
-    } else if (x instanceof DoubleVector) {
-      return new IntPtr(((DoubleVector) x).toIntArray());
-    } else if(x instanceof IntVector) {
-      // TODO: cache arrays for the case of repeated INTEGER() calls?
-      return new IntPtr(((IntVector) x).toIntArray());
-    } else if(x instanceof LogicalVector) {
-      return new IntPtr(((LogicalVector) x).toIntArray());
+    if(x instanceof IntVector || x instanceof LogicalVector || x instanceof DoubleVector) {
+      return new IntPtr(NativeArrays.current().intArray((AtomicVector) x));
     } else if(x == Null.INSTANCE) {
       return new IntPtr(0);
     } else {
@@ -635,17 +623,13 @@ public final class Rinternals {
    */
   @Deprecated
   public static DoublePtr REAL(SEXP x) {
-    if(x instanceof DoubleArrayVector) {
-      // Return the array backing the double vector
+    if(x instanceof DoubleVector) {
+      // Return the array backing the double vector, or a copy that is cached for the rest of the native call.
       // This is inherently unsafe because the calling code can modify the contents of the array
       // and potentially break the contract of immutability of DoubleVector, but the GNU R API
       // imposes essentially the same contract. We are, however, at the mercy of the C code observing
       // this contract.
-      return new DoublePtr(((DoubleArrayVector) x).toDoubleArrayUnsafe());
-    } else if(x instanceof DoubleVector) {
-      // Return a copy of this vector as an array.
-      // TODO: Cache arrays for the case of frequent REAL() calls?
-      return new DoublePtr(((DoubleVector) x).toDoubleArray());
+      return new DoublePtr(NativeArrays.current().doubleArray((DoubleVector) x));
     } else {
       throw new EvalException("REAL(): expected numeric vector, found %s", x.getTypeName());
     }
@@ -1068,7 +1052,13 @@ public final class Rinternals {
    * @return Pointer to the enclosing environment of {@code x}.
    */
   public static SEXP ENCLOS(SEXP x) {
-    return ((Environment) x).getParent();
+    // Threads started by native code, such as OpenMP workers and pthreads, have no context,
+    // in which case the base namespace's parent is that of the session that created it.
+    Context context = Native.CURRENT_CONTEXT.get();
+    if(context == null) {
+      return ((Environment) x).getParent();
+    }
+    return ((Environment) x).getParent(context);
   }
 
   public static SEXP HASHTAB(SEXP x) {
@@ -2138,7 +2128,7 @@ public final class Rinternals {
         rho.setVariable(Native.currentContext(), symbol, value);
         return;
       }
-      rho = rho.getParent();
+      rho = rho.getParent(Native.currentContext());
     }
     Native.currentContext().getGlobalEnvironment().setVariable(Native.currentContext(), symbol, value);
   }
@@ -0,0 +1,63 @@
+/*
+ * Renjin : JVM-based interpreter for the R language for the statistical analysis
+ * Copyright © 2010-2019 BeDataDriven Groep B.V. and contributors
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, a copy is available at
+ * https://www.gnu.org/licenses/gpl-2.0.txt
+ */
+package org.renjin.gnur.api;
+
+import org.junit.Test;
+import org.renjin.gcc.runtime.DoublePtr;
+import org.renjin.gcc.runtime.IntPtr;
+import org.renjin.primitives.sequence.DoubleSequence;
+import org.renjin.primitives.sequence.IntSequence;
+import org.renjin.sexp.DoubleArrayVector;
+import org.renjin.sexp.Environment;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class RinternalsTest {
+
+  /**
+   * Native code may call the accessors from threads it starts itself, such as OpenMP workers,
+   * which have not entered a native call.
+   */
+  @Test
+  public void accessorsWorkOffTheCallingThread() throws Exception {
+    double[] values = { 1, 2, 3 };
+    DoubleArrayVector vector = DoubleArrayVector.unsafe(values);
+    DoubleSequence doubleSequence = new DoubleSequence(1, 1, 3);
+    IntSequence intSequence = new IntSequence(1, 1, 3);
+    Environment parent = Environment.createChildEnvironment(Environment.EMPTY);
+    Environment child = Environment.createChildEnvironment(parent);
+
+    CompletableFuture.runAsync(() -> {
+      DoublePtr shared = Rinternals.REAL(vector);
+      assertThat(shared.array, sameInstance(values));
+
+      DoublePtr copy = Rinternals.REAL(doubleSequence);
+      assertThat(copy.getAlignedDouble(2), equalTo(3d));
+
+      IntPtr ints = Rinternals.INTEGER(intSequence);
+      assertThat(ints.getAlignedInt(2), equalTo(3));
+
+      assertThat(Rinternals.ENCLOS(child), sameInstance(parent));
+    }).get();
+  }
+}